@@ -6,6 +6,12 @@ import pl.magzik.controllers.MenuController;
 import pl.magzik.controllers.SettingsController;
 import pl.magzik.ui.localization.DefaultTranslationStrategy;
 import pl.magzik.ui.localization.TranslationStrategy;
+import pl.magzik.ui.scenes.SceneManager;
+import pl.magzik.ui.views.ComparerView;
+import pl.magzik.ui.views.GalleryView;
+import pl.magzik.ui.views.SettingsView;
+
+import javax.swing.*;
 
 import java.util.ResourceBundle;
 
@@ -20,8 +26,10 @@ import java.util.ResourceBundle;
  * </p>
  * <p>
  * This controller should be instantiated after the {@link View} and {@link Model} have been fully constructed,
- * as it relies on them for initialization. The sub-controllers are final and are created during the construction
- * of the main {@code Controller}, ensuring that they are immutable and their dependencies are satisfied.
+ * as it relies on them for initialization. The menu and settings controllers are created during the construction
+ * of the main {@code Controller}, so the settings are applied from the start. The views of the comparer, gallery
+ * and settings are created on the first navigation to them, and their controllers are created, or attached,
+ * together with them, right before the view is translated.
  * </p>
  */
 @SuppressWarnings({"unused", "FieldCanBeLocal"}) // Hurts my eyes :P
@@ -31,9 +39,9 @@ public class Controller {
     private final Model model;
     private final ResourceBundle resourceBundle;
     private final MenuController menuController;
-    private final ComparerController comparerController;
-    private final GalleryController galleryController;
     private final SettingsController settingsController;
+    private ComparerController comparerController;
+    private GalleryController galleryController;
     private final TranslationStrategy translationStrategy;
 
     /**
@@ -41,6 +49,7 @@ public class Controller {
      * <p>
      * Initializes the primary controllers for the various views and modules in the application,
      * and performs the initial translation of the UI components to the current locale.
+     * The remaining controllers are created once their views are, see {@link #handleSceneCreation(SceneManager.Scene, JPanel)}.
      * </p>
      *
      * @param view            the main {@link View} object that represents the UI components.
@@ -53,13 +62,31 @@ public class Controller {
         this.resourceBundle = resourceBundle;
         this.translationStrategy = new DefaultTranslationStrategy(resourceBundle);
         this.menuController = new MenuController(view.getMenuView(), view.getSceneManager());
-        this.comparerController = new ComparerController(model.getCc(), view.getComparerView(), translationStrategy, view.getUiManager(), view.getUiManager());
-        this.galleryController = new GalleryController(model.getGc(), view.getGalleryView(), model.getCc(), view.getUiManager(), view.getUiManager(), translationStrategy);
-        this.settingsController = new SettingsController(view.getSettingsView(), model.getSettingsModule(), model.getGc().getGalleryPropertyAccess(), translationStrategy, view.getUiManager(), model.getCc().getComparerPropertyAccess(), model.getCc().getComparerFilePropertyAccess());
+        this.settingsController = new SettingsController(model.getSettingsModule(), model.getGc().getGalleryPropertyAccess(), translationStrategy, view.getUiManager(), model.getCc().getComparerPropertyAccess(), model.getCc().getComparerFilePropertyAccess());
+
+        view.getSceneManager().addSceneCreationListener(this::handleSceneCreation);
 
         // Translate Components Post-construct
         view.getTranslationStrategy().translateComponents(view);
         view.getTranslationStrategy().translateComponents(model.getGc().getTablePropertyAccess());
     }
 
+    /**
+     * Sets up a scene created on the first navigation to it: creates the controller of its view,
+     * or attaches the view to its controller, and translates the view afterward.
+     *
+     * @param scene the created scene.
+     * @param panel the view of the scene.
+     */
+    private void handleSceneCreation(SceneManager.Scene scene, JPanel panel) {
+        switch (scene) {
+            case COMPARER -> comparerController = new ComparerController(model.getCc(), (ComparerView) panel, translationStrategy, view.getUiManager(), view.getUiManager());
+            case GALLERY -> galleryController = new GalleryController(model.getGc(), (GalleryView) panel, model.getCc(), view.getUiManager(), view.getUiManager(), translationStrategy);
+            case SETTINGS -> settingsController.attachView((SettingsView) panel);
+            default -> { }
+        }
+
+        view.getTranslationStrategy().translateScene(panel);
+    }
+
 }
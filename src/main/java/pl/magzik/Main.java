@@ -11,6 +11,7 @@ import pl.magzik.ui.LoadingFrame;
 import pl.magzik.ui.UiManager;
 
 import javax.swing.*;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.ResourceBundle;
@@ -33,29 +34,52 @@ public class Main {
      * </p>
      * @param args command-line arguments (not used)
      */
-    @SuppressWarnings("unused")
     public static void main(String[] args) {
         try {
-            Model model = initializeModel();
-            ModuleLoader moduleLoader = initializeModuleLoader(model);
-            loadInitialModule(moduleLoader, model);
+            Startup startup = startApplication();
+            launchApplication(startup.view(), startup.loadingFrame());
+        } catch (Exception e) {
+            handleError(e);
+        }
+    }
 
-            setupUIManagerProperties();
-            setupLookAndFeel(model.getSettingsModule().getSetting("theme"));
+    /**
+     * The view and the loading frame of a started application, which isn't visible yet.
+     *
+     * @param view         the main view of the application
+     * @param loadingFrame the loading frame shown during the startup
+     */
+    record Startup(View view, LoadingFrame loadingFrame) { }
 
-            Locale locale = getLocale(model);
-            View view = initializeView(locale);
-            configureView(view);
+    /**
+     * Starts the application without showing it: initializes the model, loads the modules,
+     * and creates the view and the controller, while the loading frame is shown.
+     * <p>
+     * The application is shown by {@link #launchApplication(View, LoadingFrame)}.
+     * </p>
+     *
+     * @return the started application
+     * @throws Exception if an error occurs during initialization or loading
+     */
+    @SuppressWarnings("unused")
+    static Startup startApplication() throws Exception {
+        Model model = initializeModel();
+        ModuleLoader moduleLoader = initializeModuleLoader(model);
+        loadInitialModule(moduleLoader, model);
 
-            LoadingFrame loadingFrame = createLoadingFrame(view, moduleLoader);
+        setupUIManagerProperties();
+        setupLookAndFeel(model.getSettingsModule().getSetting("theme"));
 
-            loadModules(view.getUiManager(), moduleLoader);
-            Controller controller = initializeController(view, model, locale);
+        Locale locale = getLocale(model);
+        View view = initializeView(locale);
+        configureView(view);
 
-            launchApplication(view, loadingFrame);
-        } catch (Exception e) {
-            handleError(e);
-        }
+        LoadingFrame loadingFrame = createLoadingFrame(view, moduleLoader);
+
+        loadModules(view.getUiManager(), moduleLoader);
+        Controller controller = initializeController(view, model, locale);
+
+        return new Startup(view, loadingFrame);
     }
 
     /**
@@ -77,13 +101,13 @@ public class Main {
 
         return ModuleLoader.create(model.getSettingsModule())
                     .thenLoad(ResourceModule.getInstance())
-                    .thenLoad(model.getCc().getPackage())
-                    .thenLoad(model.getGc().getPackage())
+                    .andLoad(model.getCc().getPackage())
+                    .andLoad(model.getGc().getPackage())
                     .ready();
     }
 
     /**
-     * Loads the initial module using the provided {@code ModuleLoader} and {@code Model}.
+     * Starts loading the modules, and waits for the settings module, which the remaining ones are loaded after.
      * @param moduleLoader the {@code ModuleLoader} used to loadFiles the initial module
      * @param model the {@code Model} instance used to loadFiles settings
      * @throws ModuleLoadException if an error occurs while loading the module or settings
@@ -93,7 +117,8 @@ public class Main {
         Objects.requireNonNull(moduleLoader);
         Objects.requireNonNull(model);
 
-        moduleLoader.loadNext(); // Settings Module
+        moduleLoader.start()
+                    .await(model.getSettingsModule());
     }
 
     /**
@@ -202,11 +227,11 @@ public class Main {
     }
 
     /**
-     * Loads all modules sequentially using the provided {@code ModuleLoader}.
+     * Waits until all modules are loaded by the provided {@code ModuleLoader}.
      * <p>
-     * This method iterates through all available modules in the {@code ModuleLoader} and attempts to load
-     * each one. If an error occurs during the loading of a module, a confirmation dialog is displayed
-     * to the user, allowing them to decide whether to continue loading the remaining modules or stop.
+     * The independent modules are loaded at the same time, and the remaining ones are loaded
+     * even if one of them failed. For each module that failed to load, a confirmation dialog is displayed
+     * to the user, allowing them to decide whether to continue starting the application or stop.
      * </p>
      * <p>
      * The method ensures that both {@code uiManager} and {@code moduleLoader} are not {@code null}.
@@ -221,21 +246,25 @@ public class Main {
         Objects.requireNonNull(uiManager);
         Objects.requireNonNull(moduleLoader);
 
-        while (moduleLoader.hasNext()) {
-            try {
-                moduleLoader.loadNext();
-            } catch (ModuleLoadException | RuntimeException e) {
-                JTextArea textArea = new JTextArea(String.format("Could not load module: %n%s%nDo you wish to continue?", e.getMessage()));
-                textArea.setEditable(false);
-                JScrollPane scrollPane = new JScrollPane(textArea);
-                scrollPane.setBorder(null);
-
-                int res = uiManager.showConfirmationMessage(
-                    scrollPane,
-                    "Loading halted because: " + e.getClass().getSimpleName()
-                );
-                if (res != JOptionPane.YES_OPTION) handleError(e);
-            }
+        List<ModuleLoadException> failures;
+        try {
+            failures = moduleLoader.awaitAll();
+        } catch (ModuleLoadException e) {
+            handleError(e);
+            return;
+        }
+
+        for (ModuleLoadException e : failures) {
+            JTextArea textArea = new JTextArea(String.format("Could not load module: %n%s%nDo you wish to continue?", e.getMessage()));
+            textArea.setEditable(false);
+            JScrollPane scrollPane = new JScrollPane(textArea);
+            scrollPane.setBorder(null);
+
+            int res = uiManager.showConfirmationMessage(
+                scrollPane,
+                "Loading halted because: " + e.getClass().getSimpleName()
+            );
+            if (res != JOptionPane.YES_OPTION) handleError(e);
         }
     }
 
@@ -258,7 +287,7 @@ public class Main {
      * @param loadingFrame the {@code LoadingFrame} to be disposed
      * @throws NullPointerException if {@code view} or {@code loadingFrame} is {@code null}
      */
-    private static void launchApplication(View view, LoadingFrame loadingFrame) {
+    static void launchApplication(View view, LoadingFrame loadingFrame) {
         Objects.requireNonNull(view);
 
         loadingFrame.dispose();
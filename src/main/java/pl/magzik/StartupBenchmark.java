@@ -0,0 +1,241 @@
+package pl.magzik;
+
+import pl.magzik.modules.gallery.persistence.GalleryCollections;
+import pl.magzik.modules.gallery.table.GalleryEntry;
+import pl.magzik.modules.settings.SettingsModule;
+import pl.magzik.ui.scenes.SceneManager;
+
+import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A reproducible benchmark of the application startup.
+ * <p>
+ * Every run starts the application in a fresh JVM, with its own empty home directory, so the runs don't share
+ * any caches or settings. Before a run, a separate JVM seeds the home directory with the default settings,
+ * and a gallery of the given number of entries. The entries are generated deterministically, and point to files
+ * that don't exist, so they're flagged as missing in the background, like in a gallery whose drive isn't mounted.
+ * </p>
+ * <p>
+ * A run measures, from the start of its {@code main} method:
+ * <ul>
+ *     <li>{@code first_frame} - the main window has been opened,</li>
+ *     <li>{@code gallery} - the gallery scene has been opened, and its table shows all entries,
+ *         while the Event Dispatch Thread is responsive.</li>
+ * </ul>
+ * The benchmark prints the minimum, median and maximum of the runs for every gallery size.
+ * It needs a display, and should be run on an otherwise idle machine.
+ * </p>
+ * <p>
+ * Usage: {@code java -cp <classpath> pl.magzik.StartupBenchmark [runs] [entries...]},
+ * by default 5 runs with galleries of 0 and 500000 entries.
+ * </p>
+ */
+public class StartupBenchmark {
+
+    private static final int DEFAULT_RUNS = 5;
+    private static final List<Integer> DEFAULT_ENTRIES = List.of(0, 500_000);
+    private static final long RUN_TIMEOUT_MINUTES = 10;
+    private static final String RESULT_PREFIX = "startup-benchmark";
+
+    /**
+     * Runs the benchmark, or a single step of it in a child JVM.
+     *
+     * @param args {@code [runs] [entries...]}, or {@code --seed <entries>} / {@code --measure <entries>} in a child JVM.
+     * @throws Exception if the benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+
+        if (args.length == 2 && args[0].equals("--seed")) seed(Integer.parseInt(args[1]));
+        else if (args.length == 2 && args[0].equals("--measure")) measure(start, Integer.parseInt(args[1]));
+        else benchmark(args);
+    }
+
+    /**
+     * Runs every gallery size the given number of times, and prints the summary.
+     *
+     * @param args {@code [runs] [entries...]}
+     * @throws Exception if a run fails.
+     */
+    private static void benchmark(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+        List<Integer> sizes = args.length > 1
+            ? Arrays.stream(args, 1, args.length).map(Integer::parseInt).toList()
+            : DEFAULT_ENTRIES;
+
+        System.out.printf("%10s %12s %12s %12s %12s %12s %12s%n",
+            "entries", "frame min", "frame med", "frame max", "gallery min", "gallery med", "gallery max");
+
+        for (int entries : sizes) {
+            long[] frame = new long[runs], gallery = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                long[] result = run(entries);
+                frame[i] = result[0];
+                gallery[i] = result[1];
+            }
+
+            Arrays.sort(frame);
+            Arrays.sort(gallery);
+            System.out.printf("%10d %10dms %10dms %10dms %10dms %10dms %10dms%n",
+                entries, frame[0], frame[runs / 2], frame[runs - 1], gallery[0], gallery[runs / 2], gallery[runs - 1]);
+        }
+    }
+
+    /**
+     * Seeds a fresh home directory, and measures a single startup with it.
+     *
+     * @param entries the number of gallery entries.
+     * @return the times to the first frame and to the interactive gallery, in milliseconds.
+     * @throws Exception if a child JVM fails.
+     */
+    private static long[] run(int entries) throws Exception {
+        Path home = Files.createTempDirectory("tpc-startup-");
+        try {
+            fork(home, "--seed", entries);
+            String result = fork(home, "--measure", entries);
+            if (result == null) throw new IOException("The measuring run didn't report its result");
+
+            String[] values = result.substring(RESULT_PREFIX.length()).trim().split(" ");
+            return new long[] { Long.parseLong(values[0]), Long.parseLong(values[1]) };
+        } finally {
+            delete(home);
+        }
+    }
+
+    /**
+     * Runs a step of the benchmark in a child JVM with the given home directory.
+     * The output of the child goes to a file in its home directory, so a hung child can't block the benchmark
+     * past the timeout.
+     *
+     * @param home    the home directory of the child.
+     * @param mode    the step, {@code --seed} or {@code --measure}.
+     * @param entries the number of gallery entries.
+     * @return the result line printed by the child, or {@code null} if there's none.
+     * @throws Exception if the child fails, or doesn't finish in time.
+     */
+    private static String fork(Path home, String mode, int entries) throws Exception {
+        Path output = home.resolve("benchmark" + mode.replace("--", "-") + ".out");
+        Process process = new ProcessBuilder(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-Duser.home=" + home,
+            "-cp", System.getProperty("java.class.path"),
+            StartupBenchmark.class.getName(), mode, String.valueOf(entries)
+        ).redirectError(ProcessBuilder.Redirect.INHERIT).redirectOutput(output.toFile()).start();
+
+        if (!process.waitFor(RUN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException("The " + mode + " run didn't finish in time");
+        }
+        if (process.exitValue() != 0) throw new IOException("The " + mode + " run failed with code " + process.exitValue());
+
+        String result;
+        try (Stream<String> lines = Files.lines(output)) {
+            result = lines.filter(line -> line.startsWith(RESULT_PREFIX)).reduce((first, last) -> last).orElse(null);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the default settings, and a gallery of generated entries, in the home directory of this JVM.
+     *
+     * @param entries the number of gallery entries.
+     * @throws Exception if the settings or the gallery can't be written.
+     */
+    private static void seed(int entries) throws Exception {
+        new SettingsModule().postConstruct();
+
+        Path root = Path.of(System.getProperty("user.home"), "photos");
+        List<GalleryEntry> gallery = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            Path path = root.resolve("album_" + (i / 1000)).resolve(String.format("img_%07d.jpg", i));
+            gallery.add(new GalleryEntry(path, i % 10 == 0 ? Set.of("tag" + (i % 7)) : Set.of(), 1024L + i, 1_700_000_000_000L + i));
+        }
+
+        GalleryCollections collections = new GalleryCollections();
+        collections.open();
+        collections.save(GalleryCollections.DEFAULT_COLLECTION, gallery);
+
+        System.exit(0);
+    }
+
+    /**
+     * Starts the application, opens the gallery once the window is opened, and prints the times to the first frame
+     * and to the interactive gallery.
+     *
+     * @param start   the start of the {@code main} method, from {@link System#nanoTime()}.
+     * @param entries the number of gallery entries expected in the table.
+     * @throws Exception if the application can't be started.
+     */
+    private static void measure(long start, int entries) throws Exception {
+        CompletableFuture<long[]> result = new CompletableFuture<>();
+
+        Main.Startup startup = Main.startApplication();
+        View view = startup.view();
+
+        view.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                long frame = System.nanoTime();
+                view.getSceneManager().switchScene(SceneManager.Scene.GALLERY);
+
+                JTable table = view.getGalleryView().getGalleryTable();
+                Timer poll = new Timer(5, null);
+                poll.addActionListener(_ -> {
+                    if (table.getRowCount() < entries) return;
+
+                    poll.stop();
+                    result.complete(new long[] { frame, System.nanoTime() });
+                });
+                poll.setInitialDelay(0);
+                poll.start();
+            }
+        });
+
+        Main.launchApplication(view, startup.loadingFrame());
+
+        long[] times = result.get(RUN_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        System.out.printf("%s %d %d%n", RESULT_PREFIX,
+            TimeUnit.NANOSECONDS.toMillis(times[0] - start), TimeUnit.NANOSECONDS.toMillis(times[1] - start));
+        System.exit(0);
+    }
+
+    /**
+     * Deletes a directory with its content.
+     *
+     * @param dir the directory.
+     */
+    private static void delete(Path dir) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                    Files.delete(d);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not delete " + dir + ": " + e.getMessage()); // Todo, change for other more advance logging
+        }
+    }
+}
@@ -20,35 +20,29 @@ import java.util.ResourceBundle;
  * {@link GalleryView}, {@link MenuView}, and {@link CreditsView}, and provides methods for switching between
  * these scenes. It also integrates translation and UI management functionalities.
  * </p>
+ * <p>
+ * Only the menu is created with the window; every other view is created on the first navigation to it,
+ * or the first call to its getter. The listeners registered with
+ * {@link SceneManager#addSceneCreationListener(java.util.function.BiConsumer)} are notified of each created view.
+ * </p>
  */
 public class View extends JFrame {
 
-    private final ComparerView comparerView;
-    private final SettingsView settingsView;
-    private final GalleryView galleryView;
     private final MenuView menuView;
-    private final CreditsView creditsView;
     private final SceneManager sceneManager;
     private final ComponentTranslationStrategy translationStrategy;
     private final UiManager uiManager;
 
     /**
-     * Constructs a new {@code View} instance thenLoad the specified views and translation strategy.
+     * Constructs a new {@code View} instance with the specified menu view and translation strategy.
+     * The remaining views are created on the first navigation to them, see {@link #addScenes()}.
      *
-     * @param comparerView the {@link ComparerView} instance. Must not be {@code null}.
-     * @param settingsView the {@link SettingsView} instance. Must not be {@code null}.
-     * @param galleryView the {@link GalleryView} instance. Must not be {@code null}.
      * @param menuView the {@link MenuView} instance. Must not be {@code null}.
-     * @param creditsView the {@link CreditsView} instance. Must not be {@code null}.
      * @param translationStrategy the {@link ComponentTranslationStrategy} used for translating UI components. Must not be {@code null}.
      * @throws HeadlessException if the environment does not support a display.
      */
-    private View(ComparerView comparerView, SettingsView settingsView, GalleryView galleryView, MenuView menuView, CreditsView creditsView, ComponentTranslationStrategy translationStrategy) throws HeadlessException {
-        this.comparerView = comparerView;
-        this.settingsView = settingsView;
-        this.galleryView = galleryView;
+    private View(MenuView menuView, ComponentTranslationStrategy translationStrategy) throws HeadlessException {
         this.menuView = menuView;
-        this.creditsView = creditsView;
         this.sceneManager = new SceneManager(this);
         this.translationStrategy = translationStrategy;
         this.uiManager = new UiManager(this);
@@ -61,30 +55,32 @@ public class View extends JFrame {
     /**
      * Adds all scenes to the {@link SceneManager}.
      * <p>
-     * This method registers each view thenLoad the {@link SceneManager} to manage scene switching.
+     * This method registers each view with the {@link SceneManager} to manage scene switching.
+     * Only the {@link MenuView} is created up front; the other views are created by their factories
+     * when they're needed for the first time, so they don't delay showing the window.
      * </p>
      */
     private void addScenes() {
-        sceneManager.addScene(SceneManager.Scene.GALLERY, galleryView);
-        sceneManager.addScene(SceneManager.Scene.SETTINGS, settingsView);
-        sceneManager.addScene(SceneManager.Scene.COMPARER, comparerView);
+        sceneManager.addScene(SceneManager.Scene.GALLERY, GalleryView.Factory::create);
+        sceneManager.addScene(SceneManager.Scene.SETTINGS, SettingsView.Factory::create);
+        sceneManager.addScene(SceneManager.Scene.COMPARER, ComparerView.Factory::create);
         sceneManager.addScene(SceneManager.Scene.MENU, menuView);
-        sceneManager.addScene(SceneManager.Scene.CREDITS, creditsView);
+        sceneManager.addScene(SceneManager.Scene.CREDITS, CreditsView::new);
     }
 
     /**
      * Adds action listeners to all "back" buttons to switch back to the {@link SceneManager.Scene#MENU}.
      * <p>
-     * This method sets up a common listener for the "back" buttons in the scenes to return to the menu.
+     * This method sets up a common listener for the "back" buttons in the scenes to return to the menu,
+     * attached to each scene when it's created.
      * </p>
      */
     private void addListeners() {
         ActionListener backButtonListener = _ -> sceneManager.switchScene(SceneManager.Scene.MENU);
 
-        sceneManager.getScenes().stream()
-                .filter(p -> p instanceof AbstractView)
-                .map(AbstractView.class::cast)
-                .forEach(p -> p.getBackButton().addActionListener(backButtonListener));
+        sceneManager.addSceneCreationListener((_, panel) -> {
+            if (panel instanceof AbstractView view) view.getBackButton().addActionListener(backButtonListener);
+        });
     }
 
     /**
@@ -107,30 +103,30 @@ public class View extends JFrame {
     }
 
     /**
-     * Returns the {@link ComparerView} instance.
+     * Returns the {@link ComparerView} instance, creating it if it hasn't been shown yet.
      *
      * @return the {@link ComparerView} instance.
      */
     public ComparerView getComparerView() {
-        return comparerView;
+        return (ComparerView) sceneManager.getScene(SceneManager.Scene.COMPARER);
     }
 
     /**
-     * Returns the {@link SettingsView} instance.
+     * Returns the {@link SettingsView} instance, creating it if it hasn't been shown yet.
      *
      * @return the {@link SettingsView} instance.
      */
     public SettingsView getSettingsView() {
-        return settingsView;
+        return (SettingsView) sceneManager.getScene(SceneManager.Scene.SETTINGS);
     }
 
     /**
-     * Returns the {@link GalleryView} instance.
+     * Returns the {@link GalleryView} instance, creating it if it hasn't been shown yet.
      *
      * @return the {@link GalleryView} instance.
      */
     public GalleryView getGalleryView() {
-        return galleryView;
+        return (GalleryView) sceneManager.getScene(SceneManager.Scene.GALLERY);
     }
 
     /**
@@ -143,12 +139,12 @@ public class View extends JFrame {
     }
 
     /**
-     * Returns the {@link CreditsView} instance.
+     * Returns the {@link CreditsView} instance, creating it if it hasn't been shown yet.
      *
      * @return the {@link CreditsView} instance.
      */
     public CreditsView getCreditsView() {
-        return creditsView;
+        return (CreditsView) sceneManager.getScene(SceneManager.Scene.CREDITS);
     }
 
     /**
@@ -197,18 +193,10 @@ public class View extends JFrame {
         public static View create(ResourceBundle resourceBundle) {
             Objects.requireNonNull(resourceBundle);
 
-            ComparerView comparerView = ComparerView.Factory.create();
-            SettingsView settingsView = SettingsView.Factory.create();
-            GalleryView galleryView = GalleryView.Factory.create();
             MenuView menuView = MenuView.Factory.create();
-            CreditsView creditsView = new CreditsView();
             ComponentTranslationStrategy translationStrategy = new ComponentTranslationStrategy(resourceBundle);
 
-            return new View(
-              comparerView, settingsView,
-                galleryView, menuView,
-                creditsView, translationStrategy
-            );
+            return new View(menuView, translationStrategy);
         }
     }
 }
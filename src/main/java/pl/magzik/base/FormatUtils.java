@@ -47,6 +47,10 @@ public class FormatUtils {
     }
 
     public static String formatDate(FileTime fileTime) {
-        return dateFormat.format(fileTime.toMillis());
+        return formatDate(fileTime.toMillis());
+    }
+
+    public static String formatDate(long millis) {
+        return dateFormat.format(millis);
     }
 }
@@ -0,0 +1,99 @@
+package pl.magzik.base;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Utility methods for decoding and scaling images.
+ */
+public class ImageUtils {
+
+    /**
+     * Decodes the image at the given path, skipping pixels while reading so that the shorter side
+     * of the result is about {@code minSize} pixels. Decoding a reduced image is much cheaper
+     * than decoding the full image and scaling it afterward.
+     *
+     * @param path    the path of the image file.
+     * @param minSize the desired minimal length of the shorter side, in pixels.
+     * @return the decoded image, or {@code null} if the format isn't supported.
+     * @throws IOException if an I/O error occurs while reading the file.
+     */
+    public static BufferedImage readSubsampled(Path path, int minSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            if (in == null) return null;
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+
+                int shorter = Math.min(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, shorter / Math.max(1, minSize));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads the number of pixels of the image at the given path from its header, without decoding it.
+     *
+     * @param path the path of the image file.
+     * @return the number of pixels, or {@code -1} if the format isn't supported, or the file can't be read.
+     */
+    public static long readPixelCount(Path path) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            if (in == null) return -1;
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return -1;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Scales the image to the given dimensions using bilinear interpolation.
+     *
+     * @param image  the image to scale.
+     * @param width  the width of the result.
+     * @param height the height of the result.
+     * @param type   the {@link BufferedImage} type of the result.
+     * @return the scaled image.
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height, int type) {
+        BufferedImage scaled = new BufferedImage(width, height, type);
+
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        return scaled;
+    }
+}
@@ -2,39 +2,76 @@ package pl.magzik.base.async;
 
 import pl.magzik.base.interfaces.Command;
 
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * An interface for asynchronously executing a sequence of commands using an {@link ExecutorService}.
  * It provides a default method to chain execution of multiple commands asynchronously.
  * <p>
- * The commands are executed in the order they are provided, each asynchronously after the previous one completes.
+ * The commands are executed in the order they are provided, each after the previous one completes.
+ * The returned {@link TaskHandle} can be cancelled, which stops the running command and skips the remaining ones.
  */
 public interface AsyncTaskFactory {
 
     /**
      * The {@link ExecutorService} used to execute commands asynchronously.
-     * It is obtained from the {@link ExecutorServiceManager} singleton instance.
+     * It is the I/O executor of the {@link ExecutorServiceManager}, since commands mostly block on files,
+     * the user, or work they hand over to the CPU executor.
      */
-    ExecutorService executor = ExecutorServiceManager.getInstance().getExecutorService();
+    ExecutorService executor = ExecutorServiceManager.getInstance().getIoExecutor();
+
+    /**
+     * Returns the priority of the tasks executed by {@link #execute(Command...)}.
+     * Factories running long batch jobs should return {@link TaskPriority#BACKGROUND}.
+     *
+     * @return the default priority of the tasks, {@link TaskPriority#NORMAL} unless overridden.
+     */
+    default TaskPriority getPriority() {
+        return TaskPriority.NORMAL;
+    }
+
+    /**
+     * Executes a sequence of {@link Command} objects asynchronously, with the priority of {@link #getPriority()}.
+     *
+     * @param commands The sequence of {@link Command} objects to be executed asynchronously.
+     * @return A {@link TaskHandle} that completes when all commands have been executed.
+     * @see #execute(TaskPriority, Command...)
+     */
+    default TaskHandle execute(Command...commands) {
+        return execute(getPriority(), commands);
+    }
 
     /**
      * Executes a sequence of {@link Command} objects asynchronously.
      * <p>
      * Each command is executed in sequence after the previous one completes, using the provided {@link ExecutorService}.
-     * The method returns a {@link CompletableFuture} that is completed when all commands have been executed.
+     * The method returns a {@link TaskHandle} that is completed when all commands have been executed.
+     * If a command throws an exception, the remaining commands are skipped, and the handle is completed exceptionally.
+     * </p>
+     * <p>
+     * Cancelling the handle interrupts the running command and skips the remaining ones. Commands can cooperate
+     * with the cancellation through {@link CancellationToken#current()}. Stages depending on the handle run once
+     * the running command has stopped.
+     * </p>
+     * <p>
+     * CPU work started by the commands inherits the priority, and work of lower classes yields to it,
+     * see {@link PriorityExecutor}.
+     * </p>
      *
+     * @param priority The priority of the task.
      * @param commands The sequence of {@link Command} objects to be executed asynchronously.
-     * @return A {@link CompletableFuture} that completes when all commands have been executed.
+     * @return A {@link TaskHandle} that completes when all commands have been executed.
      */
-    default CompletableFuture<Void> execute(Command...commands) {
-        CompletableFuture<Void> ftr = CompletableFuture.completedFuture(null);
+    default TaskHandle execute(TaskPriority priority, Command...commands) {
+        TaskHandle handle = new TaskHandle(priority, commands);
 
-        for (Command command : commands) {
-            ftr = ftr.thenRunAsync(command::execute, executor);
+        try {
+            executor.execute(handle::run);
+        } catch (RejectedExecutionException e) {
+            handle.completeExceptionally(e);
         }
 
-        return ftr;
+        return handle;
     }
 }
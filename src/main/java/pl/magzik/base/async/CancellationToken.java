@@ -0,0 +1,134 @@
+package pl.magzik.base.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A cooperative cancellation signal of a {@link TaskHandle}.
+ * <p>
+ * Commands run by {@link AsyncTaskFactory#execute} can obtain the token of their task with {@link #current()}.
+ * Work handed over to other executors should check {@link #isCancelled()} between its units, and waiting for
+ * such work should be done with {@link #await(CompletableFuture)}, so a cancelled task stops both the waiting
+ * command and the work it waits for.
+ * </p>
+ * <p>
+ * Outside of a task, {@link #current()} returns {@link #NONE}, which is never cancelled.
+ * </p>
+ */
+public final class CancellationToken {
+
+    /**
+     * A token that is never cancelled.
+     */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private static final ThreadLocal<CancellationToken> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    private final List<Runnable> callbacks;
+    private volatile boolean cancelled;
+
+    CancellationToken() {
+        this.callbacks = new ArrayList<>();
+        this.cancelled = false;
+    }
+
+    /**
+     * Returns the token of the task running on the current thread.
+     *
+     * @return the token of the current task, or {@link #NONE} if the thread doesn't run a task.
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Checks whether the task was cancelled.
+     *
+     * @return {@code true} if the task was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops the current work if the task was cancelled.
+     *
+     * @throws CancellationException if the task was cancelled.
+     */
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException();
+    }
+
+    /**
+     * Waits for the future, cancelling it as soon as the task is cancelled.
+     *
+     * @param future the future to wait for.
+     * @param <T>    the type of the result.
+     * @return the result of the future.
+     * @throws CancellationException if the task or the future was cancelled.
+     * @throws java.util.concurrent.CompletionException if the future completed exceptionally.
+     */
+    public <T> T await(CompletableFuture<T> future) {
+        Runnable callback = () -> future.cancel(true);
+        if (!register(callback)) callback.run();
+
+        try {
+            return future.join();
+        } finally {
+            synchronized (callbacks) {
+                callbacks.remove(callback);
+            }
+        }
+    }
+
+    /**
+     * Registers an action run once the task is cancelled. If it's already cancelled, the action is run right away.
+     *
+     * @param action the action.
+     */
+    public void onCancel(Runnable action) {
+        if (!register(action)) action.run();
+    }
+
+    /**
+     * Cancels the task and runs the registered actions. Cancelling the token more than once has no effect.
+     */
+    void cancel() {
+        List<Runnable> actions;
+        synchronized (callbacks) {
+            if (cancelled) return;
+            cancelled = true;
+
+            actions = List.copyOf(callbacks);
+            callbacks.clear();
+        }
+
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("Cancellation callback failed: " + e.getMessage()); // Todo, change for other more advance logging
+            }
+        }
+    }
+
+    /**
+     * Binds the token to the current thread.
+     *
+     * @param token the token, or {@code null} to unbind the current one.
+     */
+    static void bind(CancellationToken token) {
+        if (token == null) CURRENT.remove();
+        else CURRENT.set(token);
+    }
+
+    private boolean register(Runnable action) {
+        synchronized (callbacks) {
+            if (cancelled) return false;
+            callbacks.add(action);
+            return true;
+        }
+    }
+}
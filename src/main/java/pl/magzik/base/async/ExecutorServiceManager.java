@@ -1,35 +1,60 @@
 package pl.magzik.base.async;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import pl.magzik.base.diagnostics.Metrics;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Manages a single instance of an {@link ExecutorService} using the Singleton pattern, ensuring
- * that there is only one instance of the executor throughout the application.
+ * Manages the executors of the application using the Singleton pattern, ensuring
+ * that there is only one instance of each executor throughout the application.
  * <p>
- * This class provides a centralized management of an {@code ExecutorService}, which is used to execute
- * tasks concurrently. It also ensures that the executor is properly shut down when the JVM is exiting
+ * Work is separated by its role, so CPU-bound work and blocking file I/O don't compete for the same threads:
+ * <ul>
+ *     <li>{@link #getCpuExecutor()} - a bounded {@link PriorityExecutor}, sized to the number of cores by default,
+ *     for decoding, hashing, searching and other CPU-bound work,</li>
+ *     <li>{@link #getIoExecutor()} - an executor starting a virtual thread per task, for blocking file I/O
+ *     and for task chains that mostly wait for other work,</li>
+ *     <li>{@link #getPersistenceExecutor()} - a single thread, so writes of persistent data never interleave.</li>
+ * </ul>
+ * It also ensures that the executors are properly shut down when the JVM is exiting
  * by registering a shutdown hook.
  * </p>
  * <p>
+ * The queue depths and active threads of the bounded executors are reported as gauges of the {@link Metrics}.
+ * </p>
+ * <p>
  * The {@code ExecutorServiceManager} is thread-safe and lazy-initialized, meaning that the instance
  * of this class is created only when it is first requested.
  * </p>
  */
 public class ExecutorServiceManager {
 
-    private final ExecutorService executorService;
+    private final PriorityExecutor cpuExecutor;
+    private final ExecutorService ioExecutor;
+    private final ExecutorService persistenceExecutor;
 
     /**
      * Private constructor to prevent external instantiation.
      * <p>
-     * Initializes the {@code ExecutorService} and registers a shutdown hook
-     * to ensure it is properly terminated when the JVM shuts down.
+     * Initializes the executors, registers their gauges, and registers a shutdown hook
+     * to ensure they are properly terminated when the JVM shuts down.
      * </p>
      */
     private ExecutorServiceManager() {
-        this.executorService = Executors.newCachedThreadPool();
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.cpuExecutor = new PriorityExecutor(cores, namedFactory("cpu-worker"));
+        this.ioExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("io-worker-", 0).factory());
+
+        ThreadPoolExecutor persistence = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), namedFactory("persistence-writer"));
+        this.persistenceExecutor = persistence;
+
+        Metrics metrics = Metrics.getInstance();
+        metrics.gauge("executor.cpu.queued", () -> cpuExecutor.getQueue().size());
+        metrics.gauge("executor.cpu.active", cpuExecutor::getActiveCount);
+        metrics.gauge("executor.persistence.queued", () -> persistence.getQueue().size());
+
         addExecutorShutdownHook();
     }
 
@@ -59,23 +84,74 @@ public class ExecutorServiceManager {
     }
 
     /**
-     * Returns the managed {@code ExecutorService}.
+     * Returns the executor for CPU-bound work, e.g. decoding and hashing images.
      * <p>
-     * The {@code ExecutorService} is used to execute tasks concurrently. The instance returned
-     * by this method is the same throughout the lifecycle of the application, as it is managed
-     * by the singleton {@code ExecutorServiceManager}.
+     * Its thread count is bounded, see {@link #setCpuThreads(int)}. Tasks submitted to it shouldn't block on I/O
+     * or on other tasks of the same executor. Queued tasks are served by their {@link TaskPriority}.
      * </p>
      *
-     * @return the managed {@code ExecutorService}.
+     * @return the CPU executor.
+     */
+    public PriorityExecutor getCpuExecutor() {
+        return cpuExecutor;
+    }
+
+    /**
+     * Returns the executor for blocking file I/O. Every task runs on its own virtual thread,
+     * so blocked tasks don't hold platform threads.
+     *
+     * @return the I/O executor.
+     */
+    public ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * Returns the single-threaded executor writing persistent data, e.g. gallery shards.
+     * Writes submitted to it are performed one at a time, in submission order.
+     *
+     * @return the persistence executor.
+     */
+    public ExecutorService getPersistenceExecutor() {
+        return persistenceExecutor;
+    }
+
+    /**
+     * Sets the number of threads of the CPU executor.
+     *
+     * @param threads the number of threads, or a non-positive value to use the number of available cores.
+     */
+    public void setCpuThreads(int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        if (size > cpuExecutor.getMaximumPoolSize()) {
+            cpuExecutor.setMaximumPoolSize(size);
+            cpuExecutor.setCorePoolSize(size);
+        } else {
+            cpuExecutor.setCorePoolSize(size);
+            cpuExecutor.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Creates a factory of named daemon threads.
+     *
+     * @param name the prefix of the thread names.
+     * @return the thread factory.
      */
-    public ExecutorService getExecutorService() {
-        return executorService;
+    private static ThreadFactory namedFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
     }
 
     /**
-     * Registers a shutdown hook to properly shut down the {@code ExecutorService} when the JVM is shutting down.
+     * Registers a shutdown hook to properly shut down the executors when the JVM is shutting down.
      * <p>
-     * This method adds a shutdown hook that gracefully shuts down the {@code executorService} by first attempting
+     * This method adds a shutdown hook that gracefully shuts down every executor by first attempting
      * to stop accepting new tasks and completing existing ones.
      * If the executorService does not terminate within
      * 60 seconds,
@@ -95,16 +171,20 @@ public class ExecutorServiceManager {
      */
     private void addExecutorShutdownHook() {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            executorService.shutdown();
+            // The persistence writer is shut down last, so writes submitted by the other tasks still complete.
+            List<ExecutorService> executors = List.of(ioExecutor, cpuExecutor, persistenceExecutor);
+            executors.forEach(ExecutorService::shutdown);
             try {
-                if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                    executorService.shutdownNow();
+                for (ExecutorService executorService : executors) {
                     if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                        System.err.println("executorService did not terminate");
+                        executorService.shutdownNow();
+                        if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
+                            System.err.println("executorService did not terminate");
+                        }
                     }
                 }
             } catch (InterruptedException e) {
-                executorService.shutdownNow();
+                executors.forEach(ExecutorService::shutdownNow);
                 Thread.currentThread().interrupt();
             }
         }));
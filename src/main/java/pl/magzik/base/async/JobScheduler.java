@@ -0,0 +1,175 @@
+package pl.magzik.base.async;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Runs jobs in the order they were submitted, at most a given number of them at a time.
+ * <p>
+ * A job is started by its supplier, which returns the future of the started work, e.g. a {@link TaskHandle}.
+ * Jobs submitted while the limit is reached wait in a queue, and the oldest one is started as soon as
+ * a running job completes. The limit can be changed at any time; lowering it doesn't stop running jobs,
+ * it only delays starting the queued ones.
+ * </p>
+ * <p>
+ * Cancelling the future returned by {@link #submit(Supplier)} removes a queued job from the queue, so it's never
+ * started, or cancels the work of a running job, interrupting it. In the latter case the future is completed
+ * once the work has stopped, like a {@link TaskHandle}.
+ * </p>
+ */
+public class JobScheduler {
+
+    private final Deque<Job> queue;
+    private int limit, running;
+
+    /**
+     * Constructs a {@code JobScheduler}.
+     *
+     * @param limit the maximum number of jobs running at a time; values below one mean one.
+     */
+    public JobScheduler(int limit) {
+        this.queue = new ArrayDeque<>();
+        this.limit = Math.max(1, limit);
+        this.running = 0;
+    }
+
+    /**
+     * Changes the maximum number of jobs running at a time, starting queued jobs if it was raised.
+     *
+     * @param limit the new limit; values below one mean one.
+     */
+    public void setLimit(int limit) {
+        synchronized (this) {
+            this.limit = Math.max(1, limit);
+        }
+        startQueued();
+    }
+
+    /**
+     * Returns the maximum number of jobs running at a time.
+     *
+     * @return the limit.
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of jobs waiting in the queue.
+     *
+     * @return the number of queued jobs.
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of running jobs.
+     *
+     * @return the number of running jobs.
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Submits a job, starting it right away if fewer than the limit of jobs are running.
+     *
+     * @param starter starts the job, and returns the future of its work; called at most once.
+     * @return a future completing with the work of the job; cancelling it cancels the job.
+     */
+    public CompletableFuture<Void> submit(Supplier<? extends CompletableFuture<Void>> starter) {
+        Job job = new Job(starter);
+        synchronized (this) {
+            queue.addLast(job);
+        }
+        startQueued();
+        return job;
+    }
+
+    /**
+     * Starts the oldest queued jobs while fewer than the limit of jobs are running.
+     * The jobs are started outside the lock, so their starters may submit further jobs.
+     */
+    private void startQueued() {
+        while (true) {
+            Job job;
+            synchronized (this) {
+                if (running >= limit || queue.isEmpty()) return;
+                job = queue.pollFirst();
+                running++;
+            }
+            job.start();
+        }
+    }
+
+    /**
+     * Frees the slot of a completed job, and starts the next one.
+     */
+    private void finished() {
+        synchronized (this) {
+            running--;
+        }
+        startQueued();
+    }
+
+    /**
+     * A submitted job, completing with its work.
+     */
+    private final class Job extends CompletableFuture<Void> {
+        private final Supplier<? extends CompletableFuture<Void>> starter;
+        private CompletableFuture<Void> work;
+
+        private Job(Supplier<? extends CompletableFuture<Void>> starter) {
+            this.starter = starter;
+        }
+
+        /**
+         * Starts the work of the job, unless it was cancelled while queued, and frees its slot once the work completes.
+         */
+        private void start() {
+            CompletableFuture<Void> started;
+            synchronized (this) {
+                if (!isDone()) {
+                    try {
+                        work = starter.get();
+                    } catch (RuntimeException e) {
+                        completeExceptionally(e);
+                    }
+                }
+                started = work;
+            }
+
+            if (started == null) {
+                finished();
+                return;
+            }
+
+            started.whenComplete((_, ex) -> {
+                if (started.isCancelled()) super.cancel(false);
+                else if (ex != null) completeExceptionally(ex);
+                else complete(null);
+                finished();
+            });
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            CompletableFuture<Void> started;
+            synchronized (this) {
+                if (isDone()) return isCancelled();
+
+                started = work;
+                if (started == null) {
+                    synchronized (JobScheduler.this) {
+                        queue.remove(this);
+                    }
+                    return super.cancel(false);
+                }
+            }
+            return started.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package pl.magzik.base.async;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A thread pool serving its tasks by their {@link TaskPriority}, and in submission order within a class.
+ * <p>
+ * A task started by a pool thread can't be preempted, so long work is expected to be split into small units.
+ * There are two ways to do so:
+ * <ul>
+ *     <li>{@link #forEach(List, TaskPriority, Consumer)} runs an action for every item on the pool, and its workers
+ *     step aside between items whenever a task of a higher class is queued,</li>
+ *     <li>{@link #yieldTo(TaskPriority)} blocks a thread outside the pool, e.g. of a library, while work of
+ *     a higher class is queued or running, and should be called between its work units.</li>
+ * </ul>
+ * Task chains of the {@link TaskPriority#INTERACTIVE} class, see {@link AsyncTaskFactory}, count as running work
+ * for the latter, so background work pauses for the few milliseconds an interactive action takes.
+ * </p>
+ * <p>
+ * Tasks submitted without a priority inherit the priority of the submitting thread, see {@link TaskPriority#current()}.
+ * </p>
+ */
+public class PriorityExecutor extends ThreadPoolExecutor {
+
+    private static final long YIELD_CHECK_MILLIS = 10;
+
+    private final AtomicLong sequence;
+    private final AtomicIntegerArray queued, running;
+    private final AtomicInteger interactiveChains;
+    private final Object monitor;
+
+    /**
+     * Constructs a {@code PriorityExecutor} with a fixed number of threads.
+     *
+     * @param threads the number of threads.
+     * @param factory the factory of the threads.
+     */
+    public PriorityExecutor(int threads, ThreadFactory factory) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(64, PriorityExecutor::compare), factory);
+
+        int classes = TaskPriority.values().length;
+        this.sequence = new AtomicLong();
+        this.queued = new AtomicIntegerArray(classes);
+        this.running = new AtomicIntegerArray(classes);
+        this.interactiveChains = new AtomicInteger();
+        this.monitor = new Object();
+    }
+
+    /**
+     * Executes the command with the priority of the current thread.
+     *
+     * @param command the command.
+     */
+    @Override
+    public void execute(Runnable command) {
+        execute(command, TaskPriority.current());
+    }
+
+    /**
+     * Executes the command with the given priority.
+     *
+     * @param command  the command.
+     * @param priority the priority of the command.
+     */
+    public void execute(Runnable command, TaskPriority priority) {
+        Task task = command instanceof Task t ? t : new Task(command, priority, sequence.getAndIncrement());
+
+        queued.incrementAndGet(task.priority.ordinal());
+        try {
+            super.execute(task);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet(task.priority.ordinal());
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a view of the pool executing all commands with the given priority, e.g. for
+     * {@link CompletableFuture#supplyAsync(java.util.function.Supplier, Executor)}.
+     *
+     * @param priority the priority.
+     * @return the executor.
+     */
+    public Executor withPriority(TaskPriority priority) {
+        return command -> execute(command, priority);
+    }
+
+    /**
+     * Runs the action for every item on the pool, one item at a time.
+     * <p>
+     * At most one worker per pool thread takes the items in order. After every item, a worker steps aside
+     * if a task of a higher class is queued, and continues behind it. The workers stop once the
+     * {@link CancellationToken} of the calling task is cancelled, or at the first exception thrown by the action.
+     * </p>
+     *
+     * @param items    the items.
+     * @param priority the priority of the workers.
+     * @param action   the action.
+     * @param <T>      the type of the items.
+     * @return a future completed once all workers have stopped, exceptionally if the action threw an exception.
+     */
+    public <T> CompletableFuture<Void> forEach(List<? extends T> items, TaskPriority priority, Consumer<? super T> action) {
+        if (items.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        CancellationToken token = CancellationToken.current();
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        int workers = Math.min(items.size(), getMaximumPoolSize());
+        CompletableFuture<?>[] futures = new CompletableFuture[workers];
+        for (int i = 0; i < workers; i++) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            futures[i] = future;
+
+            Runnable worker = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (!token.isCancelled() && !failed.get()) {
+                            int index = next.getAndIncrement();
+                            if (index >= items.size()) break;
+
+                            action.accept(items.get(index));
+
+                            if (isPreempted(priority)) {
+                                execute(this, priority);
+                                return;
+                            }
+                        }
+                        future.complete(null);
+                    } catch (Throwable t) {
+                        failed.set(true);
+                        future.completeExceptionally(t);
+                    }
+                }
+            };
+
+            try {
+                execute(worker, priority);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Checks whether a task of a higher class than the given one is waiting for a thread.
+     *
+     * @param priority the priority of the caller.
+     * @return {@code true} if the caller should step aside.
+     */
+    public boolean isPreempted(TaskPriority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (queued.get(i) > 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blocks the current thread while work of a higher class than the given one is queued or running,
+     * on the pool or as an interactive task chain.
+     * <p>
+     * It's meant for threads outside the pool, which can't step aside in the queue. It returns early
+     * if the current task is cancelled, or the thread is interrupted; the interruption status is kept.
+     * </p>
+     *
+     * @param priority the priority of the caller.
+     */
+    public void yieldTo(TaskPriority priority) {
+        if (!hasWorkAbove(priority)) return;
+
+        CancellationToken token = CancellationToken.current();
+        synchronized (monitor) {
+            while (hasWorkAbove(priority) && !token.isCancelled()) {
+                try {
+                    monitor.wait(YIELD_CHECK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the start of a task chain, see {@link TaskHandle}. Only interactive chains are counted,
+     * since the other classes hand their heavy work over to the pool anyway.
+     *
+     * @param priority the priority of the chain.
+     */
+    void chainStarted(TaskPriority priority) {
+        if (priority == TaskPriority.INTERACTIVE) interactiveChains.incrementAndGet();
+    }
+
+    /**
+     * Records the end of a task chain started with {@link #chainStarted(TaskPriority)}.
+     *
+     * @param priority the priority of the chain.
+     */
+    void chainFinished(TaskPriority priority) {
+        if (priority == TaskPriority.INTERACTIVE && interactiveChains.decrementAndGet() == 0) signal();
+    }
+
+    private boolean hasWorkAbove(TaskPriority priority) {
+        if (priority != TaskPriority.INTERACTIVE && interactiveChains.get() > 0) return true;
+
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (queued.get(i) > 0 || running.get(i) > 0) return true;
+        }
+        return false;
+    }
+
+    private void signal() {
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+    private static int compare(Runnable a, Runnable b) {
+        return ((Task) a).compareTo((Task) b);
+    }
+
+    /**
+     * A command queued with its priority and sequence number.
+     */
+    private final class Task implements Runnable, Comparable<Task> {
+        private final Runnable command;
+        private final TaskPriority priority;
+        private final long sequence;
+
+        private Task(Runnable command, TaskPriority priority, long sequence) {
+            this.command = command;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            int cls = priority.ordinal();
+            queued.decrementAndGet(cls);
+            running.incrementAndGet(cls);
+
+            TaskPriority previous = TaskPriority.current();
+            TaskPriority.bind(priority);
+            try {
+                command.run();
+            } finally {
+                TaskPriority.bind(previous);
+                running.decrementAndGet(cls);
+                if (priority != TaskPriority.BACKGROUND) signal();
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
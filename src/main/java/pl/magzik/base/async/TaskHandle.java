@@ -0,0 +1,111 @@
+package pl.magzik.base.async;
+
+import pl.magzik.base.interfaces.Command;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A handle of a sequence of commands started by {@link AsyncTaskFactory#execute}.
+ * <p>
+ * All commands run one after another on a single thread, bound to the {@link TaskPriority} of the task,
+ * so the CPU work they start inherits it. Cancelling the handle cancels its {@link CancellationToken},
+ * interrupts the running command if requested, and skips the commands that haven't started yet.
+ * The handle completes as cancelled only once the running command has stopped, so stages depending on it,
+ * e.g. unlocking the UI, never run while the abandoned work still touches the files or the models.
+ * </p>
+ * <p>
+ * A command throwing an exception stops the sequence as well; the handle is then completed exceptionally
+ * with a {@link CompletionException}, unless the task was cancelled, in which case the exception is
+ * considered a result of the cancellation.
+ * </p>
+ */
+public class TaskHandle extends CompletableFuture<Void> {
+
+    private final CancellationToken token;
+    private final TaskPriority priority;
+    private final Command[] commands;
+    private volatile Thread runner;
+
+    /**
+     * Constructs a {@code TaskHandle} of the given commands. The commands aren't started until {@link #run()} is called.
+     *
+     * @param priority the priority of the task.
+     * @param commands the commands, in the order they are executed.
+     */
+    TaskHandle(TaskPriority priority, Command... commands) {
+        this.token = new CancellationToken();
+        this.priority = priority;
+        this.commands = commands;
+    }
+
+    /**
+     * Returns the cancellation token of the task.
+     *
+     * @return the token.
+     */
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    /**
+     * Returns the priority of the task.
+     *
+     * @return the priority.
+     */
+    public TaskPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Requests the cancellation of the task.
+     * <p>
+     * Unlike {@link CompletableFuture#cancel(boolean)}, the handle isn't completed right away if a command is running.
+     * It's completed as cancelled once the command returns, which it does at the first interruption or check of the token.
+     * </p>
+     *
+     * @param mayInterruptIfRunning {@code true} to interrupt the running command.
+     * @return {@code false} if the task has already completed, {@code true} otherwise.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone()) return isCancelled();
+
+        token.cancel();
+
+        Thread thread = runner;
+        if (mayInterruptIfRunning && thread != null) thread.interrupt();
+        return true;
+    }
+
+    /**
+     * Runs the commands on the current thread, and completes the handle.
+     */
+    void run() {
+        PriorityExecutor cpu = ExecutorServiceManager.getInstance().getCpuExecutor();
+
+        runner = Thread.currentThread();
+        CancellationToken.bind(token);
+        TaskPriority.bind(priority);
+        cpu.chainStarted(priority);
+
+        try {
+            for (Command command : commands) {
+                if (token.isCancelled()) break;
+                command.execute();
+            }
+
+            if (token.isCancelled()) super.cancel(false);
+            else complete(null);
+        } catch (Throwable t) {
+            if (token.isCancelled()) super.cancel(false);
+            else completeExceptionally(t instanceof CompletionException ? t : new CompletionException(t));
+        } finally {
+            cpu.chainFinished(priority);
+            runner = null;
+            TaskPriority.bind(null);
+            CancellationToken.bind(null);
+            Thread.interrupted();
+        }
+    }
+}
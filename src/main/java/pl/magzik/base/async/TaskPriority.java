@@ -0,0 +1,61 @@
+package pl.magzik.base.async;
+
+/**
+ * The priority classes of tasks, from the highest to the lowest.
+ * <p>
+ * The {@link PriorityExecutor} starts queued tasks of a higher class first, and work of a lower class
+ * yields to the higher ones between its work units, so short actions of the user never wait for a batch job.
+ * </p>
+ * <p>
+ * The priority of the running task is bound to its thread, see {@link #current()}, so work started by a task
+ * inherits its priority unless stated otherwise.
+ * </p>
+ */
+public enum TaskPriority {
+
+    /**
+     * Short actions the user waits for, e.g. tagging, opening or filtering images.
+     */
+    INTERACTIVE,
+
+    /**
+     * Regular tasks, e.g. adding images to the gallery.
+     */
+    NORMAL,
+
+    /**
+     * Long batch jobs, e.g. comparing a whole directory.
+     */
+    BACKGROUND;
+
+    private static final ThreadLocal<TaskPriority> CURRENT = ThreadLocal.withInitial(() -> NORMAL);
+
+    /**
+     * Returns the priority of the task running on the current thread.
+     *
+     * @return the priority of the current task, or {@link #NORMAL} if the thread doesn't run a task.
+     */
+    public static TaskPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Checks whether this class is served before the other one.
+     *
+     * @param other the other class.
+     * @return {@code true} if this class has a higher priority.
+     */
+    public boolean isHigherThan(TaskPriority other) {
+        return ordinal() < other.ordinal();
+    }
+
+    /**
+     * Binds the priority to the current thread.
+     *
+     * @param priority the priority, or {@code null} to unbind the current one.
+     */
+    static void bind(TaskPriority priority) {
+        if (priority == null) CURRENT.remove();
+        else CURRENT.set(priority);
+    }
+}
@@ -0,0 +1,23 @@
+package pl.magzik.base.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recorded while the comparison algorithms group the decoded records.
+ */
+@Name("pl.magzik.ComparisonPass")
+@Label("Comparison Pass")
+@Category({"Thousand Picture Compare", "Pipeline"})
+@Description("Decoding, hashing and grouping the input files with the selected algorithms")
+public class ComparisonPassEvent extends Event {
+
+    @Label("Algorithms")
+    public String algorithms;
+
+    @Label("Files")
+    public int files;
+
+    @Label("Groups")
+    @Description("The number of groups of equal records")
+    public int groups;
+}
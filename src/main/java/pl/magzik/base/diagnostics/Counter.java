@@ -0,0 +1,81 @@
+package pl.magzik.base.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count of events, e.g. scanned files or fingerprinted images, registered in {@link Metrics}.
+ * <p>
+ * Besides the total, the counter keeps the increments of the last few seconds, so it also reports how fast
+ * the events happen right now, see {@link #rate()}. The rate is approximate: increments made exactly while
+ * a second ends may be attributed to the next one.
+ * </p>
+ */
+public class Counter {
+
+    /**
+     * The number of full seconds the rate is averaged over.
+     */
+    public static final int RATE_WINDOW_SECONDS = 5;
+
+    private static final int SLOTS = RATE_WINDOW_SECONDS + 1;
+
+    private final LongAdder total;
+    private final AtomicLongArray slotCounts, slotSeconds;
+
+    Counter() {
+        this.total = new LongAdder();
+        this.slotCounts = new AtomicLongArray(SLOTS);
+        this.slotSeconds = new AtomicLongArray(SLOTS);
+    }
+
+    /**
+     * Counts a single event.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Counts the given number of events.
+     *
+     * @param n the number of events; non-positive values are ignored.
+     */
+    public void add(long n) {
+        if (n <= 0) return;
+        total.add(n);
+
+        long second = currentSecond();
+        int slot = Math.floorMod(second, SLOTS);
+        long previous = slotSeconds.get(slot);
+        if (previous != second && slotSeconds.compareAndSet(slot, previous, second)) slotCounts.set(slot, 0);
+        slotCounts.addAndGet(slot, n);
+    }
+
+    /**
+     * Returns the number of events counted since the start of the application.
+     *
+     * @return the total count.
+     */
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the average number of events per second over the last {@link #RATE_WINDOW_SECONDS} full seconds.
+     *
+     * @return the current rate.
+     */
+    public double rate() {
+        long now = currentSecond(), sum = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long second = slotSeconds.get(slot);
+            if (second < now && second >= now - RATE_WINDOW_SECONDS) sum += slotCounts.get(slot);
+        }
+        return (double) sum / RATE_WINDOW_SECONDS;
+    }
+
+    private static long currentSecond() {
+        return System.nanoTime() / 1_000_000_000L;
+    }
+}
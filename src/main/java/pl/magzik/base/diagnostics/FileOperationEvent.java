@@ -0,0 +1,23 @@
+package pl.magzik.base.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recorded while a single file is moved or deleted.
+ */
+@Name("pl.magzik.FileOperation")
+@Label("File Operation")
+@Category({"Thousand Picture Compare", "Pipeline"})
+@Description("Moving or deleting a single file")
+public class FileOperationEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,24 @@
+package pl.magzik.base.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recorded while the input directories are listed for image files.
+ */
+@Name("pl.magzik.FileScan")
+@Label("File Scan")
+@Category({"Thousand Picture Compare", "Pipeline"})
+@Description("Listing the image files of the input directories")
+public class FileScanEvent extends Event {
+
+    @Label("Path")
+    @Description("The input paths, separated by the path separator")
+    public String path;
+
+    @Label("Inputs")
+    public int inputs;
+
+    @Label("Files")
+    @Description("The number of image files found")
+    public int files;
+}
@@ -0,0 +1,19 @@
+package pl.magzik.base.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recorded while the duplicates are extracted from the groups of equal records.
+ */
+@Name("pl.magzik.Grouping")
+@Label("Grouping")
+@Category({"Thousand Picture Compare", "Pipeline"})
+@Description("Extracting the duplicates and their originals from the groups of equal records")
+public class GroupingEvent extends Event {
+
+    @Label("Groups")
+    public int groups;
+
+    @Label("Duplicates")
+    public int duplicates;
+}
@@ -0,0 +1,24 @@
+package pl.magzik.base.diagnostics;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recorded while an image is decoded into a comparable record.
+ */
+@Name("pl.magzik.ImageDecode")
+@Label("Image Decode")
+@Category({"Thousand Picture Compare", "Pipeline"})
+@Description("Decoding an image into a comparable record")
+public class ImageDecodeEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Pixels")
+    @Description("The number of pixels of the image, or -1 if it's unknown")
+    public long pixels;
+}
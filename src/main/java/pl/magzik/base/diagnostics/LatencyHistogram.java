@@ -0,0 +1,157 @@
+package pl.magzik.base.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of durations, e.g. of decoding an image, registered in {@link Metrics}.
+ * <p>
+ * Durations are counted in logarithmic buckets, eight per power of two, so recording is a few atomic increments,
+ * memory use is fixed, and percentiles are reported with an error of at most 1/16 of the value.
+ * The histogram covers the whole run of the application.
+ * </p>
+ * <p>
+ * Code blocks are timed most easily with {@link #time()}:
+ * <pre>{@code
+ * try (var _ = histogram.time()) {
+ *     decode(file);
+ * }
+ * }</pre>
+ * </p>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder sum;
+    private final LongAccumulator max;
+
+    LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Records a single duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values are counted as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        buckets.incrementAndGet(indexOf(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Starts timing a code block. The duration is recorded once the returned sample is closed.
+     *
+     * @return the running sample.
+     */
+    public Sample time() {
+        return new Sample(System.nanoTime());
+    }
+
+    /**
+     * Returns the current statistics of the histogram.
+     *
+     * @return the statistics, with durations in milliseconds.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        double mean = total > 0 ? toMillis(sum.sum()) / total : 0,
+               longest = toMillis(max.get());
+        return new Snapshot(
+            total, mean,
+            Math.min(longest, percentile(counts, total, 0.50)),
+            Math.min(longest, percentile(counts, total, 0.90)),
+            Math.min(longest, percentile(counts, total, 0.99)),
+            longest
+        );
+    }
+
+    /**
+     * Finds the value below which the given fraction of the recorded durations falls.
+     *
+     * @param counts the bucket counts.
+     * @param total  the sum of the bucket counts.
+     * @param q      the fraction, from 0 to 1.
+     * @return the middle of the bucket holding the percentile, in milliseconds.
+     */
+    private static double percentile(long[] counts, long total, double q) {
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(q * total)), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return toMillis(lowerBound(i) + (bucketWidth(i) - 1) / 2.0);
+        }
+        return 0;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | sub;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+    }
+
+    private static long bucketWidth(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << ((index >>> SUB_BUCKET_BITS) - 1);
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Statistics of a {@link LatencyHistogram}, with durations in milliseconds.
+     *
+     * @param count the number of recorded durations.
+     * @param mean  the mean duration.
+     * @param p50   the median.
+     * @param p90   the 90th percentile.
+     * @param p99   the 99th percentile.
+     * @param max   the longest duration.
+     */
+    public record Snapshot(long count, double mean, double p50, double p90, double p99, double max) { }
+
+    /**
+     * A running measurement started with {@link #time()}.
+     */
+    public final class Sample implements AutoCloseable {
+        private final long start;
+
+        private Sample(long start) {
+            this.start = start;
+        }
+
+        /**
+         * Records the time elapsed since the sample was started.
+         */
+        @Override
+        public void close() {
+            record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package pl.magzik.base.diagnostics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * An in-process registry of the application metrics, using the Singleton pattern.
+ * <p>
+ * There are three kinds of metrics, each identified by a dotted name, e.g. {@code comparer.decode}:
+ * <ul>
+ *     <li>{@link Counter} - a count of events, with its current rate, e.g. fingerprinted images per second,</li>
+ *     <li>{@link LatencyHistogram} - a distribution of durations, e.g. of decoding an image,</li>
+ *     <li>gauges - values sampled whenever a snapshot is taken, e.g. queue depths or the heap in use.</li>
+ * </ul>
+ * Metrics measured in bytes have names ending with {@code _bytes}.
+ * Counters and histograms are created on first use, so instrumented code simply obtains them by name,
+ * preferably once, and keeps the reference. Recording a value costs a few atomic operations.
+ * </p>
+ * <p>
+ * The current values are read with {@link #snapshot()}, and can be written as JSON with {@link #dump(Path)},
+ * on demand, or when the JVM exits, see {@link #dumpOnExit(Path)}.
+ * </p>
+ */
+public class Metrics {
+
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("'metrics-'yyyyMMdd-HHmmss'.json'");
+
+    /**
+     * The number of dumps kept in a directory, see {@link #dump(Path)}.
+     */
+    private static final int MAX_DUMPS = 20;
+
+    private final Map<String, Counter> counters;
+    private final Map<String, LatencyHistogram> histograms;
+    private final Map<String, LongSupplier> gauges;
+
+    private volatile Path exitDirectory;
+    private boolean hookRegistered;
+
+    private Metrics() {
+        this.counters = new ConcurrentHashMap<>();
+        this.histograms = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        gauge("jvm.heap.used_bytes", () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("jvm.heap.committed_bytes", () -> memory.getHeapMemoryUsage().getCommitted());
+        gauge("jvm.heap.max_bytes", () -> memory.getHeapMemoryUsage().getMax());
+    }
+
+    /**
+     * Inner static class responsible for holding the singleton instance of {@code Metrics}.
+     */
+    private static final class InstanceHolder {
+        private static final Metrics instance = new Metrics();
+    }
+
+    /**
+     * Returns the singleton instance of the {@code Metrics}.
+     *
+     * @return the singleton instance of {@code Metrics}.
+     */
+    public static Metrics getInstance() {
+        return InstanceHolder.instance;
+    }
+
+    /**
+     * Returns the counter of the given name, creating it if it doesn't exist yet.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, _ -> new Counter());
+    }
+
+    /**
+     * Returns the histogram of the given name, creating it if it doesn't exist yet.
+     *
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, _ -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge, replacing the previous gauge of the same name.
+     * The supplier is called whenever a snapshot is taken, on the thread taking it, so it must be thread-safe and cheap.
+     *
+     * @param name     the name of the gauge.
+     * @param supplier supplies the current value.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Registers a gauge of the percentage of cache hits, e.g. {@code comparer.preview.hit_percent}.
+     *
+     * @param name   the name of the gauge.
+     * @param hits   the counter of hits.
+     * @param misses the counter of misses.
+     */
+    public void hitRatio(String name, Counter hits, Counter misses) {
+        gauge(name, () -> {
+            long h = hits.count(), total = h + misses.count();
+            return total > 0 ? 100 * h / total : 0;
+        });
+    }
+
+    /**
+     * Takes a snapshot of all metrics. Gauges throwing an exception are reported as {@code -1}.
+     *
+     * @return the snapshot.
+     */
+    public MetricsSnapshot snapshot() {
+        SortedMap<String, MetricsSnapshot.CounterValue> c = new TreeMap<>();
+        counters.forEach((name, counter) -> c.put(name, new MetricsSnapshot.CounterValue(counter.count(), counter.rate())));
+
+        SortedMap<String, LatencyHistogram.Snapshot> h = new TreeMap<>();
+        histograms.forEach((name, histogram) -> h.put(name, histogram.snapshot()));
+
+        SortedMap<String, Long> g = new TreeMap<>();
+        gauges.forEach((name, gauge) -> {
+            long value;
+            try {
+                value = gauge.getAsLong();
+            } catch (RuntimeException e) {
+                value = -1;
+            }
+            g.put(name, value);
+        });
+
+        return new MetricsSnapshot(Instant.now(), c, h, g);
+    }
+
+    /**
+     * Writes a snapshot of all metrics as JSON into a new {@code metrics-<timestamp>.json} file.
+     * Only the newest {@value #MAX_DUMPS} dumps are kept in the directory, the older ones are deleted.
+     *
+     * @param directory the directory the file is written into; it's created if it doesn't exist.
+     * @return the written file.
+     * @throws IOException if an I/O error occurs.
+     */
+    public Path dump(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        Path file = directory.resolve(LocalDateTime.now().format(FILE_NAME_FORMAT));
+        Files.writeString(file, snapshot().toJson(), StandardCharsets.UTF_8);
+        pruneDumps(directory);
+        return file;
+    }
+
+    /**
+     * Deletes all but the newest {@value #MAX_DUMPS} dumps in the directory.
+     * The timestamps in the file names sort chronologically, so the names are enough to order the dumps.
+     *
+     * @param directory the directory of the dumps.
+     */
+    private void pruneDumps(Path directory) {
+        List<Path> dumps;
+        try (Stream<Path> files = Files.list(directory)) {
+            dumps = files.filter(f -> {
+                    String name = f.getFileName().toString();
+                    return name.startsWith("metrics-") && name.endsWith(".json");
+                })
+                .sorted(Comparator.comparing((Path f) -> f.getFileName().toString()).reversed())
+                .toList();
+        } catch (IOException e) {
+            System.err.println("Couldn't list the metrics dumps: " + e.getMessage()); // Todo, change for other more advance logging
+            return;
+        }
+
+        for (Path old : dumps.subList(Math.min(MAX_DUMPS, dumps.size()), dumps.size())) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                System.err.println("Couldn't delete the metrics dump " + old + ": " + e.getMessage()); // Todo, change for other more advance logging
+            }
+        }
+    }
+
+    /**
+     * Makes the metrics be dumped into the given directory when the JVM exits, see {@link #dump(Path)}.
+     *
+     * @param directory the directory, or {@code null} to dump nothing at exit.
+     */
+    public synchronized void dumpOnExit(Path directory) {
+        this.exitDirectory = directory;
+        if (directory == null || hookRegistered) return;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Path target = exitDirectory;
+            if (target == null) return;
+
+            try {
+                dump(target);
+            } catch (IOException e) {
+                System.err.println("Couldn't dump the metrics: " + e.getMessage()); // Todo, change for other more advance logging
+            }
+        }, "metrics-dump"));
+        hookRegistered = true;
+    }
+}
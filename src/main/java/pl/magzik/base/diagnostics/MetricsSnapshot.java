@@ -0,0 +1,99 @@
+package pl.magzik.base.diagnostics;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The values of all {@link Metrics} at a single point in time, sorted by name.
+ *
+ * @param time       the time the snapshot was taken.
+ * @param counters   the counters, with their totals and current rates.
+ * @param histograms the histograms, with durations in milliseconds.
+ * @param gauges     the sampled gauges.
+ */
+public record MetricsSnapshot(Instant time,
+                              SortedMap<String, CounterValue> counters,
+                              SortedMap<String, LatencyHistogram.Snapshot> histograms,
+                              SortedMap<String, Long> gauges) {
+
+    /**
+     * The value of a {@link Counter}.
+     *
+     * @param count the total count.
+     * @param rate  the current number of events per second.
+     */
+    public record CounterValue(long count, double rate) { }
+
+    /**
+     * Formats the snapshot as a JSON object, e.g.:
+     * <pre>{@code
+     * {
+     *   "time": "2024-01-01T12:00:00Z",
+     *   "counters": {"comparer.files.scanned": {"count": 1200, "rate": 0.0}},
+     *   "histograms": {"comparer.decode": {"count": 1200, "mean": 8.1, "p50": 6.5, "p90": 14.2, "p99": 40.1, "max": 52.3}},
+     *   "gauges": {"jvm.heap.used_bytes": 73400320}
+     * }
+     * }</pre>
+     * Durations are in milliseconds.
+     *
+     * @return the JSON text.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\n  \"time\": \"").append(time).append("\",\n");
+
+        sb.append("  \"counters\": {");
+        appendEntries(sb, counters, (out, v) -> out.append("{\"count\": ").append(v.count())
+                                                   .append(", \"rate\": ").append(format(v.rate())).append('}'));
+        sb.append("},\n");
+
+        sb.append("  \"histograms\": {");
+        appendEntries(sb, histograms, (out, v) -> out.append("{\"count\": ").append(v.count())
+                                                     .append(", \"mean\": ").append(format(v.mean()))
+                                                     .append(", \"p50\": ").append(format(v.p50()))
+                                                     .append(", \"p90\": ").append(format(v.p90()))
+                                                     .append(", \"p99\": ").append(format(v.p99()))
+                                                     .append(", \"max\": ").append(format(v.max())).append('}'));
+        sb.append("},\n");
+
+        sb.append("  \"gauges\": {");
+        appendEntries(sb, gauges, StringBuilder::append);
+        sb.append("}\n}\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends the entries of a map as the members of a JSON object, one per line.
+     *
+     * @param sb       the destination.
+     * @param entries  the entries; their keys are metric names, which never need escaping.
+     * @param appender appends a single value.
+     * @param <V>      the type of the values.
+     */
+    private static <V> void appendEntries(StringBuilder sb, Map<String, V> entries, ValueAppender<V> appender) {
+        boolean first = true;
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            sb.append(first ? "\n" : ",\n").append("    \"").append(entry.getKey()).append("\": ");
+            appender.append(sb, entry.getValue());
+            first = false;
+        }
+        if (!first) sb.append("\n  ");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Appends a single JSON value.
+     *
+     * @param <V> the type of the value.
+     */
+    @FunctionalInterface
+    private interface ValueAppender<V> {
+        void append(StringBuilder sb, V value);
+    }
+}
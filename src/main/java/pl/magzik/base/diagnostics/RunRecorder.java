@@ -0,0 +1,118 @@
+package pl.magzik.base.diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Records the application run with Java Flight Recorder, using the Singleton pattern.
+ * <p>
+ * The recording uses the JDK's {@code default} configuration, extended with all pipeline events of this package
+ * without any duration threshold, e.g. {@link ImageDecodeEvent} and {@link FileOperationEvent}. It's written into
+ * a {@code run-<timestamp>.jfr} file once it's stopped, or when the JVM exits, and can be opened with standard
+ * tooling, e.g. JDK Mission Control or the {@code jfr} command.
+ * </p>
+ * <p>
+ * While no recording is running, the events are disabled, and cost nothing.
+ * </p>
+ */
+public class RunRecorder {
+
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("'run-'yyyyMMdd-HHmmss'.jfr'");
+
+    private static final List<Class<? extends jdk.jfr.Event>> EVENTS = List.of(
+        FileScanEvent.class,
+        ImageDecodeEvent.class,
+        ComparisonPassEvent.class,
+        GroupingEvent.class,
+        FileOperationEvent.class
+    );
+
+    private Recording recording;
+
+    private RunRecorder() { }
+
+    /**
+     * Inner static class responsible for holding the singleton instance of {@code RunRecorder}.
+     */
+    private static final class InstanceHolder {
+        private static final RunRecorder instance = new RunRecorder();
+    }
+
+    /**
+     * Returns the singleton instance of the {@code RunRecorder}.
+     *
+     * @return the singleton instance of {@code RunRecorder}.
+     */
+    public static RunRecorder getInstance() {
+        return InstanceHolder.instance;
+    }
+
+    /**
+     * Starts recording the run, unless it's already recorded.
+     *
+     * @param directory the directory the recording is written into; it's created if it doesn't exist.
+     * @return the file the recording will be written into.
+     * @throws IOException if the directory can't be created, or the recording can't be started.
+     */
+    public synchronized Path start(Path directory) throws IOException {
+        if (recording != null) return recording.getDestination();
+
+        Files.createDirectories(directory);
+        Path destination = directory.resolve(LocalDateTime.now().format(FILE_NAME_FORMAT));
+
+        Recording r;
+        try {
+            r = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Invalid JFR configuration", e);
+        }
+
+        try {
+            EVENTS.forEach(event -> r.enable(event).withoutThreshold());
+            r.setName("Thousand Picture Compare run");
+            r.setToDisk(true);
+            r.setDumpOnExit(true);
+            r.setDestination(destination);
+            r.start();
+        } catch (IllegalStateException | SecurityException e) {
+            r.close();
+            throw new IOException("Couldn't start the JFR recording", e);
+        }
+
+        recording = r;
+        return destination;
+    }
+
+    /**
+     * Stops the recording and writes it into its file. Does nothing if the run isn't recorded.
+     */
+    public synchronized void stop() {
+        if (recording == null) return;
+
+        try {
+            recording.stop();
+        } catch (IllegalStateException e) {
+            System.err.println("Couldn't stop the JFR recording: " + e.getMessage()); // Todo, change for other more advance logging
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * Checks whether the run is recorded.
+     *
+     * @return {@code true} if a recording is running.
+     */
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+}
@@ -0,0 +1,303 @@
+package pl.magzik.cli;
+
+import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.modules.base.ModuleLoadException;
+import pl.magzik.modules.base.ModuleLoader;
+import pl.magzik.modules.comparer.ComparerCoordinator;
+import pl.magzik.modules.comparer.persistence.ComparerFilePropertyAccess;
+import pl.magzik.modules.comparer.processing.ComparerPropertyAccess;
+import pl.magzik.modules.comparer.processing.ComparerSession;
+import pl.magzik.modules.resource.ResourceModule;
+import pl.magzik.modules.settings.SettingsModule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Entry point of the headless batch mode, which finds the duplicates in the given directories without the user interface.
+ * <p>
+ * The batch mode loads the settings and the comparer modules like the application does, and runs a single comparison
+ * session through the {@link ComparerCoordinator}. The settings of the application are used for the options that
+ * aren't given in the command line, see {@link BatchOptions#USAGE}. The found duplicates are then only reported,
+ * moved to the destination directory, or deleted.
+ * </p>
+ * <p>
+ * The progress is printed to the standard error, and the {@link BatchReport} is written as JSON to the standard output,
+ * or to the given file. No window is ever created, and {@code java.awt.headless} is set before anything else runs,
+ * so the batch mode works on machines without a display.
+ * </p>
+ * <p>
+ * Exit codes:
+ * <ul>
+ *     <li>{@code 0} - the run succeeded,</li>
+ *     <li>{@code 1} - the modules couldn't be loaded, or the run failed; the report is still written if it's available,</li>
+ *     <li>{@code 2} - the arguments are invalid.</li>
+ * </ul>
+ * </p>
+ */
+public class BatchMain {
+
+    private static final long HEARTBEAT_SECONDS = 5;
+
+    /**
+     * Runs the batch mode.
+     *
+     * @param args the command-line arguments, see {@link BatchOptions#USAGE}.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        long start = System.nanoTime();
+
+        BatchOptions options;
+        try {
+            options = BatchOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(BatchOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (options == null) {
+            System.out.print(BatchOptions.USAGE);
+            System.exit(0);
+        }
+
+        System.exit(run(options, start));
+    }
+
+    /**
+     * Loads the modules, runs the session and writes the report.
+     *
+     * @param options the options.
+     * @param start   the start of the run, from {@link System#nanoTime()}.
+     * @return the exit code.
+     */
+    private static int run(BatchOptions options, long start) {
+        SettingsModule settings = new SettingsModule();
+        ComparerCoordinator cc = new ComparerCoordinator();
+
+        try {
+            List<ModuleLoadException> failures = ModuleLoader.create(settings)
+                .thenLoad(ResourceModule.getInstance())
+                .andLoad(cc.getPackage())
+                .ready()
+                .start()
+                .awaitAll();
+
+            if (!failures.isEmpty()) {
+                failures.forEach(e -> System.err.println("Could not load module: " + e.getMessage()));
+                return 1;
+            }
+        } catch (ModuleLoadException e) {
+            System.err.println("Could not load modules: " + e.getMessage());
+            return 1;
+        }
+
+        try {
+            applySettings(settings, cc, options);
+        } catch (RuntimeException | IOException e) {
+            System.err.println("Invalid settings: " + e.getMessage());
+            return 1;
+        }
+
+        ComparerSession session = cc.createSession(options.roots().stream().map(File::getPath).toArray(String[]::new));
+        session.addPropertyChangeListener(evt -> {
+            if (evt.getNewValue() == ComparerSession.State.COMPARING)
+                progress(start, "Comparing %d files", session.getInput().size());
+            else progress(start, "Session %s", String.valueOf(evt.getNewValue()).toLowerCase());
+        });
+        progress(start, "Scanning %s", options.roots());
+
+        String error = await(cc.schedule(session,
+            () -> cc.handleLoadFiles(session),
+            () -> cc.handleCompare(session)
+        ), session, start);
+
+        if (error == null && !session.getOutput().isEmpty()) {
+            switch (options.action()) {
+                case MOVE -> {
+                    progress(start, "Moving %d duplicates to %s", session.getOutput().size(), session.getSettings().outputPath());
+                    error = await(cc.execute(() -> cc.handleMoveFiles(session)), session, start);
+                }
+                case DELETE -> {
+                    progress(start, "Deleting %d duplicates", session.getOutput().size());
+                    error = await(cc.execute(() -> cc.handleDeleteFiles(session.getOutput())), session, start);
+                }
+                case REPORT -> { }
+            }
+        }
+
+        BatchReport report = createReport(options, session, error, start);
+        try {
+            writeReport(report, options.report());
+        } catch (IOException e) {
+            System.err.println("Could not write the report: " + e.getMessage());
+            return 1;
+        }
+
+        progress(start, "Found %d duplicates of %d files, %s", report.duplicates().size(), report.files(),
+            report.status().name().toLowerCase());
+        return report.status() == BatchReport.Status.DONE ? 0 : 1;
+    }
+
+    /**
+     * Applies the comparer settings of the application, and overrides them with the options.
+     *
+     * @param settings the settings module.
+     * @param cc       the coordinator.
+     * @param options  the options.
+     * @throws IOException if the destination directory can't be created.
+     * @throws NullPointerException if a comparer setting is missing.
+     */
+    private static void applySettings(SettingsModule settings, ComparerCoordinator cc, BatchOptions options) throws IOException {
+        ComparerPropertyAccess cpa = cc.getComparerPropertyAccess();
+        ComparerFilePropertyAccess cfpa = cc.getComparerFilePropertyAccess();
+
+        cfpa.setOutputPath(settings.getSetting("coutput"));
+        cfpa.setMode(settings.getSetting("rmode").equals("yes")
+            ? ComparerFilePropertyAccess.Mode.RECURSIVE
+            : ComparerFilePropertyAccess.Mode.NOT_RECURSIVE);
+        cpa.setPerceptualHash(settings.getSetting("phash").equals("yes"));
+        cpa.setPixelByPixel(settings.getSetting("pbp").equals("yes"));
+
+        String cpuThreads = settings.getSetting("cpu_threads");
+        int threads = 0;
+        try {
+            if (cpuThreads != null) threads = Integer.parseInt(cpuThreads.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid cpu_threads setting: " + cpuThreads); // Todo, change for other more advance logging
+        }
+        ExecutorServiceManager.getInstance().setCpuThreads(threads);
+
+        if (options.recursive() != null) {
+            cfpa.setMode(options.recursive()
+                ? ComparerFilePropertyAccess.Mode.RECURSIVE
+                : ComparerFilePropertyAccess.Mode.NOT_RECURSIVE);
+        }
+        if (options.algorithms() != null) {
+            cpa.setPerceptualHash(options.algorithms().contains(BatchOptions.Algorithm.PHASH));
+            cpa.setPixelByPixel(options.algorithms().contains(BatchOptions.Algorithm.PBP));
+        }
+        if (options.destination() != null) cfpa.setOutputPath(options.destination());
+
+        if (options.action() == BatchOptions.Action.MOVE) Files.createDirectories(Path.of(cfpa.getOutputPath()));
+    }
+
+    /**
+     * Waits for a task, printing a heartbeat every {@value #HEARTBEAT_SECONDS} seconds.
+     *
+     * @param task    the task.
+     * @param session the session the task works on.
+     * @param start   the start of the run, from {@link System#nanoTime()}.
+     * @return the error the task failed with, or {@code null} if it succeeded.
+     */
+    private static String await(CompletableFuture<Void> task, ComparerSession session, long start) {
+        while (true) {
+            try {
+                task.get(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                return null;
+            } catch (TimeoutException e) {
+                progress(start, "Session %s", session.getState().name().toLowerCase());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+                return "Interrupted";
+            } catch (CancellationException e) {
+                return "Cancelled";
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+                if (cause instanceof CancellationException) return "Cancelled";
+                return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Creates the report of the session.
+     *
+     * @param options the options.
+     * @param session the session.
+     * @param error   the error the run failed with, or {@code null}.
+     * @param start   the start of the run, from {@link System#nanoTime()}.
+     * @return the report.
+     */
+    private static BatchReport createReport(BatchOptions options, ComparerSession session, String error, long start) {
+        Map<File, File> duplicates = new LinkedHashMap<>();
+        Set<File> handled = new HashSet<>();
+        for (File duplicate : session.getOutput()) {
+            duplicates.put(duplicate, session.getOriginal(duplicate));
+            if (options.action() != BatchOptions.Action.REPORT && !duplicate.exists()) handled.add(duplicate);
+        }
+
+        Set<BatchOptions.Algorithm> algorithms = EnumSet.noneOf(BatchOptions.Algorithm.class);
+        if (session.getSettings().perceptualHash()) algorithms.add(BatchOptions.Algorithm.PHASH);
+        if (session.getSettings().pixelByPixel()) algorithms.add(BatchOptions.Algorithm.PBP);
+
+        BatchReport.Status status = error == null ? BatchReport.Status.DONE
+            : session.getState() == ComparerSession.State.CANCELLED ? BatchReport.Status.CANCELLED
+            : BatchReport.Status.FAILED;
+
+        return new BatchReport(
+            Instant.now(),
+            session.getRoots(),
+            session.getSettings().mode() == ComparerFilePropertyAccess.Mode.RECURSIVE,
+            algorithms,
+            options.action(),
+            options.action() == BatchOptions.Action.MOVE ? session.getSettings().outputPath() : null,
+            status,
+            error,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            session.getInput().size(),
+            duplicates,
+            handled
+        );
+    }
+
+    /**
+     * Writes the report as JSON.
+     *
+     * @param report the report.
+     * @param file   the destination file, or {@code null} for the standard output.
+     * @throws IOException if the file can't be written.
+     */
+    private static void writeReport(BatchReport report, File file) throws IOException {
+        if (file == null) {
+            System.out.print(report.toJson());
+            System.out.flush();
+            return;
+        }
+
+        Files.writeString(file.toPath(), report.toJson(), StandardCharsets.UTF_8);
+        System.err.println("Report written to " + file);
+    }
+
+    /**
+     * Prints a progress message to the standard error, prefixed with the elapsed time.
+     *
+     * @param start  the start of the run, from {@link System#nanoTime()}.
+     * @param format the format of the message.
+     * @param args   the arguments of the format.
+     */
+    private static void progress(long start, String format, Object... args) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.err.printf("[%6.1fs] %s%n", elapsed / 1000.0, String.format(format, args));
+    }
+}
@@ -0,0 +1,172 @@
+package pl.magzik.cli;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The command-line arguments of the {@link BatchMain}.
+ * <p>
+ * The options that aren't given are {@code null}, and are taken from the settings of the application.
+ * </p>
+ *
+ * @param roots       the directories to compare.
+ * @param recursive   whether the directories are scanned recursively, or {@code null}.
+ * @param algorithms  the comparison algorithms, or {@code null}.
+ * @param action      what happens with the found duplicates.
+ * @param destination the directory the duplicates are moved to, or {@code null}.
+ * @param report      the file the report is written to, or {@code null} for the standard output.
+ */
+public record BatchOptions(List<File> roots, Boolean recursive, Set<Algorithm> algorithms, Action action,
+                           String destination, File report) {
+
+    /**
+     * The usage of the command.
+     */
+    public static final String USAGE = """
+        Usage: java -Djava.awt.headless=true -cp <classpath> pl.magzik.cli.BatchMain [options] <directory>...
+
+        Compares the images in the given directories, and reports, moves or deletes the duplicates.
+        The options that aren't given are taken from the settings of the application.
+
+        Options:
+          -r, --recursive             scan the directories recursively
+          -R, --no-recursive          scan only the top level of the directories
+          -a, --algorithms <list>     comma-separated comparison algorithms: phash, pbp
+          -x, --action <action>       report (default), move or delete the duplicates
+          -d, --destination <dir>     the directory the duplicates are moved to
+          -o, --report <file>         write the JSON report to the file instead of the standard output
+          -h, --help                  show this help
+        """;
+
+    /**
+     * What happens with the found duplicates.
+     */
+    public enum Action {
+        /** The duplicates are only reported. */
+        REPORT,
+        /** The duplicates are moved to the destination directory. */
+        MOVE,
+        /** The duplicates are deleted. */
+        DELETE
+    }
+
+    /**
+     * A comparison algorithm.
+     */
+    public enum Algorithm {
+        /** Comparison of the perceptual hashes of the images. */
+        PHASH,
+        /** Comparison of the images pixel by pixel. */
+        PBP
+    }
+
+    /**
+     * Constructs {@code BatchOptions}.
+     *
+     * @throws NullPointerException if the roots or the action are {@code null}.
+     * @throws IllegalArgumentException if there are no roots, or the algorithms are empty.
+     */
+    public BatchOptions {
+        Objects.requireNonNull(action);
+        roots = List.copyOf(roots);
+        if (roots.isEmpty()) throw new IllegalArgumentException("No directory given");
+
+        if (algorithms != null) {
+            if (algorithms.isEmpty()) throw new IllegalArgumentException("No algorithm given");
+            algorithms = Set.copyOf(algorithms);
+        }
+    }
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args the arguments.
+     * @return the options, or {@code null} if the help was requested.
+     * @throws IllegalArgumentException if the arguments are invalid.
+     */
+    public static BatchOptions parse(String[] args) {
+        List<File> roots = new ArrayList<>();
+        Boolean recursive = null;
+        Set<Algorithm> algorithms = null;
+        Action action = Action.REPORT;
+        String destination = null;
+        File report = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> { return null; }
+                case "-r", "--recursive" -> recursive = true;
+                case "-R", "--no-recursive" -> recursive = false;
+                case "-a", "--algorithms" -> algorithms = parseAlgorithms(value(args, ++i, arg));
+                case "-x", "--action" -> action = parseEnum(Action.class, value(args, ++i, arg), "action");
+                case "-d", "--destination" -> destination = value(args, ++i, arg);
+                case "-o", "--report" -> report = new File(value(args, ++i, arg));
+                case "--" -> {
+                    for (i++; i < args.length; i++) roots.add(new File(args[i]));
+                }
+                default -> {
+                    if (arg.startsWith("-")) throw new IllegalArgumentException("Unknown option: " + arg);
+                    roots.add(new File(arg));
+                }
+            }
+        }
+
+        if (destination != null && action != Action.MOVE)
+            throw new IllegalArgumentException("--destination is only used by the move action");
+
+        return new BatchOptions(roots, recursive, algorithms, action, destination, report);
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param args   the arguments.
+     * @param index  the index of the value.
+     * @param option the option.
+     * @return the value.
+     * @throws IllegalArgumentException if the value is missing.
+     */
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) throw new IllegalArgumentException("Missing value of " + option);
+        return args[index];
+    }
+
+    /**
+     * Parses a comma-separated list of algorithms.
+     *
+     * @param value the list.
+     * @return the algorithms.
+     * @throws IllegalArgumentException if an algorithm is unknown.
+     */
+    private static Set<Algorithm> parseAlgorithms(String value) {
+        Set<Algorithm> algorithms = new LinkedHashSet<>();
+        for (String name : value.split(",")) {
+            if (!name.isBlank()) algorithms.add(parseEnum(Algorithm.class, name.trim(), "algorithm"));
+        }
+        return algorithms;
+    }
+
+    /**
+     * Parses a constant of an enum, ignoring the case.
+     *
+     * @param type  the enum.
+     * @param value the name of the constant.
+     * @param what  what the value is, used by the error message.
+     * @param <E>   the type of the enum.
+     * @return the constant.
+     * @throws IllegalArgumentException if there's no such constant.
+     */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String what) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + what + ": " + value);
+        }
+    }
+}
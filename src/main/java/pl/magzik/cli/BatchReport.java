@@ -0,0 +1,150 @@
+package pl.magzik.cli;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of a {@link BatchMain} run.
+ *
+ * @param time        the time the run finished.
+ * @param roots       the compared directories.
+ * @param recursive   whether the directories were scanned recursively.
+ * @param algorithms  the comparison algorithms.
+ * @param action      what happened with the duplicates.
+ * @param destination the directory the duplicates were moved to, or {@code null} if they weren't moved.
+ * @param status      how the run ended.
+ * @param error       the error the run failed with, or {@code null}.
+ * @param elapsed     the duration of the run, in milliseconds.
+ * @param files       the number of scanned images.
+ * @param duplicates  the found duplicates mapped to their originals, in the order they were found.
+ * @param handled     the duplicates that were moved or deleted.
+ */
+public record BatchReport(Instant time, List<File> roots, boolean recursive, Set<BatchOptions.Algorithm> algorithms,
+                          BatchOptions.Action action, String destination, Status status, String error, long elapsed,
+                          int files, Map<File, File> duplicates, Set<File> handled) {
+
+    /**
+     * How a run ended.
+     */
+    public enum Status {
+        /** All steps succeeded. */
+        DONE,
+        /** A step failed; the report holds the results of the steps done before. */
+        FAILED,
+        /** The run was cancelled. */
+        CANCELLED
+    }
+
+    /**
+     * Formats the report as a JSON object, e.g.:
+     * <pre>{@code
+     * {
+     *   "time": "2024-01-01T12:00:00Z",
+     *   "roots": ["/photos"],
+     *   "recursive": true,
+     *   "algorithms": ["phash", "pbp"],
+     *   "action": "move",
+     *   "destination": "/duplicates",
+     *   "status": "done",
+     *   "error": null,
+     *   "elapsed_ms": 5321,
+     *   "files": 1200,
+     *   "duplicate_count": 1,
+     *   "duplicates": [
+     *     {"file": "/photos/b.jpg", "original": "/photos/a.jpg", "handled": true}
+     *   ]
+     * }
+     * }</pre>
+     * A duplicate is handled if it was moved or deleted.
+     *
+     * @return the JSON text.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(256 + duplicates.size() * 128);
+        sb.append("{\n  \"time\": \"").append(time).append("\",\n");
+
+        sb.append("  \"roots\": [");
+        for (int i = 0; i < roots.size(); i++) {
+            if (i > 0) sb.append(", ");
+            appendString(sb, roots.get(i).getPath());
+        }
+        sb.append("],\n");
+
+        sb.append("  \"recursive\": ").append(recursive).append(",\n");
+
+        sb.append("  \"algorithms\": [");
+        boolean first = true;
+        for (BatchOptions.Algorithm algorithm : BatchOptions.Algorithm.values()) {
+            if (!algorithms.contains(algorithm)) continue;
+            if (!first) sb.append(", ");
+            appendString(sb, name(algorithm));
+            first = false;
+        }
+        sb.append("],\n");
+
+        sb.append("  \"action\": ");
+        appendString(sb, name(action));
+        sb.append(",\n  \"destination\": ");
+        appendString(sb, destination);
+        sb.append(",\n  \"status\": ");
+        appendString(sb, name(status));
+        sb.append(",\n  \"error\": ");
+        appendString(sb, error);
+        sb.append(",\n  \"elapsed_ms\": ").append(elapsed);
+        sb.append(",\n  \"files\": ").append(files);
+        sb.append(",\n  \"duplicate_count\": ").append(duplicates.size());
+
+        sb.append(",\n  \"duplicates\": [");
+        first = true;
+        for (Map.Entry<File, File> duplicate : duplicates.entrySet()) {
+            sb.append(first ? "\n" : ",\n").append("    {\"file\": ");
+            appendString(sb, duplicate.getKey().getPath());
+            sb.append(", \"original\": ");
+            appendString(sb, duplicate.getValue().getPath());
+            sb.append(", \"handled\": ").append(handled.contains(duplicate.getKey())).append('}');
+            first = false;
+        }
+        if (!first) sb.append("\n  ");
+        sb.append("]\n}\n");
+
+        return sb.toString();
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Appends a JSON string, escaping it, or {@code null}.
+     *
+     * @param sb    the destination.
+     * @param value the string, or {@code null}.
+     */
+    private static void appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
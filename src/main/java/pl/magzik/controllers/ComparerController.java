@@ -2,16 +2,23 @@ package pl.magzik.controllers;
 
 import pl.magzik.base.async.ExecutorServiceManager;
 import pl.magzik.modules.comparer.ComparerCoordinator;
+import pl.magzik.modules.comparer.preview.PreviewCache;
 import pl.magzik.modules.comparer.processing.ComparerModule;
+import pl.magzik.modules.comparer.processing.ComparerSession;
 import pl.magzik.ui.cursor.CursorManagerInterface;
 import pl.magzik.ui.localization.TranslationStrategy;
 import pl.magzik.ui.logging.MessageInterface;
+import pl.magzik.ui.components.panels.PreviewPanel;
 import pl.magzik.ui.views.ComparerView;
 
 import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
 import java.io.File;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 
@@ -27,6 +34,14 @@ import java.util.concurrent.ExecutorService;
  *   <li>Ensures smooth UI updates, error handling, and user experience</li>
  * </ul>
  *
+ * <p>
+ * Every loading starts a new {@link ComparerSession}, which is queued if the limit of running sessions is reached,
+ * so directories can be compared while another comparison is in progress. The view shows a single session at a time,
+ * picked in its session combo box, and the newly started session is shown right away. The buttons, the lists
+ * and the status label follow the state of the shown session: the move and reset buttons act on it,
+ * and the cancel button cancels it.
+ * </p>
+ *
  * <p>Note: The constructor expects non-null parameters, and will throw a {@link NullPointerException} if any are null.</p>
  *
  * @see ComparerView
@@ -38,12 +53,19 @@ import java.util.concurrent.ExecutorService;
  */
 public class ComparerController {
 
+    private static final int PREFETCH_COUNT = 8;
+
     private final ComparerCoordinator cc;
     private final ComparerView cView;
     private final TranslationStrategy ti;
     private final MessageInterface mi;
     private final CursorManagerInterface umi;
 
+    private int previewGeneration;
+    private ComparerSession shown;
+    private List<File> shownInput, shownOutput;
+    private boolean updatingSessions, locked;
+
     /**
      * Initializes a new controller, setting up the view, translation, and logging services.
      * <ul>
@@ -74,6 +96,13 @@ public class ComparerController {
         // Listeners
 
         addListeners();
+
+        // The view is created on the first navigation to it, possibly while another module works on the files.
+        if (cc.isLocked()) {
+            PropertyChangeEvent lock = new PropertyChangeEvent(cc, "comparer-locked", false, true);
+            cView.propertyChange(lock);
+            handleComparerChange(lock);
+        }
     }
 
     /**
@@ -82,32 +111,39 @@ public class ComparerController {
      *   <li>{@code PathButton}: Opens a file chooser for selecting file paths.</li>
      *   <li>{@code LoadButton}: Initiates file loading if a valid path is provided.</li>
      *   <li>{@code MoveButton}: Moves files if comparison results are available.</li>
-     *   <li>{@code ResetButton}: Resets the application state.</li>
+     *   <li>{@code ResetButton}: Removes the shown session.</li>
+     *   <li>{@code CancelButton}: Cancels the shown session.</li>
      * </ul>
+     * Selecting an item in either list, or switching the list tabs, updates the preview.
+     * Selecting a session in the session combo box shows it, and the changes of the sessions update the view.
      */
     private void addListeners() {
         cView.getPathButton().addActionListener(_ -> handlePathButtonClick());
         cView.getLoadButton().addActionListener(_ -> handleLoadButtonClick());
         cView.getMoveButton().addActionListener(_ -> handleMoveButtonClick());
         cView.getResetButton().addActionListener(_ -> handleResetButtonClick());
+        cView.getCancelButton().addActionListener(_ -> handleCancelButtonClick());
+
+        cView.getFoundList().addListSelectionListener(this::handleListSelectionChange);
+        cView.getDuplicateList().addListSelectionListener(this::handleListSelectionChange);
+        cView.getListTabbedPane().addChangeListener(_ -> previewTask());
+        cView.getSessionComboBox().addActionListener(_ -> handleSessionSelection());
 
         cc.addPropertyChangeListener(cView);
+        cc.addPropertyChangeListener(this::handleComparerChange);
     }
 
     /**
-     * Handles the click event of the path button, opens a file chooser,
-     * and updates the comparer module with the selected file path.
+     * Handles the click event of the path button, and opens a file chooser.
+     * The selected path is compared once the load button is clicked.
      */
     private void handlePathButtonClick() {
-        if (cView.getFileChooser().perform()) {
-            String path = cView.getPathTextField().getText();
-            cc.setInput(path);
-        }
+        cView.getFileChooser().perform();
     }
 
     /**
      * Handles the click event of the load button, validates if a file path is set,
-     * and initiates the file loading task.
+     * and starts a new session comparing it.
      */
     private void handleLoadButtonClick() {
         String path = cView.getPathTextField().getText();
@@ -119,7 +155,7 @@ public class ComparerController {
             return;
         }
 
-        loadTask();
+        loadTask(path);
     }
 
     /**
@@ -127,7 +163,7 @@ public class ComparerController {
      * and initiates the file-moving task.
      */
     private void handleMoveButtonClick() {
-        if (cc.getOutput().isEmpty()) {
+        if (shown == null || shown.getOutput().isEmpty()) {
             mi.showErrorMessage(
                 ti.translate("error.comparer.loading_needed.desc"),
                 ti.translate("error.general.title")
@@ -135,24 +171,70 @@ public class ComparerController {
             return;
         }
 
-        moveTask();
+        moveTask(shown);
     }
 
     /**
-     * Handles the reset button click, clears the UI, resets the module state,
-     * and updates the application state to its initial form.
+     * Handles the reset button click, removing the shown session and dropping the previews.
+     * The most recent of the remaining sessions is shown instead; if there are none,
+     * the UI returns to its initial form.
      */
     private void handleResetButtonClick() {
-        cView.clear();
-        cc.handleClearList("Output");
-        cc.handleClearList("Duplicates");
-        cc.notifyUnlock();
-
-        cView.getLoadButton().setEnabled(true);
-        cView.getPathButton().setEnabled(true);
-        cView.getResetButton().setEnabled(false);
-        cView.getMoveButton().setEnabled(false);
-        cView.getStatusLabel().setText(ti.translate("comparer.state.ready"));
+        if (shown != null) cc.removeSession(shown);
+        cc.handleClearPreviews();
+    }
+
+    /**
+     * Handles the cancel button click, cancelling the shown session. If the session is running,
+     * its running command is interrupted, and the remaining ones are skipped; if it's queued, it's never started.
+     * The view is updated once the session has stopped.
+     */
+    private void handleCancelButtonClick() {
+        cView.getCancelButton().setEnabled(false);
+        if (shown != null) shown.cancel();
+    }
+
+    /**
+     * Handles a selection in the session combo box, showing the selected session.
+     */
+    private void handleSessionSelection() {
+        if (updatingSessions) return;
+
+        ComparerSession selected = (ComparerSession) cView.getSessionComboBox().getSelectedItem();
+        if (selected != shown) show(selected);
+    }
+
+    /**
+     * Handles the property changes of the comparer, fired on any thread, updating the view on the Event Dispatch Thread:
+     * <ul>
+     *   <li>{@code comparer-sessions} - refills the session combo box,</li>
+     *   <li>{@code session-state} - updates the view if the changed session is shown,</li>
+     *   <li>{@code comparer-locked} - blocks the move and reset buttons while another module works on the files.</li>
+     * </ul>
+     *
+     * @param evt The property change event.
+     */
+    private void handleComparerChange(PropertyChangeEvent evt) {
+        switch (evt.getPropertyName()) {
+            case "comparer-sessions" -> SwingUtilities.invokeLater(this::updateSessions);
+            case "session-state" -> SwingUtilities.invokeLater(() -> {
+                if (evt.getSource() == shown) updateView();
+            });
+            case "comparer-locked" -> SwingUtilities.invokeLater(() -> {
+                locked = (boolean) evt.getNewValue();
+                updateView();
+            });
+            default -> { }
+        }
+    }
+
+    /**
+     * Handles a selection change in one of the lists, updating the preview if the list is the visible one.
+     *
+     * @param e The selection event.
+     */
+    private void handleListSelectionChange(ListSelectionEvent e) {
+        if (e.getSource() == cView.getActiveList()) previewTask();
     }
 
     /**
@@ -169,83 +251,192 @@ public class ComparerController {
         list.setModel(model);
     }
 
-    /**
-     * Unlocks the button panel and updates the UI state after the task is done.
-     */
-    private void unlockButtonPanel() {
-        cView.getResetButton().setEnabled(true);
-        cView.getStatusLabel().setText(ti.translate("comparer.state.done"));
-        umi.useCursor(CursorManagerInterface.DEFAULT_CURSOR);
-    }
-
     // Task methods.
     // Handling async tasks and long operations.
 
     /**
-     * Initiates the file loading task, including UI preparation, file loading,
-     * and updating after completion.
+     * Starts a new session comparing the given path, and shows it. The session loads the files, and compares them,
+     * once the scheduler has a free slot for it.
+     *
+     * @param path The path of the directory to compare.
      */
-    private void loadTask() {
-        cc.execute(
-            () -> prepareUiBefore("comparer.state.prepare"),
-            cc::handleLoadFiles,
-            () -> updateUiAfter("comparer.state.map", "Output", cc.getInput()),
-            cc::handleCompare,
-            () -> updateUiAfter("comparer.state.update", "Duplicates", cc.getOutput())
-        ).exceptionally(this::handleException)
-        .whenComplete((_, _) -> handleLoadTaskCompletion());
+    private void loadTask(String path) {
+        ComparerSession session = cc.createSession(path);
+        show(session);
+
+        cc.schedule(session,
+            () -> cc.handleLoadFiles(session),
+            () -> cc.handleCompare(session)
+        ).exceptionally(this::handleException);
     }
 
     /**
-     * Initiates the move files task, including UI preparation and
-     * asking for confirmation to restart the comparer.
+     * Initiates the move files task of a session, and asks for confirmation to remove the session afterwards.
+     *
+     * @param session The session whose duplicates are moved.
      */
-    private void moveTask() {
-        cc.execute(
-            () -> prepareUiBefore("comparer.state.move"),
-            cc::handleMoveFiles
-        ).thenComposeAsync(_ -> restartComparerQuestion())
+    private void moveTask(ComparerSession session) {
+        CompletableFuture<Void> task = cc.execute(() -> cc.handleMoveFiles(session));
+        session.setTask(task);
+
+        task.thenComposeAsync(_ -> restartComparerQuestion())
         .exceptionally(ex -> {
             handleException(ex);
             return null;
         })
-        .whenComplete((res, _) -> handleComparerReset(res));
+        .whenComplete((res, _) -> handleComparerReset(session, res));
     }
 
-    // UI-related methods.
-    // Handling UI-related operations while doing tasks.
+    /**
+     * Shows the item selected in the visible list next to its original, and prefetches the previews
+     * of the next {@value #PREFETCH_COUNT} items, so moving through the list shows them instantly.
+     * <p>
+     * Previews that are held in memory are shown right away. The others are shown once decoded,
+     * unless the selection changed in the meantime.
+     * </p>
+     */
+    private void previewTask() {
+        JList<String> list = cView.getActiveList();
+        String listName = list == cView.getDuplicateList() ? "Duplicates" : "Output";
+        int index = list.getSelectedIndex();
+        int generation = ++previewGeneration;
+
+        File selected = cc.getListFile(listName, index);
+        if (selected == null || shown == null) {
+            cView.clearPreview();
+            return;
+        }
+
+        PreviewCache pc = cc.getPreviewCache();
+        int size = Math.max(cView.getOriginalPreview().getPreviewSize(), cView.getSelectedPreview().getPreviewSize());
+
+        showPreview(cView.getOriginalPreview(), shown.getOriginal(selected), size, generation);
+        showPreview(cView.getSelectedPreview(), selected, size, generation);
+
+        for (int i = 1; i <= PREFETCH_COUNT; i++) {
+            File next = cc.getListFile(listName, index + i);
+            if (next == null) break;
+
+            pc.prefetch(next.toPath(), size);
+            File original = shown.getOriginal(next);
+            if (original != null) pc.prefetch(original.toPath(), size);
+        }
+    }
 
     /**
-     * Prepares the UI before a task by updating the state label, disabling buttons,
-     * and changing the cursor.
+     * Shows the preview of a file in the given panel once it's available.
      *
-     * @param state The translation key to update the state label.
+     * @param panel      The panel to show the preview in.
+     * @param file       The file to preview, or {@code null} to clear the panel.
+     * @param size       The size to decode the preview at.
+     * @param generation The generation of the preview request; the preview isn't shown if a newer one was made.
      */
-    private void prepareUiBefore(String state) {
-        SwingUtilities.invokeLater(() -> {
-            cView.blockDestructiveButtons();
-            cc.notifyLock();
-            umi.useCursor(CursorManagerInterface.WAIT_CURSOR);
-            cView.getStatusLabel().setText(ti.translate(state));
+    private void showPreview(PreviewPanel panel, File file, int size, int generation) {
+        if (file == null) {
+            panel.setImage(null);
+            return;
+        }
+
+        CompletableFuture<BufferedImage> future = cc.getPreviewCache().load(file.toPath(), size);
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            panel.setImage(future.join());
+            return;
+        }
+
+        panel.setImage(null);
+        future.whenComplete((image, ex) -> {
+            if (ex != null) {
+                if (!future.isCancelled())
+                    System.err.println("Couldn't preview " + file + ": " + ex.getMessage()); // Todo, change for other more advance logging
+                return;
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                if (generation == previewGeneration) panel.setImage(image);
+            });
         });
     }
 
+    // UI-related methods.
+    // Handling UI-related operations while doing tasks.
+
     /**
-     * Updates the UI after a task, including updating list models and the status label.
+     * Shows a session: selects it in the session combo box, and updates the view to its state.
      *
-     * @param state     The translation key for updating the status label.
-     * @param modelName The name of the list model to update.
-     * @param sources   The list of files to display in the list model.
+     * @param session The session to show, or {@code null} to show none.
      */
-    private void updateUiAfter(String state, String modelName, List<File> sources) {
-        int total = cc.getInput().size(),
-            duplicates = cc.getOutput() == null ? 0 : cc.getOutput().size();
+    private void show(ComparerSession session) {
+        shown = session;
+        previewGeneration++;
+        cView.clearPreview();
 
-        SwingUtilities.invokeLater(() -> {
-            cc.handleFulfilList(modelName, sources);
-            cView.updateTray(total, duplicates);
-            cView.getStatusLabel().setText(ti.translate(state));
-        });
+        updatingSessions = true;
+        cView.getSessionComboBox().setSelectedItem(session);
+        updatingSessions = false;
+
+        updateView();
+    }
+
+    /**
+     * Refills the session combo box with the current sessions. If the shown session was removed,
+     * the most recent of the remaining sessions is shown instead.
+     */
+    private void updateSessions() {
+        List<ComparerSession> sessions = cc.getSessions();
+
+        updatingSessions = true;
+        cView.getSessionComboBox().setModel(new DefaultComboBoxModel<>(sessions.toArray(new ComparerSession[0])));
+        updatingSessions = false;
+
+        if (sessions.contains(shown)) show(shown);
+        else {
+            if (sessions.isEmpty()) cView.clear();
+            show(sessions.isEmpty() ? null : sessions.getLast());
+        }
+    }
+
+    /**
+     * Updates the view to the state of the shown session: the lists and the tray show its files,
+     * the status label shows its state, and the buttons are enabled according to it.
+     * The lists are only refilled if the files of the session changed since they were last shown.
+     */
+    private void updateView() {
+        ComparerSession session = shown;
+        List<File> input = session == null ? List.of() : session.getInput(),
+                   output = session == null ? List.of() : session.getOutput();
+
+        if (input != shownInput) cc.handleFulfilList("Output", shownInput = input);
+        if (output != shownOutput) cc.handleFulfilList("Duplicates", shownOutput = output);
+        cView.updateTray(input.size(), output.size());
+
+        ComparerSession.State state = session == null ? null : session.getState();
+        boolean active = state != null && state.isActive();
+
+        cView.getStatusLabel().setText(ti.translate(stateKey(state)));
+        cView.getMoveButton().setEnabled(!locked && state == ComparerSession.State.DONE && !output.isEmpty());
+        cView.getResetButton().setEnabled(!locked && session != null && !active);
+        cView.getCancelButton().setEnabled(active);
+        umi.useCursor(active && state != ComparerSession.State.QUEUED ? CursorManagerInterface.WAIT_CURSOR : CursorManagerInterface.DEFAULT_CURSOR);
+    }
+
+    /**
+     * Returns the translation key of the status label for the given state of a session.
+     *
+     * @param state The state, or {@code null} if no session is shown.
+     * @return The translation key.
+     */
+    private static String stateKey(ComparerSession.State state) {
+        if (state == null) return "comparer.state.ready";
+
+        return switch (state) {
+            case QUEUED -> "comparer.state.queued";
+            case LOADING -> "comparer.state.prepare";
+            case COMPARING -> "comparer.state.map";
+            case MOVING -> "comparer.state.move";
+            case DONE, MOVED -> "comparer.state.done";
+            case CANCELLED -> "comparer.state.cancelled";
+            case FAILED -> "comparer.state.failed";
+        };
     }
 
     /**
@@ -258,8 +449,6 @@ public class ComparerController {
         CompletableFuture<Boolean> future = new CompletableFuture<>();
 
         SwingUtilities.invokeLater(() -> {
-            unlockButtonPanel();
-
             int option = mi.showConfirmationMessage(
                 ti.translate("message.confirmation.comparer_restart.desc"),
                 ti.translate("message.confirmation.title")
@@ -272,26 +461,17 @@ public class ComparerController {
     }
 
     /**
-     * Handles the UI updates after completing the load task, enabling relevant buttons and
-     * unlocking the UI.
-     */
-    private void handleLoadTaskCompletion() {
-        SwingUtilities.invokeLater(() -> {
-            unlockButtonPanel();
-
-            if (!cc.getOutput().isEmpty())
-                cView.getMoveButton().setEnabled(true);
-        });
-    }
-
-    /**
-     * Handles the comparer reset based on the user's decision after moving files.
+     * Removes the session after moving its files, if the user decided so, and drops the previews of the moved files.
+     * If moving failed or was cancelled, there was no decision, and the session stays as it is.
      *
-     * @param isReset {@code true} if the user confirmed the comparer reset.
+     * @param session The session whose files were moved.
+     * @param isReset {@code true} if the user confirmed the removal, or {@code null} if there was no decision.
      */
-    private void handleComparerReset(boolean isReset) {
-        if (!isReset) return;
-        SwingUtilities.invokeLater(() -> cView.getResetButton().doClick());
+    private void handleComparerReset(ComparerSession session, Boolean isReset) {
+        if (isReset == null || !isReset) return;
+
+        cc.removeSession(session);
+        cc.handleClearPreviews();
     }
 
     // Additional methods.
@@ -299,12 +479,14 @@ public class ComparerController {
 
     /**
      * Handles exceptions during task execution by logging the error and
-     * showing a user-friendly error message.
+     * showing a user-friendly error message. Cancellation isn't an error, so it's ignored.
      *
      * @param ex The thrown exception.
      * @return {@code null} to allow the flow to proceed.
      */
     private Void handleException(Throwable ex) {
+        if (ex instanceof CancellationException || ex.getCause() instanceof CancellationException) return null;
+
         SwingUtilities.invokeLater(() -> mi.showErrorMessage(
             ti.translate("error.general.desc"),
             ti.translate("error.general.title"),
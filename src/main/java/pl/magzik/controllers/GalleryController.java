@@ -1,10 +1,16 @@
 package pl.magzik.controllers;
 
+import pl.magzik.base.async.CancellationToken;
 import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.base.async.PriorityExecutor;
+import pl.magzik.base.async.TaskPriority;
+import pl.magzik.base.interfaces.Command;
 import pl.magzik.modules.comparer.ComparerCoordinator;
+import pl.magzik.modules.comparer.processing.ComparerPropertyAccess;
 import pl.magzik.modules.gallery.GalleryCoordinator;
 import pl.magzik.modules.gallery.table.GalleryTableModel;
 import pl.magzik.modules.gallery.table.GalleryTableRowSorter;
+import pl.magzik.modules.gallery.table.GalleryTagQuery;
 import pl.magzik.ui.cursor.CursorManagerInterface;
 import pl.magzik.ui.listeners.UnifiedDocumentListener;
 import pl.magzik.ui.localization.TranslationStrategy;
@@ -12,13 +18,16 @@ import pl.magzik.ui.logging.MessageInterface;
 import pl.magzik.ui.views.GalleryView;
 
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Manages gallery operations such as adding, removing, deleting images, and managing tags.
@@ -31,18 +40,27 @@ import java.util.concurrent.ExecutorService;
  */
 public class GalleryController {
 
+    /**
+     * Delay after the last keystroke before the gallery search runs, in milliseconds.
+     */
+    private static final int SEARCH_DELAY = 200;
+
     private final GalleryCoordinator gc;
     private final GalleryView gView;
     private final ComparerCoordinator cc;
     private final MessageInterface mi;
     private final CursorManagerInterface umi;
     private final TranslationStrategy ti;
-    private final ExecutorService executor;
+    private final PriorityExecutor cpuExecutor;
+    private final ExecutorService ioExecutor;
+    private final Timer searchTimer;
+    private int searchGeneration;
+    private CompletableFuture<Void> runningTask;
 
     /**
      * Constructs a {@code GalleryController} with the specified view, coordinators, and interfaces.
      * <p>
-     * Initializes the UI components, adds listeners to the UI elements, and sets up the executor service for
+     * Initializes the UI components, adds listeners to the UI elements, and sets up the executor services for
      * asynchronous task execution.
      * </p>
      *
@@ -61,7 +79,11 @@ public class GalleryController {
         this.umi = umi;
         this.mi = mi;
         this.gView = gView;
-        this.executor = ExecutorServiceManager.getInstance().getExecutorService();
+        this.cpuExecutor = ExecutorServiceManager.getInstance().getCpuExecutor();
+        this.ioExecutor = ExecutorServiceManager.getInstance().getIoExecutor();
+        this.searchTimer = new Timer(SEARCH_DELAY, _ -> searchTask());
+        this.searchTimer.setRepeats(false);
+        this.searchGeneration = 0;
 
         // Initialize
 
@@ -75,13 +97,15 @@ public class GalleryController {
     /**
      * Initializes the gallery view thenLoad the necessary parts and settings.
      * <p>
-     * Sets the file chooser, table model, row sorter, and updates the element count label.
+     * Sets the file chooser, table model, row sorter, thumbnail cache, and updates the element count label.
      * </p>
      */
     private void initialize() {
         gView.setFileChooser(gc);
         gc.assignTableModel(gView.getGalleryTable());
         gView.setGalleryRowSorter(new GalleryTableRowSorter((GalleryTableModel) gc.getTableModel()));
+        gView.setThumbnailCache(gc.getThumbnailCache());
+        gView.setCollections(gc.getCollectionNames(), gc.getActiveCollection());
         updateUiAfter();
     }
 
@@ -94,6 +118,12 @@ public class GalleryController {
      */
     private void addListeners() {
         gView.getNameFilterTextField().getDocument().addDocumentListener((UnifiedDocumentListener)_ -> handleNameFilterUpdate());
+        gView.getTagFilterTextField().getDocument().addDocumentListener((UnifiedDocumentListener)_ -> handleNameFilterUpdate());
+        gView.getMissingOnlyCheckBox().addActionListener(_ -> handleNameFilterUpdate());
+        gView.getCollectionComboBox().addActionListener(_ -> handleCollectionSelection());
+        gView.getNewCollectionButton().addActionListener(_ -> handleNewCollectionButton());
+        gView.getImportButton().addActionListener(_ -> importTask());
+        gView.getExportButton().addActionListener(_ -> exportTask());
         gView.getAddImageButton().addActionListener(_ -> addImagesTask());
         gView.getRemoveImageButton().addActionListener(_ -> handleRemoveImagesButton());
         gView.getDeleteImageButton().addActionListener(_ -> handleDeleteImagesButton());
@@ -102,8 +132,14 @@ public class GalleryController {
         gView.getOpenButton().addActionListener(_ -> handleOpenButton());
         gView.getAddTagButton().addActionListener(_ -> handleAddTagButton());
         gView.getRemoveTagButton().addActionListener(_ -> handleRemoveTagButton());
+        gView.getRenameTagButton().addActionListener(_ -> handleRenameTagButton());
+        gView.getCancelButton().addActionListener(_ -> handleCancelButton());
+        gc.getTableModel().addTableModelListener(this::handleTableModelChange);
 
         cc.addPropertyChangeListener(gView);
+
+        // The view is created on the first navigation to it, possibly while a comparison is running.
+        if (cc.isProcessing()) gView.lockModule();
     }
 
     /**
@@ -156,16 +192,18 @@ public class GalleryController {
      */
     private void handleOpenButton() {
         if (checkIfNotSelected()) return;
-        List<Integer> selected = gView.getAndClearSelectedRows();
-
-        try {
-            gc.handleOpen(selected);
-        } catch (IOException e) {
-            mi.showErrorMessage(
-                ti.translate("error.open.ioexception.desc"),
-                ti.translate("error.general.title")
-            );
-        }
+        List<File> selected = gc.getFiles(gView.getAndClearSelectedRows());
+
+        gc.execute(TaskPriority.INTERACTIVE, () -> {
+            try {
+                gc.handleOpen(selected);
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() -> mi.showErrorMessage(
+                    ti.translate("error.open.ioexception.desc"),
+                    ti.translate("error.general.title")
+                ));
+            }
+        }).exceptionally(this::handleException);
     }
 
     /**
@@ -191,17 +229,15 @@ public class GalleryController {
             return;
         }
 
-        List<Integer> selected = gView.getAndClearSelectedRows();
+        List<File> selected = gc.getFiles(gView.getAndClearSelectedRows());
 
-        try {
-            gc.handleAddTag(selected, tag);
-        } catch (IOException e) {
-            mi.showErrorMessage(
-                ti.translate("error.general.desc"),
-                ti.translate("error.general.title"),
-                e
-            );
-        }
+        interactiveTask(() -> {
+            try {
+                gc.handleAddTag(selected, tag);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
     }
 
     /**
@@ -213,8 +249,9 @@ public class GalleryController {
     private void handleRemoveTagButton() {
         if (checkIfNotSelected()) return;
 
-        List<Integer> selected = gView.getAndClearSelectedRows();
-        Set<String> tags = gc.getAllTagsInSelection(selected);
+        List<Integer> rows = gView.getAndClearSelectedRows();
+        Set<String> tags = gc.getAllTagsInSelection(rows);
+        List<File> selected = gc.getFiles(rows);
 
         if (tags.isEmpty()) {
             mi.showErrorMessage(
@@ -227,26 +264,135 @@ public class GalleryController {
         String tag = showTagsCombobox("message.remove_tag.title", tags.toArray(String[]::new), false);
         if (tag == null) return;
 
-        try {
-            gc.handleRemoveTag(selected, tag);
-        } catch (IOException e) {
+        interactiveTask(() -> {
+            try {
+                gc.handleRemoveTag(selected, tag);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Handles the "Rename Tag" button click to rename a tag in the whole gallery.
+     * <p>
+     * Prompts the user to select a tag and enter its new name, and renames it in all images at once.
+     * </p>
+     */
+    private void handleRenameTagButton() {
+        String[] tags = gc.getAllTags().toArray(String[]::new);
+        if (tags.length == 0) {
+            mi.showErrorMessage(
+                ti.translate("error.tag.lack_of_tags_in_gallery.desc"),
+                ti.translate("error.general.title")
+            );
+            return;
+        }
+
+        String tag = showTagsCombobox("message.rename_tag.title", tags, false);
+        if (tag == null) return;
+
+        JTextField textField = new JTextField(tag);
+        int result = mi.showConfirmationMessage(
+            textField,
+            ti.translate("message.rename_tag.new_name.title")
+        );
+        if (result != JOptionPane.OK_OPTION) return;
+
+        String newTag = textField.getText().trim();
+        if (!newTag.matches("^[\\w\\-]+$")) {
             mi.showErrorMessage(
-                ti.translate("error.general.desc"),
-                ti.translate("error.general.title"),
-                e
+                ti.translate("error.tag.invalid_string.desc"),
+                ti.translate("error.general.title")
             );
+            return;
         }
+
+        interactiveTask(() -> {
+            try {
+                gc.handleRenameTag(tag, newTag);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Handles the "Cancel" button click to cancel the running task.
+     * <p>
+     * The running command is interrupted, and the remaining ones are skipped. The module is unlocked
+     * once the command has stopped.
+     * </p>
+     */
+    private void handleCancelButton() {
+        gView.getCancelButton().setEnabled(false);
+        if (runningTask != null) runningTask.cancel(true);
     }
 
     /**
-     * Handles updates to the name filter text field.
+     * Handles the selection of a collection in the collection combo box.
      * <p>
-     * Clears the selection and applies the filter to the gallery table based on the text field's content.
+     * Opens the selected collection, unless it's already the active one.
+     * </p>
+     */
+    private void handleCollectionSelection() {
+        String selected = (String) gView.getCollectionComboBox().getSelectedItem();
+        if (selected == null || selected.equals(gc.getActiveCollection())) return;
+
+        switchCollectionTask(selected);
+    }
+
+    /**
+     * Handles the "New collection" button click.
+     * <p>
+     * Prompts the user for a name, and creates and opens a new collection with it.
+     * </p>
+     */
+    private void handleNewCollectionButton() {
+        JTextField textField = new JTextField();
+        int result = mi.showConfirmationMessage(
+            textField,
+            ti.translate("message.new_collection.title")
+        );
+        if (result != JOptionPane.OK_OPTION) return;
+
+        String name = textField.getText().trim();
+        if (!name.matches("^[\\w\\- ]+$") || gc.getCollectionNames().contains(name)) {
+            mi.showErrorMessage(
+                ti.translate("error.collection.invalid_name.desc"),
+                ti.translate("error.general.title")
+            );
+            return;
+        }
+
+        createCollectionTask(name);
+    }
+
+    /**
+     * Handles updates to the name and tag filter text fields and the "missing only" check box.
+     * <p>
+     * Clears the selection and schedules the search. Consecutive updates within {@link #SEARCH_DELAY}
+     * are coalesced into a single search.
      * </p>
      */
     private void handleNameFilterUpdate() {
         gView.getGalleryTable().clearSelection();
-        gView.filterTable(gView.getNameFilterTextField().getText().trim());
+        searchTimer.restart();
+    }
+
+    /**
+     * Handles changes of the gallery table model.
+     * <p>
+     * While a search is active, inserted and updated rows may change its result, so the search is scheduled again.
+     * Removed rows don't need that, since the result refers to stable row ids.
+     * </p>
+     *
+     * @param e the table model event.
+     */
+    private void handleTableModelChange(TableModelEvent e) {
+        if (e.getType() == TableModelEvent.DELETE) return;
+        if (!gView.getNameFilterTextField().getText().isBlank() || !gView.getTagFilterTextField().getText().isBlank())
+            searchTimer.restart();
     }
 
     /**
@@ -303,7 +449,7 @@ public class GalleryController {
      * </p>
      */
     private void addImagesTask() {
-        gc.execute(this::prepareUiBefore, this::addImages, this::updateUiAfter)
+        track(gc.execute(this::prepareUiBefore, this::addImages, this::updateUiAfter))
             .exceptionally(this::handleException)
             .whenComplete(this::handleGalleryUnlock);
     }
@@ -316,8 +462,14 @@ public class GalleryController {
      * </p>
      */
     private void removeImagesTask() {
-        List<Integer> indexes = gView.getAndClearSelectedRows();
-        gc.execute(this::prepareUiBefore, () -> gc.handleRemoveImages(indexes), this::updateUiAfter)
+        List<File> files = gc.getFiles(gView.getAndClearSelectedRows());
+        track(gc.execute(this::prepareUiBefore, () -> {
+            try {
+                gc.handleRemoveFiles(files);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, this::updateUiAfter))
             .exceptionally(this::handleException)
             .whenComplete(this::handleGalleryUnlock);
     }
@@ -330,8 +482,8 @@ public class GalleryController {
      * </p>
      */
     private void deleteImagesTask() {
-        List<Integer> indexes = gView.getAndClearSelectedRows();
-        gc.execute(this::prepareUiBefore, () -> gc.handleDeleteImages(indexes), this::updateUiAfter)
+        List<File> files = gc.getFiles(gView.getAndClearSelectedRows());
+        track(gc.execute(this::prepareUiBefore, () -> gc.handleDeleteFiles(files), this::updateUiAfter))
             .exceptionally(this::handleException)
             .whenComplete(this::handleGalleryUnlock);
     }
@@ -344,7 +496,7 @@ public class GalleryController {
      * </p>
      */
     private void unifyNamesTask() {
-        gc.execute(this::prepareUiBefore, gc::handleUnifyNames, this::showMessage)
+        track(gc.execute(this::prepareUiBefore, gc::handleUnifyNames, this::showMessage))
                 .exceptionally(this::handleException)
                 .whenComplete(this::handleGalleryUnlock);
     }
@@ -352,37 +504,134 @@ public class GalleryController {
     /**
      * Runs the task of distinguishing the duplicates of selected images asynchronously.
      * <p>
+     * Duplicates are found from the fingerprints stored in the gallery, using the comparison
+     * methods selected in the comparer settings, so the images aren't decoded again.
      * Updates the gallery UI after the task is complete.
      * </p>
      */
     private void distinctImagesTask() {
-        cc.execute(
+        List<File> selected = gc.getFiles(gView.getSelectedRows());
+        ComparerPropertyAccess cpa = cc.getComparerPropertyAccess();
+        AtomicReference<List<File>> duplicates = new AtomicReference<>(List.of());
+
+        track(cc.execute(
             this::prepareUiBefore,
-            this::setInputImages,
-            cc::handleLoadFiles,
-            cc::handleCompare,
+            cc::notifyLock,
+            () -> duplicates.set(gc.handleDistinct(selected, cpa.isPerceptualHash(), cpa.isPixelByPixel())),
             () -> {
+                if (duplicates.get().isEmpty()) {
+                    cc.notifyUnlock();
+                    return;
+                }
+
                 CompletableFuture<Boolean> ftr = removalConfirmation();
-                ftr.thenAcceptAsync(this::reduceImages, executor)
+                ftr.thenAcceptAsync(res -> reduceImages(res, duplicates.get()), ioExecutor)
                         .thenRun(this::updateUiAfter);
-                ftr.join();
+                CancellationToken.current().await(ftr);
             }
-        ).exceptionally(this::handleException)
+        )).whenComplete((_, ex) -> {
+            if (ex != null) cc.notifyUnlock();
+        })
+        .exceptionally(this::handleException)
         .whenComplete(this::handleGalleryUnlock);
     }
 
+    /**
+     * Runs the task of importing gallery entries asynchronously.
+     * <p>
+     * Launches a file chooser dialog for the user to select a JSON Lines file and imports its entries
+     * into the active collection. Updates the gallery UI after the task is complete.
+     * </p>
+     */
+    private void importTask() {
+        track(gc.execute(this::prepareUiBefore, () -> gView.getImportFileChooser().perform(), this::updateUiAfter))
+            .exceptionally(this::handleException)
+            .whenComplete(this::handleGalleryUnlock);
+    }
+
+    /**
+     * Runs the task of exporting gallery entries asynchronously.
+     * <p>
+     * Launches a file chooser dialog for the user to pick the destination file and writes
+     * the entries of the active collection into it as JSON Lines.
+     * </p>
+     */
+    private void exportTask() {
+        track(gc.execute(this::prepareUiBefore, () -> gView.getExportFileChooser().perform()))
+            .exceptionally(this::handleException)
+            .whenComplete(this::handleGalleryUnlock);
+    }
+
+    /**
+     * Runs the gallery search asynchronously.
+     * <p>
+     * The search and tag indexes are queried off the Event Dispatch Thread, as an interactive task served before
+     * any background work, and only the resulting row set is published to the table. Results of searches overtaken by a newer one are discarded.
+     * A malformed tag query is marked in the view, and the current filter is kept.
+     * </p>
+     */
+    private void searchTask() {
+        int generation = ++searchGeneration;
+        String query = gView.getNameFilterTextField().getText().trim();
+
+        GalleryTagQuery tagQuery;
+        try {
+            tagQuery = GalleryTagQuery.parse(gView.getTagFilterTextField().getText());
+            gView.setTagFilterValid(true);
+        } catch (IllegalArgumentException e) {
+            gView.setTagFilterValid(false);
+            return;
+        }
+
+        CompletableFuture.supplyAsync(() -> gc.handleSearch(query, tagQuery), cpuExecutor.withPriority(TaskPriority.INTERACTIVE))
+            .thenAccept(matches -> SwingUtilities.invokeLater(() -> {
+                if (generation == searchGeneration) gView.filterTable(matches);
+            }))
+            .exceptionally(this::handleException);
+    }
+
+    /**
+     * Runs the task of switching to another collection asynchronously.
+     * <p>
+     * Saves the active collection and loads the selected one. Updates the gallery UI after the task is complete.
+     * </p>
+     *
+     * @param name the name of the collection to open.
+     */
+    private void switchCollectionTask(String name) {
+        track(gc.execute(this::prepareUiBefore, () -> gc.handleSwitchCollection(name), this::updateUiAfter))
+            .exceptionally(this::handleException)
+            .whenComplete(this::handleGalleryUnlock);
+    }
+
+    /**
+     * Runs the task of creating a new collection asynchronously.
+     * <p>
+     * Creates and opens the collection. Updates the gallery UI after the task is complete.
+     * </p>
+     *
+     * @param name the name of the new collection.
+     */
+    private void createCollectionTask(String name) {
+        track(gc.execute(this::prepareUiBefore, () -> gc.handleCreateCollection(name), this::updateUiAfter))
+            .exceptionally(this::handleException)
+            .whenComplete(this::handleGalleryUnlock);
+    }
+
     // UI-related methods.
     // Handling UI-related operations while doing tasks.
 
     /**
      * Prepares the UI before executing a long operation.
      * <p>
-     * This method locks the module and sets the cursor to a wait cursor to indicate that a process is ongoing.
+     * This method locks the module, enables the cancel button, and sets the cursor to a wait cursor
+     * to indicate that a process is ongoing.
      * </p>
      */
     private void prepareUiBefore() {
         SwingUtilities.invokeLater(() -> {
             gView.lockModule();
+            gView.getCancelButton().setEnabled(true);
             umi.useCursor(CursorManagerInterface.WAIT_CURSOR);
         });
     }
@@ -390,19 +639,22 @@ public class GalleryController {
     /**
      * Updates the UI after completing a long operation.
      * <p>
-     * This method updates the element count label to reflect the current number of rows in the gallery table model.
+     * This method updates the element count label to reflect the current number of rows in the gallery table model,
+     * and refreshes the collection selector.
      * </p>
      */
     private void updateUiAfter() {
-        SwingUtilities.invokeLater(() ->
-            gView.getElementCountLabel().setText(String.valueOf(gc.getRowCount()))
-        );
+        SwingUtilities.invokeLater(() -> {
+            gView.getElementCountLabel().setText(String.valueOf(gc.getRowCount()));
+            gView.setCollections(gc.getCollectionNames(), gc.getActiveCollection());
+        });
     }
 
     /**
      * Handles the gallery unlocking operation after task completion.
      * <p>
-     * This method unlocks the module and resets the cursor to its default state. It is called after task completion or in case of an exception.
+     * This method unlocks the module, disables the cancel button, and resets the cursor to its default state.
+     * It is called after task completion, in case of an exception, or once a cancelled task has stopped.
      * </p>
      *
      * @param res The result of the completed task (ignored in this method).
@@ -411,6 +663,7 @@ public class GalleryController {
     private void handleGalleryUnlock(Void res, Throwable ex) {
         SwingUtilities.invokeLater(() -> {
             gView.unlockModule();
+            gView.getCancelButton().setEnabled(false);
             umi.useCursor(CursorManagerInterface.DEFAULT_CURSOR);
         });
     }
@@ -464,26 +717,6 @@ public class GalleryController {
         gView.getFileChooser().perform();
     }
 
-    /**
-     * Locks the current process, retrieves the list of selected files from the graphical view,
-     * and sets them as input for further processing.
-     * <p>
-     * This method performs the following steps:
-     * <ol>
-     *   <li>Locks the comparer process by calling {@code notifyLock()} on the comparer package.</li>
-     *   <li>Retrieves a list of files based on the selected rows from the graphical view {@code gView}.</li>
-     *   <li>Sets the retrieved list of files as input for further operations in the comparer controller {@code cc}.</li>
-     * </ol>
-     *
-     * This is typically used to set up the input images for comparison after the user has selected
-     * rows/files in the UI.
-     */
-    private void setInputImages() {
-        cc.notifyLock();
-        List<File> in = gc.getFiles(gView.getSelectedRows());
-        cc.setInput(in);
-    }
-
     /**
      * Reduces images based on the result of the distinct image operation.
      * <p>
@@ -491,15 +724,15 @@ public class GalleryController {
      * </p>
      *
      * @param res {@code true} if files should be deleted, {@code false} if they should be transferred.
+     * @param out the duplicate files to reduce.
      * @throws CompletionException If an I/O error occurs during the file operation.
      */
-    private void reduceImages(boolean res) {
+    private void reduceImages(boolean res, List<File> out) {
         try {
-            List<File> out = cc.getOutput();
             gc.handleRemoveFiles(out);
 
-            if (res) cc.handleDeleteFiles();
-            else cc.handleMoveFiles();
+            if (res) cc.handleDeleteFiles(out);
+            else cc.handleMoveFiles(out);
         } catch (IOException e) {
             throw new CompletionException(e);
         } finally {
@@ -510,14 +743,48 @@ public class GalleryController {
     // Additional methods.
     // E.g., handling exceptions.
 
+    /**
+     * Runs a short action of the user as an interactive task.
+     * <p>
+     * The action runs off the Event Dispatch Thread, and background work, e.g. a running comparison,
+     * yields to it, so it completes within milliseconds. Errors are shown to the user.
+     * </p>
+     *
+     * @param command the action.
+     */
+    private void interactiveTask(Command command) {
+        gc.execute(TaskPriority.INTERACTIVE, command)
+            .exceptionally(this::handleException);
+    }
+
+    /**
+     * Remembers the running task, so it can be cancelled with the cancel button.
+     *
+     * @param task the task.
+     * @return the task.
+     */
+    private CompletableFuture<Void> track(CompletableFuture<Void> task) {
+        runningTask = task;
+        return task;
+    }
+
     /**
      * Handles exceptions that occur during the execution of tasks. Displays
      * an error message dialog to the user.
+     * <p>
+     * Cancellation isn't an error, so no message is shown. The UI is updated instead,
+     * since the task could have changed the gallery before it stopped.
+     * </p>
      *
      * @param ex the exception that occurred
      * @return {@code null}
      */
     private Void handleException(Throwable ex) {
+        if (ex instanceof CancellationException || ex.getCause() instanceof CancellationException) {
+            updateUiAfter();
+            return null;
+        }
+
         SwingUtilities.invokeLater(() -> mi.showErrorMessage(
             ti.translate("error.general.desc"),
             ti.translate("error.general.title"),
@@ -1,9 +1,16 @@
 package pl.magzik.controllers;
 
+import pl.magzik.base.FormatUtils;
+import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.base.diagnostics.LatencyHistogram;
+import pl.magzik.base.diagnostics.Metrics;
+import pl.magzik.base.diagnostics.MetricsSnapshot;
+import pl.magzik.base.diagnostics.RunRecorder;
 import pl.magzik.modules.comparer.persistence.ComparerFilePropertyAccess;
 import pl.magzik.modules.comparer.processing.ComparerPropertyAccess;
 import pl.magzik.modules.gallery.management.GalleryManagementModule;
 import pl.magzik.modules.gallery.operations.GalleryPropertyAccess;
+import pl.magzik.modules.resource.ResourceModule;
 import pl.magzik.modules.settings.SettingsModule;
 import pl.magzik.ui.components.settings.ComboBoxSettingsEntry;
 import pl.magzik.ui.components.settings.SettingsEntry;
@@ -11,9 +18,17 @@ import pl.magzik.ui.localization.TranslationStrategy;
 import pl.magzik.ui.logging.MessageInterface;
 import pl.magzik.ui.views.SettingsView;
 
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
 import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -34,6 +49,7 @@ import java.util.function.Function;
  *   <li>Updating settings in the settings module and external components when changes are saved.</li>
  *   <li>Handling errors that may occur during the settings save process.</li>
  *   <li>Notifying the user when a restart is required due to changes in settings.</li>
+ *   <li>Displaying the live values of the {@link Metrics} in the diagnostics tab, and saving their snapshots.</li>
  * </ul>
  * </p>
  * <p>
@@ -53,7 +69,7 @@ import java.util.function.Function;
  * </p>
  */
 public class SettingsController {
-    private final SettingsView sView;
+    private SettingsView sView;
     private final SettingsModule sModule;
     private final GalleryPropertyAccess gpa;
     private final TranslationStrategy ti;
@@ -61,23 +77,21 @@ public class SettingsController {
     private final ComparerPropertyAccess cpa;
     private final ComparerFilePropertyAccess cfpa;
 
+    private static final int METRICS_REFRESH_MILLIS = 1000;
+    private static final Path METRICS_DIR = ResourceModule.EXTERNAL_RESOURCES_DIR.resolve("metrics");
+
+    private final DefaultTableModel metricsModel;
+    private final List<String> metricNames;
+
     /**
-     * Constructs a new {@code SettingsController} thenLoad the provided dependencies and initializes the settings view.
-     * <p>
-     * This constructor sets up the controller by associating it thenLoad the provided view and module instances,
-     * configuring the initial settings, and setting up the user interface interactions.
+     * Constructs a new {@code SettingsController} with the provided dependencies, and applies the settings.
      * <p>
-     * The constructor performs the following actions:
-     * <ul>
-     *   <li>Assigns the provided {@link SettingsView}, {@link SettingsModule}, {@link GalleryManagementModule}, {@link TranslationStrategy},
-     *       {@link MessageInterface}, and {@link ComparerPropertyAccess} implementations to the corresponding fields.</li>
-     *   <li>Initializes the settings through {@link #initializeSettings()}.</li>
-     *   <li>Updates external settings using {@link #updateExternalSettings()}.</li>
-     *   <li>Sets up the save button by attaching an action listener to it and disabling it initially.</li>
-     *   <li>Adds property change listeners to manage the state of the save button.</li>
-     * </ul>
+     * This constructor sets up the controller by associating it with the provided module instances,
+     * and updates the external settings using {@link #updateExternalSettings()}, so the settings are in effect
+     * from the start. The settings view is created on the first navigation to it, and attached later,
+     * see {@link #attachView(SettingsView)}.
+     * </p>
      *
-     * @param sView The {@link SettingsView} instance used to interact thenLoad the user interface. Must not be {@code null}.
      * @param sModule The {@link SettingsModule} instance responsible for handling the settings data. Must not be {@code null}.
      * @param gpa The {@link GalleryPropertyAccess} instance, which also implements {@link ComparerPropertyAccess}.
      *            Must not be {@code null}.
@@ -87,18 +101,40 @@ public class SettingsController {
      * @param cfpa The {@link ComparerFilePropertyAccess} instance used for handling file-related comparison properties. Must not be {@code null}.
      * @throws NullPointerException if any of the provided parameters are {@code null}.
      */
-    public SettingsController(SettingsView sView, SettingsModule sModule, GalleryPropertyAccess gpa, TranslationStrategy ti, MessageInterface mi, ComparerPropertyAccess cpa, ComparerFilePropertyAccess cfpa) {
-        this.sView = sView;
+    public SettingsController(SettingsModule sModule, GalleryPropertyAccess gpa, TranslationStrategy ti, MessageInterface mi, ComparerPropertyAccess cpa, ComparerFilePropertyAccess cfpa) {
         this.sModule = sModule;
         this.gpa = gpa;
         this.ti = ti;
         this.mi = mi;
         this.cpa = cpa;
         this.cfpa = cfpa;
+        this.metricsModel = new DefaultTableModel(new Object[] {
+            ti.translate("diagnostics.column.metric"), ti.translate("diagnostics.column.value")
+        }, 0);
+        this.metricNames = new ArrayList<>();
 
-        // Initialize settings and update external settings.
-        initializeSettings();
         updateExternalSettings();
+    }
+
+    /**
+     * Attaches the settings view, once it's created, and sets up the user interface interactions.
+     * <p>
+     * The method performs the following actions:
+     * <ul>
+     *   <li>Initializes the settings through {@link #initializeSettings()}.</li>
+     *   <li>Sets up the save button by attaching an action listener to it and disabling it initially.</li>
+     *   <li>Adds property change listeners to manage the state of the save button.</li>
+     *   <li>Sets up the diagnostics tab.</li>
+     * </ul>
+     *
+     * @param sView The {@link SettingsView} instance used to interact with the user interface. Must not be {@code null}.
+     * @throws IllegalStateException if a view is already attached.
+     */
+    public void attachView(SettingsView sView) {
+        if (this.sView != null) throw new IllegalStateException("Settings view is already attached");
+        this.sView = Objects.requireNonNull(sView);
+
+        initializeSettings();
 
         // Set up the save button: attach an action listener and disable it initially.
         sView.getSaveButton().addActionListener(_ -> updateSettings());
@@ -106,6 +142,9 @@ public class SettingsController {
 
         // Add property change listeners to update the save button state.
         addPropertyChangeListeners();
+
+        // Set up the diagnostics tab: refresh the metrics while they are shown, and dump them on demand.
+        initializeDiagnostics();
     }
 
     /**
@@ -178,6 +217,130 @@ public class SettingsController {
     }
 
 
+    /**
+     * Sets up the diagnostics tab.
+     * <p>
+     * The metrics table is refreshed every second, but only while it is shown, so the metrics cost nothing
+     * when nobody looks at them. The dump button writes a snapshot of the metrics into the "metrics" directory
+     * of the external resources, on the I/O executor.
+     * </p>
+     */
+    private void initializeDiagnostics() {
+        sView.getMetricsTable().setModel(metricsModel);
+
+        Timer timer = new Timer(METRICS_REFRESH_MILLIS, _ -> {
+            if (sView.getMetricsTable().isShowing()) refreshMetrics();
+        });
+        timer.start();
+
+        sView.getDumpMetricsButton().addActionListener(_ -> dumpMetrics());
+    }
+
+    /**
+     * Displays a new snapshot of the metrics. If the same metrics are registered as before, only the values are updated,
+     * so the selection of the table is kept.
+     */
+    private void refreshMetrics() {
+        MetricsSnapshot snapshot = Metrics.getInstance().snapshot();
+
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        snapshot.gauges().forEach((name, value) -> {
+            names.add(name);
+            values.add(formatValue(name, value));
+        });
+        snapshot.counters().forEach((name, value) -> {
+            names.add(name);
+            values.add(formatCounter(name, value));
+        });
+        snapshot.histograms().forEach((name, value) -> {
+            names.add(name);
+            values.add(formatHistogram(value));
+        });
+
+        if (names.equals(metricNames)) {
+            for (int i = 0; i < values.size(); i++) {
+                if (!values.get(i).equals(metricsModel.getValueAt(i, 1))) metricsModel.setValueAt(values.get(i), i, 1);
+            }
+            return;
+        }
+
+        metricNames.clear();
+        metricNames.addAll(names);
+        metricsModel.setRowCount(0);
+        for (int i = 0; i < names.size(); i++) {
+            metricsModel.addRow(new Object[] { names.get(i), values.get(i) });
+        }
+    }
+
+    /**
+     * Writes a snapshot of the metrics into a file, and tells the user where it was written.
+     */
+    private void dumpMetrics() {
+        sView.getDumpMetricsButton().setEnabled(false);
+
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return Metrics.getInstance().dump(METRICS_DIR);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ExecutorServiceManager.getInstance().getIoExecutor()).whenComplete((file, ex) -> SwingUtilities.invokeLater(() -> {
+            sView.getDumpMetricsButton().setEnabled(true);
+
+            if (ex != null) {
+                mi.showErrorMessage(
+                    ti.translate("error.diagnostics.dump.desc"),
+                    ti.translate("error.general.title"),
+                    (Exception) (ex.getCause() != null ? ex.getCause() : ex)
+                );
+                return;
+            }
+
+            mi.showInformationMessage(
+                ti.translate("message.diagnostics.dump.desc") + file.toString().replace("%", "%%"),
+                ti.translate("message.general.title")
+            );
+        }));
+    }
+
+    /**
+     * Formats a single value of a metric, in bytes if its name ends with "_bytes".
+     *
+     * @param name  the name of the metric.
+     * @param value the value.
+     * @return the formatted value.
+     */
+    private static String formatValue(String name, double value) {
+        if (name.endsWith("_bytes")) return FormatUtils.formatInto(value);
+        return value % 1 == 0 ? String.valueOf((long) value) : String.format("%.1f", value);
+    }
+
+    /**
+     * Formats the value of a counter: its total, followed by its current rate if anything was counted recently.
+     *
+     * @param name  the name of the counter.
+     * @param value the value of the counter.
+     * @return the formatted value.
+     */
+    private static String formatCounter(String name, MetricsSnapshot.CounterValue value) {
+        String count = formatValue(name, value.count());
+        return value.rate() > 0 ? count + " (" + formatValue(name, value.rate()) + "/s)" : count;
+    }
+
+    /**
+     * Formats the statistics of a histogram.
+     *
+     * @param value the statistics, in milliseconds.
+     * @return the formatted statistics.
+     */
+    private static String formatHistogram(LatencyHistogram.Snapshot value) {
+        return String.format(
+            "n=%d, mean %.1f ms, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms",
+            value.count(), value.mean(), value.p50(), value.p90(), value.p99(), value.max()
+        );
+    }
+
     /**
      * Adds property change listeners to various settings entries in the view.
      * Each listener monitors changes to the "value" property and updates the enabled state
@@ -363,6 +526,10 @@ public class SettingsController {
      *       <p>If the setting value is "yes", extensions will be converted to lowercase; otherwise, they will remain unchanged.</p></li>
      *   <li>Updates the settings of the {@link ComparerPropertyAccess} and {@link ComparerFilePropertyAccess} instances using the {@link #updateComparerSettings()} method.
      *       <p>The method applies the settings updates to ensure that all comparer-related configurations are aligned thenLoad the current settings.</p></li>
+     *   <li>Sizes the CPU executor of the {@link ExecutorServiceManager} using the value of the "cpu_threads" setting.
+     *       <p>A missing, invalid or non-positive value means one thread per available core.</p></li>
+     *   <li>Starts or stops the JFR recording of the run using the value of the "jfr_recording" setting,
+     *       and enables the metrics dump at exit using the value of the "metrics_dump" setting, see {@link #updateDiagnosticsSettings()}.</li>
      * </ul>
      * </p>
      * <p>
@@ -374,6 +541,56 @@ public class SettingsController {
         gpa.setNormalizedFileExtensions(sModule.getSetting("un_lowercase").equals("yes"));
 
         updateComparerSettings();
+        updateExecutorSettings();
+        updateDiagnosticsSettings();
+    }
+
+    /**
+     * Sizes the CPU executor of the {@link ExecutorServiceManager} based on the "cpu_threads" setting.
+     * The setting isn't present in configurations created by older versions, so a missing value means the default.
+     */
+    private void updateExecutorSettings() {
+        String cpuThreads = sModule.getSetting("cpu_threads");
+
+        int threads = 0;
+        try {
+            if (cpuThreads != null) threads = Integer.parseInt(cpuThreads.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid cpu_threads setting: " + cpuThreads); // Todo, change for other more advance logging
+        }
+
+        ExecutorServiceManager.getInstance().setCpuThreads(threads);
+    }
+
+    /**
+     * Starts or stops the JFR recording of the run based on the "jfr_recording" setting,
+     * and enables or disables the metrics dump at exit based on the "metrics_dump" setting.
+     * <p>
+     * If the "jfr_recording" value is "yes", the run is recorded by the {@link RunRecorder} into the "recordings" directory
+     * of the external resources, and the recording is written once the setting is turned off, or the application exits.
+     * A missing value means no recording.
+     * </p>
+     * <p>
+     * Unless the "metrics_dump" value is "no", a snapshot of the {@link Metrics} is written into the "metrics" directory
+     * of the external resources when the application exits. A missing value means the snapshot is written.
+     * Only the newest snapshots are kept, see {@link Metrics#dump(Path)}.
+     * </p>
+     */
+    private void updateDiagnosticsSettings() {
+        Metrics.getInstance().dumpOnExit("no".equals(sModule.getSetting("metrics_dump")) ? null : METRICS_DIR);
+
+        RunRecorder recorder = RunRecorder.getInstance();
+
+        if (!"yes".equals(sModule.getSetting("jfr_recording"))) {
+            recorder.stop();
+            return;
+        }
+
+        try {
+            recorder.start(ResourceModule.EXTERNAL_RESOURCES_DIR.resolve("recordings"));
+        } catch (IOException e) {
+            System.err.println("Couldn't start the JFR recording: " + e.getMessage()); // Todo, change for other more advance logging
+        }
     }
 
     /**
@@ -399,7 +616,10 @@ public class SettingsController {
      *         <li>If the setting value is "yes", the flag is set to {@code true}.</li>
      *       </ul>
      *   </li>
+     *   <li>Limits the number of comparison sessions running at the same time to the value of the "comparer_sessions" setting.
+     *       The setting isn't present in configurations created by older versions, so a missing value means the default.</li>
      * </ul>
+     * Sessions that are already queued or running keep the settings they were created with.
      * </p>
      *
      * @throws NullPointerException If any of the settings values retrieved from {@link SettingsModule} are {@code null}.
@@ -419,5 +639,14 @@ public class SettingsController {
         );
         cpa.setPerceptualHash(pHash.equals("yes"));
         cpa.setPixelByPixel(pbp.equals("yes"));
+
+        String sessions = sModule.getSetting("comparer_sessions");
+        if (sessions == null) return;
+
+        try {
+            cpa.setConcurrentSessions(Integer.parseInt(sessions.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid comparer_sessions setting: " + sessions); // Todo, change for other more advance logging
+        }
     }
 }
@@ -1,6 +1,8 @@
 package pl.magzik.modules.base;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Represents a module that can be loaded.
@@ -9,6 +11,10 @@ import java.io.IOException;
  * by classes representing modules that need to be loaded. The method {@link #postConstruct()} throws
  * {@link IOException} to handle any potential I/O errors during the loading process.
  * </p>
+ * <p>
+ * A module may declare the modules it needs, see {@link #getDependencies()}. The {@link ModuleLoader} loads
+ * independent modules at the same time, so {@link #postConstruct()} may be called on any thread.
+ * </p>
  */
 public interface Module {
 
@@ -23,4 +29,17 @@ public interface Module {
      * @throws IOException if an error occurs during the initialization process
      */
     default void postConstruct() throws Exception { }
+
+    /**
+     * Returns the modules that have to be loaded before this one.
+     * <p>
+     * The dependencies are loaded first, whether they belong to the same {@link Package} or not. A dependency
+     * that isn't handled by the {@link ModuleLoader} is considered loaded.
+     * </p>
+     *
+     * @return the dependencies, empty by default
+     */
+    default Collection<Module> getDependencies() {
+        return List.of();
+    }
 }
@@ -17,6 +17,15 @@ package pl.magzik.modules.base;
  */
 public class ModuleLoadException extends Exception {
 
+    /**
+     * Constructs a new {@code ModuleLoadException} with the specified detail message.
+     *
+     * @param message a detailed message explaining the reason for the exception
+     */
+    public ModuleLoadException(String message) {
+        super(message);
+    }
+
     /**
      * Constructs a new {@code ModuleLoadException} with the specified cause.
      *
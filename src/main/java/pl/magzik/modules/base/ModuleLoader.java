@@ -1,17 +1,38 @@
 package pl.magzik.modules.base;
 
+import pl.magzik.base.async.ExecutorServiceManager;
+
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
- * The {@code ModuleLoader} class manages the sequential loading of {@link Module} instances.
- * It supports adding modules and packages to a queue, tracking loading progress, and notifying
+ * The {@code ModuleLoader} class manages the loading of {@link Module} instances.
+ * It supports adding modules and packages in a given order, tracking loading progress, and notifying
  * listeners of changes during the loading process.
  * <p>
  * This class provides a fluent API for configuring the loading sequence, initializing the loader,
- * and then executing the loading process step by step.
+ * and then executing the loading process.
+ * </p>
+ * <p>
+ * The packages form a dependency graph. A package added with {@link #thenLoad(Package)} is loaded after all packages
+ * added before it, and one added with {@link #andLoad(Package)} is loaded together with the previous one.
+ * Besides, a package is loaded after the packages containing its {@link PackageInterface#getDependencies() dependencies}.
+ * Once {@link #start() started}, every package is loaded on the I/O executor of the {@link ExecutorServiceManager}
+ * as soon as the packages it depends on are loaded, so independent packages are loaded at the same time.
+ * </p>
+ * <p>
+ * A package is loaded even if one it depends on failed, like the rest of the application keeps starting
+ * after a failure, and the failures are reported by {@link #awaitAll()}.
  * </p>
  *
  * @see Module
@@ -19,7 +40,9 @@ import java.util.Queue;
  * @see ModuleLoaderProgress
  */
 public class ModuleLoader {
-    private final Queue<Package> packages;
+    private final List<Package> packages;
+    private final Map<Package, Set<Package>> dependencies;
+    private final Map<Package, CompletableFuture<Void>> loads;
     private boolean ready;
 
     private ModuleLoaderProgress mlp;
@@ -30,8 +53,10 @@ public class ModuleLoader {
      * @param pkg the initial {@link Package} to be managed by this loader
      */
     private ModuleLoader(Package pkg) {
-        this.packages = new LinkedList<>();
-        this.packages.add(pkg);
+        this.packages = new ArrayList<>();
+        this.dependencies = new IdentityHashMap<>();
+        this.loads = new IdentityHashMap<>();
+        add(pkg, new LinkedHashSet<>());
 
         this.ready = false;
     }
@@ -57,40 +82,83 @@ public class ModuleLoader {
     }
 
     /**
-     * Adds a {@link Module} to the loader.
+     * Adds a {@link Module}, loaded after all modules added so far.
      *
      * @param module the {@link Module} to be added
      * @return this {@code ModuleLoader} instance
      */
     public ModuleLoader thenLoad(Module module) {
-        packages.offer(new Package(Collections.singletonList(module)));
-        return this;
+        return thenLoad(new Package(Collections.singletonList(module)));
     }
 
     /**
-     * Adds a {@link Package} to the loader.
+     * Adds a {@link Package}, loaded after all packages added so far.
      *
      * @param pkg the {@link Package} to be added
      * @return this {@code ModuleLoader} instance
      */
     public ModuleLoader thenLoad(Package pkg) {
-        packages.offer(pkg);
+        add(pkg, new LinkedHashSet<>(packages));
         return this;
     }
 
     /**
-     * Prepares the loader for use by initializing the progress tracker.
+     * Adds a {@link Module}, loaded together with the previously added package.
+     *
+     * @param module the {@link Module} to be added
+     * @return this {@code ModuleLoader} instance
+     */
+    public ModuleLoader andLoad(Module module) {
+        return andLoad(new Package(Collections.singletonList(module)));
+    }
+
+    /**
+     * Adds a {@link Package}, loaded together with the previously added package, i.e. after the same packages,
+     * and its own dependencies.
+     *
+     * @param pkg the {@link Package} to be added
+     * @return this {@code ModuleLoader} instance
+     */
+    public ModuleLoader andLoad(Package pkg) {
+        add(pkg, new LinkedHashSet<>(dependencies.get(packages.getLast())));
+        return this;
+    }
+
+    /**
+     * Adds a package with the packages it's loaded after.
+     *
+     * @param pkg   the package.
+     * @param after the packages loaded before it.
+     * @throws IllegalStateException if the loader is already marked as ready
+     */
+    private void add(Package pkg, Set<Package> after) {
+        if (ready) throw new IllegalStateException("Loader is already ready");
+
+        packages.add(pkg);
+        dependencies.put(pkg, after);
+    }
+
+    /**
+     * Prepares the loader for use by resolving the dependencies of the packages, and initializing the progress tracker.
      * <p>
      * This method should be called after all modules or packages have been added to the loader
      * and before starting the loading process.
      * </p>
      *
      * @return this {@code ModuleLoader} instance
-     * @throws IllegalStateException if the loader is already marked as ready
+     * @throws IllegalStateException if the loader is already marked as ready, or if the packages depend on each other in a cycle
      */
     public ModuleLoader ready() {
         if (ready) throw new IllegalStateException("Loader is already ready");
 
+        for (Package pkg : packages) {
+            for (Module module : pkg.getDependencies()) {
+                Package owner = findPackage(module);
+                if (owner != null && owner != pkg) dependencies.get(pkg).add(owner);
+            }
+        }
+        checkCycles();
+
         mlp = new ModuleLoaderProgress(packages.stream().mapToInt(Package::getModuleCount).sum());
         ready = true;
 
@@ -98,37 +166,154 @@ public class ModuleLoader {
     }
 
     /**
-     * Checks if there are more modules to load.
+     * Starts loading all packages. Does nothing if the loading has already started.
      *
-     * @return {@code true} if there are more modules, {@code false} otherwise
+     * @return this {@code ModuleLoader} instance
      * @throws IllegalStateException if the loader isn't marked as ready
      */
-    public boolean hasNext() {
+    public synchronized ModuleLoader start() {
         if (!ready)
             throw new IllegalStateException("Loader isn't marked as ready");
 
-        return !packages.isEmpty();
+        if (!loads.isEmpty()) return this;
+
+        Executor executor = ExecutorServiceManager.getInstance().getIoExecutor();
+        for (Package pkg : packages) start(pkg, executor);
+
+        return this;
     }
 
     /**
-     * Loads the next module in the sequence.
-     * <p>
-     * This method processes the next package in the queue, updating the progress
-     * tracker accordingly.
-     * </p>
+     * Starts loading a package once the packages it depends on are loaded, starting them first if needed.
      *
-     * @throws ModuleLoadException if an error occurs while loading the module
-     * @throws IllegalStateException if the loader isn't ready, or if there are no more modules to load
+     * @param pkg      the package.
+     * @param executor the executor the modules are loaded on.
+     * @return the future of the package.
      */
-    public void loadNext() throws ModuleLoadException {
-        if (!ready)
-            throw new IllegalStateException("Loader isn't marked as ready");
+    private CompletableFuture<Void> start(Package pkg, Executor executor) {
+        CompletableFuture<Void> load = loads.get(pkg);
+        if (load != null) return load;
 
-        if (!hasNext())
-            throw new IllegalStateException("No more modules to loadFiles");
+        CompletableFuture<?>[] after = dependencies.get(pkg).stream()
+                                                   .map(p -> start(p, executor))
+                                                   .toArray(CompletableFuture[]::new);
+
+        load = CompletableFuture.allOf(after)
+            .handle((_, _) -> null)
+            .thenCompose(_ -> pkg.loadModules(executor, mlp::moduleStarted, mlp::moduleLoaded));
+
+        loads.put(pkg, load);
+        return load;
+    }
+
+    /**
+     * Waits until the package containing the given module is loaded.
+     *
+     * @param module the module.
+     * @throws ModuleLoadException if the package failed to load, or the thread was interrupted while waiting
+     * @throws IllegalStateException if the loading hasn't started
+     * @throws IllegalArgumentException if the module isn't handled by this loader
+     */
+    public void await(Module module) throws ModuleLoadException {
+        Package pkg = findPackage(module);
+        if (pkg == null) throw new IllegalArgumentException("Module isn't handled by this loader");
+
+        await(getLoad(pkg));
+    }
+
+    /**
+     * Waits until all packages are loaded.
+     *
+     * @return the failures of the packages that failed to load, in the order the packages were added; empty if none failed
+     * @throws ModuleLoadException if the thread was interrupted while waiting
+     * @throws IllegalStateException if the loading hasn't started
+     */
+    public List<ModuleLoadException> awaitAll() throws ModuleLoadException {
+        List<ModuleLoadException> failures = new ArrayList<>();
+        for (Package pkg : packages) {
+            try {
+                await(getLoad(pkg));
+            } catch (ModuleLoadException e) {
+                if (Thread.currentThread().isInterrupted()) throw e;
+                failures.add(e);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Waits for a future of a package.
+     *
+     * @param load the future.
+     * @throws ModuleLoadException if the package failed to load, or the thread was interrupted while waiting
+     */
+    private static void await(CompletableFuture<Void> load) throws ModuleLoadException {
+        try {
+            load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModuleLoadException("Interrupted while loading modules", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof ModuleLoadException mle) throw mle;
+            throw new ModuleLoadException(cause);
+        }
+    }
+
+    /**
+     * Returns the future of a package.
+     *
+     * @param pkg the package.
+     * @return the future.
+     * @throws IllegalStateException if the loading hasn't started
+     */
+    private synchronized CompletableFuture<Void> getLoad(Package pkg) {
+        CompletableFuture<Void> load = loads.get(pkg);
+        if (load == null) throw new IllegalStateException("Loading hasn't started");
+
+        return load;
+    }
+
+    /**
+     * Finds the package containing the given module.
+     *
+     * @param module the module.
+     * @return the package, or {@code null} if the module isn't handled by this loader.
+     */
+    private Package findPackage(Module module) {
+        for (Package pkg : packages) {
+            if (pkg.contains(module)) return pkg;
+        }
+        return null;
+    }
+
+    /**
+     * Checks that no package depends on itself, directly or not.
+     *
+     * @throws IllegalStateException if there's a cycle.
+     */
+    private void checkCycles() {
+        Map<Package, Boolean> visited = new IdentityHashMap<>();
+        for (Package pkg : packages) checkCycles(pkg, visited);
+    }
+
+    /**
+     * Visits a package and its dependencies, depth first.
+     *
+     * @param pkg     the package.
+     * @param visited the visited packages; {@code false} while their dependencies are being visited.
+     * @throws IllegalStateException if there's a cycle.
+     */
+    private void checkCycles(Package pkg, Map<Package, Boolean> visited) {
+        Boolean done = visited.putIfAbsent(pkg, false);
+        if (done != null) {
+            if (!done) throw new IllegalStateException("Cyclic dependency of package: " + pkg.getClass().getSimpleName());
+            return;
+        }
 
-        Package pkg = packages.remove();
-        pkg.loadModules(mlp::updateCurrentModule, mlp::stepUp);
+        for (Package dependency : dependencies.get(pkg)) checkCycles(dependency, visited);
+        visited.put(pkg, true);
     }
 
     /**
@@ -136,6 +321,7 @@ public class ModuleLoader {
      * <p>
      * This listener will be notified of changes in the loading progress, such as
      * updates to the current module being loaded or the completion percentage.
+     * The events may be fired on any thread.
      * </p>
      *
      * @param listener the listener to add
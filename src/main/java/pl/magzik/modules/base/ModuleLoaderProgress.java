@@ -2,51 +2,82 @@ package pl.magzik.modules.base;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Tracks and reports the progress of loading modules.
  * <p>
  * This class provides progress updates and the name of the currently loading module.
+ * Modules may be loaded at the same time, so the progress is the share of all modules that have finished loading,
+ * and the reported name is the one of the longest-running module that's still loading.
+ * </p>
+ * <p>
+ * The methods can be called from any thread; the events are fired on the calling thread, in the order of the changes.
  * </p>
  */
 public class ModuleLoaderProgress {
+    private final List<String> loading;
     private String currentModuleName;
-    private double progress;
-    private final double step;
+    private final int moduleCount;
+    private int loaded;
 
     private final PropertyChangeSupport pcs;
 
     /**
-     * Constructs a {@code ModuleLoaderProgress} instance thenLoad the specified number of modules.
+     * Constructs a {@code ModuleLoaderProgress} instance for the specified number of modules.
      * @param moduleCount the total number of modules to be loaded
      */
     public ModuleLoaderProgress(int moduleCount) {
+        this.loading = new ArrayList<>();
         this.currentModuleName = "";
-        this.progress = 0;
-        this.step = 1d / ((double) moduleCount);
+        this.moduleCount = moduleCount;
+        this.loaded = 0;
 
         this.pcs = new PropertyChangeSupport(this);
     }
 
     /**
-     * Updates the name of the currently loading module.
-     * @param moduleName the module name that is currently being loaded
+     * Notes that a module started loading, and reports it as the current one if no other module is loading.
+     * @param moduleName the name of the module
      */
-    public void updateCurrentModule(String moduleName) {
-        String oldName = currentModuleName;
-        currentModuleName = moduleName;
+    public synchronized void moduleStarted(String moduleName) {
+        loading.add(moduleName);
+        updateCurrentModule();
+    }
 
-        pcs.firePropertyChange("module", oldName, currentModuleName);
+    /**
+     * Notes that a module finished loading, successfully or not, and increments the progress.
+     * @param moduleName the name of the module
+     */
+    public synchronized void moduleLoaded(String moduleName) {
+        loading.remove(moduleName);
+        updateCurrentModule();
+
+        double oldProgress = getProgress();
+        loaded = Math.min(moduleCount, loaded + 1);
+
+        pcs.firePropertyChange("progress", oldProgress, getProgress());
+    }
+
+    /**
+     * Returns the share of the modules that have finished loading.
+     * @return the progress, between 0 and 1
+     */
+    public synchronized double getProgress() {
+        return moduleCount == 0 ? 1 : (double) loaded / moduleCount;
     }
 
     /**
-     * Increments the progress and notifies listeners.
+     * Reports the longest-running loading module as the current one, if it changed.
      */
-    public void stepUp() {
-        double oldProgress = progress;
-        progress = Math.min(1, progress + step);
+    private void updateCurrentModule() {
+        if (loading.isEmpty()) return;
+
+        String oldName = currentModuleName;
+        currentModuleName = loading.getFirst();
 
-        pcs.firePropertyChange("progress", oldProgress, progress);
+        pcs.firePropertyChange("module", oldName, currentModuleName);
     }
 
     /**
@@ -1,18 +1,28 @@
 package pl.magzik.modules.base;
 
-import pl.magzik.base.interfaces.Command;
-
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 /**
  * The {@code Package} class is an implementation of the {@link PackageInterface} that manages a collection of
  * {@link Module} instances. It provides mechanisms to load these modules, update their state, and retrieve the
  * number of modules loaded.
- * This class supports module initialization through the {@code loadModules} method, which executes a series
- * of operations on each module and allows for custom actions during and after module loading.
+ * This class supports module initialization through the {@code loadModules} method, which loads each module
+ * once its {@link Module#getDependencies() dependencies} are loaded, independent ones at the same time,
+ * and allows for custom actions during and after module loading.
+ * <p>
+ * If a module fails to load, the modules depending on it are skipped, and {@link #onModulesLoaded()} isn't called.
+ * </p>
  */
 public class Package implements PackageInterface {
 
@@ -28,27 +38,116 @@ public class Package implements PackageInterface {
     }
 
     /**
-     * Loads all modules in this package, applies the provided {@code Consumer} to update
-     * the name of each module during loading, and executes a {@link Command} at each step.
+     * Starts loading all modules in this package on the given executor. Each module is loaded once the modules
+     * of this package it depends on are loaded.
      *
-     * @param nameUpdateConsumer A {@code Consumer} that processes the name of each module being loaded.
-     * @param stepUpCommand A {@code Command} that can be executed after each module is loaded.
-     * @throws ModuleLoadException If any module fails to load correctly.
+     * @param executor        the executor the modules are loaded on.
+     * @param startedConsumer A {@code Consumer} called with the name of each module when its loading starts.
+     * @param loadedConsumer  A {@code Consumer} called with the name of each module when its loading ends,
+     *                        also if it was skipped.
+     * @return a future completing once all modules are loaded and {@link #onModulesLoaded()} has returned.
+     *         If any module fails to load, or the modules depend on each other in a cycle, it completes exceptionally
+     *         with a {@link ModuleLoadException}.
      */
     @Override
-    public final void loadModules(Consumer<String> nameUpdateConsumer, Command stepUpCommand) throws ModuleLoadException {
+    public final CompletableFuture<Void> loadModules(Executor executor, Consumer<String> startedConsumer, Consumer<String> loadedConsumer) {
+        Map<Module, CompletableFuture<Void>> loads = new IdentityHashMap<>();
+        try {
+            for (Module module : modules) {
+                schedule(module, loads, Collections.newSetFromMap(new IdentityHashMap<>()), executor, startedConsumer);
+            }
+        } catch (ModuleLoadException e) {
+            return CompletableFuture.failedFuture(new CompletionException(e));
+        }
+
+        loads.forEach((module, load) -> load.whenComplete((_, _) -> loadedConsumer.accept(getName(module))));
+
+        return CompletableFuture.allOf(loads.values().toArray(CompletableFuture[]::new))
+            .thenRun(() -> {
+                try {
+                    onModulesLoaded();
+                } catch (ModuleLoadException e) {
+                    throw new CompletionException(e);
+                }
+            });
+    }
+
+    /**
+     * Schedules loading a module after the modules of this package it depends on, scheduling them first if needed.
+     *
+     * @param module   the module.
+     * @param loads    the already scheduled modules, and their futures.
+     * @param visiting the modules whose dependencies are being scheduled, to detect cycles.
+     * @param executor the executor the module is loaded on.
+     * @param startedConsumer called with the name of the module when its loading starts.
+     * @return the future of the module.
+     * @throws ModuleLoadException if the module depends on itself, directly or not.
+     */
+    private CompletableFuture<Void> schedule(Module module, Map<Module, CompletableFuture<Void>> loads, Set<Module> visiting,
+                                             Executor executor, Consumer<String> startedConsumer) throws ModuleLoadException {
+        CompletableFuture<Void> scheduled = loads.get(module);
+        if (scheduled != null) return scheduled;
+
+        if (!visiting.add(module))
+            throw new ModuleLoadException("Cyclic dependency of module: " + getName(module));
+
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (Module dependency : module.getDependencies()) {
+            if (contains(dependency))
+                dependencies.add(schedule(dependency, loads, visiting, executor, startedConsumer));
+        }
+        visiting.remove(module);
+
+        CompletableFuture<Void> load = CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+            .thenRunAsync(() -> {
+                startedConsumer.accept(getName(module));
+                try {
+                    module.postConstruct();
+                } catch (Exception e) {
+                    throw new CompletionException(new ModuleLoadException(e));
+                }
+            }, executor);
+
+        loads.put(module, load);
+        return load;
+    }
+
+    /**
+     * Returns the modules outside this package that any of its modules depends on.
+     *
+     * @return the dependencies.
+     */
+    @Override
+    public Collection<Module> getDependencies() {
+        Set<Module> dependencies = new LinkedHashSet<>();
         for (Module module : modules) {
-            nameUpdateConsumer.accept(module.getClass().getSimpleName());
-            try {
-                module.postConstruct();
-            } catch (Exception e) {
-                throw new ModuleLoadException(e);
-            } finally {
-                stepUpCommand.execute();
+            for (Module dependency : module.getDependencies()) {
+                if (!contains(dependency)) dependencies.add(dependency);
             }
         }
+        return dependencies;
+    }
+
+    /**
+     * Checks if the module belongs to this package.
+     *
+     * @param module the module.
+     * @return {@code true} if the package manages the module.
+     */
+    public boolean contains(Module module) {
+        for (Module m : modules) {
+            if (m == module) return true;
+        }
+        return false;
+    }
 
-        onModulesLoaded();
+    /**
+     * Returns the modules that this package manages.
+     *
+     * @return the unmodifiable list of modules.
+     */
+    public List<Module> getModules() {
+        return Collections.unmodifiableList(modules);
     }
 
     /**
@@ -59,4 +158,8 @@ public class Package implements PackageInterface {
     public int getModuleCount() {
         return modules.size();
     }
+
+    private static String getName(Module module) {
+        return module.getClass().getSimpleName();
+    }
 }
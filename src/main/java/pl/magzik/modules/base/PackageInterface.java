@@ -1,7 +1,9 @@
 package pl.magzik.modules.base;
 
-import pl.magzik.base.interfaces.Command;
-
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 /**
@@ -14,14 +16,19 @@ import java.util.function.Consumer;
 public interface PackageInterface {
 
     /**
-     * Loads the modules and applies the provided consumer to each module's name.
-     * The stepUpCommand can be used to perform additional actions during the module loading process.
+     * Starts loading the modules, each one as soon as its dependencies within the package are loaded,
+     * so independent modules are loaded at the same time.
+     * The consumers are called with the name of each module, and may be called from any thread.
      *
-     * @param nameUpdateConsumer A {@code Consumer} that processes the name of each module being loaded.
-     * @param stepUpCommand A {@code Command} that can be executed at each step of the module loading process.
-     * @throws ModuleLoadException If an error occurs while loading the modules.
+     * @param executor        the executor the modules are loaded on.
+     * @param startedConsumer A {@code Consumer} called with the name of each module when its loading starts.
+     * @param loadedConsumer  A {@code Consumer} called with the name of each module when its loading ends,
+     *                        successfully or not.
+     * @return a future completing once all modules are loaded and {@link #onModulesLoaded()} has returned,
+     *         or completing exceptionally with a {@link ModuleLoadException} wrapped in a
+     *         {@link java.util.concurrent.CompletionException}.
      */
-    void loadModules(Consumer<String> nameUpdateConsumer, Command stepUpCommand) throws ModuleLoadException;
+    CompletableFuture<Void> loadModules(Executor executor, Consumer<String> startedConsumer, Consumer<String> loadedConsumer);
 
     /**
      * Called after all modules have been successfully loaded. This method can be overridden
@@ -31,4 +38,12 @@ public interface PackageInterface {
      */
     default void onModulesLoaded() throws ModuleLoadException {}
 
+    /**
+     * Returns the modules outside the package that have to be loaded before it.
+     *
+     * @return the dependencies, empty by default.
+     */
+    default Collection<Module> getDependencies() {
+        return List.of();
+    }
 }
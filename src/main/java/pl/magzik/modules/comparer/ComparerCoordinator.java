@@ -1,15 +1,23 @@
 package pl.magzik.modules.comparer;
 
 import pl.magzik.base.async.AsyncTaskFactory;
+import pl.magzik.base.async.CancellationToken;
+import pl.magzik.base.async.TaskPriority;
+import pl.magzik.base.diagnostics.Counter;
+import pl.magzik.base.diagnostics.LatencyHistogram;
+import pl.magzik.base.diagnostics.Metrics;
+import pl.magzik.base.interfaces.Command;
 import pl.magzik.base.interfaces.FileHandler;
 import pl.magzik.modules.base.Package;
 import pl.magzik.modules.comparer.list.ComparerListModule;
 import pl.magzik.modules.comparer.list.ListModelHandler;
 import pl.magzik.modules.comparer.persistence.ComparerFileModule;
 import pl.magzik.modules.comparer.persistence.ComparerFilePropertyAccess;
+import pl.magzik.modules.comparer.preview.PreviewCache;
 import pl.magzik.modules.comparer.processing.ComparerModule;
-import pl.magzik.modules.comparer.processing.ComparerProcessor;
 import pl.magzik.modules.comparer.processing.ComparerPropertyAccess;
+import pl.magzik.modules.comparer.processing.ComparerSession;
+import pl.magzik.modules.comparer.processing.ComparerSettings;
 
 import javax.swing.*;
 import java.beans.PropertyChangeListener;
@@ -17,7 +25,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -31,19 +42,30 @@ import java.util.concurrent.ExecutionException;
  *
  * <h3>Main Responsibilities:</h3>
  * <ul>
- *   <li>Load files and update internal input lists</li>
- *   <li>Compare files and update the output lists</li>
+ *   <li>Create comparison sessions and schedule their tasks</li>
+ *   <li>Load the files of a session and update its input</li>
+ *   <li>Compare the files of a session and update its output</li>
  *   <li>Move, delete, or manage files post-comparison</li>
  *   <li>Lock and unlock the UI components during long-running tasks</li>
  * </ul>
  *
+ * <h3>Sessions:</h3>
+ * Every comparison is a {@link ComparerSession}, with its own input, output, and a snapshot of the settings
+ * taken when it's created. The tasks of the sessions are scheduled by the {@link ComparerModule}, so a limited
+ * number of them runs at the same time, and the rest waits in a queue. The list models are shared,
+ * and show the files of the session the UI selects, see {@link #handleFulfilList(String, List)}.
+ *
  * <h3>Modules used:</h3>
  * <ul>
  *   <li>{@link ComparerListModule}: Manages list models and UI updates</li>
  *   <li>{@link ComparerFileModule}: Handles file loading, moving, and deletion</li>
- *   <li>{@link ComparerModule}: Performs file comparison logic</li>
+ *   <li>{@link ComparerModule}: Manages and schedules the comparison sessions</li>
  * </ul>
  *
+ * <h3>Metrics:</h3>
+ * The durations of loading, comparing, moving and deleting files, and the number of scanned files,
+ * are reported to the {@link Metrics} under the {@code comparer.} prefix.
+ *
  * @see ComparerModule
  * @see ComparerFileModule
  * @see ComparerListModule
@@ -52,11 +74,16 @@ public class ComparerCoordinator implements AsyncTaskFactory {
 
     private final ListModelHandler<String> lmh;
     private final FileHandler fh;
-    private final ComparerFilePropertyAccess fpa;
-    private final ComparerProcessor comp;
+    private final ComparerFileModule cfm;
+    private final ComparerModule cm;
+    private final PreviewCache pc;
+    private final Map<String, List<File>> listSources;
 
     private final ComparerPackage cp;
 
+    private final Counter filesScanned;
+    private final LatencyHistogram loadTime, compareTime, moveTime, deleteTime;
+
     /**
      * Initializes the {@code ComparerCoordinator}, sets up the necessary modules for file comparison,
      * file handling, and list model handling.
@@ -67,12 +94,22 @@ public class ComparerCoordinator implements AsyncTaskFactory {
 
         ComparerFileModule cfm = new ComparerFileModule();
         this.fh = cfm;
-        this.fpa = cfm;
+        this.cfm = cfm;
 
         ComparerModule cm = new ComparerModule();
-        this.comp = cm;
+        this.cm = cm;
+
+        this.pc = new PreviewCache();
+        this.listSources = new ConcurrentHashMap<>();
 
         this.cp = new ComparerPackage(clm, cfm, cm);
+
+        Metrics metrics = Metrics.getInstance();
+        this.filesScanned = metrics.counter("comparer.files.scanned");
+        this.loadTime = metrics.histogram("comparer.load");
+        this.compareTime = metrics.histogram("comparer.compare");
+        this.moveTime = metrics.histogram("comparer.move");
+        this.deleteTime = metrics.histogram("comparer.delete");
     }
 
     /**
@@ -84,60 +121,151 @@ public class ComparerCoordinator implements AsyncTaskFactory {
         return cp;
     }
 
+    /**
+     * Returns the priority of the comparer tasks. Comparisons are batch jobs, so they run in the background
+     * and yield to the actions of the user.
+     *
+     * @return {@link TaskPriority#BACKGROUND}
+     */
+    @Override
+    public TaskPriority getPriority() {
+        return TaskPriority.BACKGROUND;
+    }
+
+    // Sessions
+
+    /**
+     * Creates a new comparison session of the given directories, with a snapshot of the current settings.
+     *
+     * @param path Varargs of the paths of the directories to compare.
+     * @return The created session.
+     */
+    public ComparerSession createSession(String... path) {
+        ComparerSettings settings = new ComparerSettings(
+            cm.isPerceptualHash(), cm.isPixelByPixel(), cfm.getMode(), cfm.getOutputPath()
+        );
+        return cm.createSession(Arrays.stream(path).map(File::new).toList(), settings);
+    }
+
+    /**
+     * Schedules the commands of a session as a single task, with the priority of {@link #getPriority()}.
+     * The task waits in the queue while the limit of running sessions is reached.
+     *
+     * @param session  The session.
+     * @param commands The commands of the session.
+     * @return A future completing with the task; cancelling it, or the session, cancels the task.
+     * @see ComparerModule#submit(ComparerSession, java.util.function.Supplier)
+     */
+    public CompletableFuture<Void> schedule(ComparerSession session, Command... commands) {
+        return cm.submit(session, () -> execute(commands));
+    }
+
+    /**
+     * Removes a session, cancelling its task if it's queued or running.
+     *
+     * @param session The session to remove.
+     */
+    public void removeSession(ComparerSession session) {
+        cm.removeSession(session);
+    }
+
+    /**
+     * Retrieves the sessions, in the order they were created.
+     *
+     * @return An unmodifiable list of sessions.
+     */
+    public List<ComparerSession> getSessions() {
+        return cm.getSessions();
+    }
+
     // Handle Tasks
 
     /**
-     * Loads files into the comparison system. It fetches the input files using the {@link FileHandler},
-     * processes them, and sets them into the {@link ComparerProcessor} for further comparison.
+     * Loads the files of a session. It fetches the image files from the directories of the session
+     * using the {@link ComparerFileModule}, in the mode of the session, and sets them as the input of the session.
      * <p>
      * This method handles any {@link IOException} thrown during file loading by wrapping it in a {@link CompletionException}.
+     *
+     * @param session The session.
      */
-    public void handleLoadFiles() {
-        try {
-            List<File> in = comp.getInput();
-            List<File> out = fh.loadFiles(in);
+    public void handleLoadFiles(ComparerSession session) {
+        session.setState(ComparerSession.State.LOADING);
+
+        try (var _ = loadTime.time()) {
+            List<File> out = cfm.loadFiles(session.getRoots(), session.getSettings().mode());
+            filesScanned.add(out.size());
 
-            comp.setInput(out);
+            session.setInput(out);
         } catch (IOException e) {
             throw new CompletionException(e);
         }
     }
 
     /**
-     * Compares the input files using the {@link ComparerProcessor}.
-     * This method processes the files and updates the output list for post-processing tasks.
+     * Compares the input files of a session, updating its output for post-processing tasks.
      * <p>
      * Handles {@link IOException} and {@link ExecutionException} during the comparison process.
+     *
+     * @param session The session.
      */
-    public void handleCompare() {
-        try {
-            comp.process();
+    public void handleCompare(ComparerSession session) {
+        session.setState(ComparerSession.State.COMPARING);
+
+        try (var _ = compareTime.time()) {
+            session.process();
         } catch (IOException | ExecutionException e) {
             throw new CompletionException(e);
         }
     }
 
     /**
-     * Moves the compared output files to their respective destination using the {@link FileHandler}.
+     * Moves the output files of a session to the destination of the session.
+     * The session is {@link ComparerSession.State#MOVING} meanwhile, and {@link ComparerSession.State#MOVED} afterwards,
+     * or {@link ComparerSession.State#DONE} again if moving failed or was cancelled.
      * <p>
      * Any {@link IOException} encountered during the move operation is wrapped in a {@link CompletionException}.
+     *
+     * @param session The session.
      */
-    public void handleMoveFiles() {
-        try {
-            fh.moveFiles(comp.getOutput());
+    public void handleMoveFiles(ComparerSession session) {
+        session.setState(ComparerSession.State.MOVING);
+
+        boolean moved = false;
+        try (var _ = moveTime.time()) {
+            cfm.moveFiles(session.getOutput(), session.getSettings().outputPath());
+            moved = !CancellationToken.current().isCancelled();
         } catch (IOException e) {
             throw new CompletionException(e);
+        } finally {
+            session.setState(moved ? ComparerSession.State.MOVED : ComparerSession.State.DONE);
         }
     }
 
     /**
-     * Deletes the compared output files using the {@link FileHandler}.
+     * Moves the given files to the destination using the {@link FileHandler}.
+     * <p>
+     * Any {@link IOException} encountered during the move operation is wrapped in a {@link CompletionException}.
+     *
+     * @param files The files to move.
+     */
+    public void handleMoveFiles(List<File> files) {
+        try (var _ = moveTime.time()) {
+            fh.moveFiles(files);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Deletes the given files using the {@link FileHandler}.
      * <p>
      * Any {@link IOException} encountered during the deletion process is wrapped in a {@link CompletionException}.
+     *
+     * @param files The files to delete.
      */
-    public void handleDeleteFiles() {
-        try {
-            fh.deleteFiles(comp.getOutput());
+    public void handleDeleteFiles(List<File> files) {
+        try (var _ = deleteTime.time()) {
+            fh.deleteFiles(files);
         } catch (IOException e) {
             throw new CompletionException(e);
         }
@@ -145,13 +273,17 @@ public class ComparerCoordinator implements AsyncTaskFactory {
 
     /**
      * Updates the list model with the provided source files and associates them with the given list name.
+     * <p>
+     * May be called from any thread, preferably the worker that produced the files. The names are mapped on
+     * the calling thread, and appear in the list model in batches, see {@link ComparerListModule}.
+     * </p>
      *
      * @param listName The name of the list model to update.
      * @param src      The list of files to add to the list model.
      */
     public void handleFulfilList(String listName, List<File> src) {
-        lmh.clearList(listName);
-        lmh.addAllToList(listName, src.stream().map(File::getName).toList());
+        listSources.put(listName, List.copyOf(src));
+        lmh.replaceList(listName, src.stream().map(File::getName).toList());
     }
 
     /**
@@ -161,60 +293,71 @@ public class ComparerCoordinator implements AsyncTaskFactory {
      */
     public void handleClearList(String listName) {
         lmh.clearList(listName);
+        listSources.remove(listName);
     }
 
     /**
-     * Locks the comparison module, preventing further modifications until the lock is released.
-     * Typically called before long-running operations.
+     * Drops the previews held in memory, e.g. after the compared files were moved.
      */
-    public void notifyLock() {
-        comp.notifyLock();
+    public void handleClearPreviews() {
+        pc.clear();
     }
 
     /**
-     * Unlocks the comparison module, allowing further modifications.
-     * Typically called after long-running operations are complete.
+     * Retrieves the file displayed at the given index of a list.
+     *
+     * @param listName The name of the list.
+     * @param index    The index of the list item.
+     * @return The file, or {@code null} if the index is out of the list's bounds.
      */
-    public void notifyUnlock() {
-        comp.notifyUnlock();
+    public File getListFile(String listName, int index) {
+        List<File> files = listSources.getOrDefault(listName, List.of());
+        return index >= 0 && index < files.size() ? files.get(index) : null;
     }
 
-    // Delegated setters, getters
-
     /**
-     * Retrieves the input files currently loaded in the comparison processor.
+     * Retrieves the cache of previews of the compared files.
      *
-     * @return A list of input files.
+     * @return The {@link PreviewCache}.
      */
-    public List<File> getInput() {
-        return comp.getInput();
+    public PreviewCache getPreviewCache() {
+        return pc;
     }
 
     /**
-     * Sets the input files for the comparison processor.
-     *
-     * @param input A list of files to set as input.
+     * Locks the comparison module, so no comparison is started until the lock is released.
+     * Typically called by other modules before long-running operations on the files.
+     */
+    public void notifyLock() {
+        cm.notifyLock();
+    }
+
+    /**
+     * Unlocks the comparison module, allowing comparisons to be started again.
+     * Typically called after long-running operations are complete.
      */
-    public void setInput(List<File> input) {
-        comp.setInput(input);
+    public void notifyUnlock() {
+        cm.notifyUnlock();
     }
 
+    // Delegated setters, getters
+
     /**
-     * Sets the input files for the comparison processor by converting the provided file paths to {@link File} objects.
+     * Checks if another module works on the files, see {@link #notifyLock()}.
      *
-     * @param path Varargs of file paths to convert and set as input.
+     * @return {@code true} if the comparer is locked.
      */
-    public void setInput(String... path) {
-        setInput(Arrays.stream(path).map(File::new).toList());
+    public boolean isLocked() {
+        return cm.isLocked();
     }
 
     /**
-     * Retrieves the output files generated after comparison.
+     * Checks if the comparer is busy, i.e. it's locked, or any session is active.
      *
-     * @return A list of output files.
+     * @return {@code true} if the comparer is busy.
      */
-    public List<File> getOutput() {
-        return comp.getOutput();
+    public boolean isProcessing() {
+        return cm.isProcessing();
     }
 
     /**
@@ -228,13 +371,14 @@ public class ComparerCoordinator implements AsyncTaskFactory {
     }
 
     /**
-     * Adds a property change listener to the comparison processor.
-     * This listener is notified when properties of the comparison processor change.
+     * Adds a property change listener to the comparison module.
+     * This listener is notified when the sessions, or the busy state of the module, change.
      *
      * @param listener The listener to add.
+     * @see ComparerModule
      */
     public void addPropertyChangeListener(PropertyChangeListener listener) {
-        comp.addPropertyChangeListener(listener);
+        cm.addPropertyChangeListener(listener);
     }
 
     /**
@@ -244,7 +388,7 @@ public class ComparerCoordinator implements AsyncTaskFactory {
      * @return An instance of {@link ComparerPropertyAccess}.
      */
     public ComparerPropertyAccess getComparerPropertyAccess() {
-        return comp;
+        return cm;
     }
 
     /**
@@ -254,6 +398,6 @@ public class ComparerCoordinator implements AsyncTaskFactory {
      * @return An instance of {@link ComparerFilePropertyAccess}.
      */
     public ComparerFilePropertyAccess getComparerFilePropertyAccess() {
-        return fpa;
+        return cfm;
     }
 }
@@ -0,0 +1,78 @@
+package pl.magzik.modules.comparer.list;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A lightweight {@link ListModel} backed by a growable array.
+ * <p>
+ * Unlike {@link DefaultListModel}, which synchronizes every access to its {@link java.util.Vector},
+ * this model is unsynchronized and must only be accessed from the Event Dispatch Thread,
+ * like any other Swing model. Adding a collection fires a single {@link javax.swing.event.ListDataEvent},
+ * so the list is laid out once per batch instead of once per element.
+ * </p>
+ *
+ * @param <T> the type of the elements.
+ */
+public class ArrayListModel<T> extends AbstractListModel<T> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Object[] elements;
+    private int size;
+
+    /**
+     * Constructs an empty {@code ArrayListModel}.
+     */
+    public ArrayListModel() {
+        this.elements = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getElementAt(int index) {
+        if (index < 0 || index >= size)
+            throw new ArrayIndexOutOfBoundsException(index);
+        return (T) elements[index];
+    }
+
+    /**
+     * Appends all elements of the collection to the end of the model.
+     *
+     * @param ts the elements to append.
+     */
+    public void addAll(Collection<? extends T> ts) {
+        if (ts.isEmpty()) return;
+
+        int first = size;
+        ensureCapacity(size + ts.size());
+        for (T t : ts) elements[size++] = t;
+
+        fireIntervalAdded(this, first, size - 1);
+    }
+
+    /**
+     * Removes all elements from the model.
+     */
+    public void clear() {
+        if (size == 0) return;
+
+        int last = size - 1;
+        elements = new Object[INITIAL_CAPACITY];
+        size = 0;
+
+        fireIntervalRemoved(this, 0, last);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= elements.length) return;
+        elements = Arrays.copyOf(elements, Math.max(capacity, elements.length * 2));
+    }
+}
@@ -3,52 +3,133 @@ package pl.magzik.modules.comparer.list;
 import pl.magzik.modules.base.Module;
 
 import javax.swing.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 
 /**
- * Implementation of {@link Module} and {@link ListModelHandler} that manages {@link DefaultListModel} instances.
+ * Implementation of {@link Module} and {@link ListModelHandler} that manages {@link ArrayListModel} instances.
  *
  * <p>This module initializes and manages list models for different purposes, such as displaying output and duplicates.</p>
+ * <p>
+ * Elements may be added from any thread. They're queued, and a Swing {@link Timer} hands them over to the models
+ * every {@value #FLUSH_INTERVAL} ms, at most {@value #MAX_BATCH} per list at a time. Each batch fires a single event,
+ * so a list of thousands of files is built with a handful of layouts, while the Event Dispatch Thread stays responsive
+ * and the first elements are shown right away. The timer only runs while there are queued elements.
+ * </p>
  */
 public class ComparerListModule implements Module, ListModelHandler<String> {
-    private final Map<String, DefaultListModel<String>> listModels;
+
+    private static final int FLUSH_INTERVAL = 100;
+    private static final int MAX_BATCH = 5000;
+
+    private final Map<String, Feed> feeds;
+    private final Timer flushTimer;
 
     /**
-     * Constructs a {@code ComparerListModule} thenLoad an empty list of models.
+     * Constructs a {@code ComparerListModule} with an empty list of models.
      */
     public ComparerListModule() {
-        listModels = new HashMap<>();
+        feeds = new HashMap<>();
+        flushTimer = new Timer(FLUSH_INTERVAL, _ -> flush());
+        flushTimer.setInitialDelay(0);
     }
 
     @Override
     public void postConstruct() {
-        listModels.put("Output", new DefaultListModel<>());
-        listModels.put("Duplicates", new DefaultListModel<>());
+        feeds.put("Output", new Feed());
+        feeds.put("Duplicates", new Feed());
     }
 
     @Override
     public void addAllToList(String listName, Collection<String> strings) {
-        if (!listModels.containsKey(listName))
-            throw new IllegalArgumentException("List " + listName + " does not exist");
+        getFeed(listName).enqueue(strings, false);
+        flushTimer.start();
+    }
 
-        listModels.get(listName).addAll(strings);
+    @Override
+    public void replaceList(String listName, Collection<String> strings) {
+        getFeed(listName).enqueue(strings, true);
+        flushTimer.start();
     }
 
     @Override
     public void clearList(String listName) {
-        if (!listModels.containsKey(listName))
-            throw new IllegalArgumentException("List " + listName + " does not exist");
+        Feed feed = getFeed(listName);
+        feed.enqueue(List.of(), true);
 
-        listModels.get(listName).clear();
+        if (SwingUtilities.isEventDispatchThread()) feed.flush();
+        else flushTimer.start();
     }
 
     @Override
     public ListModel<String> getListModel(String listName) {
-        if (!listModels.containsKey(listName))
+        return getFeed(listName).model;
+    }
+
+    private Feed getFeed(String listName) {
+        if (!feeds.containsKey(listName))
             throw new IllegalArgumentException("List " + listName + " does not exist");
 
-        return listModels.get(listName);
+        return feeds.get(listName);
+    }
+
+    /**
+     * Hands a batch of the queued elements over to every model, and stops the timer once nothing is queued.
+     */
+    private void flush() {
+        boolean pending = false;
+        for (Feed feed : feeds.values()) pending |= feed.flush();
+
+        if (!pending) flushTimer.stop();
+    }
+
+    /**
+     * A list model together with the elements queued for it.
+     */
+    private static final class Feed {
+        private final ArrayListModel<String> model = new ArrayListModel<>();
+        private final Queue<String> queue = new ArrayDeque<>();
+        private boolean reset;
+
+        /**
+         * Queues elements for the model.
+         *
+         * @param strings the elements.
+         * @param replace whether the model, and the elements queued so far, should be cleared first.
+         */
+        synchronized void enqueue(Collection<String> strings, boolean replace) {
+            if (replace) {
+                queue.clear();
+                reset = true;
+            }
+            queue.addAll(strings);
+        }
+
+        /**
+         * Hands a batch of the queued elements over to the model. Must be called on the Event Dispatch Thread.
+         *
+         * @return {@code true} if there are still elements queued.
+         */
+        boolean flush() {
+            List<String> batch;
+            boolean clear, remaining;
+            synchronized (this) {
+                clear = reset;
+                reset = false;
+
+                batch = new ArrayList<>(Math.min(queue.size(), MAX_BATCH));
+                while (batch.size() < MAX_BATCH && !queue.isEmpty()) batch.add(queue.poll());
+                remaining = !queue.isEmpty();
+            }
+
+            if (clear) model.clear();
+            model.addAll(batch);
+            return remaining;
+        }
     }
 }
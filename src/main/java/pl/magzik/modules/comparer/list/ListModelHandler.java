@@ -5,6 +5,10 @@ import java.util.Collection;
 
 /**
  * Interface for handling operations on list models.
+ * <p>
+ * The models are Swing models, so they're read on the Event Dispatch Thread, but the elements
+ * may be added from any thread. They're handed over to the models in batches, see {@link ComparerListModule}.
+ * </p>
  *
  * @param <T> the type of elements in the list model
  */
@@ -12,6 +16,7 @@ public interface ListModelHandler <T> {
 
     /**
      * Adds all elements from the specified collection to the list model identified by the given name.
+     * May be called from any thread; the elements appear in the model shortly after.
      *
      * @param listName the name of the list model
      * @param ts the collection of elements to be added
@@ -20,7 +25,18 @@ public interface ListModelHandler <T> {
     void addAllToList(String listName, Collection<T> ts);
 
     /**
-     * Clears all elements from the list model identified by the given name.
+     * Replaces all elements of the list model identified by the given name with the elements of the specified collection.
+     * May be called from any thread; elements added before, but not yet shown, are dropped.
+     *
+     * @param listName the name of the list model
+     * @param ts the collection of the new elements
+     * @throws IllegalArgumentException if the list model with the specified name does not exist
+     */
+    void replaceList(String listName, Collection<T> ts);
+
+    /**
+     * Clears all elements from the list model identified by the given name, including the elements not yet shown.
+     * Called on the Event Dispatch Thread, the model is cleared immediately.
      *
      * @param listName the name of the list model
      * @throws IllegalArgumentException if the list model thenLoad the specified name does not exist
@@ -3,7 +3,10 @@ package pl.magzik.modules.comparer.persistence;
 import pl.magzik.predicates.FilePredicate;
 import pl.magzik.predicates.ImageFilePredicate;
 import pl.magzik.io.FileOperator;
+import pl.magzik.base.async.CancellationToken;
 import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.base.diagnostics.FileOperationEvent;
+import pl.magzik.base.diagnostics.FileScanEvent;
 import pl.magzik.base.interfaces.CheckedConsumer;
 import pl.magzik.base.interfaces.FileHandler;
 import pl.magzik.modules.base.Module;
@@ -16,6 +19,10 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of a file handling module that supports operations such as
@@ -28,9 +35,9 @@ import java.util.Objects;
  */
 public class ComparerFileModule implements Module, FileHandler, ComparerFilePropertyAccess {
 
-    private Mode mode;
-    private String outputPath;
-    private final FileOperator fileOperator;
+    private volatile Mode mode;
+    private volatile String outputPath;
+    private final FilePredicate filePredicate;
 
     /**
      * Constructs an instance of {@code ComparerFileModule}.
@@ -42,26 +49,64 @@ public class ComparerFileModule implements Module, FileHandler, ComparerFileProp
         this.outputPath = System.getProperty("user.home");
         this.mode = Mode.NOT_RECURSIVE;
 
-        FilePredicate filePredicate = new ImageFilePredicate();
-        this.fileOperator = new FileOperator(filePredicate, 1, ExecutorServiceManager.getInstance().getExecutorService());
+        this.filePredicate = new ImageFilePredicate();
     }
 
     @Override
     public List<File> loadFiles(List<File> input) throws IOException {
+        return loadFiles(input, mode);
+    }
+
+    /**
+     * Loads the image files from the given files and directories, in the given mode.
+     * <p>
+     * Every call uses its own {@link FileOperator}, so several comparison sessions can load their files at the same time.
+     * </p>
+     *
+     * @param input a list of files and directories to load the images from
+     * @param mode  the mode the directories are scanned in
+     * @return a list of the loaded image files
+     * @throws IOException if an I/O error occurs during file loading
+     */
+    public List<File> loadFiles(List<File> input, Mode mode) throws IOException {
         int depth = mode.isRecursive() ? Integer.MAX_VALUE : 1;
-        fileOperator.setDepth(depth);
+        FileOperator fileOperator = new FileOperator(filePredicate, depth, ExecutorServiceManager.getInstance().getIoExecutor());
+
+        FileScanEvent event = new FileScanEvent();
+        event.begin();
 
-        return fileOperator.load(input);
+        List<File> files = fileOperator.load(input);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = input.stream().map(File::getPath).collect(Collectors.joining(File.pathSeparator));
+            event.inputs = input.size();
+            event.files = files.size();
+            event.commit();
+        }
+
+        return files;
     }
 
     @Override
     public void deleteFiles(List<File> files) throws IOException {
-        perform(Files::delete, files);
+        perform("delete", Files::delete, files);
     }
 
     @Override
     public void moveFiles(List<File> files) throws IOException {
-        perform(p -> Files.move(
+        moveFiles(files, outputPath);
+    }
+
+    /**
+     * Moves the specified files into the given directory.
+     *
+     * @param files      a list of files to be moved
+     * @param outputPath the directory the files are moved to
+     * @throws IOException if an I/O error occurs during file moving
+     */
+    public void moveFiles(List<File> files, String outputPath) throws IOException {
+        perform("move", p -> Files.move(
             p,
             Path.of(outputPath, p.getFileName().toString()),
             StandardCopyOption.REPLACE_EXISTING
@@ -70,23 +115,59 @@ public class ComparerFileModule implements Module, FileHandler, ComparerFileProp
 
     /**
      * Performs the specified file operation on a list of files.
+     * Every file is handled by its own task on the I/O executor of the {@link ExecutorServiceManager}.
+     * Files that haven't been handled yet when the calling task is cancelled are skipped.
+     * Every handled file is recorded as a {@link FileOperationEvent}.
      *
+     * @param operation the name of the operation, e.g. {@code move}, used by the recorded events
      * @param consumer a {@link CheckedConsumer} that defines the operation to be performed
      * @param files a list of files to which the operation will be applied
      * @throws IOException if an I/O error occurs during the operation
      */
-    private void perform(CheckedConsumer<Path> consumer, List<File> files) throws IOException {
+    private void perform(String operation, CheckedConsumer<Path> consumer, List<File> files) throws IOException {
         Objects.requireNonNull(consumer);
         Objects.requireNonNull(files);
 
         if (files.isEmpty()) return;
 
+        ExecutorService executor = ExecutorServiceManager.getInstance().getIoExecutor();
+        CancellationToken token = CancellationToken.current();
+        CompletableFuture<?>[] tasks = files.stream()
+                                        .map(File::toPath)
+                                        .map(p -> CompletableFuture.runAsync(() -> {
+                                            if (!token.isCancelled()) record(operation, consumer, p);
+                                        }, executor))
+                                        .toArray(CompletableFuture[]::new);
+
         try {
-            files.parallelStream()
-                    .map(File::toPath)
-                    .forEach(consumer);
-        } catch (UncheckedIOException e) {
-            throw e.getCause();
+            token.await(CompletableFuture.allOf(tasks));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Performs the operation on a single file, recording it as a {@link FileOperationEvent}.
+     * The size of the file is only read while the event is recorded.
+     *
+     * @param operation the name of the operation
+     * @param consumer the operation
+     * @param path the file
+     */
+    private static void record(String operation, CheckedConsumer<Path> consumer, Path path) {
+        FileOperationEvent event = new FileOperationEvent();
+        long bytes = event.isEnabled() ? path.toFile().length() : 0;
+
+        event.begin();
+        consumer.accept(path);
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.path = path.toString();
+            event.bytes = bytes;
+            event.commit();
         }
     }
 
@@ -95,8 +176,18 @@ public class ComparerFileModule implements Module, FileHandler, ComparerFileProp
         this.outputPath = outputPath;
     }
 
+    @Override
+    public String getOutputPath() {
+        return outputPath;
+    }
+
     @Override
     public void setMode(Mode mode) {
         this.mode = mode;
     }
+
+    @Override
+    public Mode getMode() {
+        return mode;
+    }
 }
@@ -13,6 +13,13 @@ public interface ComparerFilePropertyAccess {
      */
     void setOutputPath(String path);
 
+    /**
+     * Returns the path where the output files are stored.
+     *
+     * @return the output path.
+     */
+    String getOutputPath();
+
     /**
      * Sets the mode of operation for file handling.
      *
@@ -21,6 +28,13 @@ public interface ComparerFilePropertyAccess {
      */
     void setMode(Mode mode);
 
+    /**
+     * Returns the mode of operation for file handling.
+     *
+     * @return the mode.
+     */
+    Mode getMode();
+
     /**
      * Enum representing different modes of file postConstruct operation.
      */
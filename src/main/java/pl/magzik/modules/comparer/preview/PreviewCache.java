@@ -0,0 +1,286 @@
+package pl.magzik.modules.comparer.preview;
+
+import pl.magzik.base.ImageUtils;
+import pl.magzik.base.diagnostics.Counter;
+import pl.magzik.base.diagnostics.Metrics;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * The {@code PreviewCache} provides previews of compared images, decoded at the size they are displayed at.
+ * <p>
+ * Images are decoded with subsampling on a small pool of background threads, scaled to fit the requested size,
+ * and kept in an in-memory LRU cache limited by the total size of the held previews. Requested sizes are rounded up
+ * to a multiple of {@link #SIZE_STEP}, so small changes of the display size still hit the cache.
+ * </p>
+ * <p>
+ * There are two kinds of requests: {@link #load(Path, int)} for previews shown right away, which are served first,
+ * and {@link #prefetch(Path, int)} for previews that are likely to be shown next. Prefetches over {@link #MAX_PREFETCH}
+ * are dropped, oldest first, so quickly moving through a long list never builds up a backlog.
+ * </p>
+ * <p>
+ * The hit rate of the shown previews, the queue depth and the memory in use are reported to the {@link Metrics}.
+ * </p>
+ */
+public class PreviewCache {
+
+    /**
+     * The granularity of preview sizes, in pixels.
+     */
+    public static final int SIZE_STEP = 64;
+
+    private static final long DEFAULT_MEMORY_LIMIT = 128L * 1024 * 1024;
+    private static final int MAX_PREFETCH = 32;
+
+    private final long memoryLimit;
+    private final Map<Key, BufferedImage> memory;
+    private long memoryUsed;
+
+    private final Map<Key, Request> requests;
+    private final RequestQueue queue;
+    private final ThreadPoolExecutor executor;
+
+    private final Counter hits, misses;
+
+    /**
+     * Constructs a {@code PreviewCache} with the default memory limit.
+     */
+    public PreviewCache() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Constructs a {@code PreviewCache}.
+     *
+     * @param memoryLimit the maximal total size of the previews held in memory, in bytes.
+     */
+    public PreviewCache(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        this.memory = new LinkedHashMap<>(64, 0.75f, true);
+        this.memoryUsed = 0;
+
+        this.requests = new ConcurrentHashMap<>();
+        this.queue = new RequestQueue();
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread t = new Thread(r, "preview-loader");
+            t.setDaemon(true);
+            return t;
+        });
+
+        Metrics metrics = Metrics.getInstance();
+        this.hits = metrics.counter("comparer.preview.hits");
+        this.misses = metrics.counter("comparer.preview.misses");
+        metrics.gauge("comparer.preview.queued", queue::size);
+        metrics.gauge("comparer.preview.memory_bytes", this::getMemoryUsed);
+        metrics.hitRatio("comparer.preview.hit_percent", hits, misses);
+    }
+
+    /**
+     * Loads a preview that is about to be shown. If it's already being prefetched, the request is moved
+     * to the front of the queue.
+     *
+     * @param path the path of the image file.
+     * @param size the maximal width and height of the preview, in pixels.
+     * @return a future completed with the preview, or with {@code null} if the file can't be decoded.
+     *         It's already completed if the preview is held in memory.
+     */
+    public CompletableFuture<BufferedImage> load(Path path, int size) {
+        return request(new Key(path, round(size)), true);
+    }
+
+    /**
+     * Requests a preview in the background, so it is held in memory once it is shown.
+     *
+     * @param path the path of the image file.
+     * @param size the maximal width and height of the preview, in pixels.
+     */
+    public void prefetch(Path path, int size) {
+        request(new Key(path, round(size)), false);
+    }
+
+    /**
+     * Drops all previews held in memory, and all prefetch requests that haven't started yet.
+     */
+    public void clear() {
+        for (Runnable r : queue.toArray(new Runnable[0])) {
+            if (r instanceof Request request && !request.urgent && queue.remove(request)) request.drop();
+        }
+
+        synchronized (memory) {
+            memory.clear();
+            memoryUsed = 0;
+        }
+    }
+
+    /**
+     * Returns the total size of the previews held in memory.
+     *
+     * @return the size in bytes.
+     */
+    public long getMemoryUsed() {
+        synchronized (memory) {
+            return memoryUsed;
+        }
+    }
+
+    /**
+     * Returns the future of a preview, starting a new request if there's none for the key yet.
+     * Urgent requests are counted as cache hits or misses.
+     *
+     * @param key    the preview key.
+     * @param urgent {@code true} if the preview is shown right away.
+     * @return the future of the preview.
+     */
+    private CompletableFuture<BufferedImage> request(Key key, boolean urgent) {
+        synchronized (memory) {
+            BufferedImage image = memory.get(key);
+            if (image != null) {
+                if (urgent) hits.increment();
+                return CompletableFuture.completedFuture(image);
+            }
+        }
+        if (urgent) misses.increment();
+
+        Request created = new Request(key, urgent);
+        Request request = requests.putIfAbsent(key, created);
+        if (request == null) {
+            executor.execute(created);
+            return created.future;
+        }
+
+        if (request.future.isCancelled()) {
+            requests.remove(key, request);
+            return request(key, urgent);
+        }
+
+        if (urgent && !request.urgent && queue.remove(request)) {
+            request.urgent = true;
+            queue.addFirst(request);
+        }
+        return request.future;
+    }
+
+    /**
+     * Decodes a preview.
+     *
+     * @param key the preview key.
+     * @return the preview, or {@code null} if the image can't be decoded.
+     * @throws IOException if an I/O error occurs.
+     */
+    private BufferedImage decode(Key key) throws IOException {
+        BufferedImage image = ImageUtils.readSubsampled(key.path(), key.size());
+        if (image == null) return null;
+
+        double scale = Math.min(1.0, (double) key.size() / Math.max(image.getWidth(), image.getHeight()));
+        if (scale == 1.0) return image;
+
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale)),
+            height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        return ImageUtils.scale(image, width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Puts a preview into the memory cache, evicting the least recently used ones over the limit.
+     *
+     * @param key     the preview key.
+     * @param preview the preview.
+     */
+    private void remember(Key key, BufferedImage preview) {
+        synchronized (memory) {
+            BufferedImage previous = memory.put(key, preview);
+            if (previous != null) memoryUsed -= sizeOf(previous);
+            memoryUsed += sizeOf(preview);
+
+            Iterator<BufferedImage> it = memory.values().iterator();
+            while (memoryUsed > memoryLimit && it.hasNext()) {
+                memoryUsed -= sizeOf(it.next());
+                it.remove();
+            }
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    private static int round(int size) {
+        return Math.max(1, (size + SIZE_STEP - 1) / SIZE_STEP) * SIZE_STEP;
+    }
+
+    /**
+     * The key of a preview: the image file and the size it was decoded for.
+     */
+    private record Key(Path path, int size) { }
+
+    /**
+     * A background request for a single preview.
+     */
+    private class Request implements Runnable {
+        private final Key key;
+        private final CompletableFuture<BufferedImage> future;
+        private volatile boolean urgent;
+
+        private Request(Key key, boolean urgent) {
+            this.key = key;
+            this.future = new CompletableFuture<>();
+            this.urgent = urgent;
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedImage preview = decode(key);
+                if (preview != null) remember(key, preview);
+                future.complete(preview);
+            } catch (IOException e) {
+                future.completeExceptionally(new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                requests.remove(key, this);
+            }
+        }
+
+        /**
+         * Forgets a request that was removed from the queue before it started.
+         */
+        private void drop() {
+            requests.remove(key, this);
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * A work queue serving urgent requests first, newest first, and prefetches in the order they were made.
+     * The oldest prefetches over {@link #MAX_PREFETCH} are dropped.
+     */
+    private class RequestQueue extends LinkedBlockingDeque<Runnable> {
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            if (!(runnable instanceof Request request) || request.urgent) {
+                offerFirst(runnable);
+                return true;
+            }
+
+            offerLast(runnable);
+
+            int prefetches = 0;
+            Iterator<Runnable> it = descendingIterator();
+            while (it.hasNext()) {
+                if (it.next() instanceof Request r && !r.urgent && ++prefetches > MAX_PREFETCH && remove(r)) r.drop();
+            }
+            return true;
+        }
+    }
+}
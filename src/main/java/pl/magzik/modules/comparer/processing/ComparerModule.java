@@ -1,109 +1,223 @@
 package pl.magzik.modules.comparer.processing;
 
+import pl.magzik.base.async.JobScheduler;
 import pl.magzik.modules.base.Module;
 
+import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * The {@code ComparerModule} class is a part of the file comparison processing system.
- * It handles the management of input and output files, manages processing state, and provides methods
+ * It manages the comparison sessions, schedules their tasks, and provides methods
  * to configure comparison settings.
  * <p>
- * This class implements the {@link Module} and {@link ComparerProcessor} interfaces, allowing it to
- * integrate thenLoad other components and perform file comparison operations.
+ * Every comparison is a {@link ComparerSession}, with its own input, output and settings, so several directories
+ * can be compared one after another, or at the same time. The tasks of the sessions are run by a {@link JobScheduler},
+ * at most {@link #setConcurrentSessions(int) a given number} at a time, and the remaining ones wait in a queue.
+ * </p>
+ * <p>
+ * The following properties are fired to the registered listeners, on the thread making the change:
+ * <ul>
+ *     <li>{@code comparer-sessions} - a session was created or removed; the new value is the list of sessions,</li>
+ *     <li>{@code session-state} - the state of a session changed; the source of the event is the session,</li>
+ *     <li>{@code comparer-locked} - another module started or stopped working on the files, see {@link #notifyLock()},</li>
+ *     <li>{@code comparer-processing} - the comparer became busy or idle; it's busy while it's locked,
+ *         or any session is active.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * This class implements the {@link Module} and {@link ComparerPropertyAccess} interfaces, allowing it to
+ * integrate with other components and be configured from the settings.
  * </p>
  */
-public class ComparerModule implements Module, ComparerProcessor {
+public class ComparerModule implements Module, ComparerPropertyAccess {
 
-    private List<File> input;
-    private List<File> output;
-    private boolean pHash, pixelByPixel;
+    private static final int DEFAULT_CONCURRENT_SESSIONS = 2;
+
+    private volatile boolean pHash, pixelByPixel;
+    private final List<ComparerSession> sessions;
+    private final AtomicInteger nextId;
+    private final JobScheduler scheduler;
     private final PropertyChangeSupport pcs;
-    private final ReentrantLock lock;
-    private boolean processing;
+    private final PropertyChangeListener sessionListener;
+    private boolean locked, processing;
 
     /**
-     * Constructs a new {@code ComparerModule} instance thenLoad default values.
+     * Constructs a new {@code ComparerModule} instance with default values.
      */
     public ComparerModule() {
-        this.input = new ArrayList<>();
-        this.output = new ArrayList<>();
         this.pHash = false;
         this.pixelByPixel = false;
+        this.sessions = new CopyOnWriteArrayList<>();
+        this.nextId = new AtomicInteger(1);
+        this.scheduler = new JobScheduler(DEFAULT_CONCURRENT_SESSIONS);
         this.pcs = new PropertyChangeSupport(this);
-        this.lock = new ReentrantLock();
+        this.sessionListener = this::handleSessionChange;
+        this.locked = false;
         this.processing = false;
     }
 
     /**
-     * Acquires the notifyLock for processing and sets the processing state to {@code true}.
-     * This method should be called before starting a processing task to ensure thread safety.
+     * Creates a new session comparing the given directories. The session isn't started until it's submitted,
+     * see {@link #submit(ComparerSession, Supplier)}.
+     *
+     * @param roots    the input directories.
+     * @param settings the settings of the session.
+     * @return the created session.
+     */
+    public ComparerSession createSession(List<File> roots, ComparerSettings settings) {
+        ComparerSession session = new ComparerSession(nextId.getAndIncrement(), roots, settings);
+        session.addPropertyChangeListener(sessionListener);
+
+        sessions.add(session);
+        pcs.firePropertyChange("comparer-sessions", null, List.copyOf(sessions));
+        updateProcessing();
+        return session;
+    }
+
+    /**
+     * Removes a session, cancelling its task if it's queued or running.
+     *
+     * @param session the session to remove.
+     */
+    public void removeSession(ComparerSession session) {
+        session.cancel();
+
+        if (sessions.remove(session)) {
+            pcs.firePropertyChange("comparer-sessions", null, List.copyOf(sessions));
+            updateProcessing();
+        }
+    }
+
+    /**
+     * Returns the sessions, in the order they were created.
+     *
+     * @return the unmodifiable list of sessions.
+     */
+    public List<ComparerSession> getSessions() {
+        return List.copyOf(sessions);
+    }
+
+    /**
+     * Submits the task of a session to the scheduler. The task is started once fewer than the limit
+     * of sessions are running, and the session is attached to it, so cancelling the session cancels the task.
      * <p>
-     * This method uses {@link ReentrantLock} to manage concurrency.
+     * The session is {@link ComparerSession.State#QUEUED} until its task changes the state, and once the task completes,
+     * it's {@link ComparerSession.State#DONE}, {@link ComparerSession.State#CANCELLED} or {@link ComparerSession.State#FAILED}.
      * </p>
+     *
+     * @param session the session.
+     * @param starter starts the task of the session.
+     * @return a future completing with the task.
      */
+    public CompletableFuture<Void> submit(ComparerSession session, Supplier<? extends CompletableFuture<Void>> starter) {
+        session.setState(ComparerSession.State.QUEUED);
+
+        CompletableFuture<Void> job = scheduler.submit(starter);
+        session.setTask(job);
+        job.whenComplete((_, ex) -> session.setState(
+            job.isCancelled() ? ComparerSession.State.CANCELLED
+                : ex != null ? ComparerSession.State.FAILED
+                : ComparerSession.State.DONE
+        ));
+
+        return job;
+    }
+
     @Override
-    public void notifyLock() {
-        lock.lock();
-        try {
-            firePropertyChange("comparer-processing", processing, (processing = true));
-        } finally {
-            lock.unlock();
-        }
+    public void setConcurrentSessions(int sessions) {
+        scheduler.setLimit(sessions);
+    }
+
+    @Override
+    public int getConcurrentSessions() {
+        return scheduler.getLimit();
     }
 
     /**
-     * Releases the notifyLock for processing and sets the processing state to {@code false}.
+     * Notifies listeners that another module works on the files, so no comparison should be started until
+     * {@link #notifyUnlock()} is called. Fires {@code comparer-locked}, and {@code comparer-processing}
+     * if the comparer was idle.
      * <p>
-     * This method should be called after completing a processing task to notifyUnlock the notifyLock and update the state.
+     * This method does not implement actual locking logic; it only notifies listeners
+     * about the change in the resource's availability.
      * </p>
      */
-    @Override
-    public void notifyUnlock(){
-        lock.lock();
-        try {
-            input = new ArrayList<>();
-            output = new ArrayList<>();
-            firePropertyChange("comparer-processing", processing, (processing = false));
-        } finally {
-            lock.unlock();
+    public void notifyLock() {
+        synchronized (this) {
+            locked = true;
         }
+        pcs.firePropertyChange("comparer-locked", false, true);
+        updateProcessing();
     }
 
-    @Override
-    public void handle(List<File> output) {
-        this.output = output;
+    /**
+     * Notifies listeners that the files are no longer worked on by another module.
+     * Fires {@code comparer-locked}, and {@code comparer-processing} if no session is active.
+     */
+    public void notifyUnlock() {
+        synchronized (this) {
+            locked = false;
+        }
+        pcs.firePropertyChange("comparer-locked", true, false);
+        updateProcessing();
     }
 
-    @Override
-    public void addPropertyChangeListener(PropertyChangeListener listener) {
-        pcs.addPropertyChangeListener(listener);
+    /**
+     * Checks if another module works on the files, see {@link #notifyLock()}.
+     *
+     * @return {@code true} if the comparer is locked.
+     */
+    public synchronized boolean isLocked() {
+        return locked;
     }
 
-    public void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
-        pcs.firePropertyChange(propertyName, oldValue, newValue);
+    /**
+     * Checks if the comparer is busy, i.e. it's locked, or any session is active.
+     *
+     * @return {@code true} if the comparer is busy.
+     */
+    public synchronized boolean isProcessing() {
+        return processing;
     }
 
-    @Override
-    public List<File> getInput() {
-        return input;
+    /**
+     * Forwards the state change of a session to the listeners of the module, and updates the busy state.
+     *
+     * @param evt the event of the session.
+     */
+    private void handleSessionChange(PropertyChangeEvent evt) {
+        pcs.firePropertyChange(evt);
+        updateProcessing();
     }
 
-    @Override
-    public void setInput(List<File> input) {
-        Objects.requireNonNull(input);
-        this.input = input;
+    /**
+     * Fires {@code comparer-processing} if the comparer became busy or idle.
+     */
+    private void updateProcessing() {
+        boolean old, now;
+        synchronized (this) {
+            now = locked || sessions.stream().anyMatch(s -> s.getState().isActive());
+            old = processing;
+            processing = now;
+        }
+        if (old != now) pcs.firePropertyChange("comparer-processing", old, now);
     }
 
-    @Override
-    public List<File> getOutput() {
-        return output;
+    /**
+     * Adds a property change listener notified of the properties listed in the class description.
+     *
+     * @param listener the listener to add
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        pcs.addPropertyChangeListener(listener);
     }
 
     @Override
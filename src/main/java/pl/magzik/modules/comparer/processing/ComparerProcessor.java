@@ -6,15 +6,24 @@ import pl.magzik.algorithms.PixelByPixel;
 import pl.magzik.structures.ImageRecord;
 import pl.magzik.structures.Record;
 import pl.magzik.*;
+import pl.magzik.base.async.CancellationToken;
+import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.base.async.PriorityExecutor;
+import pl.magzik.base.async.TaskPriority;
+import pl.magzik.base.diagnostics.ComparisonPassEvent;
+import pl.magzik.base.diagnostics.GroupingEvent;
+import pl.magzik.base.diagnostics.Metrics;
 import pl.magzik.base.interfaces.Processor;
 
 import java.awt.image.BufferedImage;
-import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * An interface for processing image comparison tasks.
@@ -25,66 +34,21 @@ import java.util.function.Function;
  * </p>
  * <p>
  * The comparison strategies include perceptual hash and pixel-by-pixel comparison,
- * and can be configured via methods in {@link ComparerPropertyAccess}.
+ * and are selected by the {@link ComparerSettings} of the processor.
  * </p>
  * <p>
- * This interface also provides methods for managing resource locking and unlocking
- * during processing. Implementations must ensure that resources are properly managed
- * to prevent concurrent access issues.
+ * The processing only touches the state of the processor itself, so separate processors,
+ * e.g. {@link ComparerSession}s, can process at the same time.
  * </p>
  */
-public interface ComparerProcessor extends Processor, ComparerPropertyAccess {
-
-    /**
-     * Notifies listeners that the resource is now locked and should not be accessed.
-     * <p>
-     * This method signals that the resource is currently in a state where it cannot
-     * be used by other components or threads. It is intended to be called before
-     * performing operations that require exclusive access to the resource, ensuring
-     * that other parts of the application are aware of the locked state and act accordingly.
-     * </p>
-     * <p>
-     * Listeners registered thenLoad this method will be notified to update their state or
-     * disable operations that depend on the locked resource.
-     * </p>
-     * <p>
-     * This method does not implement actual locking logic; it only notifies listeners
-     * about the change in the resource's availability. The actual locking and unlocking
-     * operations should be managed by separate mechanisms.
-     * </p>
-     */
-    void notifyLock();
-
-    /**
-     * Notifies listeners that the resource has been unlocked and is now available for use.
-     * <p>
-     * This method signals that the resource is no longer in a locked state and can be accessed
-     * by other components or threads. It should be called after any operations requiring
-     * exclusive access to the resource are completed.
-     * </p>
-     * <p>
-     * The method also triggers property change notifications to inform any registered listeners
-     * that the resource is now available, allowing them to update their state or re-enable operations
-     * that depend on the previously locked resource.
-     * </p>
-     * <p>
-     * This method does not perform the actual unlocking of resources; it only communicates the change
-     * in availability. The actual release of locks and cleanup should be handled separately.
-     * </p>
-     */
-    void notifyUnlock();
+public interface ComparerProcessor extends Processor {
 
     /**
      * Processes the image files according to the configured strategies and handles the results.
      * <p>
      * This method retrieves the input image files using {@link #getInput()}, processes them
-     * based on the configured strategies, and thenLoad handles the resulting files using
-     * {@link #handle(List)}.
-     * </p>
-     * <p>
-     * Before starting the processing, the method should acquire the necessary notifyLock to ensure
-     * thread safety by calling {@link #notifyLock()} before invoking this method. Failing to acquire the notifyLock
-     * beforehand may result in concurrent access issues.
+     * based on the configured strategies, and then handles the resulting files using
+     * {@link #handle(List, Map)}.
      * </p>
      * <p>
      * This method will internally handle the comparison process and manage the output.
@@ -96,8 +60,8 @@ public interface ComparerProcessor extends Processor, ComparerPropertyAccess {
     @Override
     default void process() throws IOException, ExecutionException {
         List<File> input = getInput();
-        List<File> output = compare(input);
-        handle(output);
+        Map<File, File> originals = compare(input);
+        handle(new ArrayList<>(originals.keySet()), originals);
     }
 
     /**
@@ -108,17 +72,37 @@ public interface ComparerProcessor extends Processor, ComparerPropertyAccess {
      * </p>
      *
      * @param input The list of image files to compare.
-     * @return A list of files that are considered duplicates based on the comparison.
+     * @return A map of the files that are considered duplicates to their originals, in the order they were found.
      */
-    private List<File> compare(List<File> input) {
-        return extract(processWithStrategy(input));
+    private Map<File, File> compare(List<File> input) {
+        Map<?, List<Record<BufferedImage>>> records = processWithStrategy(input);
+        CancellationToken.current().throwIfCancelled();
+        return extract(records);
     }
 
     /**
      * Processes the image files using the appropriate strategy based on the current configuration.
      * <p>
      * This method calls {@link RecordProcessor#process(Collection, Function, Algorithm[])} thenLoad the appropriate
-     * functions based on the comparison strategy configured via {@link ComparerPropertyAccess}.
+     * functions based on the comparison strategy configured in the {@link ComparerSettings}.
+     * </p>
+     * <p>
+     * The records are decoded ahead of the processor by an {@link ImageRecordLoader}, which balances the decoding
+     * by the estimated cost of the files, and streams the ready records to the processor, so only a bounded number
+     * of them is held at a time. Files that couldn't be decoded fail to load in the processor,
+     * as they would if it decoded them itself.
+     * </p>
+     * <p>
+     * Once the calling task is cancelled, the remaining files aren't decoded and fail to load,
+     * so the processor finishes quickly, and its result is discarded.
+     * </p>
+     * <p>
+     * Before every record is handed over, the processor yields to CPU work of a higher priority than the calling task,
+     * see {@link PriorityExecutor#yieldTo(TaskPriority)}, so a comparison running in the background doesn't slow down
+     * actions of the user.
+     * </p>
+     * <p>
+     * The whole pass is recorded as a {@link ComparisonPassEvent}.
      * </p>
      *
      * @param input The list of image files to process.
@@ -131,37 +115,84 @@ public interface ComparerProcessor extends Processor, ComparerPropertyAccess {
         RecordProcessor rp = new RecordProcessor();
 
         List<Algorithm<?, ImageRecord>> algorithms = new ArrayList<>();
-        if (isPerceptualHash()) algorithms.add(new PerceptualHash());
-        if (isPixelByPixel()) algorithms.add(new PixelByPixel());
+        ComparerSettings settings = getSettings();
+        if (settings.perceptualHash()) algorithms.add(new PerceptualHash());
+        if (settings.pixelByPixel()) algorithms.add(new PixelByPixel());
+
+        CancellationToken token = CancellationToken.current();
+        TaskPriority priority = TaskPriority.current();
+        ExecutorServiceManager esm = ExecutorServiceManager.getInstance();
+        PriorityExecutor cpu = esm.getCpuExecutor();
+
+        ComparisonPassEvent event = new ComparisonPassEvent();
+        event.begin();
+
+        ImageRecordLoader.Decoding records = new ImageRecordLoader(cpu, esm.getIoExecutor()).load(input);
+
+        Map<?, List<Record<BufferedImage>>> result = rp.process(input, f -> {
+            cpu.yieldTo(priority);
+            if (token.isCancelled()) throw new InterruptedIOException("Comparison cancelled");
+            try {
+                return records.take(f).get();
+            } catch (CancellationException e) {
+                throw new InterruptedIOException("Comparison cancelled");
+            }
+        }, algorithms.toArray(new Algorithm[0]));
 
-        return rp.process(input, ImageRecord::create, algorithms.toArray(new Algorithm[0]));
+        event.end();
+        if (event.shouldCommit()) {
+            event.algorithms = algorithms.stream().map(a -> a.getClass().getSimpleName()).collect(Collectors.joining(", "));
+            event.files = input.size();
+            event.groups = result.size();
+            event.commit();
+        }
+
+        return result;
     }
 
     /**
      * Extracts the files from the map of records, filtering out non-duplicate entries.
      * <p>
-     * This method processes the map to retrieve files that have duplicates based on the comparison.
+     * The first file of every group of equal records is its original, and the remaining ones are its duplicates.
+     * If the first file was already found to be a duplicate in another group, its original is reused,
+     * so every duplicate points to a file that stays in place.
      * </p>
      *
      * @param map The map of records to extract files from.
-     * @return A list of files that are considered duplicates.
+     * @return A map of the files that are considered duplicates to their originals.
      */
-    private List<File> extract(Map<?, List<Record<BufferedImage>>> map) {
+    private Map<File, File> extract(Map<?, List<Record<BufferedImage>>> map) {
+        GroupingEvent event = new GroupingEvent();
+        event.begin();
+
         Set<File> org = new HashSet<>();
-        List<File> output = new ArrayList<>();
+        Map<File, File> output = new LinkedHashMap<>();
 
-        map.entrySet().stream()
-        .filter(e -> e.getValue().size() > 1)
-        .forEach(e -> {
-            List<File> list = new ArrayList<>(e.getValue().stream().map(Record::getFile).toList());
+        map.values().stream()
+        .filter(records -> records.size() > 1)
+        .forEach(records -> {
+            List<File> list = records.stream().map(Record::getFile).toList();
 
-            if (!output.contains(list.getFirst()))
-                org.add(list.removeFirst());
+            File first = list.getFirst();
+            File original = output.getOrDefault(first, first);
+            if (original == first) org.add(first);
 
-            output.addAll(list.stream().filter(f -> !org.contains(f)).toList());
+            list.stream()
+                .skip(1)
+                .filter(f -> !org.contains(f))
+                .forEach(f -> output.putIfAbsent(f, original));
         });
 
-        return output.stream().distinct().toList();
+        Metrics.getInstance().counter("comparer.duplicates").add(output.size());
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.groups = map.size();
+            event.duplicates = output.size();
+            event.commit();
+        }
+
+        return output;
     }
 
     /**
@@ -217,19 +248,24 @@ public interface ComparerProcessor extends Processor, ComparerPropertyAccess {
      * after comparison.
      * </p>
      *
-     * @param output The list of output files to handle.
+     * @param output    The list of output files to handle.
+     * @param originals The map of the output files to the originals they duplicate.
      */
-    void handle(List<File> output);
+    void handle(List<File> output, Map<File, File> originals);
 
     /**
-     * Adds a property change listener to this object.
-     * <p>
-     * The listener will be notified of any changes to the specified property.
-     * </p>
+     * Retrieves the original of a duplicate found by the last comparison.
+     *
+     * @param duplicate the duplicate file.
+     * @return the original file, or {@code null} if the file isn't a known duplicate.
+     */
+    File getOriginal(File duplicate);
+
+    /**
+     * Retrieves the settings the images are compared with.
      *
-     * @param listener the listener to add
-     * @throws NullPointerException if the listener is {@code null}
+     * @return The settings.
      */
-    void addPropertyChangeListener(PropertyChangeListener listener);
+    ComparerSettings getSettings();
 
 }
@@ -33,4 +33,18 @@ public interface ComparerPropertyAccess {
      * @param pixelByPixel {@code true} to enable pixel-by-pixel comparison, {@code false} to disable it
      */
     void setPixelByPixel(boolean pixelByPixel);
+
+    /**
+     * Returns the maximum number of comparison sessions running at the same time.
+     *
+     * @return the maximum number of running sessions
+     */
+    int getConcurrentSessions();
+
+    /**
+     * Sets the maximum number of comparison sessions running at the same time. Further sessions wait in a queue.
+     *
+     * @param sessions the maximum number of running sessions; values below one mean one
+     */
+    void setConcurrentSessions(int sessions);
 }
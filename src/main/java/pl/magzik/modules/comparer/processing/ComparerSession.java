@@ -0,0 +1,195 @@
+package pl.magzik.modules.comparer.processing;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single comparison of a set of input directories, created by the {@link ComparerModule}.
+ * <p>
+ * Every session has its own input, output and {@link ComparerSettings}, so any number of sessions can be queued
+ * or running at the same time without sharing mutable state. Its fields are only replaced as a whole, and are
+ * read without locking, so a session can be inspected from any thread while its task is running.
+ * </p>
+ * <p>
+ * The progress of the session is reported by its {@link State}, and every change of it is fired as
+ * a {@code session-state} property change, on the thread making the change.
+ * </p>
+ */
+public class ComparerSession implements ComparerProcessor {
+
+    /**
+     * The progress of a session.
+     */
+    public enum State {
+        /** The session waits for a free slot of the scheduler. */
+        QUEUED,
+        /** The input directories are being scanned. */
+        LOADING,
+        /** The loaded files are being compared. */
+        COMPARING,
+        /** The duplicates are being moved. */
+        MOVING,
+        /** The session has finished; its output is complete. */
+        DONE,
+        /** The duplicates found by the session have been moved. */
+        MOVED,
+        /** The session was cancelled. */
+        CANCELLED,
+        /** The session has failed. */
+        FAILED;
+
+        /**
+         * Checks if a session in this state still has work to do, or is doing it.
+         *
+         * @return {@code true} if the state is {@link #QUEUED}, {@link #LOADING}, {@link #COMPARING} or {@link #MOVING}.
+         */
+        public boolean isActive() {
+            return this == QUEUED || this == LOADING || this == COMPARING || this == MOVING;
+        }
+    }
+
+    private final int id;
+    private final List<File> roots;
+    private final ComparerSettings settings;
+    private final PropertyChangeSupport pcs;
+
+    private volatile List<File> input;
+    private volatile List<File> output;
+    private volatile Map<File, File> originals;
+    private volatile State state;
+    private volatile CompletableFuture<Void> task;
+
+    /**
+     * Constructs a new {@code ComparerSession}.
+     *
+     * @param id       the number of the session, unique within the application run.
+     * @param roots    the input directories.
+     * @param settings the settings of the session.
+     */
+    ComparerSession(int id, List<File> roots, ComparerSettings settings) {
+        this.id = id;
+        this.roots = List.copyOf(roots);
+        this.settings = Objects.requireNonNull(settings);
+        this.pcs = new PropertyChangeSupport(this);
+
+        this.input = List.of();
+        this.output = List.of();
+        this.originals = Map.of();
+        this.state = State.QUEUED;
+    }
+
+    /**
+     * Returns the number of the session, unique within the application run.
+     *
+     * @return the number.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the input directories of the session.
+     *
+     * @return the unmodifiable list of directories.
+     */
+    public List<File> getRoots() {
+        return roots;
+    }
+
+    @Override
+    public ComparerSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Returns the current state of the session.
+     *
+     * @return the state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Changes the state of the session, firing a {@code session-state} property change.
+     *
+     * @param state the new state.
+     */
+    public void setState(State state) {
+        State old = this.state;
+        this.state = Objects.requireNonNull(state);
+        pcs.firePropertyChange("session-state", old, state);
+    }
+
+    /**
+     * Attaches the running task of the session, so it can be cancelled with {@link #cancel()}.
+     *
+     * @param task the task.
+     */
+    public void setTask(CompletableFuture<Void> task) {
+        this.task = task;
+    }
+
+    /**
+     * Cancels the queued or running task of the session, if there's one.
+     * The state is changed once the task has stopped.
+     */
+    public void cancel() {
+        CompletableFuture<Void> t = task;
+        if (t != null) t.cancel(true);
+    }
+
+    @Override
+    public List<File> getInput() {
+        return input;
+    }
+
+    @Override
+    public void setInput(List<File> input) {
+        Objects.requireNonNull(input);
+        this.input = List.copyOf(input);
+    }
+
+    @Override
+    public List<File> getOutput() {
+        return output;
+    }
+
+    @Override
+    public void handle(List<File> output, Map<File, File> originals) {
+        this.originals = Map.copyOf(originals);
+        this.output = List.copyOf(output);
+    }
+
+    @Override
+    public File getOriginal(File duplicate) {
+        return originals.get(duplicate);
+    }
+
+    /**
+     * Adds a listener notified of the state changes of the session.
+     *
+     * @param listener the listener.
+     */
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        pcs.addPropertyChangeListener(listener);
+    }
+
+    /**
+     * Returns a short description of the session, its number and the names of its input directories,
+     * e.g. {@code #2 Photos}.
+     *
+     * @return the description.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("#").append(id);
+        for (File root : roots) sb.append(' ').append(root.getName().isEmpty() ? root.getPath() : root.getName());
+        return sb.toString();
+    }
+}
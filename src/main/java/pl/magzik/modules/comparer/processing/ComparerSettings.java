@@ -0,0 +1,27 @@
+package pl.magzik.modules.comparer.processing;
+
+import pl.magzik.modules.comparer.persistence.ComparerFilePropertyAccess;
+
+import java.util.Objects;
+
+/**
+ * The settings of a single {@link ComparerSession}, taken when the session is created,
+ * so changing the settings later doesn't affect sessions that are queued or running.
+ *
+ * @param perceptualHash whether the images are compared by their perceptual hashes.
+ * @param pixelByPixel   whether the images are compared pixel by pixel.
+ * @param mode           the mode the input directories are scanned in.
+ * @param outputPath     the directory the duplicates are moved to.
+ */
+public record ComparerSettings(boolean perceptualHash, boolean pixelByPixel, ComparerFilePropertyAccess.Mode mode, String outputPath) {
+
+    /**
+     * Constructs {@code ComparerSettings}.
+     *
+     * @throws NullPointerException if the mode or the output path is {@code null}.
+     */
+    public ComparerSettings {
+        Objects.requireNonNull(mode);
+        Objects.requireNonNull(outputPath);
+    }
+}
@@ -0,0 +1,274 @@
+package pl.magzik.modules.comparer.processing;
+
+import pl.magzik.base.ImageUtils;
+import pl.magzik.base.async.CancellationToken;
+import pl.magzik.base.async.PriorityExecutor;
+import pl.magzik.base.async.TaskPriority;
+import pl.magzik.base.diagnostics.ImageDecodeEvent;
+import pl.magzik.base.diagnostics.LatencyHistogram;
+import pl.magzik.base.diagnostics.Metrics;
+import pl.magzik.structures.ImageRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes the records of the compared images ahead of the comparison, balancing the work across the CPU threads.
+ * <p>
+ * Decoding costs differ by orders of magnitude between small icons and large scans, so the files are decoded
+ * one at a time, in the order of their estimated cost, the most expensive first. Every CPU thread takes the next
+ * file as soon as it's done with the previous one, see {@link PriorityExecutor#forEach}, so the large files are
+ * spread over all threads at the start, and the small ones fill the gaps at the end. No thread is left
+ * with a large file while the others are idle. The workers step aside between the files whenever work
+ * of a higher priority is queued.
+ * </p>
+ * <p>
+ * The records are streamed to the comparison rather than decoded all at once, so the memory used by the decoded
+ * records doesn't grow with the number of compared files. The files are split, in their input order, into windows
+ * of {@value #WINDOW_PER_THREAD} files per CPU thread, and the files of a window are decoded largest first.
+ * A window is decoded while the comparison takes the records of the previous one, and every record is dropped
+ * once it's taken, see {@link Decoding#take(File)}.
+ * </p>
+ * <p>
+ * The cost of a file is estimated by its pixel count, read from the image header, or by its size if the header
+ * can't be read. The headers are read concurrently on the I/O executor.
+ * </p>
+ * <p>
+ * Every decoded file is recorded as an {@link ImageDecodeEvent} and in the {@code comparer.decode} histogram,
+ * and every window in the {@code comparer.decode.window} histogram of the {@link Metrics}.
+ * </p>
+ */
+class ImageRecordLoader {
+
+    private static final int WINDOW_PER_THREAD = 16;
+
+    private final PriorityExecutor cpuExecutor;
+    private final Executor ioExecutor;
+    private final LatencyHistogram decodeTime, windowTime;
+
+    /**
+     * Constructs an {@code ImageRecordLoader}.
+     *
+     * @param cpuExecutor the executor decoding the files.
+     * @param ioExecutor  the executor reading the headers of the files.
+     */
+    ImageRecordLoader(PriorityExecutor cpuExecutor, Executor ioExecutor) {
+        this.cpuExecutor = Objects.requireNonNull(cpuExecutor);
+        this.ioExecutor = Objects.requireNonNull(ioExecutor);
+
+        Metrics metrics = Metrics.getInstance();
+        this.decodeTime = metrics.histogram("comparer.decode");
+        this.windowTime = metrics.histogram("comparer.decode.window");
+    }
+
+    /**
+     * Starts decoding the records of the files with the priority and the cancellation of the calling task.
+     * A file that can't be decoded doesn't stop the others; its failure is kept in its result instead.
+     * <p>
+     * Once the calling task is cancelled, the remaining files aren't decoded.
+     * </p>
+     *
+     * @param files the files to decode.
+     * @return the decoding, handing over the records.
+     */
+    Decoding load(List<File> files) {
+        return new Decoding(files, CancellationToken.current(), TaskPriority.current());
+    }
+
+    /**
+     * The records of the files being decoded, taken by the comparison.
+     */
+    final class Decoding {
+
+        private final List<List<File>> windows;
+        private final Map<File, Integer> windowOf;
+        private final List<CompletableFuture<Void>> decoded;
+        private final Map<File, Result> results;
+        private final CancellationToken token;
+        private final TaskPriority priority;
+
+        /**
+         * Splits the files into windows, and starts decoding the first two.
+         *
+         * @param files    the files.
+         * @param token    the token of the calling task.
+         * @param priority the priority of the calling task.
+         */
+        private Decoding(List<File> files, CancellationToken token, TaskPriority priority) {
+            this.token = token;
+            this.priority = priority;
+            this.results = new ConcurrentHashMap<>();
+            this.windowOf = new HashMap<>();
+
+            int size = Math.max(1, cpuExecutor.getMaximumPoolSize() * WINDOW_PER_THREAD);
+            this.windows = new ArrayList<>();
+            for (int from = 0; from < files.size(); from += size) {
+                List<File> window = files.subList(from, Math.min(files.size(), from + size));
+                for (File file : window) windowOf.put(file, windows.size());
+                windows.add(window);
+            }
+            this.decoded = new ArrayList<>(Collections.nCopies(windows.size(), null));
+
+            start(0);
+        }
+
+        /**
+         * Returns the record of a file, waiting until it's decoded, and drops it from the decoding.
+         * The file is decoded on the calling thread if it isn't part of the decoding, or was already taken.
+         * Taking a file of a window starts decoding the next one.
+         *
+         * @param file the file.
+         * @return the result of the file.
+         * @throws java.util.concurrent.CancellationException if the calling task was cancelled.
+         */
+        Result take(File file) {
+            Integer window = windowOf.get(file);
+            if (window != null) {
+                token.await(start(window));
+
+                Result result = results.remove(file);
+                if (result != null) return result;
+            }
+
+            token.throwIfCancelled();
+            return decode(new Job(file, file.length(), -1));
+        }
+
+        /**
+         * Starts decoding a window, and the one after it, unless they're already started.
+         *
+         * @param window the index of the window.
+         * @return the future of the window, completed once its files are decoded.
+         */
+        private synchronized CompletableFuture<Void> start(int window) {
+            if (window + 1 < windows.size() && decoded.get(window + 1) == null) startWindow(window + 1);
+            if (window >= windows.size()) return CompletableFuture.completedFuture(null);
+
+            CompletableFuture<Void> future = decoded.get(window);
+            return future != null ? future : startWindow(window);
+        }
+
+        /**
+         * Estimates the costs of the files of a window, and decodes them on the CPU executor, the most expensive first.
+         *
+         * @param window the index of the window.
+         * @return the future of the window.
+         */
+        private CompletableFuture<Void> startWindow(int window) {
+            long begin = System.nanoTime();
+
+            CompletableFuture<Void> future = estimate(windows.get(window), token)
+                .thenCompose(jobs -> cpuExecutor.forEach(jobs, priority, job -> {
+                    if (!token.isCancelled()) results.put(job.file(), decode(job));
+                }))
+                .whenComplete((_, _) -> windowTime.record(System.nanoTime() - begin));
+
+            decoded.set(window, future);
+            return future;
+        }
+    }
+
+    /**
+     * Estimates the costs of the files, and sorts them by their costs, the most expensive first.
+     *
+     * @param files the files.
+     * @param token the token of the calling task.
+     * @return a future completed with the sorted jobs.
+     */
+    private CompletableFuture<List<Job>> estimate(List<File> files, CancellationToken token) {
+        List<CompletableFuture<Job>> futures = new ArrayList<>(files.size());
+        for (File file : files) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                long bytes = file.length();
+                long pixels = token.isCancelled() ? -1 : ImageUtils.readPixelCount(file.toPath());
+                return new Job(file, bytes, pixels);
+            }, ioExecutor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                                .thenApply(_ -> futures.stream()
+                                                       .map(CompletableFuture::join)
+                                                       .sorted(Comparator.comparingLong(Job::cost).reversed())
+                                                       .toList());
+    }
+
+    /**
+     * Decodes a single file into a record. Unchecked failures of the decoder, e.g. on a corrupted file,
+     * are kept in the result like I/O failures, so they don't stop the other files.
+     *
+     * @param job the job of the file.
+     * @return the result of the file.
+     */
+    private Result decode(Job job) {
+        ImageDecodeEvent event = new ImageDecodeEvent();
+        event.begin();
+
+        Result result;
+        try (var _ = decodeTime.time()) {
+            result = new Result(ImageRecord.create(job.file()), null);
+        } catch (IOException e) {
+            result = new Result(null, e);
+        } catch (RuntimeException e) {
+            result = new Result(null, new IOException("Could not decode " + job.file() + ": " + e, e));
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = job.file().getPath();
+            event.bytes = job.bytes();
+            event.pixels = job.pixels();
+            event.commit();
+        }
+
+        return result;
+    }
+
+    /**
+     * The result of decoding a single file: either its record, or the reason it couldn't be decoded.
+     *
+     * @param record  the record, or {@code null} if the file couldn't be decoded.
+     * @param failure the failure, or {@code null} if the file was decoded.
+     */
+    record Result(ImageRecord record, IOException failure) {
+
+        /**
+         * Returns the record, or throws the failure.
+         *
+         * @return the record.
+         * @throws IOException if the file couldn't be decoded.
+         */
+        ImageRecord get() throws IOException {
+            if (failure != null) throw failure;
+            return record;
+        }
+    }
+
+    /**
+     * A file to decode, with its estimated cost.
+     *
+     * @param file   the file.
+     * @param bytes  the size of the file.
+     * @param pixels the pixel count from the header, or {@code -1} if it's unknown.
+     */
+    private record Job(File file, long bytes, long pixels) {
+
+        /**
+         * Returns the estimated cost of decoding the file: its pixel count, or its size if the pixel count is unknown.
+         *
+         * @return the cost.
+         */
+        long cost() {
+            return pixels > 0 ? pixels : bytes;
+        }
+    }
+}
@@ -1,27 +1,46 @@
 package pl.magzik.modules.gallery;
 
 import pl.magzik.base.async.AsyncTaskFactory;
+import pl.magzik.base.async.CancellationToken;
+import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.base.diagnostics.Counter;
+import pl.magzik.base.diagnostics.LatencyHistogram;
+import pl.magzik.base.diagnostics.Metrics;
 import pl.magzik.base.interfaces.FileHandler;
 import pl.magzik.base.interfaces.FileUtils;
 import pl.magzik.modules.base.Package;
+import pl.magzik.modules.gallery.fingerprint.GalleryFingerprinter;
 import pl.magzik.modules.gallery.management.GalleryManagement;
 import pl.magzik.modules.gallery.management.GalleryManagementModule;
 import pl.magzik.modules.gallery.operations.GalleryOperations;
 import pl.magzik.modules.gallery.operations.GalleryOperationsModule;
 import pl.magzik.modules.gallery.operations.GalleryPropertyAccess;
+import pl.magzik.modules.gallery.persistence.GalleryJsonLines;
 import pl.magzik.modules.gallery.persistence.GalleryFileModule;
 import pl.magzik.modules.gallery.table.GalleryEntry;
+import pl.magzik.modules.gallery.table.GalleryTagQuery;
 import pl.magzik.modules.gallery.table.TablePropertyAccess;
+import pl.magzik.modules.gallery.thumbnail.ThumbnailCache;
 
 import javax.swing.*;
 import javax.swing.table.TableModel;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -30,15 +49,34 @@ import java.util.stream.Collectors;
  * It coordinates
  * between various modules including file handling, management, and operations.
  * This class implements the {@code AsyncTaskFactory} interface.
+ * <p>
+ * The durations of the long-running operations, and the number of scanned and added files,
+ * are reported to the {@link Metrics} under the {@code gallery.} prefix.
+ * </p>
  */
 public class GalleryCoordinator implements AsyncTaskFactory {
 
+    /**
+     * Number of imported entries inserted into the gallery at once.
+     */
+    private static final int IMPORT_BATCH_SIZE = 10_000;
+
+    /**
+     * Number of entries copied out of the gallery at once during an export.
+     */
+    private static final int EXPORT_BATCH_SIZE = 10_000;
+
     private final GalleryManagement gm;
     private final FileHandler fh;
     private final FileUtils fu;
     private final GalleryOperations go;
     private final GalleryPropertyAccess gpa;
     private final GalleryPackage gp;
+    private final GalleryFingerprinter gf;
+    private final ThumbnailCache tc;
+
+    private final Counter filesScanned, filesAdded;
+    private final LatencyHistogram addTime, deleteTime, distinctTime, unifyTime, searchTime, importTime, exportTime;
 
     /**
      * Constructs a {@code GalleryCoordinator} and initializes the necessary modules.
@@ -54,6 +92,19 @@ public class GalleryCoordinator implements AsyncTaskFactory {
         this.gpa = gom;
 
         this.gp = new GalleryPackage(gmm, gfm, gom);
+        this.gf = new GalleryFingerprinter(ExecutorServiceManager.getInstance().getCpuExecutor());
+        this.tc = new ThumbnailCache();
+
+        Metrics metrics = Metrics.getInstance();
+        this.filesScanned = metrics.counter("gallery.files.scanned");
+        this.filesAdded = metrics.counter("gallery.files.added");
+        this.addTime = metrics.histogram("gallery.add");
+        this.deleteTime = metrics.histogram("gallery.delete");
+        this.distinctTime = metrics.histogram("gallery.distinct");
+        this.unifyTime = metrics.histogram("gallery.unify_names");
+        this.searchTime = metrics.histogram("gallery.search");
+        this.importTime = metrics.histogram("gallery.import");
+        this.exportTime = metrics.histogram("gallery.export");
     }
 
     /**
@@ -68,7 +119,7 @@ public class GalleryCoordinator implements AsyncTaskFactory {
     // Handle Tasks
 
     /**
-     * Adds images to the gallery.
+     * Adds images to the gallery and computes their fingerprints.
      *
      * @param input a collection of image file paths to add
      */
@@ -77,24 +128,20 @@ public class GalleryCoordinator implements AsyncTaskFactory {
                                 .map(File::new)
                                 .toList();
 
-        try {
+        try (var _ = addTime.time()) {
             files = fh.loadFiles(files);
-            gm.addItems(files);
-            gp.saveGalleryItems();
-        } catch (IOException e) {
-            throw new CompletionException(e);
-        }
-    }
+            filesScanned.add(files.size());
 
-    /**
-     * Removes images from the gallery by their indexes.
-     *
-     * @param indexes the indexes of images to remove
-     */
-    public void handleRemoveImages(Collection<Integer> indexes) {
-        gm.removeItems(indexes);
+            List<GalleryEntry> entries = files.stream()
+                                                .filter(f -> !gm.contains(f))
+                                                .map(File::toPath)
+                                                .map(GalleryEntry::new)
+                                                .toList();
+
+            CancellationToken.current().await(gf.fingerprint(entries));
+            gm.addEntries(entries);
+            filesAdded.add(entries.size());
 
-        try {
             gp.saveGalleryItems();
         } catch (IOException e) {
             throw new CompletionException(e);
@@ -103,8 +150,11 @@ public class GalleryCoordinator implements AsyncTaskFactory {
 
     /**
      * Removes specified files from the gallery.
+     * <p>
+     * The images are given by their files rather than their rows, see {@link #handleAddTag(Collection, String)}.
+     * </p>
      *
-     * @param files the files to remove
+     * @param files the files to remove, see {@link #getFiles(Collection)}
      * @throws IOException if an I/O error occurs
      */
     public void handleRemoveFiles(Collection<File> files) throws IOException {
@@ -113,14 +163,15 @@ public class GalleryCoordinator implements AsyncTaskFactory {
     }
 
     /**
-     * Deletes images from the gallery by their indexes and deletes the corresponding files.
+     * Removes images from the gallery and deletes their files.
+     * Only the files that were actually removed from the gallery are deleted, so images removed meanwhile
+     * by another task are left alone.
      *
-     * @param integers the indexes of images to delete
+     * @param files the files to delete, see {@link #getFiles(Collection)}
      */
-    public void handleDeleteImages(Collection<Integer> integers) {
-        List<File> files = gm.removeItems(integers);
-        try {
-            fh.deleteFiles(files);
+    public void handleDeleteFiles(Collection<File> files) {
+        try (var _ = deleteTime.time()) {
+            fh.deleteFiles(gm.removeElements(files));
 
             gp.saveGalleryItems();
         } catch (IOException e) {
@@ -128,71 +179,288 @@ public class GalleryCoordinator implements AsyncTaskFactory {
         }
     }
 
+    /**
+     * Finds duplicates among the specified images using their stored fingerprints.
+     * <p>
+     * Images are never decoded again for this purpose. Only entries added by older versions,
+     * which have no fingerprints yet, are fingerprinted here once, and the gallery is saved afterward.
+     * </p>
+     *
+     * @param files      the images to check, see {@link #getFiles(Collection)}; images no longer in the gallery are skipped
+     * @param perceptual {@code true} to treat visually identical images as duplicates
+     * @param exact      {@code true} to treat byte-identical files as duplicates
+     * @return the duplicate files; the first image of each group is kept and not returned
+     */
+    public List<File> handleDistinct(Collection<File> files, boolean perceptual, boolean exact) {
+        try (var _ = distinctTime.time()) {
+            return distinct(files, perceptual, exact);
+        }
+    }
+
+    /**
+     * Finds duplicates among the specified images, see {@link #handleDistinct(Collection, boolean, boolean)}.
+     *
+     * @param files      the images to check
+     * @param perceptual {@code true} to treat visually identical images as duplicates
+     * @param exact      {@code true} to treat byte-identical files as duplicates
+     * @return the duplicate files
+     */
+    private List<File> distinct(Collection<File> files, boolean perceptual, boolean exact) {
+        List<GalleryEntry> entries = files.stream()
+                                            .map(gm::getEntry)
+                                            .filter(Objects::nonNull)
+                                            .toList();
+
+        if (CancellationToken.current().await(gf.fingerprint(entries)) > 0) {
+            gm.updateEntries(entries.stream().collect(Collectors.toMap(GalleryEntry::getPath, Function.identity())));
+            try {
+                gp.saveGalleryItems();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }
+
+        return gf.findDuplicates(entries, perceptual, exact);
+    }
+
     /**
      * Opens images in the default image viewer.
      *
-     * @param indexes the indexes of images to open
+     * @param files the images to open, see {@link #getFiles(Collection)}
      * @throws IOException if an I/O error occurs
      */
-    public void handleOpen(Collection<Integer> indexes) throws IOException {
-        for (Integer index : indexes) {
-            File f = gm.getFile(index);
+    public void handleOpen(Collection<File> files) throws IOException {
+        for (File f : files) {
             go.openImage(f);
         }
     }
 
     /**
      * Unifies the names of the images in the gallery by normalizing them.
+     * <p>
+     * Renaming stops at the first error, or once the task is cancelled. The gallery then keeps
+     * the renamed files under their new names, and the remaining ones under the old names.
+     * The entries keep their tags and fingerprints, so the renamed files don't have to be fingerprinted again.
+     * </p>
      */
     public void handleUnifyNames() {
-        List<File> oldFiles = gm.getEntries().stream()
-                                                .map(GalleryEntry::getPath)
-                                                .map(Path::toFile)
+        try (var _ = unifyTime.time()) {
+            unifyNames();
+        }
+    }
+
+    /**
+     * Unifies the names of the images in the gallery, see {@link #handleUnifyNames()}.
+     */
+    private void unifyNames() {
+        List<GalleryEntry> entries = gm.getEntries().stream()
+                                                .filter(e -> !e.isMissing())
                                                 .toList();
+        List<File> oldFiles = entries.stream()
+                                     .map(GalleryEntry::getPath)
+                                     .map(Path::toFile)
+                                     .toList();
 
-        gm.removeElements(oldFiles);
         List<File> newFiles = go.normalizeNames(oldFiles);
+
+        CancellationToken token = CancellationToken.current();
+        IOException failure = null;
+        int renamed = 0;
         try {
-            fu.renameFiles(oldFiles, newFiles);
+            for (; renamed < oldFiles.size() && !token.isCancelled(); renamed++) {
+                fu.renameFile(oldFiles.get(renamed), newFiles.get(renamed));
+            }
         } catch (IOException e) {
-            throw new CompletionException(e);
+            failure = e;
         }
 
-        gm.addItems(newFiles);
+        // The renamed entries keep their tags and fingerprints, only their paths change.
+        Map<Path, GalleryEntry> updates = new LinkedHashMap<>();
+        for (int i = 0; i < renamed; i++) {
+            GalleryEntry entry = entries.get(i);
+            Path oldPath = entry.getPath();
+            entry.relink(newFiles.get(i).toPath());
+            updates.put(oldPath, entry);
+        }
+        gm.updateEntries(updates);
 
         try {
             gp.saveGalleryItems();
         } catch (IOException e) {
-            throw new CompletionException(e);
+            if (failure == null) failure = e;
         }
+
+        if (failure != null) throw new CompletionException(failure);
     }
 
     /**
      * Adds a tag to the specified images.
+     * <p>
+     * The images are given by their files rather than their rows, since the rows may shift while the task waits,
+     * e.g. when images are added or removed by another task. Images no longer in the gallery are skipped.
+     * </p>
      *
-     * @param indexes the indexes of images to tag
+     * @param files   the images to tag, see {@link #getFiles(Collection)}
      * @param tagName the tag to add
      * @throws IOException if an I/O error occurs
      */
-    public void handleAddTag(Collection<Integer> indexes, String tagName) throws IOException {
-        gm.addTagToAll(indexes, tagName);
+    public void handleAddTag(Collection<File> files, String tagName) throws IOException {
+        handleAddTags(files, List.of(tagName));
+    }
+
+    /**
+     * Adds several tags to the specified images, saving the gallery once, see {@link #handleAddTag(Collection, String)}.
+     *
+     * @param files the images to tag
+     * @param tags  the tags to add
+     * @throws IOException if an I/O error occurs
+     */
+    public void handleAddTags(Collection<File> files, Collection<String> tags) throws IOException {
+        gm.addTagsToFiles(files, tags);
         gp.saveGalleryItems();
     }
 
     /**
-     * Removes a tag from the specified images.
+     * Removes a tag from the specified images, see {@link #handleAddTag(Collection, String)}.
      *
-     * @param indexes the indexes of images to untag
+     * @param files   the images to untag
      * @param tagName the tag to remove
      * @throws IOException if an I/O error occurs
      */
-    public void handleRemoveTag(Collection<Integer> indexes, String tagName) throws IOException {
-        gm.removeTagFromAll(indexes, tagName);
+    public void handleRemoveTag(Collection<File> files, String tagName) throws IOException {
+        handleRemoveTags(files, List.of(tagName));
+    }
+
+    /**
+     * Removes several tags from the specified images, saving the gallery once, see {@link #handleAddTag(Collection, String)}.
+     *
+     * @param files the images to untag
+     * @param tags  the tags to remove
+     * @throws IOException if an I/O error occurs
+     */
+    public void handleRemoveTags(Collection<File> files, Collection<String> tags) throws IOException {
+        gm.removeTagsFromFiles(files, tags);
         gp.saveGalleryItems();
     }
 
+    /**
+     * Renames a tag in the whole gallery. The gallery is saved only if any image carried the tag.
+     *
+     * @param oldTag the current name of the tag
+     * @param newTag the new name of the tag
+     * @return the number of images that carried the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public int handleRenameTag(String oldTag, String newTag) throws IOException {
+        int renamed = gm.renameTag(oldTag, newTag);
+        if (renamed > 0) gp.saveGalleryItems();
+        return renamed;
+    }
+
+    /**
+     * Searches the gallery images using the search and tag indexes.
+     * Both conditions have to be met.
+     *
+     * @param query    the text to look for in names and tags, case-insensitive
+     * @param tagQuery the tag query, or {@code null}
+     * @return the stable row ids of the matching images, or {@code null} if neither condition is set
+     */
+    public BitSet handleSearch(String query, GalleryTagQuery tagQuery) {
+        try (var _ = searchTime.time()) {
+            BitSet names = gm.search(query);
+            BitSet tags = gm.searchTags(tagQuery);
+
+            if (names == null) return tags;
+            if (tags != null) names.and(tags);
+            return names;
+        }
+    }
+
+    /**
+     * Imports gallery entries from a JSON Lines file into the active collection.
+     * <p>
+     * The file is streamed, and entries are inserted in batches, so it's never held in memory as a whole.
+     * Afterward, the collection is saved and the imported files are checked in the background.
+     * </p>
+     *
+     * @param input the path of the file to import
+     * @see GalleryJsonLines
+     */
+    public void handleImport(String input) {
+        try (var _ = importTime.time();
+             BufferedReader reader = Files.newBufferedReader(Path.of(input), StandardCharsets.UTF_8)) {
+            GalleryJsonLines.read(reader, IMPORT_BATCH_SIZE, gm::addEntries);
+            gp.saveGalleryItems();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+
+        gp.reconcileGalleryItems();
+    }
+
+    /**
+     * Exports the entries of the active collection into a JSON Lines file.
+     * The entries are copied and written a batch at a time, so memory use doesn't depend on the size of the gallery.
+     *
+     * @param output the path of the file to write
+     * @see GalleryJsonLines
+     */
+    public void handleExport(String output) {
+        try (var _ = exportTime.time();
+             BufferedWriter writer = Files.newBufferedWriter(Path.of(output), StandardCharsets.UTF_8)) {
+            GalleryJsonLines.write(gm.getEntries(EXPORT_BATCH_SIZE), writer);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Saves the active collection and opens another one.
+     *
+     * @param name the name of the collection to open
+     */
+    public void handleSwitchCollection(String name) {
+        try {
+            gp.switchCollection(name);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Creates a new, empty collection and opens it.
+     *
+     * @param name the name of the new collection
+     */
+    public void handleCreateCollection(String name) {
+        try {
+            gp.createCollection(name);
+            gp.switchCollection(name);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
     // Delegated getters
 
+    /**
+     * Returns the names of all gallery collections.
+     *
+     * @return the collection names
+     */
+    public List<String> getCollectionNames() {
+        return gp.getCollectionNames();
+    }
+
+    /**
+     * Returns the name of the active gallery collection.
+     *
+     * @return the active collection name
+     */
+    public String getActiveCollection() {
+        return gp.getActiveCollection();
+    }
+
     /**
      * Returns a list of all tags in the gallery.
      *
@@ -204,15 +472,13 @@ public class GalleryCoordinator implements AsyncTaskFactory {
 
     /**
      * Returns all tags that are associated with the selected gallery items.
+     * It's answered by the tag index, so it's cheap enough for the Event Dispatch Thread.
      *
      * @param indexes the indexes of the selected gallery items
      * @return a set of all tags in the selection
      */
     public Set<String> getAllTagsInSelection(Collection<Integer> indexes) {
-        return indexes.stream()
-                        .map(gm::getItemTags)
-                        .flatMap(List::stream)
-                        .collect(Collectors.toSet());
+        return new LinkedHashSet<>(gm.getItemTags(indexes));
     }
 
     /**
@@ -261,6 +527,15 @@ public class GalleryCoordinator implements AsyncTaskFactory {
         return gpa;
     }
 
+    /**
+     * Returns the cache providing the thumbnails of the gallery images.
+     *
+     * @return the thumbnail cache
+     */
+    public ThumbnailCache getThumbnailCache() {
+        return tc;
+    }
+
     /**
      * Returns the {@code TablePropertyAccess} instance for the gallery table.
      *
@@ -1,25 +1,43 @@
 package pl.magzik.modules.gallery;
 
+import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.modules.base.Module;
 import pl.magzik.modules.base.ModuleLoadException;
 import pl.magzik.modules.base.Package;
 import pl.magzik.modules.gallery.management.GalleryManagementModule;
 import pl.magzik.modules.gallery.operations.GalleryOperationsModule;
+import pl.magzik.modules.gallery.persistence.GalleryCollections;
 import pl.magzik.modules.gallery.persistence.GalleryFileModule;
+import pl.magzik.modules.gallery.persistence.GalleryReconciler;
 import pl.magzik.modules.gallery.table.GalleryEntry;
-import pl.magzik.modules.gallery.table.GalleryTableModelHandler;
 import pl.magzik.modules.resource.ResourceModule;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * The {@code GalleryPackage} class is a package that combines various modules
  * for managing, operating, and persisting a gallery.
  * This package handles the
- * loading and saving of gallery items, ensuring that all necessary files are present.
+ * loading and saving of gallery items. The gallery is split into named collections, each stored
+ * in its own shard file (see {@link GalleryCollections}), and only the active one is loaded.
+ * Missing files don't prevent the gallery from loading; they are detected in the background
+ * by the {@link GalleryReconciler} and flagged in the table.
+ * <p>
+ * The package depends on the {@link ResourceModule}, which holds the legacy gallery file. When the package is loaded,
+ * only the collection index is read; the items of the active collection are read in the background and added
+ * to the table once they're ready, so the startup doesn't wait for them. Saving or switching the collection waits
+ * until they're loaded, so a partially loaded collection is never written back.
+ * </p>
  */
 @SuppressWarnings({"unused", "FieldCanBeLocal"})
 public class GalleryPackage extends Package {
@@ -27,6 +45,8 @@ public class GalleryPackage extends Package {
     private final GalleryManagementModule galleryManagementModule;
     private final GalleryFileModule galleryFileModule;
     private final GalleryOperationsModule galleryOperationsModule;
+    private final GalleryCollections collections;
+    private volatile CompletableFuture<Void> loading;
 
     /**
      * Constructs a {@code GalleryPackage} with the specified management, file, and operations modules.
@@ -40,65 +60,237 @@ public class GalleryPackage extends Package {
         this.galleryManagementModule = galleryManagementModule;
         this.galleryFileModule = galleryFileModule;
         this.galleryOperationsModule = galleryOperationsModule;
+        this.collections = new GalleryCollections();
+        this.loading = CompletableFuture.completedFuture(null);
     }
 
+    @Override
+    public Collection<Module> getDependencies() {
+        List<Module> dependencies = new ArrayList<>(super.getDependencies());
+        dependencies.add(ResourceModule.getInstance());
+        return dependencies;
+    }
+
+    /**
+     * Opens the collection index, and starts loading the items of the active collection in the background.
+     *
+     * @throws ModuleLoadException if the collection index can't be read
+     */
     @Override
     public void onModulesLoaded() throws ModuleLoadException {
         try {
-            loadGalleryItems();
-        } catch (IOException e) {
+            collections.open();
+        } catch (IOException | IllegalArgumentException e) {
             throw new ModuleLoadException(e);
         }
+
+        startLoading(collections.getActive(), ExecutorServiceManager.getInstance().getIoExecutor())
+            .exceptionally(ex -> {
+                System.err.println("Could not load the gallery: " + ex.getMessage()); // Todo, change for other more advance logging
+                return null;
+            });
     }
 
     /**
-     * Loads gallery items from persistent storage. Validates the entries and adds them to the gallery table model.
+     * Starts loading the items of a collection on the given executor.
+     * <p>
+     * The future of the loading is published before the loading can start, so a concurrent save always waits for it,
+     * and never writes back a partially loaded collection. Once the items are loaded, their files are checked
+     * in the background, see {@link #reconcileGalleryItems(String, List)}.
+     * </p>
      *
-     * @throws IOException if the gallery entries contain paths to missing files
+     * @param collection the name of the collection to load
+     * @param executor   the executor the items are loaded on
+     * @return the future of the loading
      */
-    private void loadGalleryItems() throws IOException {
-        GalleryTableModelHandler gtmh = galleryManagementModule.getTableModel();
+    private CompletableFuture<Void> startLoading(String collection, Executor executor) {
+        CompletableFuture<List<GalleryEntry>> load = new CompletableFuture<>();
+        CompletableFuture<Void> loaded = load.thenApply(_ -> null);
+        loading = loaded;
 
-        Object obj = ResourceModule.getInstance().getObject("gallery.tp");
-        if (obj == null) {
-            ResourceModule.getInstance().addObject("gallery.tp", new ArrayList<>());
-            return;
+        loaded.thenRunAsync(
+            () -> reconcileGalleryItems(collection, load.join()),
+            ExecutorServiceManager.getInstance().getIoExecutor()
+        );
+
+        executor.execute(() -> {
+            try {
+                load.complete(loadGalleryItems(collection));
+            } catch (IOException | RuntimeException e) {
+                load.completeExceptionally(e);
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Waits until the items of the active collection, loaded in the background, are in the table.
+     *
+     * @return {@code true} if they were loaded, {@code false} if the loading failed
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    private boolean awaitGalleryItems() throws InterruptedIOException {
+        try {
+            loading.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading the gallery");
+        } catch (ExecutionException e) {
+            return false;
         }
+    }
+
+    /**
+     * Loads the items of a collection from its shard file and adds them to the gallery table model.
+     *
+     * @param collection the name of the collection to load
+     * @return the loaded entries
+     * @throws IOException if the shard file can't be read
+     * @throws IllegalArgumentException if the shard file is not of the expected type
+     */
+    private List<GalleryEntry> loadGalleryItems(String collection) throws IOException {
+        List<GalleryEntry> entries = collections.load(collection);
+        if (!entries.isEmpty()) galleryManagementModule.getTableModel().addEntries(entries);
+
+        return entries;
+    }
+
+    /**
+     * Checks the loaded entries against the file system without blocking the startup.
+     * <p>
+     * Missing files are flagged, moved files are re-linked when they can be found unambiguously,
+     * and stale attributes are refreshed. Only the counts are logged, since the table already marks the missing entries. The table is updated once, and the collection is saved
+     * only if anything changed and it's still the active one. The result is applied on the I/O executor,
+     * never on the thread that loaded the collection, since saving waits for the loading.
+     * </p>
+     *
+     * @param collection the name of the collection the entries belong to
+     * @param entries    the loaded gallery entries
+     */
+    private void reconcileGalleryItems(String collection, List<GalleryEntry> entries) {
+        if (entries.isEmpty()) return;
+
+        ExecutorService io = ExecutorServiceManager.getInstance().getIoExecutor();
+        GalleryReconciler reconciler = new GalleryReconciler(io);
+
+        reconciler.reconcile(entries)
+            .thenAcceptAsync(result -> {
+                if (!collection.equals(collections.getActive())) return;
 
-        List<GalleryEntry> entries = validateEntryList(obj);
-        if (!entries.stream().map(GalleryEntry::getPath).allMatch(Files::exists))
-            throw new IOException(
-                    entries.stream()
-                            .map(e -> String.format("Missing file: %s", e.getPath().toString()))
-                            .collect(Collectors.joining("\n"))
-            );
+                galleryManagementModule.getTableModel().updateEntries(result.updates());
 
-        gtmh.addEntries(entries);
+                if (!result.relinked().isEmpty() || !result.missing().isEmpty())
+                    System.err.printf("Gallery reconciled: %d re-linked, %d missing of %d entries%n",
+                        result.relinked().size(), result.missing().size(), entries.size()); // Todo, change for other more advance logging
+
+                if (!result.hasChanges()) return;
+                try {
+                    saveGalleryItems();
+                } catch (IOException e) {
+                    System.err.println(e.getMessage()); // Todo, change for other more advance logging
+                }
+            }, io)
+            .exceptionally(ex -> {
+                System.err.println("Gallery reconciliation failed: " + ex.getMessage()); // Todo, change for other more advance logging
+                return null;
+            });
     }
 
     /**
-     * Saves the current gallery items to persistent storage.
+     * Checks all items of the active collection against the file system in the background,
+     * e.g. after entries were imported.
+     */
+    public void reconcileGalleryItems() {
+        reconcileGalleryItems(collections.getActive(), galleryManagementModule.getEntries());
+    }
+
+    /**
+     * Saves the items of the active collection to its shard file.
+     * <p>
+     * The items are copied on the calling thread, and written by the persistence writer of the
+     * {@link ExecutorServiceManager}, so concurrent saves never interleave. The method returns once the write is done.
+     * If the items of the collection are still being loaded, the method waits for them first.
+     * </p>
      *
-     * @throws IOException if an error occurs during saving
+     * @throws IOException if an error occurs during saving, or if the items of the collection couldn't be loaded,
+     *                     so the collection would be overwritten
      */
     public void saveGalleryItems() throws IOException {
-        ResourceModule.getInstance().setObject("gallery.tp", galleryManagementModule.getEntries(), true);
+        if (!awaitGalleryItems()) throw new IOException("The gallery wasn't loaded, so it can't be saved");
+
+        String active = collections.getActive();
+        List<GalleryEntry> entries = galleryManagementModule.getEntries();
+
+        Future<?> write = ExecutorServiceManager.getInstance().getPersistenceExecutor().submit(() -> {
+            collections.save(active, entries);
+            return null;
+        });
+
+        try {
+            write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving the gallery");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
     }
 
     /**
-     * Validates that the provided object is a {@link List} of {@link String}.
+     * Saves the active collection, and replaces the gallery content with the items of another collection.
+     * Does nothing if the collection is already active. The active collection isn't saved if its items couldn't be loaded.
+     * If the items of the other collection can't be loaded, the gallery can't be saved until another collection is opened,
+     * so the shard of the collection is never overwritten with a partial table.
      *
-     * @param obj The object to validate.
-     * @return The object cast to a {@link List<String>} if it is valid.
-     * @throws IllegalArgumentException if the object is not a {@link List<String>}.
+     * @param collection the name of the collection to open
+     * @throws IOException if an error occurs during saving or loading
+     * @throws IllegalArgumentException if there's no such collection
      */
-    @SuppressWarnings("unchecked")
-    private List<GalleryEntry> validateEntryList(Object obj) {
-        if (obj instanceof List<?> list) {
-            if (list.isEmpty() || list.stream().allMatch(e -> e instanceof GalleryEntry))
-                return (List<GalleryEntry>) obj;
+    public void switchCollection(String collection) throws IOException {
+        if (collection.equals(collections.getActive())) return;
+        if (collections.getInfo(collection) == null) throw new IllegalArgumentException("Unknown collection: " + collection);
+
+        if (awaitGalleryItems()) saveGalleryItems();
+        galleryManagementModule.getTableModel().clearEntries();
+
+        collections.setActive(collection);
+        try {
+            startLoading(collection, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
         }
+    }
 
-        throw new IllegalArgumentException("gallery.tp file is not of expected type.");
+    /**
+     * Creates a new, empty collection.
+     *
+     * @param collection the name of the collection
+     * @throws IOException if the collection index can't be saved
+     * @throws IllegalArgumentException if the collection already exists
+     */
+    public void createCollection(String collection) throws IOException {
+        collections.create(collection);
+    }
+
+    /**
+     * Returns the names of all collections.
+     *
+     * @return the collection names
+     */
+    public List<String> getCollectionNames() {
+        return collections.getNames();
+    }
+
+    /**
+     * Returns the name of the active collection.
+     *
+     * @return the active collection name
+     */
+    public String getActiveCollection() {
+        return collections.getActive();
     }
 }
@@ -0,0 +1,97 @@
+package pl.magzik.modules.gallery.fingerprint;
+
+import pl.magzik.base.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the fingerprints stored in gallery entries.
+ * <ul>
+ *     <li>The <b>content hash</b> is the first 64 bits of the SHA-256 digest of the file.</li>
+ *     <li>The <b>perceptual hash</b> is a 64-bit difference hash (dHash) of the image,
+ *     computed from a subsampled decode of the file.</li>
+ * </ul>
+ */
+public class Fingerprints {
+
+    private static final int HASH_WIDTH = 9, HASH_HEIGHT = 8;
+
+    /**
+     * Minimal size of the subsampled decode used for the perceptual hash.
+     */
+    private static final int DECODE_SIZE = 32;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Computes the content hash of the file.
+     *
+     * @param path the path of the file.
+     * @return the first 64 bits of the SHA-256 digest of the file.
+     * @throws IOException if an I/O error occurs while reading the file.
+     */
+    public static long contentHash(Path path) throws IOException {
+        MessageDigest digest = sha256();
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+        }
+
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Computes the perceptual hash of the image.
+     * <p>
+     * The image is reduced to 9x8 grayscale pixels, and every bit of the result tells
+     * whether a pixel is darker than its right neighbor.
+     * </p>
+     *
+     * @param path the path of the image file.
+     * @return the perceptual hash of the image.
+     * @throws IOException if an I/O error occurs, or the image format isn't supported.
+     */
+    public static long perceptualHash(Path path) throws IOException {
+        BufferedImage image = ImageUtils.readSubsampled(path, DECODE_SIZE);
+        if (image == null) throw new IOException("Unsupported image format: " + path);
+
+        BufferedImage gray = ImageUtils.scale(image, HASH_WIDTH, HASH_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] pixels = new byte[HASH_WIDTH * HASH_HEIGHT];
+        gray.getRaster().getDataElements(0, 0, HASH_WIDTH, HASH_HEIGHT, pixels);
+
+        long hash = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                int left = pixels[y * HASH_WIDTH + x] & 0xFF,
+                    right = pixels[y * HASH_WIDTH + x + 1] & 0xFF;
+
+                hash = (hash << 1) | (left < right ? 1 : 0);
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Creates a new SHA-256 digest.
+     *
+     * @return the digest.
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
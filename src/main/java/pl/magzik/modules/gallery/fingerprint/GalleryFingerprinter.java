@@ -0,0 +1,139 @@
+package pl.magzik.modules.gallery.fingerprint;
+
+import pl.magzik.base.async.CancellationToken;
+import pl.magzik.base.async.PriorityExecutor;
+import pl.magzik.base.async.TaskPriority;
+import pl.magzik.base.diagnostics.Counter;
+import pl.magzik.base.diagnostics.LatencyHistogram;
+import pl.magzik.base.diagnostics.Metrics;
+import pl.magzik.modules.gallery.table.GalleryEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code GalleryFingerprinter} computes and uses the fingerprints stored in {@link GalleryEntry} objects.
+ * <p>
+ * Fingerprints are computed concurrently on the given {@link PriorityExecutor}, one entry at a time, with the priority
+ * of the calling task, so tasks of a higher priority get a thread after the next entry. Once computed, duplicates
+ * can be found by grouping entries by their fingerprints, without decoding any image again.
+ * </p>
+ * <p>
+ * Fingerprinting stops at the next entry once the {@link CancellationToken} of the calling task is cancelled.
+ * </p>
+ * <p>
+ * The time taken by every entry, and the number of fingerprinted entries and bytes, are reported to the {@link Metrics},
+ * so the hashing throughput can be watched while it runs.
+ * </p>
+ */
+public class GalleryFingerprinter {
+
+    private final PriorityExecutor executor;
+    private final LatencyHistogram latency;
+    private final Counter fingerprinted, hashedBytes;
+
+    /**
+     * Constructs a {@code GalleryFingerprinter} that computes fingerprints on the given executor.
+     *
+     * @param executor the executor used for reading and hashing files.
+     */
+    public GalleryFingerprinter(PriorityExecutor executor) {
+        this.executor = Objects.requireNonNull(executor);
+
+        Metrics metrics = Metrics.getInstance();
+        this.latency = metrics.histogram("gallery.fingerprint");
+        this.fingerprinted = metrics.counter("gallery.fingerprinted");
+        this.hashedBytes = metrics.counter("gallery.fingerprinted_bytes");
+    }
+
+    /**
+     * Computes fingerprints for all entries that don't have them yet. Missing files are skipped.
+     * If the calling task is cancelled, the remaining entries are left without fingerprints.
+     *
+     * @param entries the entries to fingerprint.
+     * @return a future completed with the number of entries that received a fingerprint.
+     */
+    public CompletableFuture<Integer> fingerprint(Collection<GalleryEntry> entries) {
+        List<GalleryEntry> pending = entries.stream()
+                                            .filter(e -> !e.hasFingerprint() && !e.isMissing())
+                                            .toList();
+        if (pending.isEmpty()) return CompletableFuture.completedFuture(0);
+
+        AtomicInteger count = new AtomicInteger();
+        return executor.forEach(pending, TaskPriority.current(), entry -> {
+            if (fingerprintEntry(entry)) count.incrementAndGet();
+        }).thenApply(_ -> count.get());
+    }
+
+    /**
+     * Finds duplicates among the given entries using their stored fingerprints.
+     * <p>
+     * Entries are grouped by perceptual hash, by content hash and size, or by both, depending on the flags.
+     * If neither flag is set, the content hash is used. The first entry of every group is kept as the original,
+     * all the others are returned. Entries without fingerprints are ignored.
+     * </p>
+     *
+     * @param entries    the entries to check, in the order of precedence.
+     * @param perceptual {@code true} to group visually identical images.
+     * @param exact      {@code true} to group byte-identical files.
+     * @return the files of the duplicate entries.
+     */
+    public List<File> findDuplicates(List<GalleryEntry> entries, boolean perceptual, boolean exact) {
+        boolean content = exact || !perceptual;
+
+        Set<Key> seen = new HashSet<>();
+        List<File> duplicates = new ArrayList<>();
+
+        for (GalleryEntry entry : entries) {
+            if (!entry.hasFingerprint() || entry.isMissing()) continue;
+
+            Key key = new Key(
+                perceptual ? entry.getPerceptualHash() : 0,
+                content ? entry.getContentHash() : 0,
+                content ? entry.getByteSize() : 0
+            );
+
+            if (!seen.add(key)) duplicates.add(entry.getPath().toFile());
+        }
+
+        return duplicates;
+    }
+
+    /**
+     * Fingerprints a single entry.
+     *
+     * @param entry the entry to fingerprint.
+     * @return {@code true} if the entry received a fingerprint.
+     */
+    private boolean fingerprintEntry(GalleryEntry entry) {
+        Path path = entry.getPath();
+        try (var _ = latency.time()) {
+            long contentHash = Fingerprints.contentHash(path);
+            long perceptualHash;
+            try {
+                perceptualHash = Fingerprints.perceptualHash(path);
+            } catch (IOException e) {
+                // Not decodable, so only byte-identical copies can match.
+                perceptualHash = contentHash;
+            }
+
+            entry.setFingerprint(perceptualHash, contentHash);
+
+            fingerprinted.increment();
+            if (entry.getByteSize() != GalleryEntry.UNKNOWN) hashedBytes.add(entry.getByteSize());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Couldn't fingerprint " + path + ": " + e.getMessage()); // Todo, change for other more advance logging
+            return false;
+        }
+    }
+
+    /**
+     * Grouping key of the duplicate detection.
+     */
+    private record Key(long perceptualHash, long contentHash, long size) { }
+}
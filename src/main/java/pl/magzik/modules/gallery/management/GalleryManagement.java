@@ -1,12 +1,16 @@
 package pl.magzik.modules.gallery.management;
 
 import pl.magzik.modules.gallery.table.GalleryEntry;
+import pl.magzik.modules.gallery.table.GalleryTagQuery;
 import pl.magzik.modules.gallery.table.TablePropertyAccess;
 
 import javax.swing.table.TableModel;
 import java.io.File;
+import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Defines an interface for managing a gallery of files.
@@ -22,13 +26,27 @@ public interface GalleryManagement {
     void addItems(List<File> files);
 
     /**
-     * Removes multiple files from the gallery based on their indices.
-     * The indices are sorted in descending order to avoid index shifting issues.
+     * Adds already prepared entries to the gallery. Entries whose paths are already present are skipped.
      *
-     * @param indexes The list of indices of the files to be removed.
-     * @return A list of removed files.
+     * @param entries The entries to be added.
      */
-    List<File> removeItems(Collection<Integer> indexes);
+    void addEntries(Collection<GalleryEntry> entries);
+
+    /**
+     * Writes back the file state (path, attributes, fingerprints, missing flag) of updated entry copies.
+     * Tags of the gallery items are kept.
+     *
+     * @param updates The updated entries, keyed by the current path of their gallery item.
+     */
+    void updateEntries(Map<Path, GalleryEntry> updates);
+
+    /**
+     * Checks whether the file is already in the gallery.
+     *
+     * @param file The file to check.
+     * @return {@code true} if the gallery contains the file, {@code false} otherwise.
+     */
+    boolean contains(File file);
 
     /**
      * Removes multiple {@code File} objects from the collection.
@@ -42,9 +60,10 @@ public interface GalleryManagement {
      *              This list can
      *              contain zero or more files.
      *              If the list is empty, the collection remains unchanged.
+     * @return The files that were actually removed, which may be fewer than requested.
      * @throws NullPointerException if the provided list or any of its elements are {@code null}.
      */
-    void removeElements(Collection<File> files);
+    List<File> removeElements(Collection<File> files);
 
     /**
      * Retrieves a file from the gallery based on the specified index.
@@ -54,6 +73,14 @@ public interface GalleryManagement {
      */
     File getFile(int index);
 
+    /**
+     * Retrieves a copy of the entry of the specified file.
+     *
+     * @param file The file of the entry to retrieve.
+     * @return A copy of the gallery entry, or {@code null} if the file isn't in the gallery.
+     */
+    GalleryEntry getEntry(File file);
+
     /**
      * Retrieves multiple files from the gallery based on their indices.
      *
@@ -67,48 +94,57 @@ public interface GalleryManagement {
     }
 
     /**
-     * Adds a tag to the file at the specified index.
+     * Adds several tags to the given files, as one batch notifying listeners once.
+     * The rows of the files are looked up within the batch, so they're correct even if other rows were added
+     * or removed since the files were selected. Files that are no longer in the gallery are skipped.
      *
-     * @param idx The index of the file to tag.
-     * @param tagName The tag to be added.
+     * @param files The files to tag.
+     * @param tags  The tags to be added.
      */
-    void addTagTo(int idx, String tagName);
+    void addTagsToFiles(Collection<File> files, Collection<String> tags);
 
     /**
-     * Adds a tag to all files at the specified indices.
+     * Removes several tags from the given files, as one batch notifying listeners once.
+     * The rows of the files are looked up within the batch, see {@link #addTagsToFiles(Collection, Collection)}.
      *
-     * @param indexes The list of indices of the files to tag.
-     * @param tagName The tag to be added.
+     * @param files The files to untag.
+     * @param tags  The tags to be removed.
      */
-    default void addTagToAll(Collection<Integer> indexes, String tagName) {
-        indexes.forEach(idx -> addTagTo(idx, tagName));
-    }
+    void removeTagsFromFiles(Collection<File> files, Collection<String> tags);
 
     /**
-     * Removes a tag from the file at the specified index.
+     * Renames a tag in the whole gallery, as one batch notifying listeners once.
+     * Only the files carrying the tag are visited.
      *
-     * @param idx The index of the file to untag.
-     * @param tagName The tag to be removed.
+     * @param oldTag The current name of the tag.
+     * @param newTag The new name of the tag.
+     * @return The number of files that carried the tag.
      */
-    void removeTagFrom(int idx, String tagName);
+    int renameTag(String oldTag, String newTag);
 
     /**
-     * Removes a tag from all files at the specified indices.
+     * Retrieves the tags carried by at least one of the files at the specified indices.
      *
-     * @param indexes The list of indices of the files to untag.
-     * @param tagName The tag to be removed.
+     * @param indexes The indices of the files whose tags are to be retrieved.
+     * @return A list of the tags, without duplicates.
      */
-    default void removeTagFromAll(Collection<Integer> indexes, String tagName) {
-        indexes.forEach(idx -> removeTagFrom(idx, tagName));
-    }
+    List<String> getItemTags(Collection<Integer> indexes);
+
+    /**
+     * Finds all gallery items whose name or any tag contains the query, ignoring case.
+     *
+     * @param query The text to look for.
+     * @return The stable row ids of the matching items, or {@code null} if the query is empty.
+     */
+    BitSet search(String query);
 
     /**
-     * Retrieves the list of tags associated thenLoad the file at the specified index.
+     * Finds all gallery items matching a tag query.
      *
-     * @param index The index of the file whose tags are to be retrieved.
-     * @return A list of tags associated thenLoad the file.
+     * @param query The parsed tag query, or {@code null}.
+     * @return The stable row ids of the matching items, or {@code null} if the query is {@code null}.
      */
-    List<String> getItemTags(int index);
+    BitSet searchTags(GalleryTagQuery query);
 
     /**
      * Retrieves all tags present in the gallery.
@@ -118,11 +154,18 @@ public interface GalleryManagement {
     List<String> getAllTags();
 
     /**
-     * Retrieves all entries present in gallery.
+     * Retrieves copies of all entries present in gallery.
      * @return A list of gallery entries.
      * */
     List<GalleryEntry> getEntries();
 
+    /**
+     * Retrieves copies of all entries present in gallery, a batch at a time, so only one batch is held in memory.
+     * @param batchSize The maximal number of entries copied at once.
+     * @return An iterable of gallery entries.
+     * */
+    Iterable<GalleryEntry> getEntries(int batchSize);
+
     /**
      * Retrieves table model
      * @return TableModel
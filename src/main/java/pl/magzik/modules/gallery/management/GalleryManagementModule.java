@@ -3,13 +3,15 @@ package pl.magzik.modules.gallery.management;
 import pl.magzik.modules.base.Module;
 import pl.magzik.modules.gallery.table.GalleryEntry;
 import pl.magzik.modules.gallery.table.GalleryTableModel;
+import pl.magzik.modules.gallery.table.GalleryTagQuery;
 import pl.magzik.modules.gallery.table.TablePropertyAccess;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class GalleryManagementModule implements Module, GalleryManagement {
 
@@ -40,54 +42,98 @@ public class GalleryManagementModule implements Module, GalleryManagement {
     }
 
     @Override
-    public List<File> removeItems(Collection<Integer> indexes) {
-        return galleryTableModel.removeEntries(indexes).stream()
+    public void addEntries(Collection<GalleryEntry> entries) {
+        galleryTableModel.addEntries(entries);
+    }
+
+    @Override
+    public void updateEntries(Map<Path, GalleryEntry> updates) {
+        galleryTableModel.updateEntries(updates);
+    }
+
+    @Override
+    public boolean contains(File file) {
+        return galleryTableModel.contains(file.toPath());
+    }
+
+    @Override
+    public List<File> removeElements(Collection<File> files) {
+        List<Path> paths = files.stream()
+                                .map(File::toPath)
+                                .toList();
+        return galleryTableModel.removeEntries(paths).stream()
                                                         .map(GalleryEntry::getPath)
                                                         .map(Path::toFile)
                                                         .toList();
     }
 
     @Override
-    public void removeElements(Collection<File> files) {
-        List<Integer> indexes = files.stream()
-                                        .map(File::toPath)
-                                        .map(GalleryEntry::new)
-                                        .map(galleryTableModel::indexOf)
-                                        .toList();
-        removeItems(indexes);
+    public File getFile(int index) {
+        return galleryTableModel.getPath(index).toFile();
     }
 
     @Override
-    public File getFile(int index) {
-        return galleryTableModel.getEntry(index).getPath().toFile();
+    public GalleryEntry getEntry(File file) {
+        return galleryTableModel.getEntry(file.toPath());
+    }
+
+    @Override
+    public void addTagsToFiles(Collection<File> files, Collection<String> tags) {
+        galleryTableModel.batch(batch -> rowsOf(batch, files).forEach(row -> tags.forEach(tag -> batch.addTag(row, tag))));
+    }
+
+    @Override
+    public void removeTagsFromFiles(Collection<File> files, Collection<String> tags) {
+        galleryTableModel.batch(batch -> rowsOf(batch, files).forEach(row -> tags.forEach(tag -> batch.removeTag(row, tag))));
+    }
+
+    /**
+     * Looks up the current rows of the files within a batch, skipping the files that aren't in the gallery.
+     *
+     * @param batch the batch.
+     * @param files the files.
+     * @return the row indexes.
+     */
+    private static List<Integer> rowsOf(GalleryTableModel.Batch batch, Collection<File> files) {
+        return files.stream()
+                    .map(File::toPath)
+                    .map(batch::indexOf)
+                    .filter(row -> row != -1)
+                    .toList();
     }
 
     @Override
-    public void addTagTo(int idx, String tagName) {
-        galleryTableModel.addTag(idx, tagName);
+    public int renameTag(String oldTag, String newTag) {
+        return galleryTableModel.renameTag(oldTag, newTag);
     }
 
     @Override
-    public void removeTagFrom(int idx, String tagName) {
-        galleryTableModel.removeTag(idx, tagName);
+    public List<String> getItemTags(Collection<Integer> indexes) {
+        return galleryTableModel.getTags(indexes);
     }
 
     @Override
-    public List<String> getItemTags(int index) {
-        return galleryTableModel.getEntry(index).getTags().stream().toList();
+    public BitSet search(String query) {
+        return galleryTableModel.search(query);
+    }
+
+    @Override
+    public BitSet searchTags(GalleryTagQuery query) {
+        return galleryTableModel.searchTags(query);
     }
 
     @Override
     public List<String> getAllTags() {
-        return galleryTableModel.getEntries().stream()
-                                            .map(GalleryEntry::getTags)
-                                            .flatMap(Collection::stream)
-                                            .distinct()
-                                            .toList();
+        return galleryTableModel.getAllTags();
     }
 
     @Override
     public List<GalleryEntry> getEntries() {
-        return Collections.unmodifiableList(galleryTableModel.getEntries());
+        return galleryTableModel.getEntries();
+    }
+
+    @Override
+    public Iterable<GalleryEntry> getEntries(int batchSize) {
+        return galleryTableModel.getEntries(batchSize);
     }
 }
@@ -0,0 +1,223 @@
+package pl.magzik.modules.gallery.persistence;
+
+import pl.magzik.modules.gallery.table.GalleryEntry;
+import pl.magzik.modules.resource.ResourceModule;
+import pl.magzik.modules.resource.loader.external.ObjectLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The {@code GalleryCollections} class stores the gallery as a set of named collections.
+ * <p>
+ * Every collection lives in its own shard file inside {@link #COLLECTIONS_DIR}, and a small
+ * {@link GalleryIndex} describes all of them. Since the directory isn't loaded eagerly by the
+ * {@link ResourceModule}, only the shards that are actually opened are ever read.
+ * </p>
+ * <p>
+ * On first use, an existing single-file gallery ({@code gallery.tp}) is migrated into the
+ * {@link #DEFAULT_COLLECTION} and kept as {@code gallery.tp.bak}.
+ * </p>
+ */
+public class GalleryCollections {
+
+    /**
+     * Directory holding the index and the shard files.
+     */
+    public static final Path COLLECTIONS_DIR = ResourceModule.EXTERNAL_RESOURCES_DIR.resolve("collections");
+
+    /**
+     * Name of the collection created for a new or migrated gallery.
+     */
+    public static final String DEFAULT_COLLECTION = "default";
+
+    private static final String INDEX_FILE = GalleryIndex.FILE;
+    private static final String LEGACY_FILE = "gallery.tp";
+
+    private final ObjectLoader loader;
+    private GalleryIndex index;
+
+    /**
+     * Constructs a {@code GalleryCollections} store. Call {@link #open()} before using it.
+     */
+    public GalleryCollections() {
+        this.loader = new ObjectLoader();
+    }
+
+    /**
+     * Opens the store: reads the index, or creates it (migrating a legacy gallery, if there's one).
+     *
+     * @throws IOException if the index or the legacy gallery can't be read or written.
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(COLLECTIONS_DIR);
+
+        Path indexPath = COLLECTIONS_DIR.resolve(INDEX_FILE);
+        if (Files.exists(indexPath)) {
+            if (!(loader.load(indexPath.toString()) instanceof GalleryIndex loaded))
+                throw new IOException(INDEX_FILE + " file is not of expected type.");
+
+            index = loaded;
+            return;
+        }
+
+        index = new GalleryIndex();
+        index.add(DEFAULT_COLLECTION);
+        index.setActive(DEFAULT_COLLECTION);
+
+        Object legacy = ResourceModule.getInstance().getObject(LEGACY_FILE);
+        save(DEFAULT_COLLECTION, legacy == null ? List.of() : validateEntryList(legacy));
+
+        if (legacy != null) {
+            ResourceModule.getInstance().removeObject(LEGACY_FILE);
+            Path legacyPath = ResourceModule.EXTERNAL_RESOURCES_DIR.resolve(LEGACY_FILE);
+            Files.move(legacyPath, legacyPath.resolveSibling(LEGACY_FILE + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Loads the entries of a collection from its shard file.
+     *
+     * @param name the name of the collection.
+     * @return the entries of the collection.
+     * @throws IOException if the shard can't be read.
+     * @throws IllegalArgumentException if there's no such collection, or the shard is not of the expected type.
+     */
+    public List<GalleryEntry> load(String name) throws IOException {
+        Path shard = shardPath(name);
+        if (!Files.exists(shard)) return new ArrayList<>();
+
+        return validateEntryList(loader.load(shard.toString()));
+    }
+
+    /**
+     * Saves the entries of a collection into its shard file and updates the index.
+     * The shard is written to a temporary file first, so an interrupted save never corrupts it.
+     *
+     * @param name    the name of the collection.
+     * @param entries the entries to save.
+     * @throws IOException if the shard or the index can't be written.
+     * @throws IllegalArgumentException if there's no such collection.
+     */
+    public synchronized void save(String name, List<GalleryEntry> entries) throws IOException {
+        Path shard = shardPath(name);
+        write(new ArrayList<>(entries), shard);
+
+        Set<String> tags = new TreeSet<>();
+        entries.forEach(e -> tags.addAll(e.getTags()));
+        index.get(name).update(entries.size(), tags);
+
+        saveIndex();
+    }
+
+    /**
+     * Creates a new, empty collection.
+     *
+     * @param name the name of the collection.
+     * @throws IOException if the index can't be written.
+     * @throws IllegalArgumentException if the collection already exists.
+     */
+    public synchronized void create(String name) throws IOException {
+        index.add(name);
+        saveIndex();
+    }
+
+    /**
+     * Returns the name of the collection that is being worked on.
+     *
+     * @return the name of the active collection.
+     */
+    public synchronized String getActive() {
+        return index.getActive();
+    }
+
+    /**
+     * Changes the active collection and remembers it in the index.
+     *
+     * @param name the name of the collection.
+     * @throws IOException if the index can't be written.
+     * @throws IllegalArgumentException if there's no such collection.
+     */
+    public synchronized void setActive(String name) throws IOException {
+        index.setActive(name);
+        saveIndex();
+    }
+
+    /**
+     * Returns the names of all collections.
+     *
+     * @return an unmodifiable list of collection names.
+     */
+    public synchronized List<String> getNames() {
+        return index.getNames();
+    }
+
+    /**
+     * Returns the summary of a collection, as stored in the index.
+     *
+     * @param name the name of the collection.
+     * @return the summary, or {@code null} if there's no such collection.
+     */
+    public synchronized GalleryIndex.CollectionInfo getInfo(String name) {
+        return index.get(name);
+    }
+
+    /**
+     * Writes the index file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    private void saveIndex() throws IOException {
+        write(index, COLLECTIONS_DIR.resolve(INDEX_FILE));
+    }
+
+    /**
+     * Writes an object to a temporary file and moves it over the target.
+     *
+     * @param data   the object to write.
+     * @param target the target file.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void write(Object data, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        loader.save(data, temp);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Resolves the shard file of a collection.
+     *
+     * @param name the name of the collection.
+     * @return the path of the shard file.
+     * @throws IllegalArgumentException if there's no such collection.
+     */
+    private Path shardPath(String name) {
+        GalleryIndex.CollectionInfo info;
+        synchronized (this) {
+            info = index.get(name);
+        }
+        if (info == null) throw new IllegalArgumentException("Unknown collection: " + name);
+
+        return COLLECTIONS_DIR.resolve(info.getFile());
+    }
+
+    /**
+     * Validates that the provided object is a {@link List} of {@link GalleryEntry}.
+     *
+     * @param obj The object to validate.
+     * @return The object cast to a {@link List<GalleryEntry>} if it is valid.
+     * @throws IllegalArgumentException if the object is not a {@link List<GalleryEntry>}.
+     */
+    @SuppressWarnings("unchecked")
+    private List<GalleryEntry> validateEntryList(Object obj) {
+        if (obj instanceof List<?> list) {
+            if (list.isEmpty() || list.stream().allMatch(e -> e instanceof GalleryEntry))
+                return (List<GalleryEntry>) obj;
+        }
+
+        throw new IllegalArgumentException("Gallery collection file is not of expected type.");
+    }
+}
@@ -0,0 +1,143 @@
+package pl.magzik.modules.gallery.persistence;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The {@code GalleryIndex} describes all gallery collections without loading any of them.
+ * <p>
+ * For every collection it stores the name of its shard file, the number of entries, and the tags used in it.
+ * It also remembers which collection was active last time.
+ * </p>
+ */
+public class GalleryIndex implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of the file the index itself is stored in, next to the shard files. No shard is ever given this name.
+     */
+    public static final String FILE = "index.tp";
+
+    private String active;
+    private final LinkedHashMap<String, CollectionInfo> collections;
+
+    /**
+     * Constructs an empty {@code GalleryIndex}.
+     */
+    public GalleryIndex() {
+        this.collections = new LinkedHashMap<>();
+    }
+
+    public String getActive() {
+        return active;
+    }
+
+    public void setActive(String active) {
+        if (!collections.containsKey(active)) throw new IllegalArgumentException("Unknown collection: " + active);
+        this.active = active;
+    }
+
+    /**
+     * Returns the names of all collections, in the order of creation.
+     *
+     * @return an unmodifiable list of collection names.
+     */
+    public List<String> getNames() {
+        return List.copyOf(collections.keySet());
+    }
+
+    /**
+     * Returns the description of the collection.
+     *
+     * @param name the name of the collection.
+     * @return the description, or {@code null} if there's no such collection.
+     */
+    public CollectionInfo get(String name) {
+        return collections.get(name);
+    }
+
+    /**
+     * Checks whether a collection with the given name exists.
+     *
+     * @param name the name of the collection.
+     * @return {@code true} if the collection exists, {@code false} otherwise.
+     */
+    public boolean contains(String name) {
+        return collections.containsKey(name);
+    }
+
+    /**
+     * Adds a new, empty collection. The shard file name is derived from the collection name.
+     * <p>
+     * File names are compared ignoring case, since e.g. {@code Photos} and {@code photos} are the same file
+     * on Windows and macOS, and the name of the index file, {@link #FILE}, is never used for a shard.
+     * </p>
+     *
+     * @param name the name of the collection.
+     * @return the description of the new collection.
+     * @throws IllegalArgumentException if the collection already exists.
+     */
+    public CollectionInfo add(String name) {
+        if (collections.containsKey(name)) throw new IllegalArgumentException("Collection already exists: " + name);
+
+        String base = name.replaceAll("[^\\w\\-]", "_");
+        Set<String> used = new HashSet<>();
+        used.add(FILE.toLowerCase(Locale.ROOT));
+        collections.values().forEach(info -> used.add(info.getFile().toLowerCase(Locale.ROOT)));
+
+        String file = base + ".tp";
+        for (int i = 1; used.contains(file.toLowerCase(Locale.ROOT)); i++) file = base + "_" + i + ".tp";
+
+        CollectionInfo info = new CollectionInfo(file);
+        collections.put(name, info);
+        return info;
+    }
+
+    /**
+     * Describes a single gallery collection.
+     */
+    public static class CollectionInfo implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final String file;
+        private int count;
+        private List<String> tags;
+
+        /**
+         * Constructs a description of an empty collection stored in the given shard file.
+         *
+         * @param file the name of the shard file.
+         */
+        public CollectionInfo(String file) {
+            this.file = file;
+            this.count = 0;
+            this.tags = new ArrayList<>();
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public List<String> getTags() {
+            return Collections.unmodifiableList(tags);
+        }
+
+        /**
+         * Updates the summary of the collection after it was saved.
+         *
+         * @param count the number of entries.
+         * @param tags  the tags used in the collection.
+         */
+        public void update(int count, Collection<String> tags) {
+            this.count = count;
+            this.tags = new ArrayList<>(tags);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package pl.magzik.modules.gallery.persistence;
+
+import pl.magzik.modules.gallery.table.GalleryEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes gallery entries in the JSON Lines format: one JSON object per line.
+ * <p>
+ * Every line looks like this:
+ * <pre>{@code
+ * {"path":"/photos/a.jpg","tags":["holiday"],"size":1024,"mtime":1700000000000,"phash":"8f3c...","chash":"01ab..."}
+ * }</pre>
+ * Only {@code path} is required. {@code size} and {@code mtime} (epoch milliseconds) may be omitted, and
+ * the fingerprints ({@code phash}, {@code chash}, 16 hex digits each) are only written for fingerprinted entries.
+ * Unknown keys are ignored, so the files can be generated or enriched by other tools.
+ * </p>
+ * <p>
+ * Both directions stream: the writer emits one line per entry, and the reader hands entries over in batches
+ * of a fixed size, so memory use doesn't depend on the size of the file.
+ * </p>
+ */
+public class GalleryJsonLines {
+
+    /**
+     * Writes the entries, one line each.
+     *
+     * @param entries the entries to write.
+     * @param writer  the destination; it isn't closed.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void write(Iterable<GalleryEntry> entries, Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+
+        for (GalleryEntry entry : entries) {
+            line.setLength(0);
+
+            line.append("{\"path\":");
+            appendString(line, entry.getPath().toAbsolutePath().toString());
+
+            line.append(",\"tags\":[");
+            boolean first = true;
+            for (String tag : entry.getTags()) {
+                if (!first) line.append(',');
+                appendString(line, tag);
+                first = false;
+            }
+            line.append(']');
+
+            if (entry.getByteSize() != GalleryEntry.UNKNOWN) line.append(",\"size\":").append(entry.getByteSize());
+            if (entry.getLastModified() != GalleryEntry.UNKNOWN) line.append(",\"mtime\":").append(entry.getLastModified());
+
+            if (entry.hasFingerprint()) {
+                line.append(",\"phash\":\"").append(toHex(entry.getPerceptualHash())).append('"');
+                line.append(",\"chash\":\"").append(toHex(entry.getContentHash())).append('"');
+            }
+
+            line.append("}\n");
+            writer.append(line);
+        }
+    }
+
+    /**
+     * Reads entries and passes them to the consumer in batches. Blank lines are skipped.
+     * <p>
+     * Batches already passed to the consumer stay there if a later line turns out to be malformed.
+     * </p>
+     *
+     * @param reader    the source; it isn't closed.
+     * @param batchSize the maximal number of entries per batch.
+     * @param consumer  receives every batch; a new list is passed each time.
+     * @return the number of entries read.
+     * @throws IOException if an I/O error occurs, or a line is malformed.
+     */
+    public static long read(BufferedReader reader, int batchSize, Consumer<List<GalleryEntry>> consumer) throws IOException {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive.");
+
+        List<GalleryEntry> batch = new ArrayList<>(batchSize);
+        long count = 0, lineNumber = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+
+            try {
+                batch.add(new LineParser(line).parse());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed entry at line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            count++;
+
+            if (batch.size() == batchSize) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        if (!batch.isEmpty()) consumer.accept(batch);
+        return count;
+    }
+
+    /**
+     * Appends a JSON string literal.
+     *
+     * @param sb    the destination.
+     * @param value the string to quote and escape.
+     */
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Formats a 64-bit value as 16 hex digits.
+     *
+     * @param value the value.
+     * @return the hex string.
+     */
+    private static String toHex(long value) {
+        return String.format("%016x", value);
+    }
+
+    /**
+     * Parses a single line holding one flat JSON object into a {@link GalleryEntry}.
+     */
+    private static class LineParser {
+
+        private final String s;
+        private int pos;
+
+        private LineParser(String s) {
+            this.s = s;
+            this.pos = 0;
+        }
+
+        /**
+         * Parses the line.
+         *
+         * @return the entry.
+         * @throws IllegalArgumentException if the line isn't a valid entry.
+         */
+        private GalleryEntry parse() {
+            String path = null, phash = null, chash = null;
+            List<String> tags = List.of();
+            long size = GalleryEntry.UNKNOWN, mtime = GalleryEntry.UNKNOWN;
+
+            expect('{');
+            if (!tryConsume('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+
+                    switch (key) {
+                        case "path" -> path = readString();
+                        case "tags" -> tags = readStringArray();
+                        case "size" -> size = readLong();
+                        case "mtime" -> mtime = readLong();
+                        case "phash" -> phash = readString();
+                        case "chash" -> chash = readString();
+                        default -> skipValue();
+                    }
+                } while (tryConsume(','));
+                expect('}');
+            }
+            skipWhitespace();
+            if (pos != s.length()) throw error("unexpected trailing characters");
+
+            if (path == null) throw error("missing \"path\"");
+
+            GalleryEntry entry = new GalleryEntry(Path.of(path), tags, size, mtime);
+            if (phash != null && chash != null)
+                entry.setFingerprint(Long.parseUnsignedLong(phash, 16), Long.parseUnsignedLong(chash, 16));
+
+            return entry;
+        }
+
+        private String readString() {
+            expect('"');
+
+            StringBuilder sb = new StringBuilder();
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+
+                if (pos >= s.length()) break;
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case '"', '\\', '/' -> sb.append(e);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) throw error("truncated unicode escape");
+                        sb.append((char) Integer.parseInt(s, pos, pos + 4, 16));
+                        pos += 4;
+                    }
+                    default -> throw error("invalid escape \\" + e);
+                }
+            }
+
+            throw error("unterminated string");
+        }
+
+        private List<String> readStringArray() {
+            expect('[');
+
+            List<String> list = new ArrayList<>();
+            if (tryConsume(']')) return list;
+
+            do {
+                skipWhitespace();
+                list.add(readString());
+            } while (tryConsume(','));
+            expect(']');
+
+            return list;
+        }
+
+        private long readLong() {
+            skipWhitespace();
+            if (s.startsWith("null", pos)) {
+                pos += 4;
+                return GalleryEntry.UNKNOWN;
+            }
+
+            int start = pos;
+            if (pos < s.length() && s.charAt(pos) == '-') pos++;
+            while (pos < s.length() && Character.isDigit(s.charAt(pos))) pos++;
+
+            if (start == pos) throw error("number expected");
+            return Long.parseLong(s, start, pos, 10);
+        }
+
+        /**
+         * Skips any JSON value, including nested objects and arrays.
+         */
+        private void skipValue() {
+            skipWhitespace();
+            if (pos >= s.length()) throw error("value expected");
+
+            char c = s.charAt(pos);
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                char close = c == '{' ? '}' : ']';
+                pos++;
+                if (tryConsume(close)) return;
+
+                do {
+                    if (c == '{') {
+                        skipWhitespace();
+                        readString();
+                        expect(':');
+                    }
+                    skipValue();
+                } while (tryConsume(','));
+                expect(close);
+            } else {
+                while (pos < s.length() && ",}] \t".indexOf(s.charAt(pos)) < 0) pos++;
+            }
+        }
+
+        private void expect(char c) {
+            skipWhitespace();
+            if (pos >= s.length() || s.charAt(pos) != c) throw error("'" + c + "' expected");
+            pos++;
+        }
+
+        private boolean tryConsume(char c) {
+            skipWhitespace();
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (pos + 1));
+        }
+    }
+}
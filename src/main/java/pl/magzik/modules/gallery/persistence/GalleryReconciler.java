@@ -0,0 +1,270 @@
+package pl.magzik.modules.gallery.persistence;
+
+import pl.magzik.modules.gallery.fingerprint.Fingerprints;
+import pl.magzik.modules.gallery.table.GalleryEntry;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code GalleryReconciler} checks gallery entries against the file system in the background.
+ * <p>
+ * Existence checks are split into chunks and run concurrently on the given {@link ExecutorService}.
+ * Entries whose files are gone are flagged as missing instead of failing the whole gallery.
+ * For every missing entry with a known size and modification time, the reconciler looks for a
+ * file with the same attributes in the directories already used by the gallery (and in the
+ * nearest existing ancestor of the old location). If exactly one such candidate exists,
+ * and its content hash matches the stored fingerprint (if any), the entry is re-linked to it.
+ * </p>
+ */
+public class GalleryReconciler {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a {@code GalleryReconciler} that runs its checks on the given executor.
+     *
+     * @param executor the executor used for the file system checks.
+     */
+    public GalleryReconciler(ExecutorService executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Reconciles the given entries with the file system.
+     * <p>
+     * The entries are updated in place: attributes are refreshed, missing entries are flagged,
+     * and moved files are re-linked. The returned future completes with a summary of all changes,
+     * including the changed entries keyed by their original paths, so they can be written back to a copy.
+     * </p>
+     *
+     * @param entries the entries to reconcile.
+     * @return a future completed with the {@link Result} of the reconciliation.
+     */
+    public CompletableFuture<Result> reconcile(List<GalleryEntry> entries) {
+        List<GalleryEntry> snapshot = List.copyOf(entries);
+
+        return checkExistence(snapshot).thenCompose(checked -> {
+            Map<Path, GalleryEntry> updates = new LinkedHashMap<>();
+            checked.forEach(entry -> updates.put(entry.getPath(), entry));
+
+            List<GalleryEntry> missing = checked.stream()
+                                                .filter(GalleryEntry::isMissing)
+                                                .toList();
+            boolean updated = checked.size() != missing.size();
+
+            if (missing.isEmpty()) return CompletableFuture.completedFuture(new Result(List.of(), Map.of(), updates, updated));
+
+            return relink(snapshot, missing).thenApply(relinked -> new Result(
+                missing.stream().filter(GalleryEntry::isMissing).toList(),
+                relinked,
+                updates,
+                updated
+            ));
+        });
+    }
+
+    /**
+     * Checks every entry concurrently in chunks, refreshing attributes and flagging missing files.
+     *
+     * @param entries the entries to check.
+     * @return a future completed with the entries whose state changed.
+     */
+    private CompletableFuture<List<GalleryEntry>> checkExistence(List<GalleryEntry> entries) {
+        List<CompletableFuture<List<GalleryEntry>>> chunks = IntStream.iterate(0, i -> i < entries.size(), i -> i + CHUNK_SIZE)
+            .mapToObj(i -> entries.subList(i, Math.min(i + CHUNK_SIZE, entries.size())))
+            .map(chunk -> CompletableFuture.supplyAsync(() -> checkChunk(chunk), executor))
+            .toList();
+
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+            .thenApply(_ -> chunks.stream()
+                .map(CompletableFuture::join)
+                .flatMap(List::stream)
+                .toList()
+            );
+    }
+
+    /**
+     * Checks a single chunk of entries.
+     *
+     * @param chunk the entries to check.
+     * @return the entries whose state changed.
+     */
+    private List<GalleryEntry> checkChunk(List<GalleryEntry> chunk) {
+        List<GalleryEntry> changed = new ArrayList<>();
+
+        for (GalleryEntry entry : chunk) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(entry.getPath(), BasicFileAttributes.class);
+                long size = attributes.size(), modified = attributes.lastModifiedTime().toMillis();
+
+                if (entry.isMissing() || entry.getByteSize() != size || entry.getLastModified() != modified) {
+                    if (entry.getByteSize() != size || entry.getLastModified() != modified) entry.clearFingerprint();
+                    entry.setMissing(false);
+                    entry.updateAttributes(size, modified);
+                    changed.add(entry);
+                }
+            } catch (NoSuchFileException e) {
+                entry.setMissing(true);
+                changed.add(entry);
+            } catch (IOException e) {
+                // The file exists, but can't be read right now. Leave the entry untouched.
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Tries to find the new location of the missing entries.
+     *
+     * @param entries all gallery entries.
+     * @param missing the entries whose files couldn't be found.
+     * @return a future completed with the re-linked entries mapped to their previous paths.
+     */
+    private CompletableFuture<Map<GalleryEntry, Path>> relink(List<GalleryEntry> entries, List<GalleryEntry> missing) {
+        List<GalleryEntry> matchable = missing.stream()
+                                                .filter(e -> e.getByteSize() != GalleryEntry.UNKNOWN && e.getLastModified() != GalleryEntry.UNKNOWN)
+                                                .toList();
+        if (matchable.isEmpty()) return CompletableFuture.completedFuture(Map.of());
+
+        Set<Path> known = new HashSet<>();
+        Set<Path> directories = new LinkedHashSet<>();
+        for (GalleryEntry entry : entries) {
+            known.add(entry.getPath());
+            if (!entry.isMissing() && entry.getPath().getParent() != null) directories.add(entry.getPath().getParent());
+        }
+        matchable.stream()
+                .map(e -> nearestExistingAncestor(e.getPath()))
+                .filter(Objects::nonNull)
+                .forEach(directories::add);
+
+        Map<Attributes, List<Path>> candidates = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> listings = directories.stream()
+            .map(dir -> CompletableFuture.runAsync(() -> indexDirectory(dir, known, candidates), executor))
+            .toList();
+
+        return CompletableFuture.allOf(listings.toArray(CompletableFuture[]::new))
+            .thenApply(_ -> match(matchable, candidates));
+    }
+
+    /**
+     * Lists a directory (non-recursively) and indexes its files by size and modification time.
+     *
+     * @param dir        the directory to list.
+     * @param known      the paths already present in the gallery, which are skipped.
+     * @param candidates the index to fill.
+     */
+    private void indexDirectory(Path dir, Set<Path> known, Map<Attributes, List<Path>> candidates) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                if (known.contains(path)) continue;
+
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) continue;
+
+                candidates.computeIfAbsent(
+                    new Attributes(attributes.size(), attributes.lastModifiedTime().toMillis()),
+                    _ -> Collections.synchronizedList(new ArrayList<>())
+                ).add(path);
+            }
+        } catch (IOException e) {
+            // Unreadable directory, nothing to match against.
+        }
+    }
+
+    /**
+     * Matches missing entries against the indexed candidates. Only unambiguous matches are re-linked.
+     *
+     * @param missing    the missing entries.
+     * @param candidates the indexed candidate files.
+     * @return the re-linked entries mapped to their previous paths.
+     */
+    private Map<GalleryEntry, Path> match(List<GalleryEntry> missing, Map<Attributes, List<Path>> candidates) {
+        Map<Attributes, Long> claims = new HashMap<>();
+        for (GalleryEntry entry : missing) claims.merge(Attributes.of(entry), 1L, Long::sum);
+
+        Map<GalleryEntry, Path> relinked = new HashMap<>();
+        for (GalleryEntry entry : missing) {
+            Attributes key = Attributes.of(entry);
+            List<Path> found = candidates.getOrDefault(key, List.of());
+
+            if (found.size() != 1 || claims.get(key) != 1) continue;
+            if (entry.hasFingerprint() && !hasContentHash(found.getFirst(), entry.getContentHash())) continue;
+
+            Path old = entry.getPath();
+            entry.relink(found.getFirst());
+            relinked.put(entry, old);
+        }
+
+        return relinked;
+    }
+
+    /**
+     * Checks whether the file at the given path has the expected content hash.
+     *
+     * @param path     the candidate file.
+     * @param expected the stored content hash.
+     * @return {@code true} if the hashes are equal, {@code false} otherwise or if the file can't be read.
+     */
+    private boolean hasContentHash(Path path, long expected) {
+        try {
+            return Fingerprints.contentHash(path) == expected;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds the closest ancestor directory of the given path that still exists.
+     *
+     * @param path the path of a missing file.
+     * @return the nearest existing ancestor, or {@code null} if there is none.
+     */
+    private Path nearestExistingAncestor(Path path) {
+        Path parent = path.getParent();
+        while (parent != null && !Files.isDirectory(parent)) parent = parent.getParent();
+        return parent;
+    }
+
+    /**
+     * Key used to match files by their size and modification time.
+     */
+    private record Attributes(long size, long modified) {
+        static Attributes of(GalleryEntry entry) {
+            return new Attributes(entry.getByteSize(), entry.getLastModified());
+        }
+    }
+
+    /**
+     * Summary of a reconciliation run.
+     *
+     * @param missing  entries that are still missing after the run.
+     * @param relinked entries that were re-linked, mapped to their previous paths.
+     * @param updates  every entry that changed, keyed by its path before the run.
+     * @param updated  {@code true} if any entry changed its state or attributes.
+     */
+    public record Result(List<GalleryEntry> missing, Map<GalleryEntry, Path> relinked, Map<Path, GalleryEntry> updates, boolean updated) {
+
+        /**
+         * Checks whether the gallery has to be saved after this run.
+         * The missing flag isn't persisted, so missing entries alone don't count as a change.
+         *
+         * @return {@code true} if any persisted state changed.
+         */
+        public boolean hasChanges() {
+            return updated || !relinked.isEmpty();
+        }
+    }
+}
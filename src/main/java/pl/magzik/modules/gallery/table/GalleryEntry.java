@@ -1,29 +1,46 @@
 package pl.magzik.modules.gallery.table;
 
-import pl.magzik.base.FormatUtils;
-
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
 import java.util.*;
 
 /**
  * Represents an entry in a gallery, consisting of a file path and associated tags.
- * The entry stores the file's path, name, size, modification date, and a set of tags.
+ * The entry stores the file's path, size, modification time, and a set of tags.
+ * Within the gallery table, entries are only used to pass data in and out, see {@link GalleryTableModel}.
  * <p>
  * This class implements {@link Externalizable} to allow custom serialization and deserialization.
+ * The raw size and modification time are persisted alongside the path, so loading a gallery
+ * doesn't have to touch the file system. Entries written by older versions (path and tags only)
+ * are still readable; their attributes are filled in later by the gallery reconciliation.
+ * <p>
+ * Each entry may also carry a perceptual and a content fingerprint of its image. They are computed once,
+ * when the image is added, and let duplicate detection work without decoding the files again.
  */
 public class GalleryEntry implements Externalizable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Version of the serialized form. Legacy entries start directly with the path string.
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * Marks an attribute that isn't known yet.
+     */
+    public static final long UNKNOWN = -1;
+
     private Path path;
     private Set<String> tags;
+    private long byteSize;
+    private long lastModified;
+    private boolean fingerprinted;
+    private long perceptualHash;
+    private long contentHash;
 
-    private transient String name;
-    private transient String size;
-    private transient String modificationDate;
+    private transient volatile boolean missing;
 
     /**
      * Default constructor for {@link Externalizable}.
@@ -39,10 +56,22 @@ public class GalleryEntry implements Externalizable {
     public GalleryEntry(Path path) {
         // The Path is considered existing.
         this.path = path;
-        this.name = path.toFile().getName();
-        this.size = calculateSize(path);
-        this.modificationDate = calculateModificationDate(path);
         this.tags = new LinkedHashSet<>();
+        updateAttributes(calculateSize(path), calculateModificationTime(path));
+    }
+
+    /**
+     * Constructs a new {@code Entry} from already known attributes, without touching the file system.
+     *
+     * @param path         the file path.
+     * @param tags         the tags of the entry.
+     * @param byteSize     the size in bytes, or {@link #UNKNOWN}.
+     * @param lastModified the modification time in epoch milliseconds, or {@link #UNKNOWN}.
+     */
+    public GalleryEntry(Path path, Collection<String> tags, long byteSize, long lastModified) {
+        this.path = path;
+        this.tags = new LinkedHashSet<>(tags);
+        updateAttributes(byteSize, lastModified);
     }
 
     public Path getPath() {
@@ -50,15 +79,113 @@ public class GalleryEntry implements Externalizable {
     }
 
     public String getName() {
-        return name;
+        return path.getFileName().toString();
+    }
+
+    /**
+     * Returns the size of the file in bytes, as it was last observed.
+     *
+     * @return the size in bytes, or {@link #UNKNOWN} if it wasn't determined yet.
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Returns the last modification time of the file in epoch milliseconds, as it was last observed.
+     *
+     * @return the modification time, or {@link #UNKNOWN} if it wasn't determined yet.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Updates the observed size and modification time of the file.
+     *
+     * @param byteSize     the size in bytes.
+     * @param lastModified the modification time in epoch milliseconds.
+     */
+    public void updateAttributes(long byteSize, long lastModified) {
+        this.byteSize = byteSize;
+        this.lastModified = lastModified;
     }
 
-    public String getSize() {
-        return size;
+    /**
+     * Points this entry at a new location of the same file, e.g. after it was moved outside the app.
+     * Clears the missing flag.
+     *
+     * @param path the new file path.
+     */
+    public void relink(Path path) {
+        this.path = path;
+        this.missing = false;
     }
 
-    public String getModificationDate() {
-        return modificationDate;
+    /**
+     * Checks whether the file of this entry couldn't be found during the last reconciliation.
+     *
+     * @return {@code true} if the file is missing, {@code false} otherwise.
+     */
+    public boolean isMissing() {
+        return missing;
+    }
+
+    /**
+     * Flags this entry as missing or present.
+     *
+     * @param missing {@code true} if the file couldn't be found.
+     */
+    public void setMissing(boolean missing) {
+        this.missing = missing;
+    }
+
+    /**
+     * Checks whether the fingerprints of this entry were computed for its current content.
+     *
+     * @return {@code true} if {@link #getPerceptualHash()} and {@link #getContentHash()} are valid.
+     */
+    public boolean hasFingerprint() {
+        return fingerprinted;
+    }
+
+    /**
+     * Returns the 64-bit perceptual hash of the image. Visually identical images share the same value.
+     *
+     * @return the perceptual hash, valid only if {@link #hasFingerprint()} is {@code true}.
+     */
+    public long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    /**
+     * Returns the 64-bit content hash of the file. Byte-identical files share the same value.
+     *
+     * @return the content hash, valid only if {@link #hasFingerprint()} is {@code true}.
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Stores the fingerprints of the image.
+     *
+     * @param perceptualHash the perceptual hash of the image.
+     * @param contentHash    the content hash of the file.
+     */
+    public void setFingerprint(long perceptualHash, long contentHash) {
+        this.perceptualHash = perceptualHash;
+        this.contentHash = contentHash;
+        this.fingerprinted = true;
+    }
+
+    /**
+     * Discards the stored fingerprints, e.g. after the file was modified.
+     */
+    public void clearFingerprint() {
+        this.fingerprinted = false;
+        this.perceptualHash = 0;
+        this.contentHash = 0;
     }
 
     /**
@@ -103,53 +230,70 @@ public class GalleryEntry implements Externalizable {
 
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeObject(FORMAT_VERSION);
         out.writeObject(path.toAbsolutePath().toString());
         out.writeObject(new ArrayList<>(tags));
+        out.writeLong(byteSize);
+        out.writeLong(lastModified);
+        out.writeBoolean(fingerprinted);
+        out.writeLong(perceptualHash);
+        out.writeLong(contentHash);
     }
 
     @Override
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-        path = Path.of((String) in.readObject());
-        tags = new LinkedHashSet<>(validateEntryList(in.readObject()));
-        name = path.getFileName().toString();
-        size = calculateSize(path);
-        modificationDate = calculateModificationDate(path);
+        Object head = in.readObject();
+
+        long bytes = UNKNOWN, modified = UNKNOWN;
+        if (head instanceof String legacyPath) {
+            path = Path.of(legacyPath);
+            tags = new LinkedHashSet<>(validateEntryList(in.readObject()));
+        } else if (head instanceof Integer version && version <= FORMAT_VERSION) {
+            path = Path.of((String) in.readObject());
+            tags = new LinkedHashSet<>(validateEntryList(in.readObject()));
+            bytes = in.readLong();
+            modified = in.readLong();
+
+            if (version >= 3) {
+                fingerprinted = in.readBoolean();
+                perceptualHash = in.readLong();
+                contentHash = in.readLong();
+            }
+        } else {
+            throw new ClassNotFoundException("Unsupported gallery entry format: " + head);
+        }
+
+        updateAttributes(bytes, modified);
     }
 
     /**
      * Calculates the size of the file at the given path in bytes.
-     * If the size cannot be determined, returns 0.
+     * If the size cannot be determined, returns {@link #UNKNOWN}.
      *
      * @param p the path of the file.
-     * @return the size as a formatted string.
+     * @return the size in bytes.
      */
-    private String calculateSize(Path p) {
-        long bytes;
+    private long calculateSize(Path p) {
         try {
-            bytes = Files.size(p);
+            return Files.size(p);
         } catch (IOException e) {
-            bytes = 0;
+            return UNKNOWN;
         }
-
-        return FormatUtils.formatInto(bytes);
     }
 
     /**
-     * Calculates the last modification date of the file at the given path.
-     * If the date cannot be determined, returns a default date.
+     * Calculates the last modification time of the file at the given path.
+     * If the time cannot be determined, returns {@link #UNKNOWN}.
      *
      * @param p the path of the file.
-     * @return the modification date as a formatted string.
+     * @return the modification time in epoch milliseconds.
      */
-    private String calculateModificationDate(Path p) {
-        FileTime ft;
+    private long calculateModificationTime(Path p) {
         try {
-            ft = Files.getLastModifiedTime(p);
+            return Files.getLastModifiedTime(p).toMillis();
         } catch (IOException e) {
-            ft = FileTime.fromMillis(0);
+            return UNKNOWN;
         }
-
-        return FormatUtils.formatDate(ft);
     }
 
     /**
@@ -0,0 +1,215 @@
+package pl.magzik.modules.gallery.table;
+
+import java.util.*;
+
+/**
+ * A case-insensitive substring index over the names and tags of gallery rows.
+ * <p>
+ * Rows are identified by stable ids, assigned by the {@link GalleryTableModel}, so removing rows doesn't
+ * shift the index. Every trigram (three consecutive characters) of a name or tag maps to the ids containing it.
+ * A query first takes the shortest posting list among its trigrams, and then verifies only those candidates,
+ * instead of scanning every row. Queries shorter than three characters fall back to a scan.
+ * </p>
+ * <p>
+ * The index is updated incrementally. Changed or removed texts leave stale ids in the posting lists;
+ * they are filtered out by the verification step. Every removed row, and every update dropping a name or a tag
+ * of a row, counts as a stale entry, and the lists are rebuilt once there are more stale entries than live rows. All methods are synchronized, so queries can run on any thread.
+ * </p>
+ */
+public class GallerySearchIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_PURGE_SIZE = 1024;
+
+    private final Map<Long, Postings> postings;
+    private String[] names;
+    private String[][] tags;
+    private int live, removed;
+
+    /**
+     * Constructs an empty {@code GallerySearchIndex}.
+     */
+    public GallerySearchIndex() {
+        this.postings = new HashMap<>();
+        this.names = new String[INITIAL_CAPACITY];
+        this.tags = new String[INITIAL_CAPACITY][];
+    }
+
+    /**
+     * Indexes a row, or updates it after its name or tags changed. Only texts that weren't indexed for the row
+     * before are tokenized.
+     *
+     * @param id   the stable id of the row.
+     * @param name the file name.
+     * @param tags the tags.
+     */
+    public synchronized void put(int id, String name, String[] tags) {
+        ensureCapacity(id + 1);
+
+        String oldName = names[id];
+        String[] oldTags = this.tags[id];
+        if (oldName == null) live++;
+
+        String lowerName = lower(name);
+        String[] lowerTags = new String[tags.length];
+        for (int i = 0; i < tags.length; i++) lowerTags[i] = lower(tags[i]);
+
+        if (!lowerName.equals(oldName)) addTrigrams(id, lowerName);
+        for (String tag : lowerTags) {
+            if (oldTags == null || !Arrays.asList(oldTags).contains(tag)) addTrigrams(id, tag);
+        }
+
+        names[id] = lowerName;
+        this.tags[id] = lowerTags;
+
+        if (oldName != null && (!lowerName.equals(oldName) || !Arrays.asList(lowerTags).containsAll(Arrays.asList(oldTags)))) {
+            removed++;
+            purgeIfNeeded();
+        }
+    }
+
+    /**
+     * Removes a row from the index.
+     *
+     * @param id the stable id of the row.
+     */
+    public synchronized void remove(int id) {
+        if (id >= names.length || names[id] == null) return;
+
+        names[id] = null;
+        tags[id] = null;
+        live--;
+        removed++;
+
+        purgeIfNeeded();
+    }
+
+    /**
+     * Removes all rows from the index.
+     */
+    public synchronized void clear() {
+        postings.clear();
+        names = new String[INITIAL_CAPACITY];
+        tags = new String[INITIAL_CAPACITY][];
+        live = removed = 0;
+    }
+
+    /**
+     * Finds all rows whose name or any tag contains the query, ignoring case.
+     *
+     * @param query the text to look for.
+     * @return the ids of the matching rows, or {@code null} if the query is empty and everything matches.
+     */
+    public synchronized BitSet search(String query) {
+        String q = lower(query);
+        if (q.isEmpty()) return null;
+
+        BitSet result = new BitSet();
+        if (q.length() < 3) {
+            for (int id = 0; id < names.length; id++) {
+                if (matches(id, q)) result.set(id);
+            }
+            return result;
+        }
+
+        Postings candidates = null;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            Postings p = postings.get(trigram(q, i));
+            if (p == null) return result;
+            if (candidates == null || p.size < candidates.size) candidates = p;
+        }
+
+        for (int i = 0; i < candidates.size; i++) {
+            int id = candidates.ids[i];
+            if (!result.get(id) && matches(id, q)) result.set(id);
+        }
+        return result;
+    }
+
+    /**
+     * Verifies a candidate row.
+     *
+     * @param id the stable id of the row.
+     * @param q  the lower-cased query.
+     * @return {@code true} if the row is indexed, and its name or any tag contains the query.
+     */
+    private boolean matches(int id, String q) {
+        String name = names[id];
+        if (name == null) return false;
+        if (name.contains(q)) return true;
+
+        for (String tag : tags[id]) {
+            if (tag.contains(q)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the id to the posting lists of all trigrams of the text.
+     *
+     * @param id   the stable id of the row.
+     * @param text the lower-cased text.
+     */
+    private void addTrigrams(int id, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            postings.computeIfAbsent(trigram(text, i), _ -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Rebuilds the posting lists once there are more stale entries than live rows.
+     */
+    private void purgeIfNeeded() {
+        if (removed > live && removed >= MIN_PURGE_SIZE) rebuild();
+    }
+
+    /**
+     * Rebuilds all posting lists from the live rows, dropping stale ids.
+     */
+    private void rebuild() {
+        postings.clear();
+        for (int id = 0; id < names.length; id++) {
+            if (names[id] == null) continue;
+
+            addTrigrams(id, names[id]);
+            for (String tag : tags[id]) addTrigrams(id, tag);
+        }
+        removed = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= names.length) return;
+
+        int size = Math.max(capacity, names.length + (names.length >> 1));
+        names = Arrays.copyOf(names, size);
+        tags = Arrays.copyOf(tags, size);
+    }
+
+    /**
+     * Packs three characters into a single key.
+     */
+    private static long trigram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    private static String lower(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A growable list of row ids.
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        /**
+         * Appends the id, unless it was the last one appended, which happens for repeated trigrams of a text.
+         */
+        private void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+}
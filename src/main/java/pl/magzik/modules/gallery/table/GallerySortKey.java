@@ -0,0 +1,127 @@
+package pl.magzik.modules.gallery.table;
+
+/**
+ * A precomputed sort key of a single {@link GalleryTableModel} row.
+ * <p>
+ * The file name is split into digit and non-digit tokens once, when the row is stored, and the raw size
+ * and modification time are kept next to it. All comparisons work directly on these values, so sorting
+ * the table neither parses nor allocates anything.
+ * </p>
+ */
+final class GallerySortKey {
+
+    private final String name;
+    /**
+     * End offsets of the name tokens. Digit tokens are stored as the bitwise complement of their end offset.
+     */
+    private final int[] tokenEnds;
+    private final long size;
+    private final long modified;
+
+    /**
+     * Constructs the sort key of a row.
+     *
+     * @param name     the file name.
+     * @param size     the size in bytes.
+     * @param modified the modification time in epoch milliseconds.
+     */
+    GallerySortKey(String name, long size, long modified) {
+        this.name = name;
+        this.tokenEnds = tokenize(name);
+        this.size = size;
+        this.modified = modified;
+    }
+
+    /**
+     * Compares file names in natural order: digit runs are compared by their numeric value,
+     * everything else character by character.
+     *
+     * @param a the first key.
+     * @param b the second key.
+     * @return a negative integer, zero, or a positive integer as the first name is less than, equal to,
+     *         or greater than the second.
+     */
+    static int compareNames(GallerySortKey a, GallerySortKey b) {
+        int tokens = Math.min(a.tokenEnds.length, b.tokenEnds.length);
+        int startA = 0, startB = 0;
+
+        for (int i = 0; i < tokens; i++) {
+            int endA = a.tokenEnds[i], endB = b.tokenEnds[i];
+            boolean digitsA = endA < 0, digitsB = endB < 0;
+            if (digitsA) endA = ~endA;
+            if (digitsB) endB = ~endB;
+
+            int cmp = digitsA && digitsB
+                ? compareNumbers(a.name, startA, endA, b.name, startB, endB)
+                : compareText(a.name, startA, endA, b.name, startB, endB);
+            if (cmp != 0) return cmp;
+
+            startA = endA;
+            startB = endB;
+        }
+
+        return Integer.compare(a.name.length(), b.name.length());
+    }
+
+    static int compareSizes(GallerySortKey a, GallerySortKey b) {
+        return Long.compare(a.size, b.size);
+    }
+
+    static int compareModificationTimes(GallerySortKey a, GallerySortKey b) {
+        return Long.compare(a.modified, b.modified);
+    }
+
+    /**
+     * Compares two digit runs by their numeric value, ignoring leading zeros. Runs of any length are supported.
+     */
+    private static int compareNumbers(String a, int startA, int endA, String b, int startB, int endB) {
+        while (startA < endA - 1 && a.charAt(startA) == '0') startA++;
+        while (startB < endB - 1 && b.charAt(startB) == '0') startB++;
+
+        int cmp = Integer.compare(endA - startA, endB - startB);
+        if (cmp != 0) return cmp;
+
+        return compareText(a, startA, endA, b, startB, endB);
+    }
+
+    /**
+     * Compares two regions lexicographically, like {@link String#compareTo(String)} would compare them as substrings.
+     */
+    private static int compareText(String a, int startA, int endA, String b, int startB, int endB) {
+        int lenA = endA - startA, lenB = endB - startB;
+        int len = Math.min(lenA, lenB);
+
+        for (int i = 0; i < len; i++) {
+            char ca = a.charAt(startA + i), cb = b.charAt(startB + i);
+            if (ca != cb) return ca - cb;
+        }
+
+        return lenA - lenB;
+    }
+
+    /**
+     * Splits the name into alternating digit and non-digit tokens.
+     *
+     * @param name the name.
+     * @return the end offsets of the tokens, with digit tokens complemented.
+     */
+    private static int[] tokenize(String name) {
+        int count = 0;
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || isDigit(name.charAt(i)) != isDigit(name.charAt(i - 1))) count++;
+        }
+
+        int[] ends = new int[count];
+        int token = 0;
+        for (int i = 1; i <= name.length(); i++) {
+            if (i == name.length() || isDigit(name.charAt(i)) != isDigit(name.charAt(i - 1)))
+                ends[token++] = isDigit(name.charAt(i - 1)) ? ~i : i;
+        }
+
+        return ends;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
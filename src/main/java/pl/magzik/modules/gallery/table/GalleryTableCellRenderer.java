@@ -0,0 +1,40 @@
+package pl.magzik.modules.gallery.table;
+
+import pl.magzik.base.FormatUtils;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+
+/**
+ * Renders the raw size and modification time values of the {@link GalleryTableModel}.
+ * <p>
+ * The model keeps both as {@code long} values, and they are formatted here, only for the cells
+ * that are actually painted. Unknown values ({@link GalleryEntry#UNKNOWN}) are rendered as empty cells.
+ * </p>
+ */
+public class GalleryTableCellRenderer extends DefaultTableCellRenderer {
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+        return super.getTableCellRendererComponent(table, format(value, table.convertColumnIndexToModel(column)), isSelected, hasFocus, row, column);
+    }
+
+    /**
+     * Formats a cell value of the given model column.
+     *
+     * @param value  the raw value.
+     * @param column the model column index.
+     * @return the text to display.
+     */
+    private String format(Object value, int column) {
+        if (!(value instanceof Long raw)) return value == null ? "" : value.toString();
+        if (raw == GalleryEntry.UNKNOWN) return "";
+
+        return switch (column) {
+            case GalleryTableModel.SIZE_COLUMN -> FormatUtils.formatInto(raw);
+            case GalleryTableModel.DATE_COLUMN -> FormatUtils.formatDate(raw);
+            default -> raw.toString();
+        };
+    }
+}
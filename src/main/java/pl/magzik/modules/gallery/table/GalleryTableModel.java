@@ -1,24 +1,77 @@
 package pl.magzik.modules.gallery.table;
 
+import pl.magzik.modules.gallery.thumbnail.ThumbnailKey;
+
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * A table model that represents a collection of gallery entries for use in a JTable.
  * This model extends {@link AbstractTableModel} and implements {@link GalleryTableModelHandler}.
  * It provides methods for managing gallery entries, including adding, removing, and updating entries,
  * as well as managing tags associated with each entry.
+ * <p>
+ * The model doesn't keep {@link GalleryEntry} objects. Every attribute is stored in its own column array,
+ * sizes and modification times as primitive {@code long} values, and file names and tags are interned,
+ * so repeated values are shared between rows. Size and date cells are formatted only when they are rendered,
+ * see {@link GalleryTableCellRenderer}. The thumbnail column holds only a {@link ThumbnailKey}; the image itself
+ * is loaded lazily by {@link GalleryThumbnailRenderer}. Entries passed in or returned by this model are copies.
+ * </p>
+ * <p>
+ * A path to row id map is kept in sync with the columns, so membership checks take constant time, and lookups by path
+ * a binary search over the row ids, see {@link #getRowId(int)}. Since the ids don't change when rows shift,
+ * removing any number of rows takes a single compacting pass, which touches the map only for the removed rows.
+ * Every row also carries a precomputed {@link GallerySortKey}, used by {@link GalleryTableRowSorter}.
+ * </p>
+ * <p>
+ * Names and tags are kept in a {@link GallerySearchIndex}. Since row indexes shift when rows are removed,
+ * the index refers to rows by stable ids, see {@link #getRowId(int)}. Tags are also kept in a {@link GalleryTagIndex},
+ * which answers tag queries and lists the used tags without visiting the rows.
+ * </p>
+ * <p>
+ * Changes are serialized by a lock, which the readers take too, since the columns may be grown or compacted
+ * by a worker thread while the Event Dispatch Thread renders them. Bulk changes can be applied under a single lock acquisition with
+ * {@link #batch(Consumer)}. Table events aren't fired per change: changed and inserted rows are accumulated,
+ * and announced on the Event Dispatch Thread by a single flush, so a change of thousands of rows costs
+ * one event and one sorter pass. The table sees only the announced rows, see {@link #getRowCount()}.
+ * </p>
  */
 public class GalleryTableModel extends AbstractTableModel implements GalleryTableModelHandler, TablePropertyAccess {
 
-    private final List<GalleryEntry> entries;
+    public static final int THUMBNAIL_COLUMN = 0, NAME_COLUMN = 1, SIZE_COLUMN = 2, DATE_COLUMN = 3, TAGS_COLUMN = 4;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final String[] NO_TAGS = new String[0];
+
+    private int rowCount;
+    private Path[] paths;
+    private String[] names;
+    private long[] sizes;
+    private long[] modificationTimes;
+    private String[][] tags;
+    private int[] rowIds;
+    private GallerySortKey[] sortKeys;
+    private long[] perceptualHashes;
+    private long[] contentHashes;
+    private final BitSet fingerprinted;
+    private final BitSet missing;
+    private final Map<Path, Integer> rowIdsByPath;
+    private final GallerySearchIndex searchIndex;
+    private final GalleryTagIndex tagIndex;
+    private int nextRowId;
+
+    private final ReentrantLock lock;
+    private int announcedRowCount;
+    private int updatedFirst, updatedLast;
+    private boolean flushScheduled;
 
     private static final String[] columnNames = {
+        "table.gallery.column.thumbnail",
         "table.gallery.column.name",
         "table.gallery.column.size",
         "table.gallery.column.modification_date",
@@ -26,10 +79,31 @@ public class GalleryTableModel extends AbstractTableModel implements GalleryTabl
     };
 
     /**
-     * Constructs a new {@code GalleryTableModel} with an empty list of gallery entries.
+     * Constructs a new {@code GalleryTableModel} without any gallery entries.
      */
     public GalleryTableModel() {
-        this.entries = new ArrayList<>();
+        this.rowCount = 0;
+        this.paths = new Path[INITIAL_CAPACITY];
+        this.names = new String[INITIAL_CAPACITY];
+        this.sizes = new long[INITIAL_CAPACITY];
+        this.modificationTimes = new long[INITIAL_CAPACITY];
+        this.tags = new String[INITIAL_CAPACITY][];
+        this.rowIds = new int[INITIAL_CAPACITY];
+        this.sortKeys = new GallerySortKey[INITIAL_CAPACITY];
+        this.perceptualHashes = new long[INITIAL_CAPACITY];
+        this.contentHashes = new long[INITIAL_CAPACITY];
+        this.fingerprinted = new BitSet();
+        this.missing = new BitSet();
+        this.rowIdsByPath = new HashMap<>();
+        this.searchIndex = new GallerySearchIndex();
+        this.tagIndex = new GalleryTagIndex();
+        this.nextRowId = 0;
+
+        this.lock = new ReentrantLock();
+        this.announcedRowCount = 0;
+        this.updatedFirst = Integer.MAX_VALUE;
+        this.updatedLast = -1;
+        this.flushScheduled = false;
     }
 
     @Override
@@ -39,7 +113,11 @@ public class GalleryTableModel extends AbstractTableModel implements GalleryTabl
 
     @Override
     public Class<?> getColumnClass(int columnIndex) {
-        return String.class;
+        return switch (columnIndex) {
+            case THUMBNAIL_COLUMN -> ThumbnailKey.class;
+            case SIZE_COLUMN, DATE_COLUMN -> Long.class;
+            default -> String.class;
+        };
     }
 
     @Override
@@ -52,47 +130,92 @@ public class GalleryTableModel extends AbstractTableModel implements GalleryTabl
         columnNames[column] = name;
     }
 
+    /**
+     * Returns the value of a cell, read under the lock, since the columns may be changed by another thread.
+     * Rows appended since the table was last notified have no values yet.
+     *
+     * @param rowIndex    the row index.
+     * @param columnIndex the column index.
+     * @return the value, or {@code null} if there's no such announced row.
+     */
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        if (rowIndex >= entries.size()) {
-            System.out.println("row: " + rowIndex + ", column: " + columnIndex + " at: " + entries.size());
+        lock.lock();
+        try {
+            if (rowIndex < 0 || rowIndex >= announcedRowCount) return null;
 
-            throw new IndexOutOfBoundsException("Row index out of bounds.");
+            return switch (columnIndex) {
+                case THUMBNAIL_COLUMN -> missing.get(rowIndex) ? null : new ThumbnailKey(paths[rowIndex], sizes[rowIndex], modificationTimes[rowIndex]);
+                case NAME_COLUMN -> names[rowIndex];
+                case SIZE_COLUMN -> sizes[rowIndex];
+                case DATE_COLUMN -> modificationTimes[rowIndex];
+                case TAGS_COLUMN -> String.join(", ", tags[rowIndex]);
+                default -> throw new IndexOutOfBoundsException("Column index out of bounds");
+            };
+        } finally {
+            lock.unlock();
         }
-
-        GalleryEntry galleryEntry = entries.get(rowIndex);
-        return switch (columnIndex) {
-            case 0 -> galleryEntry.getName();
-            case 1 -> galleryEntry.getSize();
-            case 2 -> galleryEntry.getModificationDate();
-            case 3 -> String.join(", ", galleryEntry.getTags());
-            default -> throw new IndexOutOfBoundsException("Column index out of bounds");
-        };
     }
 
     @Override
     public void addEntries(Collection<GalleryEntry> entries) {
         if (entries.isEmpty()) return;
 
-        int idx = this.entries.size();
+        lock.lock();
+        try {
+            ensureCapacity(rowCount + entries.size());
 
-        this.entries.addAll(
-            entries.stream()
-            .filter(image -> !this.entries.contains(image))
-            .toList()
-        );
+            for (GalleryEntry entry : entries) {
+                if (!rowIdsByPath.containsKey(entry.getPath())) setRow(rowCount++, entry);
+            }
 
-        SwingUtilities.invokeLater(() -> fireTableRowsInserted(idx, this.entries.size() - 1));
+            scheduleFlush();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public List<GalleryEntry> removeEntries(Collection<Integer> rows) {
-        List<GalleryEntry> entries = rows.stream()
-                                    .map(this.entries::get)
-                                    .toList();
+    /**
+     * Removes the entries with the given paths. Listeners are notified with a single event: a row deletion
+     * if the rows are contiguous, and a data change otherwise.
+     * <p>
+     * The rows are looked up and compacted in a single critical section on the Event Dispatch Thread,
+     * so a removal running in between can't shift them. Paths that aren't in the model are ignored.
+     * </p>
+     *
+     * @param paths the paths of the entries to remove.
+     * @return copies of exactly the removed entries, in row order.
+     */
+    public List<GalleryEntry> removeEntries(Collection<Path> paths) {
+        List<GalleryEntry> entries = new ArrayList<>();
+        if (paths.isEmpty()) return entries;
+
         try {
             SwingUtilities.invokeAndWait(() -> {
-                entries.forEach(this.entries::remove);
-                fireTableDataChanged();
+                BitSet removed = new BitSet();
+                boolean contiguous;
+
+                lock.lock();
+                try {
+                    for (Path path : paths) {
+                        int row = rowOf(path);
+                        if (row != -1) removed.set(row);
+                    }
+                    if (removed.isEmpty()) return;
+
+                    for (int row = removed.nextSetBit(0); row >= 0; row = removed.nextSetBit(row + 1)) entries.add(getEntry(row));
+
+                    contiguous = removed.length() - removed.nextSetBit(0) == removed.cardinality() && isAnnounced();
+                    compact(removed);
+                    announcedRowCount = rowCount;
+                    updatedFirst = Integer.MAX_VALUE;
+                    updatedLast = -1;
+                } finally {
+                    lock.unlock();
+                }
+
+                if (contiguous) fireTableRowsDeleted(removed.nextSetBit(0), removed.length() - 1);
+                else fireTableDataChanged();
             });
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -105,16 +228,100 @@ public class GalleryTableModel extends AbstractTableModel implements GalleryTabl
         return entries;
     }
 
-    public void addTag(int row, String tag) {
-        entries.get(row).addTag(tag);
+    /**
+     * Removes all entries from the model.
+     */
+    public void clearEntries() {
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                lock.lock();
+                try {
+                    clearRows(0, rowCount);
+                    rowIdsByPath.clear();
+                    searchIndex.clear();
+                    tagIndex.clear();
+                    nextRowId = 0;
+                    rowCount = 0;
+                    announcedRowCount = 0;
+                    updatedFirst = Integer.MAX_VALUE;
+                    updatedLast = -1;
+                } finally {
+                    lock.unlock();
+                }
 
-        SwingUtilities.invokeLater(() -> fireTableRowsUpdated(row, row));
+                fireTableDataChanged();
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println(e.getCause() + ": " + e.getMessage()); // Todo, change for other more advance logging
+        } catch (InvocationTargetException e) {
+            System.err.println(e.getCause() + ": " + e.getMessage()); // Todo, change for other more advance logging
+            throw new RuntimeException(e);
+        }
     }
 
-    public void removeTag(int row, String tag) {
-        entries.get(row).removeTag(tag);
+    /**
+     * Writes back the file state of updated entry copies, e.g. after a reconciliation or fingerprinting:
+     * the path, size, modification time, fingerprints, and the missing flag. Tags of the rows are kept,
+     * since they may have been edited while the copies were processed.
+     * Paths that aren't in the model are ignored, and so are re-linked entries whose new path already has a row.
+     * Listeners are notified once for all updated rows.
+     *
+     * @param updates the updated entries, keyed by the path their row currently has.
+     *                The entry may carry a different path if the file was re-linked.
+     */
+    public void updateEntries(Map<Path, GalleryEntry> updates) {
+        batch(batch -> {
+            for (Map.Entry<Path, GalleryEntry> update : updates.entrySet()) {
+                int row = rowOf(update.getKey());
+                if (row == -1) continue;
+
+                Path path = update.getValue().getPath();
+                if (!path.equals(update.getKey()) && rowIdsByPath.containsKey(path)) continue;
 
-        SwingUtilities.invokeLater(() -> fireTableRowsUpdated(row, row));
+                setFileState(row, update.getValue());
+                batch.changed(row);
+            }
+        });
+    }
+
+    /**
+     * Renames a tag in all rows, as a single batch. Rows carrying the tag are found with the tag index,
+     * so the other rows aren't visited.
+     *
+     * @param oldTag the current name of the tag.
+     * @param newTag the new name of the tag.
+     * @return the number of rows that carried the tag.
+     */
+    public int renameTag(String oldTag, String newTag) {
+        int[] renamed = {0};
+        batch(batch -> renamed[0] = batch.renameTag(oldTag, newTag));
+        return renamed[0];
+    }
+
+    /**
+     * Applies a bulk change to the model under a single lock acquisition. Listeners are notified once,
+     * with a single update event spanning all changed rows, after the change is complete.
+     * <p>
+     * The {@link Batch} passed to the change is valid only during this call.
+     * </p>
+     *
+     * @param change the change to apply.
+     */
+    public void batch(Consumer<Batch> change) {
+        lock.lock();
+        try {
+            Batch batch = new Batch();
+            change.accept(batch);
+
+            if (batch.last == -1) return;
+
+            updatedFirst = Math.min(updatedFirst, batch.first);
+            updatedLast = Math.max(updatedLast, batch.last);
+            scheduleFlush();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -123,19 +330,572 @@ public class GalleryTableModel extends AbstractTableModel implements GalleryTabl
     }
 
     public int indexOf(GalleryEntry galleryEntry) {
-        return entries.indexOf(galleryEntry);
+        return indexOf(galleryEntry.getPath());
+    }
+
+    /**
+     * Returns the row of the entry with the given path.
+     *
+     * @param path the path of the file.
+     * @return the row index, or {@code -1} if the path isn't in the model.
+     */
+    public int indexOf(Path path) {
+        lock.lock();
+        try {
+            return rowOf(path);
+        } finally {
+            lock.unlock();
+        }
     }
 
+    public boolean contains(Path path) {
+        lock.lock();
+        try {
+            return rowIdsByPath.containsKey(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the entry at the given row.
+     *
+     * @param index the row index.
+     * @return a new {@link GalleryEntry} holding the values of the row.
+     */
     public GalleryEntry getEntry(int index) {
-        return entries.get(index);
+        lock.lock();
+        try {
+            Objects.checkIndex(index, rowCount);
+
+            GalleryEntry entry = new GalleryEntry(paths[index], Arrays.asList(tags[index]), sizes[index], modificationTimes[index]);
+            if (fingerprinted.get(index)) entry.setFingerprint(perceptualHashes[index], contentHashes[index]);
+            entry.setMissing(missing.get(index));
+
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the entry with the given path, looked up and copied under a single lock acquisition.
+     *
+     * @param path the path of the file.
+     * @return a new {@link GalleryEntry}, or {@code null} if the path isn't in the model.
+     */
+    public GalleryEntry getEntry(Path path) {
+        lock.lock();
+        try {
+            int row = rowOf(path);
+            return row == -1 ? null : getEntry(row);
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Returns copies of all entries, in row order.
+     *
+     * @return a new list of entries.
+     */
     public List<GalleryEntry> getEntries() {
-        return Collections.unmodifiableList(entries);
+        lock.lock();
+        try {
+            List<GalleryEntry> entries = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) entries.add(getEntry(i));
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the entries in row order, copied in batches. Each batch is copied under a single lock acquisition,
+     * and the lock is released while the batch is consumed, so only one batch of copies is held at a time,
+     * and other threads can change the model in between. The next batch continues after the row id of the last copied entry,
+     * so removed rows are skipped, appended rows are included, and no row is returned twice.
+     *
+     * @param batchSize the maximal number of entries per batch.
+     * @return an iterable of entry copies, which can be iterated several times.
+     */
+    public Iterable<GalleryEntry> getEntries(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+
+        return () -> new Iterator<>() {
+            private final List<GalleryEntry> buffer = new ArrayList<>(batchSize);
+            private int position = 0;
+            private int lastId = -1;
+
+            @Override
+            public boolean hasNext() {
+                if (position < buffer.size()) return true;
+
+                buffer.clear();
+                position = 0;
+                lastId = copyEntries(lastId, batchSize, buffer);
+                return !buffer.isEmpty();
+            }
+
+            @Override
+            public GalleryEntry next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return buffer.get(position++);
+            }
+        };
+    }
+
+    /**
+     * Copies the entries of the rows following the given row id.
+     *
+     * @param afterId the row id to continue after, or {@code -1} to start at the first row.
+     * @param limit   the maximal number of entries to copy.
+     * @param into    receives the copies.
+     * @return the row id of the last copied entry, or {@code afterId} if there was none.
+     */
+    private int copyEntries(int afterId, int limit, List<GalleryEntry> into) {
+        lock.lock();
+        try {
+            int row = Arrays.binarySearch(rowIds, 0, rowCount, afterId);
+            row = row < 0 ? -row - 1 : row + 1;
+
+            int last = afterId;
+            for (int end = Math.min(rowCount, row + limit); row < end; row++) {
+                into.add(getEntry(row));
+                last = rowIds[row];
+            }
+            return last;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path getPath(int row) {
+        lock.lock();
+        try {
+            Objects.checkIndex(row, rowCount);
+            return paths[row];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the tags carried by at least one of the given rows, answered by the tag index
+     * without visiting the tags of every row. Rows that don't exist are ignored.
+     *
+     * @param rows the row indexes.
+     * @return a new list of tags, in the order they were first used.
+     */
+    public List<String> getTags(Collection<Integer> rows) {
+        lock.lock();
+        try {
+            BitSet ids = new BitSet();
+            for (int row : rows) {
+                if (row >= 0 && row < rowCount) ids.set(rowIds[row]);
+            }
+            return tagIndex.getTags(ids);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether the file of the entry at the given row couldn't be found during the last reconciliation.
+     *
+     * @param row the row index.
+     * @return {@code true} if the file is missing, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException if there's no such row.
+     */
+    public boolean isMissing(int row) {
+        lock.lock();
+        try {
+            Objects.checkIndex(row, rowCount);
+            return missing.get(row);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the stable id of the given row. Unlike the row index, it doesn't change when other rows are removed.
+     * Ids are assigned in increasing order to appended rows, and removing rows keeps the order of the others,
+     * so ids always increase with the row index.
+     *
+     * @param row the row index.
+     * @return the row id.
+     * @throws IndexOutOfBoundsException if there's no such row.
+     */
+    public int getRowId(int row) {
+        lock.lock();
+        try {
+            Objects.checkIndex(row, rowCount);
+            return rowIds[row];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a row passes a filter by row ids and by the missing flag, with a single lock acquisition,
+     * e.g. for a row filter of the table.
+     *
+     * @param row         the row index.
+     * @param ids         the ids of the included rows (see {@link #getRowId(int)}), or {@code null} to include all.
+     * @param missingOnly whether only rows with missing files are included.
+     * @return {@code true} if the row is included, {@code false} otherwise or if there's no such row.
+     */
+    public boolean isIncluded(int row, BitSet ids, boolean missingOnly) {
+        lock.lock();
+        try {
+            if (row < 0 || row >= rowCount) return false;
+            return (ids == null || ids.get(rowIds[row])) && (!missingOnly || missing.get(row));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds all rows whose name or any tag contains the query, ignoring case.
+     * Uses the search index, so it's cheap enough to be called for every query, and safe to call from any thread.
+     *
+     * @param query the text to look for.
+     * @return the ids of the matching rows (see {@link #getRowId(int)}), or {@code null} if the query is empty.
+     */
+    public BitSet search(String query) {
+        return searchIndex.search(query);
+    }
+
+    /**
+     * Finds all rows matching a tag query.
+     * Uses the tag index, so it's safe to call from any thread.
+     *
+     * @param query the parsed tag query.
+     * @return the ids of the matching rows (see {@link #getRowId(int)}), or {@code null} if the query is {@code null}.
+     */
+    public BitSet searchTags(GalleryTagQuery query) {
+        return query == null ? null : tagIndex.evaluate(query);
+    }
+
+    /**
+     * Returns all tags used by at least one row, in the order they were first used.
+     *
+     * @return a new list of tags.
+     */
+    public List<String> getAllTags() {
+        return tagIndex.getTags();
     }
 
+    /**
+     * Returns the precomputed sort key of the given row.
+     *
+     * @param row the row index.
+     * @return the sort key, or {@code null} if there's no such announced row.
+     */
+    GallerySortKey getSortKey(int row) {
+        lock.lock();
+        try {
+            return row >= 0 && row < announcedRowCount ? sortKeys[row] : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of rows the listeners were notified about. Rows appended since the last flush
+     * aren't counted until they're announced, so the table and its sorter never see a row before its insert event,
+     * which would make them add it twice.
+     *
+     * @return the number of announced rows.
+     */
     @Override
     public int getRowCount() {
-        return entries.size();
+        lock.lock();
+        try {
+            return announcedRowCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current row of the entry with the given path. Must be called while holding the lock.
+     *
+     * @param path the path of the file.
+     * @return the row index, or {@code -1} if the path isn't in the model.
+     */
+    private int rowOf(Path path) {
+        Integer id = rowIdsByPath.get(path);
+        if (id == null) return -1;
+
+        int row = Arrays.binarySearch(rowIds, 0, rowCount, id);
+        return row < 0 ? -1 : row;
+    }
+
+    /**
+     * Schedules a flush of the accumulated changes, unless one is already scheduled.
+     * Must be called while holding the lock.
+     */
+    private void scheduleFlush() {
+        if (flushScheduled || isAnnounced()) return;
+
+        flushScheduled = true;
+        SwingUtilities.invokeLater(this::flush);
+    }
+
+    /**
+     * Checks whether listeners were notified about every change. Must be called while holding the lock.
+     *
+     * @return {@code true} if there are no accumulated changes.
+     */
+    private boolean isAnnounced() {
+        return updatedLast == -1 && announcedRowCount == rowCount;
+    }
+
+    /**
+     * Notifies listeners about the accumulated changes: rows updated among the rows they already know,
+     * and then rows inserted since the last flush. Runs on the Event Dispatch Thread.
+     */
+    private void flush() {
+        int updateFrom, updateTo, insertFrom, insertTo;
+
+        lock.lock();
+        try {
+            flushScheduled = false;
+
+            updateFrom = updatedFirst;
+            updateTo = Math.min(updatedLast, announcedRowCount - 1);
+            insertFrom = announcedRowCount;
+            insertTo = rowCount - 1;
+
+            announcedRowCount = rowCount;
+            updatedFirst = Integer.MAX_VALUE;
+            updatedLast = -1;
+        } finally {
+            lock.unlock();
+        }
+
+        if (updateFrom <= updateTo) fireTableRowsUpdated(updateFrom, updateTo);
+        if (insertFrom <= insertTo) fireTableRowsInserted(insertFrom, insertTo);
+    }
+
+    /**
+     * Stores the values of an entry in the given row.
+     *
+     * @param row   the row index.
+     * @param entry the entry to store.
+     */
+    private void setRow(int row, GalleryEntry entry) {
+        rowIds[row] = nextRowId++;
+        tags[row] = internTags(entry.getTags());
+        tagIndex.addRow(rowIds[row], tags[row]);
+        setFileState(row, entry);
+    }
+
+    /**
+     * Stores everything but the tags of an entry in the given row.
+     *
+     * @param row   the row index.
+     * @param entry the entry to take the values from.
+     */
+    private void setFileState(int row, GalleryEntry entry) {
+        if (paths[row] != null) rowIdsByPath.remove(paths[row]);
+        rowIdsByPath.put(entry.getPath(), rowIds[row]);
+
+        paths[row] = entry.getPath();
+        names[row] = entry.getName().intern();
+        sizes[row] = entry.getByteSize();
+        modificationTimes[row] = entry.getLastModified();
+        sortKeys[row] = new GallerySortKey(names[row], sizes[row], modificationTimes[row]);
+        searchIndex.put(rowIds[row], names[row], tags[row]);
+        perceptualHashes[row] = entry.getPerceptualHash();
+        contentHashes[row] = entry.getContentHash();
+        fingerprinted.set(row, entry.hasFingerprint());
+        missing.set(row, entry.isMissing());
+    }
+
+    /**
+     * Removes the given rows, shifting the remaining ones down while keeping their order.
+     * The row ids of the remaining rows stay the same, so the path map changes only for the removed rows.
+     *
+     * @param removed the rows to remove.
+     */
+    private void compact(BitSet removed) {
+        int target = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (removed.get(row)) {
+                rowIdsByPath.remove(paths[row]);
+                searchIndex.remove(rowIds[row]);
+                tagIndex.removeRow(rowIds[row], tags[row]);
+                continue;
+            }
+
+            if (target != row) {
+                paths[target] = paths[row];
+                names[target] = names[row];
+                sizes[target] = sizes[row];
+                modificationTimes[target] = modificationTimes[row];
+                tags[target] = tags[row];
+                rowIds[target] = rowIds[row];
+                sortKeys[target] = sortKeys[row];
+                perceptualHashes[target] = perceptualHashes[row];
+                contentHashes[target] = contentHashes[row];
+                fingerprinted.set(target, fingerprinted.get(row));
+                missing.set(target, missing.get(row));
+            }
+            target++;
+        }
+
+        clearRows(target, rowCount);
+        rowCount = target;
+    }
+
+    /**
+     * Releases the references held by the given range of rows.
+     *
+     * @param from the first row, inclusive.
+     * @param to   the last row, exclusive.
+     */
+    private void clearRows(int from, int to) {
+        Arrays.fill(paths, from, to, null);
+        Arrays.fill(names, from, to, null);
+        Arrays.fill(tags, from, to, null);
+        Arrays.fill(sortKeys, from, to, null);
+        fingerprinted.clear(from, to);
+        missing.clear(from, to);
+    }
+
+    /**
+     * Grows the column arrays so that they can hold at least the given number of rows.
+     *
+     * @param capacity the required number of rows.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= paths.length) return;
+
+        int size = Math.max(capacity, paths.length + (paths.length >> 1));
+        paths = Arrays.copyOf(paths, size);
+        names = Arrays.copyOf(names, size);
+        sizes = Arrays.copyOf(sizes, size);
+        modificationTimes = Arrays.copyOf(modificationTimes, size);
+        tags = Arrays.copyOf(tags, size);
+        rowIds = Arrays.copyOf(rowIds, size);
+        sortKeys = Arrays.copyOf(sortKeys, size);
+        perceptualHashes = Arrays.copyOf(perceptualHashes, size);
+        contentHashes = Arrays.copyOf(contentHashes, size);
+    }
+
+    /**
+     * A bulk change of the model, applied by {@link #batch(Consumer)}. Records the range of the changed rows,
+     * so listeners are notified once for the whole batch.
+     */
+    public class Batch {
+        private int first = Integer.MAX_VALUE, last = -1;
+
+        private Batch() { }
+
+        /**
+         * Returns the current row of the entry with the given path.
+         *
+         * @param path the path of the file.
+         * @return the row index, or {@code -1} if the path isn't in the model.
+         */
+        public int indexOf(Path path) {
+            return rowOf(path);
+        }
+
+        /**
+         * Adds a tag to the given row, unless the row already carries it.
+         *
+         * @param row the row index.
+         * @param tag the tag.
+         * @return {@code true} if the row changed.
+         */
+        public boolean addTag(int row, String tag) {
+            String[] current = tags[row];
+            if (Arrays.asList(current).contains(tag)) return false;
+
+            String[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = tag.intern();
+            tags[row] = updated;
+            searchIndex.put(rowIds[row], names[row], updated);
+            tagIndex.addTag(rowIds[row], updated[current.length]);
+
+            changed(row);
+            return true;
+        }
+
+        /**
+         * Removes a tag from the given row.
+         *
+         * @param row the row index.
+         * @param tag the tag.
+         * @return {@code true} if the row changed.
+         */
+        public boolean removeTag(int row, String tag) {
+            String[] current = tags[row];
+            String[] updated = Arrays.stream(current)
+                                    .filter(t -> !t.equals(tag))
+                                    .toArray(String[]::new);
+            if (updated.length == current.length) return false;
+
+            tags[row] = updated.length == 0 ? NO_TAGS : updated;
+            searchIndex.put(rowIds[row], names[row], tags[row]);
+            tagIndex.removeTag(rowIds[row], tag);
+
+            changed(row);
+            return true;
+        }
+
+        /**
+         * Renames a tag in all rows. Rows carrying both tags keep a single one.
+         *
+         * @param oldTag the current name of the tag.
+         * @param newTag the new name of the tag.
+         * @return the number of rows that carried the old tag.
+         */
+        public int renameTag(String oldTag, String newTag) {
+            if (oldTag.equals(newTag)) return 0;
+
+            String interned = newTag.intern();
+            BitSet ids = tagIndex.renameTag(oldTag, interned);
+
+            int renamed = 0;
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                int row = Arrays.binarySearch(rowIds, 0, rowCount, id);
+                if (row < 0) continue;
+
+                String[] updated = Arrays.stream(tags[row])
+                                        .map(t -> t.equals(oldTag) ? interned : t)
+                                        .distinct()
+                                        .toArray(String[]::new);
+
+                tags[row] = updated;
+                searchIndex.put(rowIds[row], names[row], updated);
+                changed(row);
+                renamed++;
+            }
+            return renamed;
+        }
+
+        private void changed(int row) {
+            first = Math.min(first, row);
+            last = Math.max(last, row);
+        }
+    }
+
+    /**
+     * Converts tags into an array of interned strings, sharing a single empty array between untagged rows.
+     *
+     * @param tags the tags.
+     * @return the tag array.
+     */
+    private static String[] internTags(Collection<String> tags) {
+        if (tags.isEmpty()) return NO_TAGS;
+
+        String[] array = new String[tags.size()];
+        int i = 0;
+        for (String tag : tags) array[i++] = tag.intern();
+        return array;
     }
 }
@@ -2,17 +2,22 @@ package pl.magzik.modules.gallery.table;
 
 import javax.swing.table.TableRowSorter;
 import java.util.Comparator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A custom row sorter for the {@link GalleryTableModel} that provides custom sorting for table rows.
  * <p>
- * This sorter allows sorting based on natural ordering for text columns and a custom size comparator for size columns.
+ * This sorter allows sorting based on natural ordering for the name column, and numeric ordering for the size
+ * and modification date columns. Instead of cell values, it compares the {@link GallerySortKey} precomputed for
+ * every row by the model, so no comparison parses text or allocates objects. Filters still match against
+ * the regular string values of the cells.
  * </p>
  */
 public class GalleryTableRowSorter extends TableRowSorter<GalleryTableModel> {
 
+    private static final Comparator<GallerySortKey> NAME_COMPARATOR = GallerySortKey::compareNames,
+                                                    SIZE_COMPARATOR = GallerySortKey::compareSizes,
+                                                    DATE_COMPARATOR = GallerySortKey::compareModificationTimes;
+
     /**
      * Constructs a {@code GalleryTableRowSorter} with the specified table model.
      *
@@ -20,70 +25,71 @@ public class GalleryTableRowSorter extends TableRowSorter<GalleryTableModel> {
      */
     public GalleryTableRowSorter(GalleryTableModel model) {
         super(model);
+        setModelWrapper(new SortKeyModelWrapper(model));
     }
 
     @Override
     public boolean isSortable(int column) {
-        return column < 3;
+        return column == GalleryTableModel.NAME_COLUMN
+            || column == GalleryTableModel.SIZE_COLUMN
+            || column == GalleryTableModel.DATE_COLUMN;
     }
 
     @Override
     public Comparator<?> getComparator(int column) {
-        if (column == 0) return getNaturalComparator();
-        else if (column == 1) return getSizeComparator();
-
-
-        return super.getComparator(column);
+        return switch (column) {
+            case GalleryTableModel.NAME_COLUMN -> NAME_COMPARATOR;
+            case GalleryTableModel.SIZE_COLUMN -> SIZE_COMPARATOR;
+            case GalleryTableModel.DATE_COLUMN -> DATE_COMPARATOR;
+            default -> super.getComparator(column);
+        };
     }
 
     /**
-     * Provides a comparator for comparing size values.
-     * <p>
-     * Sizes are expected to be in a format like "12.5 MB" or "1.0 GB". The comparator converts these values
-     * to bytes for comparison.
-     * </p>
-     *
-     * @return the size comparator
+     * Exposes the precomputed sort keys of the sortable columns to the sorter,
+     * and the regular cell values to everything else.
      */
-    private Comparator<String> getSizeComparator() {
-        return (o1, o2) -> {
-            String[] so1 = o1.split(" "),
-                    so2 = o2.split(" ");
-            double do1 = Double.parseDouble(so1[0].replace(',', '.')) * (so1[1].equals("MB") ? 1024 : so1[1].equals("GB") ? 1024 * 1024 : 1),
-                    do2 = Double.parseDouble(so2[0].replace(',', '.')) * (so2[1].equals("MB") ? 1024 : so2[1].equals("GB") ? 1024 * 1024 : 1);
+    private static class SortKeyModelWrapper extends ModelWrapper<GalleryTableModel, Integer> {
 
-            return Double.compare(do1, do2);
-        };
-    }
+        private final GalleryTableModel model;
 
-    /**
-     * Provides a natural comparator for comparing text values.
-     * <p>
-     * This comparator compares strings in a way that is more intuitive to human users, taking into account
-     * numerical values embedded in the text.
-     * </p>
-     *
-     * @return the natural comparator
-     */
-    private Comparator<String> getNaturalComparator() {
-        return (o1, o2) -> {
-            Pattern pattern = Pattern.compile("(\\d+)|(\\D+)");
-            Matcher m1 = pattern.matcher(o1);
-            Matcher m2 = pattern.matcher(o2);
+        private SortKeyModelWrapper(GalleryTableModel model) {
+            this.model = model;
+        }
 
-            while (m1.find() && m2.find()) {
-                String s1 = m1.group(), s2 = m2.group();
+        @Override
+        public GalleryTableModel getModel() {
+            return model;
+        }
 
-                int cmp;
-                if (s1.matches("\\d+") && s2.matches("\\d+"))
-                    cmp = Long.compare(Long.parseLong(s1), Long.parseLong(s2));
-                else
-                    cmp = s1.compareTo(s2);
+        @Override
+        public int getColumnCount() {
+            return model.getColumnCount();
+        }
 
-                if (cmp != 0) return cmp;
-            }
+        @Override
+        public int getRowCount() {
+            return model.getRowCount();
+        }
 
-            return Integer.compare(o1.length(), o2.length());
-        };
+        @Override
+        public Object getValueAt(int row, int column) {
+            return switch (column) {
+                case GalleryTableModel.NAME_COLUMN, GalleryTableModel.SIZE_COLUMN, GalleryTableModel.DATE_COLUMN ->
+                    model.getSortKey(row);
+                default -> model.getValueAt(row, column);
+            };
+        }
+
+        @Override
+        public String getStringValueAt(int row, int column) {
+            Object value = model.getValueAt(row, column);
+            return value == null ? "" : value.toString();
+        }
+
+        @Override
+        public Integer getIdentifier(int row) {
+            return row;
+        }
     }
 }
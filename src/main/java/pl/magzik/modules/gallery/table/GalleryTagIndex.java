@@ -0,0 +1,167 @@
+package pl.magzik.modules.gallery.table;
+
+import java.util.*;
+
+/**
+ * An inverted index of gallery tags.
+ * <p>
+ * Tags are dictionary-encoded: every distinct tag gets a small integer id, and for every tag id the index keeps
+ * a bitset of the stable ids of the rows carrying it (see {@link GalleryTableModel#getRowId(int)}). Row ids are
+ * assigned densely, so a plain {@link BitSet} stays compact, and tag queries are answered with a handful
+ * of word-wise bitset operations, see {@link GalleryTagQuery}.
+ * </p>
+ * <p>
+ * All methods are synchronized, so the index can be queried from any thread.
+ * </p>
+ */
+public class GalleryTagIndex {
+
+    private final Map<String, Integer> dictionary;
+    private final List<String> tags;
+    private final List<BitSet> rows;
+    private final BitSet live;
+
+    /**
+     * Constructs an empty {@code GalleryTagIndex}.
+     */
+    public GalleryTagIndex() {
+        this.dictionary = new HashMap<>();
+        this.tags = new ArrayList<>();
+        this.rows = new ArrayList<>();
+        this.live = new BitSet();
+    }
+
+    /**
+     * Adds a row with its tags.
+     *
+     * @param rowId the stable id of the row.
+     * @param tags  the tags of the row.
+     */
+    public synchronized void addRow(int rowId, String[] tags) {
+        live.set(rowId);
+        for (String tag : tags) rowsOf(tag).set(rowId);
+    }
+
+    /**
+     * Removes a row with its tags.
+     *
+     * @param rowId the stable id of the row.
+     * @param tags  the tags of the row.
+     */
+    public synchronized void removeRow(int rowId, String[] tags) {
+        live.clear(rowId);
+        for (String tag : tags) {
+            Integer id = dictionary.get(tag);
+            if (id != null) rows.get(id).clear(rowId);
+        }
+    }
+
+    public synchronized void addTag(int rowId, String tag) {
+        rowsOf(tag).set(rowId);
+    }
+
+    public synchronized void removeTag(int rowId, String tag) {
+        Integer id = dictionary.get(tag);
+        if (id != null) rows.get(id).clear(rowId);
+    }
+
+    /**
+     * Renames a tag. If the new name is already used, the rows of both tags are merged.
+     * Otherwise, only the dictionary entry changes, and the tag keeps its position in {@link #getTags()}.
+     *
+     * @param oldTag the current name of the tag.
+     * @param newTag the new name of the tag.
+     * @return the stable ids of the rows that carried the old tag.
+     */
+    public synchronized BitSet renameTag(String oldTag, String newTag) {
+        Integer id = dictionary.remove(oldTag);
+        if (id == null) return new BitSet();
+
+        BitSet renamed = (BitSet) rows.get(id).clone();
+
+        Integer target = dictionary.get(newTag);
+        if (target == null) {
+            dictionary.put(newTag, id);
+            tags.set(id, newTag);
+        } else {
+            rows.get(target).or(renamed);
+            rows.get(id).clear();
+        }
+
+        return renamed;
+    }
+
+    /**
+     * Removes all rows and tags from the index.
+     */
+    public synchronized void clear() {
+        dictionary.clear();
+        tags.clear();
+        rows.clear();
+        live.clear();
+    }
+
+    /**
+     * Returns the tags carried by at least one of the given rows, in the order they were first used.
+     * Only the bitset of every tag is tested against the rows, so the rows themselves aren't visited.
+     *
+     * @param rowIds the stable ids of the rows.
+     * @return a new list of tags.
+     */
+    public synchronized List<String> getTags(BitSet rowIds) {
+        List<String> used = new ArrayList<>();
+        for (int id = 0; id < tags.size(); id++) {
+            if (rows.get(id).intersects(rowIds)) used.add(tags.get(id));
+        }
+        return used;
+    }
+
+    /**
+     * Returns all tags carried by at least one row, in the order they were first used.
+     *
+     * @return a new list of tags.
+     */
+    public synchronized List<String> getTags() {
+        List<String> used = new ArrayList<>();
+        for (int id = 0; id < tags.size(); id++) {
+            if (!rows.get(id).isEmpty()) used.add(tags.get(id));
+        }
+        return used;
+    }
+
+    /**
+     * Evaluates a tag query.
+     *
+     * @param query the parsed query.
+     * @return the stable ids of the matching rows.
+     */
+    public synchronized BitSet evaluate(GalleryTagQuery query) {
+        return query.evaluate(this::copyOf, (BitSet) live.clone());
+    }
+
+    /**
+     * Returns a copy of the rows carrying the tag, which may be modified by the caller.
+     *
+     * @param tag the tag.
+     * @return the stable ids of the rows.
+     */
+    private BitSet copyOf(String tag) {
+        Integer id = dictionary.get(tag);
+        return id == null ? new BitSet() : (BitSet) rows.get(id).clone();
+    }
+
+    /**
+     * Returns the bitset of the tag, adding the tag to the dictionary if it's new.
+     *
+     * @param tag the tag.
+     * @return the stable ids of the rows carrying the tag.
+     */
+    private BitSet rowsOf(String tag) {
+        int id = dictionary.computeIfAbsent(tag, _ -> {
+            tags.add(tag);
+            rows.add(new BitSet());
+            return tags.size() - 1;
+        });
+        return rows.get(id);
+    }
+}
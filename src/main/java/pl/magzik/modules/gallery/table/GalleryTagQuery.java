@@ -0,0 +1,214 @@
+package pl.magzik.modules.gallery.table;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A parsed boolean query over gallery tags, e.g. {@code holiday & !blurry} or {@code (beach | sea) & 2024}.
+ * <p>
+ * Syntax, from the lowest to the highest precedence:
+ * <ul>
+ *     <li>{@code a | b}, {@code a || b} or {@code a OR b} - rows carrying any of the tags,</li>
+ *     <li>{@code a & b}, {@code a && b}, {@code a AND b} or just {@code a b} - rows carrying both tags,</li>
+ *     <li>{@code !a}, {@code -a} or {@code NOT a} - rows not carrying the tag,</li>
+ *     <li>{@code (...)} - grouping.</li>
+ * </ul>
+ * Tags are matched exactly. Tags containing spaces, operators, or equal to a keyword must be quoted: {@code "my tag"}.
+ * Keywords are case-insensitive.
+ * </p>
+ * <p>
+ * Queries are evaluated by {@link GalleryTagIndex} with bitset operations only.
+ * </p>
+ */
+public class GalleryTagQuery {
+
+    private final Node root;
+
+    private GalleryTagQuery(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Parses a tag query.
+     *
+     * @param text the query text.
+     * @return the parsed query, or {@code null} if the text is blank.
+     * @throws IllegalArgumentException if the query is malformed.
+     */
+    public static GalleryTagQuery parse(String text) {
+        if (text.isBlank()) return null;
+        return new GalleryTagQuery(new Parser(tokenize(text)).parse());
+    }
+
+    /**
+     * Evaluates the query.
+     *
+     * @param tagRows  returns a modifiable copy of the row set carrying the given tag.
+     * @param universe all rows; it may be modified.
+     * @return the matching rows.
+     */
+    BitSet evaluate(Function<String, BitSet> tagRows, BitSet universe) {
+        return root.evaluate(tagRows, universe);
+    }
+
+    /**
+     * A node of the query tree.
+     */
+    private interface Node {
+        BitSet evaluate(Function<String, BitSet> tagRows, BitSet universe);
+    }
+
+    private record Tag(String tag) implements Node {
+        @Override
+        public BitSet evaluate(Function<String, BitSet> tagRows, BitSet universe) {
+            return tagRows.apply(tag);
+        }
+    }
+
+    private record Not(Node node) implements Node {
+        @Override
+        public BitSet evaluate(Function<String, BitSet> tagRows, BitSet universe) {
+            BitSet result = (BitSet) universe.clone();
+            result.andNot(node.evaluate(tagRows, universe));
+            return result;
+        }
+    }
+
+    private record And(List<Node> nodes) implements Node {
+        @Override
+        public BitSet evaluate(Function<String, BitSet> tagRows, BitSet universe) {
+            BitSet result = nodes.getFirst().evaluate(tagRows, universe);
+            for (int i = 1; i < nodes.size() && !result.isEmpty(); i++) result.and(nodes.get(i).evaluate(tagRows, universe));
+            return result;
+        }
+    }
+
+    private record Or(List<Node> nodes) implements Node {
+        @Override
+        public BitSet evaluate(Function<String, BitSet> tagRows, BitSet universe) {
+            BitSet result = nodes.getFirst().evaluate(tagRows, universe);
+            for (int i = 1; i < nodes.size(); i++) result.or(nodes.get(i).evaluate(tagRows, universe));
+            return result;
+        }
+    }
+
+    /**
+     * A token of the query: either a tag, or one of the operators {@code & | ! ( )}.
+     */
+    private record Token(String text, boolean operator) { }
+
+    /**
+     * Splits the query into tokens, normalizing operators and keywords to {@code & | ! ( )}.
+     *
+     * @param text the query text.
+     * @return the tokens.
+     */
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '&' || c == '|') {
+                tokens.add(new Token(String.valueOf(c), true));
+                i += i + 1 < text.length() && text.charAt(i + 1) == c ? 2 : 1;
+            } else if (c == '!' || c == '-') {
+                tokens.add(new Token("!", true));
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(String.valueOf(c), true));
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end == -1) throw new IllegalArgumentException("Unterminated quote at position " + (i + 1));
+                tokens.add(new Token(text.substring(i + 1, end), false));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i)) && "&|!()\"".indexOf(text.charAt(i)) < 0) i++;
+
+                String word = text.substring(start, i);
+                switch (word.toUpperCase(Locale.ROOT)) {
+                    case "AND" -> tokens.add(new Token("&", true));
+                    case "OR" -> tokens.add(new Token("|", true));
+                    case "NOT" -> tokens.add(new Token("!", true));
+                    default -> tokens.add(new Token(word, false));
+                }
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * A recursive descent parser of the token list.
+     */
+    private static class Parser {
+        private final List<Token> tokens;
+        private int pos;
+
+        private Parser(List<Token> tokens) {
+            this.tokens = tokens;
+            this.pos = 0;
+        }
+
+        private Node parse() {
+            Node node = parseOr();
+            if (pos < tokens.size()) throw new IllegalArgumentException("Unexpected '" + tokens.get(pos).text() + "'");
+            return node;
+        }
+
+        private Node parseOr() {
+            List<Node> nodes = new ArrayList<>(List.of(parseAnd()));
+            while (accept("|")) nodes.add(parseAnd());
+            return nodes.size() == 1 ? nodes.getFirst() : new Or(nodes);
+        }
+
+        private Node parseAnd() {
+            List<Node> nodes = new ArrayList<>(List.of(parseNot()));
+            while (accept("&") || startsOperand()) nodes.add(parseNot());
+            return nodes.size() == 1 ? nodes.getFirst() : new And(nodes);
+        }
+
+        private Node parseNot() {
+            if (accept("!")) return new Not(parseNot());
+            if (accept("(")) {
+                Node node = parseOr();
+                if (!accept(")")) throw new IllegalArgumentException("Missing ')'");
+                return node;
+            }
+
+            if (pos >= tokens.size()) throw new IllegalArgumentException("Tag expected at the end of the query");
+
+            Token token = tokens.get(pos);
+            if (token.operator()) throw new IllegalArgumentException("Tag expected, found '" + token.text() + "'");
+
+            pos++;
+            return new Tag(token.text());
+        }
+
+        /**
+         * Checks whether the next token starts an operand, which is an implicit AND.
+         */
+        private boolean startsOperand() {
+            if (pos >= tokens.size()) return false;
+
+            Token token = tokens.get(pos);
+            return !token.operator() || token.text().equals("!") || token.text().equals("(");
+        }
+
+        private boolean accept(String operator) {
+            if (pos < tokens.size() && tokens.get(pos).operator() && tokens.get(pos).text().equals(operator)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package pl.magzik.modules.gallery.table;
+
+import pl.magzik.modules.gallery.thumbnail.ThumbnailCache;
+import pl.magzik.modules.gallery.thumbnail.ThumbnailKey;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders the thumbnail column of the {@link GalleryTableModel}.
+ * <p>
+ * Thumbnails are requested from the {@link ThumbnailCache} only when a cell is painted, so only visible rows
+ * are ever loaded. Until a thumbnail is available, the cell stays empty. A single icon is reused for all cells,
+ * so painting doesn't allocate.
+ * </p>
+ */
+public class GalleryThumbnailRenderer extends DefaultTableCellRenderer {
+
+    private final ThumbnailCache cache;
+    private final ThumbnailIcon icon;
+
+    /**
+     * Constructs a {@code GalleryThumbnailRenderer} taking thumbnails from the given cache.
+     *
+     * @param cache the thumbnail cache.
+     */
+    public GalleryThumbnailRenderer(ThumbnailCache cache) {
+        this.cache = cache;
+        this.icon = new ThumbnailIcon();
+        setHorizontalAlignment(SwingConstants.CENTER);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+        super.getTableCellRendererComponent(table, null, isSelected, hasFocus, row, column);
+
+        BufferedImage image = value instanceof ThumbnailKey key ? cache.get(key) : null;
+        icon.image = image;
+        setIcon(image == null ? null : icon);
+
+        return this;
+    }
+
+    /**
+     * An icon painting the image it currently points to.
+     */
+    private static class ThumbnailIcon implements Icon {
+        private BufferedImage image;
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (image != null) g.drawImage(image, x, y, null);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return image == null ? 0 : image.getWidth();
+        }
+
+        @Override
+        public int getIconHeight() {
+            return image == null ? 0 : image.getHeight();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package pl.magzik.modules.gallery.thumbnail;
+
+import pl.magzik.base.ImageUtils;
+import pl.magzik.base.async.ExecutorServiceManager;
+import pl.magzik.base.diagnostics.Counter;
+import pl.magzik.base.diagnostics.Metrics;
+import pl.magzik.modules.resource.ResourceModule;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * The {@code ThumbnailCache} provides small previews of gallery images.
+ * <p>
+ * Thumbnails are looked up in three places:
+ * <ol>
+ *     <li>an in-memory LRU cache, limited by the total size of the held images,</li>
+ *     <li>a persistent cache in {@link #CACHE_DIR}, keyed by the path, size and modification time of the file,</li>
+ *     <li>the image itself, decoded with subsampling, so only a fraction of its pixels is read.</li>
+ * </ol>
+ * Only the first lookup is done by {@link #get(ThumbnailKey)}, which is cheap enough to be called while painting.
+ * On a miss, the thumbnail is loaded on a small pool of background threads, and listeners are notified on the
+ * Event Dispatch Thread once it is available. Pending requests are served newest first, and the oldest ones are
+ * dropped when too many pile up, so fast scrolling only loads what is currently visible.
+ * </p>
+ * <p>
+ * The persistent cache is swept in the background once the cache is created: thumbnails that haven't been used
+ * for {@value #DISK_MAX_AGE_DAYS} days are deleted, e.g. the ones of files that were changed, moved or removed,
+ * and then the least recently used ones, until the cache fits in {@value #DISK_LIMIT_MB} MB. A thumbnail counts
+ * as used when it's created or read, see {@link #load(ThumbnailKey)}.
+ * </p>
+ * <p>
+ * The hit rate of the in-memory cache, the queue depth and the memory in use are reported to the {@link Metrics}.
+ * A thumbnail painted repeatedly while it is being loaded counts as a single miss.
+ * </p>
+ */
+public class ThumbnailCache {
+
+    /**
+     * The maximal width and height of a thumbnail, in pixels.
+     */
+    public static final int THUMBNAIL_SIZE = 48;
+
+    /**
+     * Directory of the persistent thumbnail cache.
+     */
+    public static final Path CACHE_DIR = ResourceModule.EXTERNAL_RESOURCES_DIR.resolve("thumbnails");
+
+    private static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+    private static final int MAX_PENDING = 256;
+    private static final String FORMAT = "jpg";
+    private static final long DISK_MAX_AGE_DAYS = 30;
+    private static final long DISK_LIMIT_MB = 256;
+
+    private final long memoryLimit;
+    private final Map<ThumbnailKey, BufferedImage> memory;
+    private long memoryUsed;
+
+    private final Set<ThumbnailKey> pending;
+    private final Set<ThumbnailKey> failed;
+    private final ThreadPoolExecutor executor;
+    private final List<Consumer<ThumbnailKey>> listeners;
+
+    private final Counter hits, misses;
+
+    /**
+     * Constructs a {@code ThumbnailCache} with the default memory limit.
+     */
+    public ThumbnailCache() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Constructs a {@code ThumbnailCache}.
+     *
+     * @param memoryLimit the maximal total size of the thumbnails held in memory, in bytes.
+     */
+    public ThumbnailCache(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        this.memory = new LinkedHashMap<>(256, 0.75f, true);
+        this.memoryUsed = 0;
+
+        this.pending = ConcurrentHashMap.newKeySet();
+        this.failed = ConcurrentHashMap.newKeySet();
+        this.listeners = new CopyOnWriteArrayList<>();
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new RequestQueue(), r -> {
+            Thread t = new Thread(r, "thumbnail-loader");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+
+        Metrics metrics = Metrics.getInstance();
+        this.hits = metrics.counter("gallery.thumbnail.hits");
+        this.misses = metrics.counter("gallery.thumbnail.misses");
+        metrics.gauge("gallery.thumbnail.queued", () -> executor.getQueue().size());
+        metrics.gauge("gallery.thumbnail.memory_bytes", this::getMemoryUsed);
+        metrics.hitRatio("gallery.thumbnail.hit_percent", hits, misses);
+
+        ExecutorServiceManager.getInstance().getIoExecutor().execute(this::sweepDiskCache);
+    }
+
+    /**
+     * Returns the thumbnail if it is held in memory. Otherwise, requests it in the background and returns {@code null};
+     * the listeners are notified once it can be obtained by calling this method again.
+     *
+     * @param key the thumbnail key.
+     * @return the thumbnail, or {@code null} if it isn't loaded yet, or the file can't be decoded.
+     */
+    public BufferedImage get(ThumbnailKey key) {
+        synchronized (memory) {
+            BufferedImage image = memory.get(key);
+            if (image != null) {
+                hits.increment();
+                return image;
+            }
+        }
+
+        if (!failed.contains(key) && pending.add(key)) {
+            misses.increment();
+            executor.execute(new Request(key));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the total size of the thumbnails held in memory.
+     *
+     * @return the size in bytes.
+     */
+    public long getMemoryUsed() {
+        synchronized (memory) {
+            return memoryUsed;
+        }
+    }
+
+    /**
+     * Adds a listener notified on the Event Dispatch Thread whenever a requested thumbnail is loaded.
+     *
+     * @param listener the listener, receiving the key of the loaded thumbnail.
+     */
+    public void addListener(Consumer<ThumbnailKey> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Loads a thumbnail from the disk cache, or creates it from the image and stores it in the disk cache.
+     * A thumbnail read from the disk cache is marked as used, so it isn't swept.
+     *
+     * @param key the thumbnail key.
+     * @return the thumbnail, or {@code null} if the image can't be decoded.
+     * @throws IOException if an I/O error occurs.
+     */
+    private BufferedImage load(ThumbnailKey key) throws IOException {
+        Path cached = cachePath(key);
+        if (Files.exists(cached)) {
+            BufferedImage image = ImageIO.read(cached.toFile());
+            if (image != null) {
+                touch(cached);
+                return image;
+            }
+        }
+
+        BufferedImage image = ImageUtils.readSubsampled(key.path(), THUMBNAIL_SIZE);
+        if (image == null) return null;
+
+        BufferedImage thumbnail = fit(image);
+        store(thumbnail, cached);
+        return thumbnail;
+    }
+
+    /**
+     * Scales the image to fit into the thumbnail size, keeping its aspect ratio.
+     * Transparent areas are painted white, since thumbnails are stored without an alpha channel.
+     *
+     * @param image the image.
+     * @return the thumbnail.
+     */
+    private BufferedImage fit(BufferedImage image) {
+        double scale = Math.min(1.0, (double) THUMBNAIL_SIZE / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale)),
+            height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = opaque.createGraphics();
+        g.drawImage(image, 0, 0, Color.WHITE, null);
+        g.dispose();
+
+        return ImageUtils.scale(opaque, width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Writes a thumbnail into the disk cache. The file is written to a temporary file first,
+     * so concurrent readers never see a partial thumbnail.
+     *
+     * @param thumbnail the thumbnail.
+     * @param target    the cache file.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void store(BufferedImage thumbnail, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+
+        Path temp = Files.createTempFile(target.getParent(), "thumb", ".tmp");
+        try {
+            if (!ImageIO.write(thumbnail, FORMAT, temp.toFile())) throw new IOException("No writer for " + FORMAT);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Resolves the disk cache file of a thumbnail. Files are spread over subdirectories by the first byte of the digest.
+     *
+     * @param key the thumbnail key.
+     * @return the path of the cache file.
+     */
+    private Path cachePath(ThumbnailKey key) {
+        String id = key.path().toAbsolutePath() + "\0" + key.size() + "\0" + key.modified();
+
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        String hex = HexFormat.of().formatHex(digest, 0, 16);
+        return CACHE_DIR.resolve(hex.substring(0, 2)).resolve(hex + "." + FORMAT);
+    }
+
+    /**
+     * Marks a thumbnail of the disk cache as used. A failure only makes the thumbnail be swept earlier.
+     *
+     * @param cached the cache file.
+     */
+    private static void touch(Path cached) {
+        try {
+            Files.setLastModifiedTime(cached, FileTime.from(Instant.now()));
+        } catch (IOException ignored) {
+            // The thumbnail is recreated if it's swept.
+        }
+    }
+
+    /**
+     * Deletes the thumbnails of the disk cache that haven't been used for {@value #DISK_MAX_AGE_DAYS} days,
+     * and then the least recently used ones over {@value #DISK_LIMIT_MB} MB. Temporary files left over by
+     * interrupted writes are deleted once they're an hour old. Files that can't be deleted are skipped.
+     */
+    private void sweepDiskCache() {
+        if (!Files.isDirectory(CACHE_DIR)) return;
+
+        record CachedFile(Path path, long size, long modified) { }
+
+        List<CachedFile> files = new ArrayList<>();
+        try (var stream = Files.walk(CACHE_DIR, 2)) {
+            stream.filter(Files::isRegularFile).forEach(path -> {
+                try {
+                    files.add(new CachedFile(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (IOException ignored) {
+                    // The file was deleted meanwhile.
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Couldn't sweep the thumbnail cache: " + e.getMessage()); // Todo, change for other more advance logging
+            return;
+        }
+
+        files.sort(Comparator.comparingLong(CachedFile::modified).reversed());
+
+        long now = System.currentTimeMillis();
+        long expired = now - TimeUnit.DAYS.toMillis(DISK_MAX_AGE_DAYS), abandoned = now - TimeUnit.HOURS.toMillis(1);
+        long limit = DISK_LIMIT_MB * 1024 * 1024, total = 0;
+        for (CachedFile file : files) {
+            boolean keep;
+            if (file.path().toString().endsWith("." + FORMAT)) {
+                total += file.size();
+                keep = file.modified() >= expired && total <= limit;
+            } else {
+                keep = file.modified() >= abandoned;
+            }
+            if (keep) continue;
+
+            try {
+                Files.deleteIfExists(file.path());
+            } catch (IOException ignored) {
+                // In use by a concurrent request; the next sweep deletes it.
+            }
+        }
+    }
+
+    /**
+     * Puts a thumbnail into the memory cache, evicting the least recently used ones over the limit.
+     *
+     * @param key       the thumbnail key.
+     * @param thumbnail the thumbnail.
+     */
+    private void remember(ThumbnailKey key, BufferedImage thumbnail) {
+        synchronized (memory) {
+            BufferedImage previous = memory.put(key, thumbnail);
+            if (previous != null) memoryUsed -= sizeOf(previous);
+            memoryUsed += sizeOf(thumbnail);
+
+            Iterator<BufferedImage> it = memory.values().iterator();
+            while (memoryUsed > memoryLimit && it.hasNext()) {
+                memoryUsed -= sizeOf(it.next());
+                it.remove();
+            }
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * A background request for a single thumbnail.
+     */
+    private class Request implements Runnable {
+        private final ThumbnailKey key;
+
+        private Request(ThumbnailKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedImage thumbnail = load(key);
+                if (thumbnail == null) {
+                    failed.add(key);
+                    return;
+                }
+
+                remember(key, thumbnail);
+                SwingUtilities.invokeLater(() -> listeners.forEach(l -> l.accept(key)));
+            } catch (IOException | RuntimeException e) {
+                // Decoders may throw unchecked exceptions on corrupted files; retrying them on every repaint is pointless.
+                failed.add(key);
+            } finally {
+                pending.remove(key);
+            }
+        }
+    }
+
+    /**
+     * A work queue serving the newest request first, and dropping the oldest requests over {@link #MAX_PENDING}.
+     * Dropped requests are simply made again when their rows are painted the next time.
+     */
+    private class RequestQueue extends LinkedBlockingDeque<Runnable> {
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            offerFirst(runnable);
+
+            while (size() > MAX_PENDING) {
+                Runnable dropped = pollLast();
+                if (dropped instanceof Request request) pending.remove(request.key);
+            }
+            return true;
+        }
+    }
+}
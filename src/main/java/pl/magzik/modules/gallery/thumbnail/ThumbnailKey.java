@@ -0,0 +1,13 @@
+package pl.magzik.modules.gallery.thumbnail;
+
+import java.nio.file.Path;
+
+/**
+ * Identifies a thumbnail: the file it was made from, in the state it was in.
+ * A file that was modified or replaced gets a different key, so stale thumbnails are never shown.
+ *
+ * @param path     the path of the image file.
+ * @param size     the size of the file in bytes.
+ * @param modified the modification time of the file in epoch milliseconds.
+ */
+public record ThumbnailKey(Path path, long size, long modified) { }
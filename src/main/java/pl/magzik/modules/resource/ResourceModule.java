@@ -15,11 +15,17 @@ import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
  * Manages the loading, caching, and saving of resources such as images, configuration files, and text files.
  * This module follows the Singleton design pattern to ensure only one instance exists throughout the application.
+ * <p>
+ * Internal resources are read straight from the classpath. At startup only their references are resolved,
+ * which verifies that they're bundled, and images are decoded on the first {@link #getImage(String)} call,
+ * and cached afterwards.
+ * </p>
  */
 public class ResourceModule implements Module {
 
@@ -56,6 +62,13 @@ public class ResourceModule implements Module {
         "tp", new ObjectLoader()
     );
 
+    /**
+     * Internal resources bundled with the application.
+     */
+    private static final List<String> INTERNAL_RESOURCES = List.of(
+        "default.cfg", "loadingImage.jpg", "thumbnail.png", "thumbnail_64x64.png"
+    );
+
     /**
      * Directory path for external resources.
      */
@@ -67,7 +80,6 @@ public class ResourceModule implements Module {
     public static final Path CONFIG_PATH = EXTERNAL_RESOURCES_DIR.resolve("config.cfg");
 
     // Unmodifiable
-    private final Map<String, Map<String, ?>> resourceCache;
     private final Map<String, URI> referenceCache;
     private final Map<String, Image> imageCache;
 
@@ -83,18 +95,13 @@ public class ResourceModule implements Module {
      * Loads resources and sets up a shutdown hook to save changes if necessary.
      */
     private ResourceModule() {
-        this.resourceCache = new HashMap<>();
         this.referenceCache = new HashMap<>();
-        this.imageCache = new HashMap<>();
+        this.imageCache = new ConcurrentHashMap<>();
         this.externalCache = new HashMap<>();
         this.textFileCache = new HashMap<>();
         this.objectCache = new HashMap<>();
         this.saveRequired = false;
 
-        resourceCache.put("cfg", referenceCache);
-        resourceCache.put("jpg", imageCache);
-        resourceCache.put("png", imageCache);
-
         externalCache.put("cfg", textFileCache);
         externalCache.put("tp", objectCache);
 
@@ -119,97 +126,50 @@ public class ResourceModule implements Module {
     }
 
     /**
-     * Loads internal resources from the classpath.
-     * Resources are loaded based on their file extensions using the appropriate loaders.
+     * Resolves the internal resources on the classpath, and creates the configuration file from the default one
+     * if it doesn't exist yet. Images aren't decoded until they're needed, see {@link #getImage(String)}.
      *
      * @throws IOException If an I/O error occurs during loading or if resources are not found.
      */
     private void loadResources() throws IOException {
-        loadAndProcessResource("default.cfg");
-        loadAndProcessResource("loadingImage.jpg");
-        loadAndProcessResource("thumbnail.png");
-        loadAndProcessResource("thumbnail_64x64.png");
-
-        if (!EXTERNAL_RESOURCES_DIR.toFile().exists()) {
-            EXTERNAL_RESOURCES_DIR.toFile().mkdirs();
+        ReferenceLoader referenceLoader = new ReferenceLoader();
+        for (String resource : INTERNAL_RESOURCES) {
+            try {
+                referenceCache.put(resource, referenceLoader.load(resource));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
         }
 
-        if (!CONFIG_PATH.toFile().exists()) {
-            try (
-                InputStream inputStream = getClass().getClassLoader().getResourceAsStream("default.cfg");
-                OutputStream outputStream = new FileOutputStream(String.valueOf(CONFIG_PATH))
-            ) {
+        Files.createDirectories(EXTERNAL_RESOURCES_DIR);
 
+        if (!Files.exists(CONFIG_PATH)) {
+            try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("default.cfg")) {
                 if (inputStream == null) {
                     throw new IOException("Couldn't find a resource");
                 }
 
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                }
-            }
-        }
-    }
-
-    /**
-     * Loads a specific resource file and processes it.
-     *
-     * @param resourceName The name of the resource file to be loaded.
-     * @throws IOException If an I/O error occurs during loading.
-     */
-    private void loadAndProcessResource(String resourceName) throws IOException {
-        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourceName)) {
-            if (inputStream == null) {
-                throw new IOException("Resource not found: " + resourceName);
+                Files.copy(inputStream, CONFIG_PATH);
             }
-
-            Path tempFile = createTemporaryFile(resourceName);
-            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
-            loadResource(tempFile);
         }
     }
 
     /**
-     * Creates a temporary file with the same name as the resource.
-     *
-     * @param resourceName The name of the resource file.
-     * @return The path of the temporary file.
-     * @throws IOException If an I/O error occurs during file creation.
-     */
-    private Path createTemporaryFile(String resourceName) throws IOException {
-        Path tempDir = Files.createTempDirectory("resourceLoader");
-        Path tempFile = tempDir.resolve(resourceName);
-        tempFile.toFile().deleteOnExit();
-
-        return tempFile;
-    }
-
-    /**
-     * Loads a specific resource file using the appropriate loader based on its file extension.
+     * Decodes an internal image resource using the loader registered for its file extension.
      *
-     * @param path The path of the resource file to be loaded.
-     * @param <T>  The type of resource being loaded.
-     * @throws IOException If an I/O error occurs during loading.
+     * @param name The name of the image resource.
+     * @return The decoded image, or {@code null} if the resource isn't an image, or can't be read.
      */
     @SuppressWarnings("unchecked")
-    private <T> void loadResource(Path path) throws IOException {
-        String fileName = path.getFileName().toString();
-        String extension = getExtension(fileName);
+    private Image loadImage(String name) {
+        Loader<?> loader = INTERNAL_LOADERS.get(getExtension(name));
+        if (!(loader instanceof ImageLoader)) return null;
 
-        Loader<T> loader = (Loader<T>) INTERNAL_LOADERS.get(extension);
-        Map<String, T> cache = (Map<String, T>) this.resourceCache.get(extension);
-        if (loader != null) {
-            try {
-                cache.put(
-                    fileName,
-                    loader.load(fileName)
-                );
-            } catch (URISyntaxException e) {
-                throw new IOException(e);
-            }
+        try {
+            return ((Loader<Image>) loader).load(name);
+        } catch (IOException | URISyntaxException e) {
+            System.err.println("Couldn't load the image " + name + ": " + e.getMessage()); // Todo, change for other more advance logging
+            return null;
         }
     }
 
@@ -300,14 +260,14 @@ public class ResourceModule implements Module {
     }
 
     /**
-     * Retrieves an image resource from the cache.
+     * Retrieves an image resource, decoding it from the classpath on the first call, and caching it.
+     * It's safe to call from any thread.
      *
      * @param name The name of the image resource.
      * @return The cached image resource, or {@code null} if not found.
      */
     public Image getImage(String name) {
-        if (!imageCache.containsKey(name)) return null;
-        return imageCache.get(name);
+        return imageCache.computeIfAbsent(name, this::loadImage);
     }
 
     /**
@@ -426,6 +386,18 @@ public class ResourceModule implements Module {
         saveExternalResource(name);
     }
 
+    /**
+     * Removes an object from the cache, without touching the external resource it was loaded from.
+     * <p>
+     * This is useful for large objects that were migrated elsewhere and shouldn't occupy the heap anymore.
+     * </p>
+     *
+     * @param name The name of the cached object to remove.
+     */
+    public void removeObject(String name) {
+        objectCache.remove(name);
+    }
+
     /**
      * Adds a new text file resource to the cache and saves it to disk.
      *
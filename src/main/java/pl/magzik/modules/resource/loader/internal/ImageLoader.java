@@ -1,8 +1,10 @@
 package pl.magzik.modules.resource.loader.internal;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.*;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 
 /**
@@ -13,6 +15,10 @@ public class ImageLoader implements ResourceLoader<Image> {
 
     /**
      * Loads an image resource from the given file name.
+     * <p>
+     * The image is decoded straight from the classpath stream, buffered in memory rather than
+     * in a temporary file, which {@link ImageIO} would otherwise create for every read.
+     * </p>
      *
      * @param resource The name of the image resource to loadFiles.
      * @return The loaded {@link Image} object.
@@ -21,6 +27,8 @@ public class ImageLoader implements ResourceLoader<Image> {
     @Override
     public Image load(String resource) throws IOException {
         URL url = getResource(resource);
-        return ImageIO.read(url);
+        try (InputStream in = url.openStream()) {
+            return ImageIO.read(new MemoryCacheImageInputStream(in));
+        }
     }
 }
@@ -1,8 +1,11 @@
 package pl.magzik.modules.resource.loader.internal;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -32,6 +35,7 @@ public class ReferenceLoader implements ResourceLoader<URI> {
 
     /**
      * Copies the content from a reference URI to a target path, applying a transformation function to each line.
+     * The content is streamed straight from the URI, so the reference may point inside a JAR file.
      *
      * @param ref  The source URI to copy from.
      * @param target The target path where the content should be copied.
@@ -39,7 +43,10 @@ public class ReferenceLoader implements ResourceLoader<URI> {
      * @throws IOException If an I/O error occurs during copying.
      */
     public static void copy(URI ref, Path target, Function<String, String> func) throws IOException {
-        List<String> lines = Files.readAllLines(Path.of(ref)).stream().map(func).toList();
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(ref.toURL().openStream(), StandardCharsets.UTF_8))) {
+            lines = reader.lines().map(func).toList();
+        }
         Files.write(target, lines);
     }
 }
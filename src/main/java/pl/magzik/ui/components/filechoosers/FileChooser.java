@@ -58,6 +58,8 @@ public class FileChooser <T> implements FileChooserInterface {
 
     /**
      * Opens the file chooser dialog, allowing the user to select files or directories.
+     * If the dialog type of the underlying {@link JFileChooser} is {@link JFileChooser#SAVE_DIALOG},
+     * a save dialog is shown instead of an open dialog.
      * <p>
      * If the user approves the selection, the selected files or directories are processed
      * using the provided {@link FileSelectionStrategy}, and the result is passed to the consumer.
@@ -68,7 +70,9 @@ public class FileChooser <T> implements FileChooserInterface {
      */
     @Override
     public boolean open() {
-        int result = fileChooser.showOpenDialog(openButton);
+        int result = fileChooser.getDialogType() == JFileChooser.SAVE_DIALOG
+                        ? fileChooser.showSaveDialog(openButton)
+                        : fileChooser.showOpenDialog(openButton);
         if (result == JFileChooser.APPROVE_OPTION) {
             consumer.accept(strategy.processSelection(fileChooser));
             return true;
@@ -0,0 +1,73 @@
+package pl.magzik.ui.components.panels;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The {@code PreviewPanel} class is a custom {@link JPanel} that displays a preview of an image.
+ * <p>
+ * The image is centered, and scaled down to fit if it's larger than the panel. It's never scaled up.
+ * </p>
+ */
+public class PreviewPanel extends JPanel {
+    private static final int DEFAULT_SIZE = 256;
+
+    private BufferedImage image;
+
+    /**
+     * Constructs an empty {@code PreviewPanel}.
+     */
+    public PreviewPanel() {
+        setPreferredSize(new Dimension(DEFAULT_SIZE, DEFAULT_SIZE));
+    }
+
+    /**
+     * Sets the displayed image.
+     *
+     * @param image the image, or {@code null} to display nothing.
+     */
+    public void setImage(BufferedImage image) {
+        this.image = image;
+        repaint();
+    }
+
+    /**
+     * Returns the size the images should be decoded at to fill the panel.
+     *
+     * @return the maximal width and height of an image displayed in the panel, in pixels.
+     */
+    public int getPreviewSize() {
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right,
+            height = getHeight() - insets.top - insets.bottom;
+
+        int size = Math.max(width, height);
+        return size > 0 ? size : DEFAULT_SIZE;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (image == null) return;
+
+        Insets insets = getInsets();
+        int areaWidth = getWidth() - insets.left - insets.right,
+            areaHeight = getHeight() - insets.top - insets.bottom;
+        if (areaWidth <= 0 || areaHeight <= 0) return;
+
+        double scale = Math.min(1.0, Math.min((double) areaWidth / image.getWidth(), (double) areaHeight / image.getHeight()));
+        int width = (int) Math.round(image.getWidth() * scale),
+            height = (int) Math.round(image.getHeight() * scale);
+        int x = insets.left + (areaWidth - width) / 2,
+            y = insets.top + (areaHeight - height) / 2;
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(image, x, y, width, height, this);
+        } finally {
+            g2.dispose();
+        }
+    }
+}
@@ -4,6 +4,9 @@ import pl.magzik.View;
 import pl.magzik.modules.gallery.table.GalleryTableModel;
 import pl.magzik.modules.gallery.table.TablePropertyAccess;
 import pl.magzik.ui.components.filechoosers.FileChooser;
+import pl.magzik.ui.views.ComparerView;
+import pl.magzik.ui.views.GalleryView;
+import pl.magzik.ui.views.SettingsView;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
@@ -32,9 +35,8 @@ public class ComponentTranslationStrategy extends DefaultTranslationStrategy {
     /**
      * Translates the components of the provided {@link View} instance to the current locale.
      * <p>
-     * This method translates the title of the view, and recursively translates all components within
-     * the scenes managed by the view. It also translates the text in file choosers used in the view's
-     * different components.
+     * This method translates the title of the view, and the scenes created so far, see {@link #translateScene(JPanel)}.
+     * The scenes created later have to be translated when they're created.
      * </p>
      *
      * @param view the {@link View} whose components are to be translated. Must not be {@code null}.
@@ -42,12 +44,27 @@ public class ComponentTranslationStrategy extends DefaultTranslationStrategy {
      */
     public void translateComponents(View view) {
         view.setTitle(translate(view.getTitle()));
-        for (JPanel panel : view.getSceneManager().getScenes()) translateComponents(panel);
+        for (JPanel panel : view.getSceneManager().getScenes()) translateScene(panel);
+    }
+
+    /**
+     * Translates a single scene of the {@link View} to the current locale.
+     * <p>
+     * This method recursively translates all components within the scene, and the text in the file choosers
+     * used by it.
+     * </p>
+     *
+     * @param scene the scene whose components are to be translated. Must not be {@code null}.
+     * @throws NullPointerException if {@code scene} is {@code null}.
+     */
+    public void translateScene(JPanel scene) {
+        translateComponents((Container) scene);
 
-        FileChooser<?>[] fileChoosers = {
-            view.getComparerView().getFileChooser(),
-            view.getSettingsView().getDestinationEntry().getFileChooser(),
-            view.getGalleryView().getFileChooser()
+        FileChooser<?>[] fileChoosers = switch (scene) {
+            case ComparerView cv -> new FileChooser<?>[] { cv.getFileChooser() };
+            case SettingsView sv -> new FileChooser<?>[] { sv.getDestinationEntry().getFileChooser() };
+            case GalleryView gv -> new FileChooser<?>[] { gv.getFileChooser(), gv.getImportFileChooser(), gv.getExportFileChooser() };
+            default -> new FileChooser<?>[0];
         };
 
         translateComponents(fileChoosers);
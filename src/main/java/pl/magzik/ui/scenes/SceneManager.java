@@ -1,10 +1,14 @@
 package pl.magzik.ui.scenes;
 
 import javax.swing.*;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Manages the switching of scenes in a {@link JFrame}.
@@ -13,9 +17,17 @@ import java.util.Objects;
  * scenes within a {@link JFrame}. It provides methods to add scenes to the manager and switch the currently displayed
  * scene.
  * </p>
+ * <p>
+ * A scene may be added as a factory, in which case it's only created when it's needed for the first time,
+ * usually on the first switch to it. Every created scene is passed to the listeners registered with
+ * {@link #addSceneCreationListener(BiConsumer)}, in the order they were registered, so they can set it up before it's shown.
+ * All methods must be called on the Event Dispatch Thread.
+ * </p>
  */
 public class SceneManager implements SceneManagerInterface<SceneManager.Scene> {
     private final Map<Scene, JPanel> scenes;
+    private final Map<Scene, Supplier<? extends JPanel>> factories;
+    private final List<BiConsumer<Scene, JPanel>> creationListeners;
     private final JFrame frame;
 
     /**
@@ -28,7 +40,9 @@ public class SceneManager implements SceneManagerInterface<SceneManager.Scene> {
         Objects.requireNonNull(frame);
 
         this.frame = frame;
-        this.scenes = new HashMap<>();
+        this.scenes = new EnumMap<>(Scene.class);
+        this.factories = new EnumMap<>(Scene.class);
+        this.creationListeners = new ArrayList<>();
     }
 
     /**
@@ -46,27 +60,84 @@ public class SceneManager implements SceneManagerInterface<SceneManager.Scene> {
         Objects.requireNonNull(panel);
         Objects.requireNonNull(scene);
 
+        factories.remove(scene);
+        scenes.put(scene, panel);
+    }
+
+    /**
+     * Adds a scene that's created by the given factory when it's needed for the first time.
+     *
+     * @param scene   the {@link Scene} identifier for the panel. Must not be {@code null}.
+     * @param factory creates the {@link JPanel} scene. Must not be {@code null}.
+     * @throws NullPointerException if {@code scene} or {@code factory} is {@code null}.
+     */
+    public void addScene(Scene scene, Supplier<? extends JPanel> factory) {
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(scene);
+
+        scenes.remove(scene);
+        factories.put(scene, factory);
+    }
+
+    /**
+     * Adds a listener called with every scene created from its factory, right after it's created.
+     * The listener is called for scenes created later only.
+     *
+     * @param listener the listener. Must not be {@code null}.
+     */
+    public void addSceneCreationListener(BiConsumer<Scene, JPanel> listener) {
+        creationListeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Returns the given scene, creating it first if it's added as a factory and hasn't been created yet.
+     *
+     * @param scene the {@link Scene} identifier. Must not be {@code null}.
+     * @return the {@link JPanel} scene, or {@code null} if there's no such scene.
+     */
+    public JPanel getScene(Scene scene) {
+        Objects.requireNonNull(scene);
+
+        JPanel panel = scenes.get(scene);
+        if (panel != null) return panel;
+
+        Supplier<? extends JPanel> factory = factories.remove(scene);
+        if (factory == null) return null;
+
+        panel = Objects.requireNonNull(factory.get());
         scenes.put(scene, panel);
+
+        for (BiConsumer<Scene, JPanel> listener : List.copyOf(creationListeners)) listener.accept(scene, panel);
+        return panel;
+    }
+
+    /**
+     * Checks if the given scene has been created.
+     *
+     * @param scene the {@link Scene} identifier. Must not be {@code null}.
+     * @return {@code true} if the scene exists, {@code false} if it's waiting to be created, or there's no such scene.
+     */
+    public boolean isCreated(Scene scene) {
+        return scenes.containsKey(Objects.requireNonNull(scene));
     }
 
     /**
-     * Returns a collection of all scenes currently managed by this {@code SceneManager}.
+     * Returns a collection of all scenes created so far by this {@code SceneManager}.
      * <p>
      * This method provides access to the collection of {@link JPanel} scenes that have been added
-     * to the {@code SceneManager}. The returned collection is a view of the scenes that are currently
-     * available for switching. Note that modifications to the returned collection will not affect
-     * the internal state of the {@code SceneManager}.
+     * to the {@code SceneManager}, without the ones that haven't been created from their factories yet.
+     * Note that modifications to the returned collection will not affect the internal state of the {@code SceneManager}.
      * </p>
      *
      * @return a {@link Collection} of {@link JPanel} instances representing the scenes.
-     *         This collection is a view of the internal map's values and is not modifiable.
+     *         This collection is a copy and is not modifiable.
      */
     public Collection<JPanel> getScenes() {
-        return scenes.values();
+        return List.copyOf(scenes.values());
     }
 
     /**
-     * Switches the currently displayed scene to the specified scene.
+     * Switches the currently displayed scene to the specified scene, creating it first if needed.
      * <p>
      * This method removes all previously added scenes from the {@link JFrame} and adds the specified scene. After adding
      * the new scene, it repaints and revalidates the frame to reflect the changes.
@@ -79,8 +150,9 @@ public class SceneManager implements SceneManagerInterface<SceneManager.Scene> {
     public void switchScene(Scene scene) {
         Objects.requireNonNull(scene);
 
+        JPanel panel = getScene(scene);
         scenes.values().forEach(frame::remove);
-        frame.add(scenes.get(scene));
+        frame.add(panel);
         frame.repaint();
         frame.revalidate();
     }
@@ -1,8 +1,10 @@
 package pl.magzik.ui.views;
 
+import pl.magzik.modules.comparer.processing.ComparerSession;
 import pl.magzik.ui.components.ComponentUtils;
 import pl.magzik.ui.components.filechoosers.FileChooser;
 import pl.magzik.ui.components.filechoosers.SingleFileSelectionStrategy;
+import pl.magzik.ui.components.panels.PreviewPanel;
 
 import javax.swing.*;
 import javax.swing.border.*;
@@ -16,7 +18,12 @@ import java.util.function.Consumer;
  * The {@code ComparerView} class represents a user interface for comparing files.
  * <p>
  * It contains components for selecting a directory, loading and managing files, and displaying
- * results such as found and duplicate items.
+ * results such as found and duplicate items. The item selected in the active list is previewed
+ * next to its original.
+ * </p>
+ * <p>
+ * Every loading starts a new comparison session. The session whose results are shown is picked
+ * in the session combo box, between the counters of the tray.
  * </p>
  * <p>This class uses the Factory Method pattern to create instances of {@code ComparerView}.
  * The view is initialized thenLoad several types of settings entries, including combo boxes,
@@ -27,10 +34,13 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
     private final JTextField pathTextField;
     private final JButton pathButton;
     private final FileChooser<String> fileChooser;
-    private final JButton loadButton, moveButton, resetButton;
+    private final JButton loadButton, moveButton, resetButton, cancelButton;
     private final JLabel statusLabel;
     private final JList<String> foundList, duplicateList;
+    private final JTabbedPane listTabbedPane;
+    private final PreviewPanel originalPreview, selectedPreview;
     private final JTextField totalFoundTextField, duplicateFoundTextField;
+    private final JComboBox<ComparerSession> sessionComboBox;
 
     /**
      * Constructs a {@code ComparerView} thenLoad the specified components.
@@ -41,29 +51,40 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
      * @param loadButton The button for loading files.
      * @param moveButton The button for moving files.
      * @param resetButton The button for resetting the view.
+     * @param cancelButton The button for cancelling the running task.
      * @param statusLabel The label displaying the status of the view.
      * @param foundList The list showing found items.
      * @param duplicateList The list showing duplicate items.
+     * @param listTabbedPane The tabbed pane switching between the lists.
+     * @param originalPreview The panel previewing the original of the selected item.
+     * @param selectedPreview The panel previewing the selected item.
      * @param totalFoundTextField The text field displaying the total number of found items.
      * @param duplicateFoundTextField The text field displaying the number of duplicate items.
+     * @param sessionComboBox The combo box selecting the shown comparison session.
      */
-    private ComparerView(JTextField pathTextField, JButton pathButton, FileChooser<String> fileChooser, JButton loadButton, JButton moveButton, JButton resetButton, JLabel statusLabel, JList<String> foundList, JList<String> duplicateList, JTextField totalFoundTextField, JTextField duplicateFoundTextField) {
+    private ComparerView(JTextField pathTextField, JButton pathButton, FileChooser<String> fileChooser, JButton loadButton, JButton moveButton, JButton resetButton, JButton cancelButton, JLabel statusLabel, JList<String> foundList, JList<String> duplicateList, JTabbedPane listTabbedPane, PreviewPanel originalPreview, PreviewPanel selectedPreview, JTextField totalFoundTextField, JTextField duplicateFoundTextField, JComboBox<ComparerSession> sessionComboBox) {
         this.pathTextField = pathTextField;
         this.pathButton = pathButton;
         this.fileChooser = fileChooser;
         this.loadButton = loadButton;
         this.moveButton = moveButton;
         this.resetButton = resetButton;
+        this.cancelButton = cancelButton;
         this.statusLabel = statusLabel;
         this.foundList = foundList;
         this.duplicateList = duplicateList;
+        this.listTabbedPane = listTabbedPane;
+        this.originalPreview = originalPreview;
+        this.selectedPreview = selectedPreview;
         this.totalFoundTextField = totalFoundTextField;
         this.duplicateFoundTextField = duplicateFoundTextField;
+        this.sessionComboBox = sessionComboBox;
 
         initialize();
 
         resetButton.setEnabled(false);
         moveButton.setEnabled(false);
+        cancelButton.setEnabled(false);
     }
 
     /**
@@ -119,7 +140,7 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
     /**
      * Creates and configures the button panel thenLoad fileLoad, moveFiles, and notifyUnlock buttons.
      *
-     * @return A {@code JPanel} containing the buttons for loading, moving, and resetting.
+     * @return A {@code JPanel} containing the buttons for loading, moving, resetting, and cancelling.
      */
     private JPanel createButtonPanel() {
         JPanel buttonPanel = new JPanel();
@@ -138,6 +159,8 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
         gbc.gridy++;
         buttonPanel.add(resetButton, gbc);
         gbc.gridy++;
+        buttonPanel.add(cancelButton, gbc);
+        gbc.gridy++;
         gbc.weighty = 1;
         buttonPanel.add(Box.createVerticalGlue(), gbc);
 
@@ -177,9 +200,9 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
     }
 
     /**
-     * Creates and configures the tray panel displaying total and duplicate counts.
+     * Creates and configures the tray panel displaying total and duplicate counts, and the session selection.
      *
-     * @return A {@code JPanel} containing the total and duplicate count text fields.
+     * @return A {@code JPanel} containing the total and duplicate count text fields, and the session combo box.
      */
     private JPanel createTrayPanel() {
         JPanel trayPanel = new JPanel();
@@ -187,28 +210,48 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
 
         trayPanel.add(totalFoundTextField);
         trayPanel.add(Box.createHorizontalGlue());
+        trayPanel.add(sessionComboBox);
+        trayPanel.add(Box.createHorizontalGlue());
         trayPanel.add(duplicateFoundTextField);
 
         return trayPanel;
     }
 
     /**
-     * Creates and configures the output panel thenLoad tabs for found and duplicate items.
+     * Creates and configures the output panel with tabs for found and duplicate items,
+     * and the preview of the selected item below them.
      *
-     * @return A {@code JPanel} containing a tabbed pane thenLoad found and duplicate item lists.
+     * @return A {@code JPanel} containing a tabbed pane with found and duplicate item lists, and the preview panel.
      */
     private JPanel createOutputPanel() {
         JPanel outputPanel = new JPanel();
         outputPanel.setLayout(new GridLayout());
 
-        JTabbedPane tabbedPane = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
-        addTab(tabbedPane, "view.comparer.tab.mapped_objects.title", foundList);
-        addTab(tabbedPane, "view.comparer.tab.duplicates.title", duplicateList);
-        outputPanel.add(tabbedPane);
+        addTab(listTabbedPane, "view.comparer.tab.mapped_objects.title", foundList);
+        addTab(listTabbedPane, "view.comparer.tab.duplicates.title", duplicateList);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, listTabbedPane, createPreviewPanel());
+        splitPane.setResizeWeight(0.5);
+        outputPanel.add(splitPane);
 
         return outputPanel;
     }
 
+    /**
+     * Creates and configures the preview panel, showing the selected item next to its original.
+     *
+     * @return A {@code JPanel} containing the original and selected item previews.
+     */
+    private JPanel createPreviewPanel() {
+        JPanel previewPanel = new JPanel();
+        previewPanel.setLayout(new GridLayout(1, 2, 5, 0));
+
+        previewPanel.add(originalPreview);
+        previewPanel.add(selectedPreview);
+
+        return previewPanel;
+    }
+
     /**
      * Adds a new tab to the specified {@code JTabbedPane} thenLoad the given title and list.
      *
@@ -224,11 +267,20 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
     }
 
     /**
-     * Clears the text field and updates the tray thenLoad zero counts.
+     * Clears the text field and the previews, and updates the tray with zero counts.
      */
     public void clear() {
         pathTextField.setText(null);
         updateTray(0, 0);
+        clearPreview();
+    }
+
+    /**
+     * Clears both preview panels.
+     */
+    public void clearPreview() {
+        originalPreview.setImage(null);
+        selectedPreview.setImage(null);
     }
 
     /**
@@ -242,6 +294,15 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
         duplicateFoundTextField.setText(String.valueOf(duplicates));
     }
 
+    /**
+     * Gets the session combo box.
+     *
+     * @return The {@code JComboBox} selecting the shown comparison session.
+     */
+    public JComboBox<ComparerSession> getSessionComboBox() {
+        return sessionComboBox;
+    }
+
     /**
      * Gets the list of found items.
      *
@@ -260,6 +321,42 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
         return duplicateList;
     }
 
+    /**
+     * Gets the list shown in the currently selected tab.
+     *
+     * @return The {@code JList<String>} currently visible.
+     */
+    public JList<String> getActiveList() {
+        return listTabbedPane.getSelectedIndex() == 1 ? duplicateList : foundList;
+    }
+
+    /**
+     * Gets the tabbed pane switching between the found and duplicate lists.
+     *
+     * @return The {@code JTabbedPane} containing the lists.
+     */
+    public JTabbedPane getListTabbedPane() {
+        return listTabbedPane;
+    }
+
+    /**
+     * Gets the panel previewing the original of the selected item.
+     *
+     * @return The {@code PreviewPanel} of the original.
+     */
+    public PreviewPanel getOriginalPreview() {
+        return originalPreview;
+    }
+
+    /**
+     * Gets the panel previewing the selected item.
+     *
+     * @return The {@code PreviewPanel} of the selected item.
+     */
+    public PreviewPanel getSelectedPreview() {
+        return selectedPreview;
+    }
+
     /**
      * Gets the notifyUnlock button.
      *
@@ -269,6 +366,15 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
         return resetButton;
     }
 
+    /**
+     * Gets the cancel button.
+     *
+     * @return The {@code JButton} for cancelling the running task.
+     */
+    public JButton getCancelButton() {
+        return cancelButton;
+    }
+
     /**
      * Gets the fileLoad button.
      *
@@ -336,9 +442,15 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
         resetButton.setEnabled(false);
     }
 
+    /**
+     * Blocks the destructive buttons while another module works on the files, and unblocks the path and load buttons
+     * afterwards. Comparisons themselves don't block the buttons, since new sessions can be started while they run.
+     *
+     * @param evt The property change event of the comparer.
+     */
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
-        if (evt.getPropertyName().equals("comparer-processing")) {
+        if (evt.getPropertyName().equals("comparer-locked")) {
             SwingUtilities.invokeLater(() -> {
                 boolean val = (boolean) evt.getNewValue();
                 if (val) blockDestructiveButtons();
@@ -369,11 +481,16 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
             JButton loadButton = ComponentUtils.buttonFactory("view.comparer.button.load", buttonInsets);
             JButton moveButton = ComponentUtils.buttonFactory("view.comparer.button.move", buttonInsets);
             JButton resetButton = ComponentUtils.buttonFactory("view.comparer.button.reset", buttonInsets);
+            JButton cancelButton = ComponentUtils.buttonFactory("view.comparer.button.cancel", buttonInsets);
             JLabel statusLabel = createStatusLabel();
             JList<String> foundList = createList();
             JList<String> duplicateList = createList();
+            JTabbedPane listTabbedPane = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
+            PreviewPanel originalPreview = createPreviewPanel("view.comparer.preview.original.border.title");
+            PreviewPanel selectedPreview = createPreviewPanel("view.comparer.preview.selected.border.title");
             JTextField totalFoundTextField = ComponentUtils.constTextFieldFactory("view.comparer.tray.total.border.title", "0", 6);
             JTextField duplicateFoundTextField = ComponentUtils.constTextFieldFactory("view.comparer.tray.duplicates.border.title", "0", 6);
+            JComboBox<ComparerSession> sessionComboBox = createSessionComboBox();
 
             return new ComparerView(
                 pathTextField,
@@ -382,11 +499,16 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
                 loadButton,
                 moveButton,
                 resetButton,
+                cancelButton,
                 statusLabel,
                 foundList,
                 duplicateList,
+                listTabbedPane,
+                originalPreview,
+                selectedPreview,
                 totalFoundTextField,
-                duplicateFoundTextField
+                duplicateFoundTextField,
+                sessionComboBox
             );
         }
 
@@ -453,12 +575,46 @@ public class ComparerView extends AbstractView implements PropertyChangeListener
         /**
          * Creates and configures a {@link JList} for displaying a list of items.
          *
-         * @return A {@code JList<String>} thenLoad default settings.
+         * @return A {@code JList<String>} with single selection, which can be browsed with the keyboard.
          */
         private static JList<String> createList() {
             JList<String> list = new JList<>();
-            list.setFocusable(false);
+            list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
             return list;
         }
+
+        /**
+         * Creates and configures a {@link JComboBox} for selecting the shown comparison session.
+         *
+         * @return A {@code JComboBox<ComparerSession>} with a titled border, empty until a session is started.
+         */
+        private static JComboBox<ComparerSession> createSessionComboBox() {
+            JComboBox<ComparerSession> comboBox = new JComboBox<>();
+            comboBox.setFocusable(false);
+            comboBox.setFont(ComponentUtils.fontHelveticaPlain);
+            comboBox.setMaximumSize(new Dimension(260, Integer.MAX_VALUE));
+            comboBox.setBorder(new TitledBorder(
+                comboBox.getBorder(),
+                "view.comparer.tray.session.border.title",
+                TitledBorder.CENTER, TitledBorder.TOP,
+                ComponentUtils.fontSmallHelveticaBold
+            ));
+            return comboBox;
+        }
+
+        /**
+         * Creates and configures a {@link PreviewPanel} for displaying a preview of an item.
+         *
+         * @param title The translation key of the panel's title.
+         * @return A {@code PreviewPanel} with a titled border.
+         */
+        private static PreviewPanel createPreviewPanel(String title) {
+            PreviewPanel panel = new PreviewPanel();
+            panel.setBorder(new TitledBorder(
+                new MatteBorder(1, 0, 0, 0, Color.GRAY),
+                title
+            ));
+            return panel;
+        }
     }
 }
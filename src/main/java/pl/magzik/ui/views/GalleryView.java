@@ -2,16 +2,22 @@ package pl.magzik.ui.views;
 
 import pl.magzik.Controller;
 import pl.magzik.modules.gallery.GalleryCoordinator;
+import pl.magzik.modules.gallery.table.GalleryTableCellRenderer;
 import pl.magzik.modules.gallery.table.GalleryTableModel;
+import pl.magzik.modules.gallery.table.GalleryThumbnailRenderer;
+import pl.magzik.modules.gallery.thumbnail.ThumbnailCache;
+import pl.magzik.modules.gallery.thumbnail.ThumbnailKey;
 import pl.magzik.ui.components.ComponentUtils;
 import pl.magzik.ui.components.filechoosers.FileChooser;
 import pl.magzik.ui.components.filechoosers.MultipleFileSelectionStrategy;
+import pl.magzik.ui.components.filechoosers.SingleFileSelectionStrategy;
 
 import javax.swing.*;
 import javax.swing.border.Border;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.MatteBorder;
+import javax.swing.table.TableColumn;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
@@ -19,9 +25,9 @@ import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.regex.Pattern;
 
 /**
  * The {@code GalleryView} class is a UI component representing a gallery interface in the application.
@@ -36,10 +42,16 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
     private final JTable galleryTable;
     private TableRowSorter<GalleryTableModel> galleryRowSorter;
     private final JLabel elementCountLabel;
-    private final JTextField nameFilterTextField;
-    private final JButton addImageButton, removeImageButton, deleteImageButton, distinctButton, unifyNamesButton, openButton, addTagButton, removeTagButton;
+    private final JTextField nameFilterTextField, tagFilterTextField;
+    private final JCheckBox missingOnlyCheckBox;
+    private final JComboBox<String> collectionComboBox;
+    private final JButton newCollectionButton;
+    private final JButton importButton, exportButton;
+    private final JButton addImageButton, removeImageButton, deleteImageButton, distinctButton, unifyNamesButton, openButton, addTagButton, removeTagButton, renameTagButton;
+    private final JButton cancelButton;
     private final JButton[] buttons;
     private FileChooser<List<String>> fileChooser;
+    private FileChooser<String> importFileChooser, exportFileChooser;
 
     /**
      * Constructs a new {@code GalleryView} thenLoad the specified UI components.
@@ -47,6 +59,12 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
      * @param galleryTable         The table displaying the gallery images.
      * @param elementCountLabel    The label showing the count of elements in the gallery.
      * @param nameFilterTextField  The text field used to filter images by name.
+     * @param tagFilterTextField   The text field used to filter images by a tag query.
+     * @param missingOnlyCheckBox  The check box used to show only images whose files are missing.
+     * @param collectionComboBox   The combo box used to switch between gallery collections.
+     * @param newCollectionButton  The button for creating a new gallery collection.
+     * @param importButton         The button for importing gallery entries from a JSON Lines file.
+     * @param exportButton         The button for exporting gallery entries into a JSON Lines file.
      * @param addImageButton       The button for adding images to the gallery.
      * @param removeImageButton    The button for removing selected images from the gallery.
      * @param deleteImageButton    The button for deleting images from the system.
@@ -55,11 +73,19 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
      * @param openButton           The button for opening selected images.
      * @param addTagButton         The button for adding tags to selected images.
      * @param removeTagButton      The button for removing tags from selected images.
+     * @param renameTagButton      The button for renaming a tag in the whole gallery.
+     * @param cancelButton         The button for cancelling the running task.
      */
-    private GalleryView(JTable galleryTable, JLabel elementCountLabel, JTextField nameFilterTextField, JButton addImageButton, JButton removeImageButton, JButton deleteImageButton, JButton distinctButton, JButton unifyNamesButton, JButton openButton, JButton addTagButton, JButton removeTagButton) {
+    private GalleryView(JTable galleryTable, JLabel elementCountLabel, JTextField nameFilterTextField, JTextField tagFilterTextField, JCheckBox missingOnlyCheckBox, JComboBox<String> collectionComboBox, JButton newCollectionButton, JButton importButton, JButton exportButton, JButton addImageButton, JButton removeImageButton, JButton deleteImageButton, JButton distinctButton, JButton unifyNamesButton, JButton openButton, JButton addTagButton, JButton removeTagButton, JButton renameTagButton, JButton cancelButton) {
         this.galleryTable = galleryTable;
         this.elementCountLabel = elementCountLabel;
         this.nameFilterTextField = nameFilterTextField;
+        this.tagFilterTextField = tagFilterTextField;
+        this.missingOnlyCheckBox = missingOnlyCheckBox;
+        this.collectionComboBox = collectionComboBox;
+        this.newCollectionButton = newCollectionButton;
+        this.importButton = importButton;
+        this.exportButton = exportButton;
         this.addImageButton = addImageButton;
         this.removeImageButton = removeImageButton;
         this.deleteImageButton = deleteImageButton;
@@ -68,6 +94,8 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
         this.openButton = openButton;
         this.addTagButton = addTagButton;
         this.removeTagButton = removeTagButton;
+        this.renameTagButton = renameTagButton;
+        this.cancelButton = cancelButton;
         this.buttons = new JButton[]{
             addImageButton,
             removeImageButton,
@@ -76,10 +104,15 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
             unifyNamesButton,
             addTagButton,
             removeTagButton,
-            openButton
+            renameTagButton,
+            openButton,
+            importButton,
+            exportButton
         };
 
         initialize();
+
+        cancelButton.setEnabled(false);
     }
 
     /**
@@ -119,17 +152,35 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
 
         headerPanel.add(createLabel("view.gallery.label.header", ComponentUtils.fontHelveticaBold), c);
 
+        c.gridx++;
+        headerPanel.add(createLabel("view.gallery.label.collection", ComponentUtils.fontHelveticaPlain), c);
+
+        c.gridx++;
+        headerPanel.add(collectionComboBox, c);
+
+        c.gridx++;
+        headerPanel.add(newCollectionButton, c);
+
         c.gridx++;
         c.weightx = 1;
         headerPanel.add(Box.createHorizontalGlue(), c);
 
         c.gridx++;
         c.weightx = 0;
+        headerPanel.add(missingOnlyCheckBox, c);
+
+        c.gridx++;
         headerPanel.add(createLabel("view.gallery.label.name_filter", ComponentUtils.fontHelveticaPlain), c);
 
         c.gridx++;
         headerPanel.add(nameFilterTextField, c);
 
+        c.gridx++;
+        headerPanel.add(createLabel("view.gallery.label.tag_filter", ComponentUtils.fontHelveticaPlain), c);
+
+        c.gridx++;
+        headerPanel.add(tagFilterTextField, c);
+
         return headerPanel;
     }
 
@@ -183,6 +234,9 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
             gbc.gridy++;
         }
 
+        buttonPanel.add(cancelButton, gbc);
+        gbc.gridy++;
+
         gbc.weighty = 1;
         buttonPanel.add(Box.createVerticalGlue(), gbc);
 
@@ -252,6 +306,14 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
         return removeTagButton;
     }
 
+    public JButton getRenameTagButton() {
+        return renameTagButton;
+    }
+
+    public JButton getCancelButton() {
+        return cancelButton;
+    }
+
     public JTable getGalleryTable() {
         return galleryTable;
     }
@@ -264,6 +326,47 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
         return nameFilterTextField;
     }
 
+    public JTextField getTagFilterTextField() {
+        return tagFilterTextField;
+    }
+
+    /**
+     * Marks the tag query as valid or malformed. A malformed query is shown in red.
+     *
+     * @param valid {@code true} if the query in the tag filter text field can be parsed
+     */
+    public void setTagFilterValid(boolean valid) {
+        tagFilterTextField.setForeground(valid ? UIManager.getColor("TextField.foreground") : Color.RED);
+    }
+
+    public JCheckBox getMissingOnlyCheckBox() {
+        return missingOnlyCheckBox;
+    }
+
+    public JComboBox<String> getCollectionComboBox() {
+        return collectionComboBox;
+    }
+
+    public JButton getNewCollectionButton() {
+        return newCollectionButton;
+    }
+
+    public JButton getImportButton() {
+        return importButton;
+    }
+
+    public JButton getExportButton() {
+        return exportButton;
+    }
+
+    public FileChooser<String> getImportFileChooser() {
+        return importFileChooser;
+    }
+
+    public FileChooser<String> getExportFileChooser() {
+        return exportFileChooser;
+    }
+
     public FileChooser<List<String>> getFileChooser() {
         return fileChooser;
     }
@@ -316,6 +419,7 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
      * This method sets up the {@link FileChooser} thenLoad the specified {@link Controller} that
      * will handle the file selection results. The file chooser is configured to allow selection
      * of both files and directories.
+     * It also sets up the file choosers used to import and export JSON Lines files.
      * </p>
      *
      * @param gc The {@link GalleryCoordinator} that will process the file selection results.
@@ -333,6 +437,21 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
                 new MultipleFileSelectionStrategy()
         );
         fileChooser.getFileChooser().setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+
+        importFileChooser = new FileChooser<>(
+                "view.gallery.file_chooser.import.title",
+                importButton,
+                gc::handleImport,
+                new SingleFileSelectionStrategy()
+        );
+
+        exportFileChooser = new FileChooser<>(
+                "view.gallery.file_chooser.export.title",
+                exportButton,
+                gc::handleExport,
+                new SingleFileSelectionStrategy()
+        );
+        exportFileChooser.getFileChooser().setDialogType(JFileChooser.SAVE_DIALOG);
     }
 
     /**
@@ -353,37 +472,83 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
     }
 
     /**
-     * Disables all buttons in the gallery view.
+     * Shows the thumbnails of the given cache in the thumbnail column of the gallery table.
+     * <p>
+     * Whenever a thumbnail finishes loading, only its cell is repainted, provided its row is still visible.
+     * </p>
+     *
+     * @param cache the thumbnail cache
+     */
+    public void setThumbnailCache(ThumbnailCache cache) {
+        galleryTable.setDefaultRenderer(ThumbnailKey.class, new GalleryThumbnailRenderer(cache));
+
+        cache.addListener(key -> {
+            if (!(galleryTable.getModel() instanceof GalleryTableModel model)) return;
+
+            int row = model.indexOf(key.path());
+            if (row == -1) return;
+
+            int viewRow = galleryTable.convertRowIndexToView(row),
+                viewColumn = galleryTable.convertColumnIndexToView(GalleryTableModel.THUMBNAIL_COLUMN);
+            if (viewRow == -1 || viewColumn == -1) return;
+
+            galleryTable.repaint(galleryTable.getCellRect(viewRow, viewColumn, false));
+        });
+    }
+
+    /**
+     * Disables all buttons and the collection selector in the gallery view.
      */
     public void lockModule() {
         for (JButton button : buttons) button.setEnabled(false);
+        collectionComboBox.setEnabled(false);
+        newCollectionButton.setEnabled(false);
     }
 
     /**
-     * Enables all buttons in the gallery view.
+     * Enables all buttons and the collection selector in the gallery view.
      */
     public void unlockModule() {
         for (JButton button : buttons) button.setEnabled(true);
+        collectionComboBox.setEnabled(true);
+        newCollectionButton.setEnabled(true);
+    }
+
+    /**
+     * Replaces the items of the collection selector and selects the active collection.
+     *
+     * @param names  the names of all collections.
+     * @param active the name of the active collection.
+     */
+    public void setCollections(List<String> names, String active) {
+        collectionComboBox.setModel(new DefaultComboBoxModel<>(names.toArray(String[]::new)));
+        collectionComboBox.setSelectedItem(active);
     }
 
     /**
-     * Applies a filter to the gallery table based on the specified filter string.
+     * Applies the result of a gallery search to the table.
      * <p>
-     * This method creates a {@code RowFilter} that uses a regular expression to match rows
-     * in the gallery table. The filter is applied to the table's data model to show only rows
-     * that match the specified filter criteria.
+     * Only the rows whose ids are in the given set are shown. If the "missing only" check box is selected,
+     * the filter additionally hides every row whose file is present. The search itself is done elsewhere,
+     * off the Event Dispatch Thread, so this method only publishes its result to the row sorter.
      * </p>
      *
-     * @param filter the filter string to apply to the gallery table
-     *
-     * @throws NullPointerException if {@code filter} is {@code null}
+     * @param matches the stable row ids of the matching rows, or {@code null} to show all rows
+     * @see GalleryTableModel#getRowId(int)
      */
-    public void filterTable(String filter) {
-        filter = Pattern.quote(filter);
-        RowFilter<GalleryTableModel, Integer> rowFilter = RowFilter.regexFilter(
-            ".*"+filter+".*", 0
-        );
-        galleryRowSorter.setRowFilter(rowFilter);
+    public void filterTable(BitSet matches) {
+        boolean missingOnly = missingOnlyCheckBox.isSelected();
+        if (matches == null && !missingOnly) {
+            galleryRowSorter.setRowFilter(null);
+            return;
+        }
+
+        galleryRowSorter.setRowFilter(new RowFilter<>() {
+            @Override
+            public boolean include(Entry<? extends GalleryTableModel, ? extends Integer> entry) {
+                return entry.getModel().isIncluded(entry.getIdentifier(), matches, missingOnly);
+            }
+        });
     }
 
     @Override
@@ -413,6 +578,12 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
             JTable galleryTable = createTable();
             JLabel elementCountLabel = createCountLabel();
             JTextField nameFilterTextField = createFilterTextField();
+            JTextField tagFilterTextField = createFilterTextField();
+            JCheckBox missingOnlyCheckBox = createCheckBox("view.gallery.toggle.missing");
+            JComboBox<String> collectionComboBox = createComboBox();
+            JButton newCollectionButton = createButton("view.gallery.button.collection.new");
+            JButton importButton = createButton("view.gallery.button.import");
+            JButton exportButton = createButton("view.gallery.button.export");
             JButton addImageButton = createButton("view.gallery.button.image.add");
             JButton removeImageButton = createButton("view.gallery.button.image.remove");
             JButton deleteImageButton = createButton("view.gallery.button.image.delete");
@@ -421,11 +592,19 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
             JButton openButton = createButton("view.gallery.button.image.open");
             JButton addTagButton = createButton("view.gallery.button.tag.add");
             JButton removeTagButton = createButton("view.gallery.button.tag.remove");
+            JButton renameTagButton = createButton("view.gallery.button.tag.rename");
+            JButton cancelButton = createButton("view.gallery.button.cancel");
 
             return new GalleryView(
                 galleryTable,
                 elementCountLabel,
                 nameFilterTextField,
+                tagFilterTextField,
+                missingOnlyCheckBox,
+                collectionComboBox,
+                newCollectionButton,
+                importButton,
+                exportButton,
                 addImageButton,
                 removeImageButton,
                 deleteImageButton,
@@ -433,7 +612,9 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
                 unifyNamesButton,
                 openButton,
                 addTagButton,
-                removeTagButton
+                removeTagButton,
+                renameTagButton,
+                cancelButton
             );
         }
 
@@ -443,8 +624,24 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
          * @return A new instance of {@link JTable}.
          */
         private static JTable createTable() {
-            JTable table = new JTable();
+            JTable table = new JTable() {
+                @Override
+                public void createDefaultColumnsFromModel() {
+                    super.createDefaultColumnsFromModel();
+
+                    // Columns are recreated whenever the structure changes, e.g. after translation.
+                    if (!(getModel() instanceof GalleryTableModel)) return;
+                    int idx = convertColumnIndexToView(GalleryTableModel.THUMBNAIL_COLUMN);
+                    if (idx == -1) return;
+
+                    TableColumn column = getColumnModel().getColumn(idx);
+                    column.setMinWidth(ThumbnailCache.THUMBNAIL_SIZE + 8);
+                    column.setMaxWidth(ThumbnailCache.THUMBNAIL_SIZE + 8);
+                }
+            };
+            table.setRowHeight(ThumbnailCache.THUMBNAIL_SIZE + 4);
             table.getTableHeader().setReorderingAllowed(false);
+            table.setDefaultRenderer(Long.class, new GalleryTableCellRenderer());
 
             table.addMouseListener(new MouseAdapter() {
 
@@ -498,6 +695,32 @@ public class GalleryView extends AbstractView implements PropertyChangeListener
             return textField;
         }
 
+        /**
+         * Creates and configures the combo box for switching gallery collections.
+         *
+         * @return A new instance of {@link JComboBox}.
+         */
+        private static JComboBox<String> createComboBox() {
+            JComboBox<String> comboBox = new JComboBox<>();
+            comboBox.setFont(ComponentUtils.fontHelveticaPlain);
+            comboBox.setPreferredSize(new Dimension(150, 30));
+
+            return comboBox;
+        }
+
+        /**
+         * Creates and configures a check box thenLoad the specified title.
+         *
+         * @param title The title of the check box.
+         * @return A new instance of {@link JCheckBox}.
+         */
+        private static JCheckBox createCheckBox(String title) {
+            JCheckBox checkBox = new JCheckBox(title);
+            checkBox.setFont(ComponentUtils.fontHelveticaPlain);
+
+            return checkBox;
+        }
+
         /**
          * Creates and configures a button thenLoad the specified title.
          *
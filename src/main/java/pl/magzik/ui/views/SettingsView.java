@@ -30,6 +30,9 @@ public class SettingsView extends AbstractView {
     private final CheckBoxSettingsEntry recursiveModeEntry, pHashModeEntry, pixelByPixelModeEntry, namesLowerCaseEntry;
     private final TextFieldSettingsEntry namesPrefixEntry;
 
+    private final JTable metricsTable;
+    private final JButton dumpMetricsButton;
+
     /**
      * Constructs a {@code SettingsView} thenLoad the specified settings entries.
      *
@@ -42,8 +45,10 @@ public class SettingsView extends AbstractView {
      * @param pixelByPixelModeEntry A {@code CheckBoxSettingsEntry} for enabling pixel-by-pixel comparison mode.
      * @param namesLowerCaseEntry A {@code CheckBoxSettingsEntry} for converting names to lowercase.
      * @param namesPrefixEntry A {@code TextFieldSettingsEntry} for specifying a prefix for unified names.
+     * @param metricsTable A {@code JTable} displaying the live values of the application metrics.
+     * @param dumpMetricsButton The button used to save a snapshot of the application metrics.
      */
-    private SettingsView(JButton saveButton, ComboBoxSettingsEntry languageEntry, ComboBoxSettingsEntry themeEntry, PathSettingsEntry destinationEntry, CheckBoxSettingsEntry recursiveModeEntry, CheckBoxSettingsEntry pHashModeEntry, CheckBoxSettingsEntry pixelByPixelModeEntry, CheckBoxSettingsEntry namesLowerCaseEntry, TextFieldSettingsEntry namesPrefixEntry) {
+    private SettingsView(JButton saveButton, ComboBoxSettingsEntry languageEntry, ComboBoxSettingsEntry themeEntry, PathSettingsEntry destinationEntry, CheckBoxSettingsEntry recursiveModeEntry, CheckBoxSettingsEntry pHashModeEntry, CheckBoxSettingsEntry pixelByPixelModeEntry, CheckBoxSettingsEntry namesLowerCaseEntry, TextFieldSettingsEntry namesPrefixEntry, JTable metricsTable, JButton dumpMetricsButton) {
         this.saveButton = saveButton;
         this.languageEntry = languageEntry;
         this.themeEntry = themeEntry;
@@ -53,6 +58,8 @@ public class SettingsView extends AbstractView {
         this.pixelByPixelModeEntry = pixelByPixelModeEntry;
         this.namesLowerCaseEntry = namesLowerCaseEntry;
         this.namesPrefixEntry = namesPrefixEntry;
+        this.metricsTable = metricsTable;
+        this.dumpMetricsButton = dumpMetricsButton;
 
         initialize();
     }
@@ -108,6 +115,7 @@ public class SettingsView extends AbstractView {
         addTab(settingsTabs, "tab.settings.general.title", languageEntry, themeEntry);
         addTab(settingsTabs, "tab.settings.comparer.title", destinationEntry, recursiveModeEntry, pHashModeEntry, pixelByPixelModeEntry);
         addTab(settingsTabs, "tab.settings.gallery.title", namesPrefixEntry, namesLowerCaseEntry);
+        addDiagnosticsTab(settingsTabs);
 
         mainPanel.add(settingsTabs, gbc);
         gbc.gridy++;
@@ -153,6 +161,28 @@ public class SettingsView extends AbstractView {
         tabPanel.add(tabTitle, scrollPane);
     }
 
+    /**
+     * Adds the tab displaying the application metrics, with the button saving their snapshot below the table.
+     * @param tabPanel {@link JTabbedPane} to be added tab to.
+     * */
+    private void addDiagnosticsTab(JTabbedPane tabPanel) {
+        Objects.requireNonNull(tabPanel);
+
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        panel.setBorder(new EmptyBorder(5, 5, 5, 5));
+
+        JScrollPane scrollPane = new JScrollPane(metricsTable);
+        scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttonPanel.add(dumpMetricsButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        tabPanel.add("tab.settings.diagnostics.title", panel);
+    }
+
     /**
      * Returns the save button used in this settings view.
      *
@@ -234,6 +264,24 @@ public class SettingsView extends AbstractView {
         return namesPrefixEntry;
     }
 
+    /**
+     * Returns the table displaying the application metrics.
+     *
+     * @return The {@link JTable} of the metrics.
+     */
+    public JTable getMetricsTable() {
+        return metricsTable;
+    }
+
+    /**
+     * Returns the button used to save a snapshot of the application metrics.
+     *
+     * @return The dump button.
+     */
+    public JButton getDumpMetricsButton() {
+        return dumpMetricsButton;
+    }
+
     /**
      * The {@code Factory} class provides a factory method to create instances of {@link SettingsView}.
      * It contains methods to create and configure the components used in the settings view.
@@ -255,16 +303,33 @@ public class SettingsView extends AbstractView {
             CheckBoxSettingsEntry pixelByPixelModeEntry = new CheckBoxSettingsEntry("view.settings.label.pixel_by_pixel", createCheckboxPanel("view.settings.toggle.pixel_by_pixel"));
             TextFieldSettingsEntry namesPrefixEntry = new TextFieldSettingsEntry("view.settings.label.unify_name.prefix", createTextFieldPanel());
             CheckBoxSettingsEntry namesLowerCaseEntry = new CheckBoxSettingsEntry("view.settings.label.unify_name.lower_case", createCheckboxPanel("view.settings.toggle.unify_name.lower_case"));
+            JTable metricsTable = createMetricsTable();
+            JButton dumpMetricsButton = ComponentUtils.buttonFactory("view.settings.button.diagnostics.dump", new Insets(5, 10, 5, 10));
 
             return new SettingsView(
                 saveButton, languageEntry,
                 themeEntry, destinationEntry,
                 recursiveModeEntry, pHashModeEntry,
                 pixelByPixelModeEntry, namesLowerCaseEntry,
-                namesPrefixEntry
+                namesPrefixEntry, metricsTable,
+                dumpMetricsButton
             );
         }
 
+        /**
+         * Creates a read-only table for the application metrics. Its model is set by the controller.
+         *
+         * @return A {@code JTable} with a single selectable row.
+         */
+        private static JTable createMetricsTable() {
+            JTable table = new JTable();
+            table.setDefaultEditor(Object.class, null);
+            table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            table.setFillsViewportHeight(true);
+            table.getTableHeader().setReorderingAllowed(false);
+            return table;
+        }
+
         /**
          * Creates a panel used as a value for {@link PathSettingsEntry}.
          *